@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.jdocker.benchmarks;
+
+import io.github.jdocker.common.CheckResult;
+import io.github.jdocker.common.Endpoint;
+import io.github.jdocker.common.HealthCheckResult;
+import io.github.jdocker.common.OwnedResult;
+import io.github.jdocker.common.vertx.BinaryCodec;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding of the event bus messages with the {@link BinaryCodec}, compared to plain JSON.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+
+    @Param({"ownedResult", "endpoint", "healthCheckResult", "heartbeat"})
+    public String message;
+
+    private final BinaryCodec codec = new BinaryCodec();
+    private Object value;
+    private Buffer encoded;
+    private Buffer target;
+
+    @Setup
+    public void setup(){
+        switch(message){
+            case "ownedResult":
+                value = new OwnedResult("docker-agent:host1", "kernel-version", "3.16.7-29-desktop");
+                break;
+            case "endpoint":
+                value = new Endpoint("billing", URI.create("http://billing.intra.net:8080/api"),
+                        Arrays.asList("stage:test", "zone:rz", "zone:ch")).close();
+                break;
+            case "healthCheckResult":
+                value = new HealthCheckResult().setInstance("host1").setCheckId("ping")
+                        .setShortDesc("Ping check").setResult(CheckResult.SUCCESS).setMessage("2 packets received.")
+                        .close();
+                break;
+            default:
+                value = new JsonObject().put("name", "host1").put("seq", 4711L).put("full", true)
+                        .put("data", new JsonObject().put("component", "docker-agent").put("state", "Running")
+                                .put("labels", new JsonObject().put("zone", "rz").put("stage", "test"))
+                                .put("containers", 12).put("containersRunning", 10).put("cpus", 8)
+                                .put("memory", 16L * 1024 * 1024 * 1024));
+        }
+        encoded = Buffer.buffer();
+        codec.encodeToWire(encoded, value);
+        target = Buffer.buffer(512);
+    }
+
+    @Benchmark
+    public Buffer binaryEncode(){
+        Buffer buffer = Buffer.buffer(512);
+        codec.encodeToWire(buffer, value);
+        return buffer;
+    }
+
+    @Benchmark
+    public Object binaryDecode(){
+        return codec.decodeFromWire(0, encoded);
+    }
+
+    @Benchmark
+    public Object binaryTransform(){
+        return codec.transform(value);
+    }
+
+    @Benchmark
+    public Buffer jsonEncode(){
+        target = Buffer.buffer(512);
+        return target.appendString(value instanceof JsonObject?((JsonObject)value).encode():Json.encode(value));
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.jdocker.benchmarks;
+
+import io.github.jdocker.common.Endpoint;
+import io.github.jdocker.common.EndpointResolutionPolicy;
+import io.github.jdocker.common.KeyedEndpointResolutionPolicy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolution of one endpoint out of 10 to 10k candidates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EndpointResolutionBenchmark {
+
+    @Param({"10", "100", "1000", "10000"})
+    public int endpointCount;
+
+    private List<Endpoint> endpoints;
+    private String[] keys;
+    private int keyIndex;
+
+    @Setup
+    public void setup(){
+        endpoints = new ArrayList<>(endpointCount);
+        for(int i=0;i<endpointCount;i++){
+            endpoints.add(new Endpoint("billing", URI.create("http://host" + i + ".intra.net:8080/api"),
+                    Arrays.asList("stage:test", "zone:" + (i % 4))));
+        }
+        keys = new String[1024];
+        for(int i=0;i<keys.length;i++){
+            keys[i] = "tenant-" + i;
+        }
+    }
+
+    @Benchmark
+    public Endpoint random(){
+        return EndpointResolutionPolicy.RANDOM_RESOLUTIONPOLICY.resolve(endpoints);
+    }
+
+    @Benchmark
+    public Endpoint roundRobin(){
+        return EndpointResolutionPolicy.ROUNDROBIN_RESOLUTIONPOLICY.resolve(endpoints);
+    }
+
+    @Benchmark
+    public Endpoint weighted(){
+        return EndpointResolutionPolicy.WEIGHTED_RESOLUTIONPOLICY.resolve(endpoints);
+    }
+
+    @Benchmark
+    public Endpoint leastLoaded(){
+        return EndpointResolutionPolicy.LEASTLOADED_RESOLUTIONPOLICY.resolve(endpoints);
+    }
+
+    @Benchmark
+    public Endpoint peakEwma(){
+        return EndpointResolutionPolicy.PEAKEWMA_RESOLUTIONPOLICY.resolve(endpoints);
+    }
+
+    @Benchmark
+    public Endpoint consistentHash(){
+        String key = keys[keyIndex++ & (keys.length - 1)];
+        return KeyedEndpointResolutionPolicy.CONSISTENTHASH_RESOLUTIONPOLICY.resolve(endpoints, key);
+    }
+}
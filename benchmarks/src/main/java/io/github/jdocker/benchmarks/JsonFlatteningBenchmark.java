@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.jdocker.benchmarks;
+
+import io.github.jdocker.common.JSONMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Flattening of JSON documents into configuration properties using the {@link JSONMapper}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonFlatteningBenchmark {
+
+    /** Number of service sections, each containing a nested endpoint section. */
+    @Param({"10", "1000", "10000"})
+    public int sections;
+
+    private final JSONMapper mapper = new JSONMapper();
+    private byte[] document;
+
+    @Setup
+    public void setup(){
+        StringBuilder b = new StringBuilder("{\"jd\":{");
+        for(int i=0;i<sections;i++){
+            if(i>0){
+                b.append(',');
+            }
+            b.append("\"service").append(i).append("\":{\"name\":\"service").append(i)
+                    .append("\",\"enabled\":true,\"weight\":").append(i % 10)
+                    .append(",\"endpoint\":{\"uri\":\"http://host").append(i)
+                    .append(".intra.net:8080/api\",\"tags\":\"stage:test,zone:rz\"}}");
+        }
+        document = b.append("}}").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public Map<String,String> flatten(){
+        return mapper.readJsonData(new ByteArrayInputStream(document));
+    }
+
+    @Benchmark
+    public void flattenToConsumer(Blackhole blackhole){
+        mapper.readJsonData(new ByteArrayInputStream(document), (k, v) -> blackhole.consume(k));
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.jdocker.benchmarks;
+
+import io.github.jdocker.common.DefaultServiceContext;
+import io.github.jdocker.common.ServiceContext;
+import io.github.jdocker.common.ServiceContextManager;
+import io.github.jdocker.common.ServiceFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookup of services using the {@link ServiceContext}, for registered as well as unknown service types.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ServiceContextBenchmark {
+
+    /** A service type without registered implementations. */
+    public interface UnknownService{}
+
+    @Benchmark
+    public ServiceContext getServiceContext(){
+        return ServiceContextManager.getServiceContext();
+    }
+
+    @Benchmark
+    public ServiceFactory getRegisteredService(){
+        return ServiceContextManager.getServiceContext().getService(ServiceFactory.class);
+    }
+
+    @Benchmark
+    public ServiceFactory getServiceFromNewContext(){
+        return new DefaultServiceContext().getService(ServiceFactory.class);
+    }
+
+    @Benchmark
+    public UnknownService getUnknownService(){
+        return ServiceContextManager.getServiceContext().getService(UnknownService.class);
+    }
+}
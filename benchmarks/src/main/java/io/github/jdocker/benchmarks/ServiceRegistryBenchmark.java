@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.jdocker.benchmarks;
+
+import io.github.jdocker.common.Endpoint;
+import io.github.jdocker.serviceregistry.ServiceRegistry;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registration and lookup of endpoints through the {@link ServiceRegistry} verticle, deployed on a local,
+ * non clustered Vert.x instance. Each operation is a full event bus round trip.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ServiceRegistryBenchmark {
+
+    private static final String REG_ADDRESS_PUT = "services.shared.put";
+    private static final String REG_ADDRESS_GET = "services.shared.get";
+
+    @Param({"10", "1000"})
+    public int serviceCount;
+
+    private Vertx vertx;
+    private String[] serviceNames;
+    private String[] encodedEndpoints;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        vertx = Vertx.vertx();
+        CompletableFuture<String> deployed = new CompletableFuture<>();
+        vertx.deployVerticle(ServiceRegistry.class.getName(),
+                new DeploymentOptions().setConfig(new JsonObject().put("clustered", false)), res -> {
+                    if(res.succeeded()){
+                        deployed.complete(res.result());
+                    }else{
+                        deployed.completeExceptionally(res.cause());
+                    }
+                });
+        deployed.get(10, TimeUnit.SECONDS);
+        serviceNames = new String[serviceCount];
+        encodedEndpoints = new String[serviceCount];
+        for(int i=0;i<serviceCount;i++){
+            serviceNames[i] = "service" + i;
+            encodedEndpoints[i] = new Endpoint(serviceNames[i],
+                    URI.create("http://host" + i + ".intra.net:8080/api"), Arrays.asList("stage:test")).toJSON().encode();
+            vertx.eventBus().send(REG_ADDRESS_PUT, encodedEndpoints[i]);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        CompletableFuture<Void> closed = new CompletableFuture<>();
+        vertx.close(res -> closed.complete(null));
+        closed.get(10, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    public Object get() throws Exception {
+        return request(serviceNames[ThreadLocalRandom.current().nextInt(serviceCount)]);
+    }
+
+    @Benchmark
+    public Object putAndGet() throws Exception {
+        int index = ThreadLocalRandom.current().nextInt(serviceCount);
+        vertx.eventBus().send(REG_ADDRESS_PUT, encodedEndpoints[index]);
+        return request(serviceNames[index]);
+    }
+
+    private Object request(String serviceName) throws Exception {
+        CompletableFuture<Object> reply = new CompletableFuture<>();
+        vertx.eventBus().send(REG_ADDRESS_GET, serviceName, res -> {
+            if(res.succeeded()){
+                reply.complete(res.result().body());
+            }else{
+                reply.completeExceptionally(res.cause());
+            }
+        });
+        return reply.get(10, TimeUnit.SECONDS);
+    }
+}
@@ -18,6 +18,7 @@
  */
 package io.github.jdocker.common;
 
+import io.github.jdocker.common.internal.ServiceIndex;
 import org.apache.tamaya.ConfigException;
 
 import javax.annotation.Priority;
@@ -28,24 +29,68 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
- * This class implements the (default) {@link org.apache.tamaya.spi.ServiceContext} interface and hereby uses the JDK
- * {@link java.util.ServiceLoader} to load the services required.
+ * This class implements the (default) {@link org.apache.tamaya.spi.ServiceContext} interface. Service types contained
+ * in the {@link ServiceIndex} written at compile time are loaded from the index, ordered by priority, and are
+ * resolved eagerly in parallel in the background, without scanning the class path. Only types missing from the
+ * index are loaded using the JDK {@link java.util.ServiceLoader}.
  */
+@ServiceProvider(ServiceContext.class)
 public final class DefaultServiceContext implements ServiceContext {
+
+    private static final Logger LOG = Logger.getLogger(DefaultServiceContext.class.getName());
+
+    /**
+     * The class loader used for indexed services.
+     */
+    private final ClassLoader classLoader;
+    /**
+     * The service index.
+     */
+    private final ServiceIndex index;
+    /**
+     * Priorities of the indexed implementations loaded.
+     */
+    private final Map<Class<?>, Integer> indexedPriorities = new ConcurrentHashMap<>();
     /**
-     * List current services loaded, per class.
+     * List current services loaded, per class. Callers asking for a type still being loaded wait for its result.
      */
-    private final ConcurrentHashMap<Class<?>, List<Object>> servicesLoaded = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Class<?>, CompletableFuture<List<Object>>> servicesLoaded = new ConcurrentHashMap<>();
     /**
      * Singletons.
      */
     private final Map<Class<?>, Object> singletons = new ConcurrentHashMap<>();
 
+    /**
+     * Creates a new instance, loading the service index and starting to resolve the indexed services.
+     */
+    public DefaultServiceContext(){
+        ClassLoader cl = Thread.currentThread().getContextClassLoader();
+        this.classLoader = cl!=null?cl:DefaultServiceContext.class.getClassLoader();
+        this.index = ServiceIndex.of(classLoader);
+        Set<String> serviceTypes = index.getServiceTypes();
+        if(!serviceTypes.isEmpty()) {
+            CompletableFuture.runAsync(() -> serviceTypes.parallelStream().forEach(this::preload));
+        }
+    }
+
+    private void preload(String serviceTypeName){
+        if(ServiceContext.class.getName().equals(serviceTypeName)){
+            return;
+        }
+        try {
+            getService(Class.forName(serviceTypeName, false, classLoader));
+        } catch (Exception e) {
+            LOG.log(Level.FINE, "Cannot preload services of type " + serviceTypeName, e);
+        }
+    }
+
     @Override
     public <T> T getService(Class<T> serviceType) {
         Object cached = singletons.get(serviceType);
@@ -57,7 +102,10 @@ public final class DefaultServiceContext implements ServiceContext {
                 cached = getServiceWithHighestPriority(services, serviceType);
             }
             if(cached!=null) {
-                singletons.put(serviceType, cached);
+                Object previous = singletons.putIfAbsent(serviceType, cached);
+                if(previous!=null){
+                    cached = previous;
+                }
             }
         }
         return serviceType.cast(cached);
@@ -72,22 +120,55 @@ public final class DefaultServiceContext implements ServiceContext {
      */
     @Override
     public <T> List<T> getServices(final Class<T> serviceType) {
-        List<T> found = (List<T>) servicesLoaded.get(serviceType);
-        if (found != null) {
-            return found;
+        CompletableFuture<List<Object>> found = servicesLoaded.get(serviceType);
+        if (found == null) {
+            CompletableFuture<List<Object>> loading = new CompletableFuture<>();
+            found = servicesLoaded.putIfAbsent(serviceType, loading);
+            if (found == null) {
+                // only this caller loads the services, the others (e.g. the preloading) wait for them
+                found = loading;
+                try {
+                    loading.complete((List<Object>) loadServices(serviceType));
+                } catch (RuntimeException | Error e) {
+                    loading.completeExceptionally(e);
+                    throw e;
+                }
+            }
         }
+        return (List<T>) found.join();
+    }
+
+    /**
+     * Creates the indexed implementations of a type, or the ones of the {@link ServiceLoader}, if the type is not
+     * indexed.
+     *
+     * @param <T>         the concrete type.
+     * @param serviceType The service type.
+     * @return the items found, never {@code null}.
+     */
+    private <T> List<T> loadServices(Class<T> serviceType) {
         List<T> services = new ArrayList<>();
-        try {
-            for (T t : ServiceLoader.load(serviceType)) {
-                services.add(t);
+        List<ServiceIndex.Entry> indexed = index.get(serviceType.getName());
+        if (indexed != null) {
+            for (ServiceIndex.Entry entry : indexed) {
+                try {
+                    Class<?> type = Class.forName(entry.getClassName(), true, classLoader);
+                    services.add(serviceType.cast(type.newInstance()));
+                    indexedPriorities.put(type, entry.getPriority());
+                } catch (Exception e) {
+                    LOG.log(Level.WARNING, "Error loading indexed service " + entry.getClassName(), e);
+                }
+            }
+        } else {
+            try {
+                for (T t : ServiceLoader.load(serviceType, classLoader)) {
+                    services.add(t);
+                }
+            } catch (Exception e) {
+                LOG.log(Level.WARNING, "Error loading services current type " + serviceType, e);
             }
-            services = Collections.unmodifiableList(services);
-        } catch (Exception e) {
-            Logger.getLogger(DefaultServiceContext.class.getName()).log(Level.WARNING,
-                    "Error loading services current type " + serviceType, e);
         }
-        final List<T> previousServices = List.class.cast(servicesLoaded.putIfAbsent(serviceType, (List<Object>) services));
-        return previousServices != null ? previousServices : services;
+        return Collections.unmodifiableList(services);
     }
 
     /**
@@ -125,7 +206,8 @@ public final class DefaultServiceContext implements ServiceContext {
         T highestService = null;
 
         for (T service : services) {
-            int prio = getPriority(service);
+            Integer indexedPriority = indexedPriorities.get(service.getClass());
+            int prio = indexedPriority != null ? indexedPriority : getPriority(service);
             if (highestPriority == null || highestPriority < prio) {
                 highestService = service;
                 highestPriorityServiceCount = 1;
@@ -16,6 +16,9 @@
  */
 package io.github.jdocker.common;
 
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
 import java.io.Serializable;
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -177,10 +180,68 @@ public class Endpoint implements Serializable{
         return this;
     }
 
+    public boolean isClosed(){
+        return closed;
+    }
+
     public URI getURI() {
         return uri;
     }
 
+    /**
+     * Get the key identifying this instance of the service, which is its URI, or
+     * {@code protocol://host:port}, if no URI is set.
+     * @return the instance key, never null.
+     */
+    public String getInstanceKey() {
+        if(uri!=null){
+            return uri.toString();
+        }
+        return protocol + "://" + host + ':' + port;
+    }
+
+    /**
+     * Creates a JSON representation, using the same field names as {@code Json.encode(endpoint)}.
+     * @return the JSON object, never null.
+     */
+    public JsonObject toJSON(){
+        JsonObject ob = new JsonObject()
+                .put("serviceName", serviceName)
+                .put("protocol", protocol)
+                .put("port", port)
+                .put("domain", domain)
+                .put("host", host)
+                .put("uri", uri==null?null:uri.toString());
+        JsonArray tagArray = new JsonArray();
+        for(String tag:tags){
+            tagArray.add(tag);
+        }
+        return ob.put("tags", tagArray);
+    }
+
+    /**
+     * Creates a closed endpoint from its JSON representation.
+     * @param json the JSON object, as created by {@link #toJSON()}.
+     * @return the endpoint, never null.
+     */
+    public static Endpoint fromJSON(JsonObject json){
+        List<String> tagList = new ArrayList<>();
+        JsonArray tagArray = json.getJsonArray("tags");
+        if(tagArray!=null){
+            for(Object tag:tagArray){
+                tagList.add(String.valueOf(tag));
+            }
+        }
+        String uriValue = json.getString("uri");
+        Endpoint endpoint = uriValue==null?new Endpoint(json.getString("serviceName"), tagList):
+                new Endpoint(json.getString("serviceName"), URI.create(uriValue), tagList);
+        return endpoint.setProtocol(json.getString("protocol", endpoint.getProtocol()))
+                .setPort(json.getInteger("port", endpoint.getPort()))
+                .setDomain(json.getString("domain", endpoint.getDomain()))
+                .setHost(json.getString("host", endpoint.getHost()))
+                .close();
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
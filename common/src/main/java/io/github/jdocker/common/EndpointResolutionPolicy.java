@@ -16,12 +16,19 @@
  */
 package io.github.jdocker.common;
 
-import java.util.ArrayList;
+import io.github.jdocker.common.internal.LeastLoadedResolutionPolicy;
+import io.github.jdocker.common.internal.PeakEwmaResolutionPolicy;
+import io.github.jdocker.common.internal.RandomResolutionPolicy;
+import io.github.jdocker.common.internal.RoundRobinResolutionPolicy;
+import io.github.jdocker.common.internal.WeightedResolutionPolicy;
+
 import java.util.Collection;
-import java.util.Random;
 
 /**
  * Policy used to determine which service to call. Can be used for load balancing, auth issues and more.
+ * Implementations are called on every request, so they should neither allocate nor copy the endpoints given.
+ * Endpoints ejected by health checks or outlier detection (see {@link EndpointStats#isEjected()}) are skipped,
+ * unless all endpoints given are ejected.
  */
 public interface EndpointResolutionPolicy {
 
@@ -36,12 +43,32 @@ public interface EndpointResolutionPolicy {
     /**
      * Resolution poicy than randomly selects an instance. If the collection is empty, null is returned.
      */
-    EndpointResolutionPolicy RANDOM_RESOLUTIONPOLICY = l ->
-        {
-            if(l.isEmpty()){
-                return null;
-            }
-            int index = new Random().nextInt(l.size()-1);
-            return new ArrayList<>(l).get(index);
-        };
+    EndpointResolutionPolicy RANDOM_RESOLUTIONPOLICY = new RandomResolutionPolicy();
+
+    /**
+     * Resolution policy that selects the instances in turn.
+     */
+    EndpointResolutionPolicy ROUNDROBIN_RESOLUTIONPOLICY = new RoundRobinResolutionPolicy();
+
+    /**
+     * Resolution policy that selects an instance randomly, proportional to its {@code weight:<n>} tag.
+     */
+    EndpointResolutionPolicy WEIGHTED_RESOLUTIONPOLICY = new WeightedResolutionPolicy();
+
+    /**
+     * Resolution policy that selects the less loaded of two random instances, based on the requests in flight
+     * tracked by {@link EndpointStats}.
+     */
+    EndpointResolutionPolicy LEASTLOADED_RESOLUTIONPOLICY = new LeastLoadedResolutionPolicy();
+
+    /**
+     * Resolution policy that selects the cheaper of two random instances, based on the peak EWMA latency and
+     * requests in flight tracked by {@link EndpointStats}.
+     */
+    EndpointResolutionPolicy PEAKEWMA_RESOLUTIONPOLICY = new PeakEwmaResolutionPolicy();
+
+    /**
+     * The policy used, if none is passed explicitly.
+     */
+    EndpointResolutionPolicy DEFAULT_RESOLUTIONPOLICY = PEAKEWMA_RESOLUTIONPOLICY;
 }
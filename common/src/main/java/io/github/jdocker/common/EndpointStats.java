@@ -0,0 +1,314 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.jdocker.common;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Per endpoint call statistics, feeding the latency aware {@link EndpointResolutionPolicy} implementations.
+ * Service proxies report each call using {@link #start()} and {@link #complete(long)}. The latency is tracked as
+ * peak EWMA: a new sample above the current average replaces it immediately, lower samples are decayed in
+ * exponentially, so slow instances are avoided at once and only regain traffic gradually.
+ * <p>
+ * Each endpoint also carries an ejection state, checked by all resolution policies, so ejected endpoints are
+ * skipped without filtering the endpoint lists. An endpoint is ejected while the last active health check failed
+ * (see {@link #setHealthy(boolean)}), and by passive outlier detection: after {@link #EJECTION_THRESHOLD} calls
+ * failed in a row, it is ejected for {@link #BASE_EJECTION_NANOS}, doubled with every further ejection up to
+ * {@link #MAX_EJECTION_NANOS}. After an ejection a single failed call ejects the endpoint again, a successful
+ * call resets it.
+ */
+public final class EndpointStats {
+
+    /** Decay time of the latency average. */
+    public static final long DECAY_NANOS = 10_000_000_000L;
+    /** Latency assumed for endpoints without samples, so new instances are probed early. */
+    public static final long DEFAULT_LATENCY_NANOS = 1_000_000L;
+    /** Weight used, if an endpoint carries no {@code weight:<n>} tag. */
+    public static final int DEFAULT_WEIGHT = 100;
+    /** Number of calls failed in a row, after which an endpoint is ejected. */
+    public static final int EJECTION_THRESHOLD = 5;
+    /** Time an endpoint is ejected for the first time. */
+    public static final long BASE_EJECTION_NANOS = 10_000_000_000L;
+    /** Maximal time an endpoint is ejected. */
+    public static final long MAX_EJECTION_NANOS = 300_000_000_000L;
+
+    private static final Logger LOG = Logger.getLogger(EndpointStats.class.getName());
+
+    private static final ConcurrentMap<String, EndpointStats> STATS = new ConcurrentHashMap<>();
+
+    private final String instanceKey;
+    private final int weight;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong latencyBits = new AtomicLong(Double.doubleToRawLongBits(DEFAULT_LATENCY_NANOS));
+    private final AtomicLong lastUpdateNanos = new AtomicLong(System.nanoTime());
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private int ejections;
+    private volatile boolean ejected;
+    private volatile long ejectedUntilNanos;
+    private volatile boolean healthy = true;
+    private volatile boolean removed;
+
+    private EndpointStats(String instanceKey, int weight){
+        this.instanceKey = instanceKey;
+        this.weight = weight;
+    }
+
+    /**
+     * Get the statistics of an endpoint, creating them on first access.
+     * @param endpoint the endpoint, not null.
+     * @return the statistics, never null.
+     */
+    public static EndpointStats of(Endpoint endpoint){
+        String key = endpoint.getInstanceKey();
+        EndpointStats stats = STATS.get(key);
+        if(stats==null){
+            stats = new EndpointStats(key, parseWeight(endpoint));
+            EndpointStats existing = STATS.putIfAbsent(key, stats);
+            if(existing!=null){
+                return existing;
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Drops the statistics of an endpoint, e.g. after it was deregistered.
+     * @param endpoint the endpoint, not null.
+     */
+    public static void remove(Endpoint endpoint){
+        EndpointStats stats = STATS.remove(endpoint.getInstanceKey());
+        if(stats!=null){
+            stats.removed = true;
+        }
+    }
+
+    /**
+     * Checks if these statistics were dropped by {@link #remove(Endpoint)}, so holders must look them up again
+     * using {@link #of(Endpoint)}.
+     * @return true, if the statistics are no longer updated by the service proxies.
+     */
+    public boolean isRemoved(){
+        return removed;
+    }
+
+    private static int parseWeight(Endpoint endpoint){
+        for(String tag:endpoint.getTags()){
+            if(tag.startsWith("weight:")){
+                try{
+                    return Math.max(0, Integer.parseInt(tag.substring("weight:".length()).trim()));
+                }catch(NumberFormatException e){
+                    return DEFAULT_WEIGHT;
+                }
+            }
+        }
+        return DEFAULT_WEIGHT;
+    }
+
+    /**
+     * Marks the start of a call.
+     * @return the start timestamp, to be passed to {@link #complete(long)}.
+     */
+    public long start(){
+        inFlight.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    /**
+     * Marks the successful end of a call.
+     * @param startNanos the value returned by {@link #start()}.
+     */
+    public void complete(long startNanos){
+        complete(startNanos, true);
+    }
+
+    /**
+     * Marks the end of a call.
+     * @param startNanos the value returned by {@link #start()}.
+     * @param success false, if the call failed.
+     */
+    public void complete(long startNanos, boolean success){
+        complete(startNanos, success, System.nanoTime());
+    }
+
+    /**
+     * Marks the end of a call at the given time.
+     * @param startNanos the value returned by {@link #start()}.
+     * @param success false, if the call failed.
+     * @param now the current {@link System#nanoTime()}.
+     */
+    void complete(long startNanos, boolean success, long now){
+        inFlight.decrementAndGet();
+        calls.incrementAndGet();
+        if(success){
+            if(consecutiveFailures.get()!=0){
+                reset();
+            }
+        }else{
+            failures.incrementAndGet();
+            if(consecutiveFailures.incrementAndGet()>=EJECTION_THRESHOLD && !ejected){
+                eject(now);
+            }
+        }
+        observe(Math.max(0L, now - startNanos), now);
+    }
+
+    private void observe(long rtt, long now){
+        long last = lastUpdateNanos.getAndSet(now);
+        long elapsed = Math.max(0L, now - last);
+        while(true){
+            long bits = latencyBits.get();
+            double current = Double.longBitsToDouble(bits);
+            double updated;
+            if(rtt > current){
+                updated = rtt;
+            }else{
+                double w = Math.exp(-(double)elapsed / DECAY_NANOS);
+                updated = current * w + rtt * (1.0d - w);
+            }
+            if(latencyBits.compareAndSet(bits, Double.doubleToRawLongBits(updated))){
+                return;
+            }
+        }
+    }
+
+    private synchronized void reset(){
+        consecutiveFailures.set(0);
+        ejections = 0;
+    }
+
+    private synchronized void eject(long now){
+        if(ejected){
+            return;
+        }
+        long duration = Math.min(MAX_EJECTION_NANOS, BASE_EJECTION_NANOS << Math.min(ejections, 30));
+        ejections++;
+        ejectedUntilNanos = now + duration;
+        ejected = true;
+        // a single failure after the ejection ejects again
+        consecutiveFailures.set(EJECTION_THRESHOLD - 1);
+        LOG.info("Ejecting " + instanceKey + " for " + duration / 1_000_000L + " ms after " + EJECTION_THRESHOLD +
+                " failed calls.");
+    }
+
+    /**
+     * Checks whether the endpoint is ejected, either by a failed health check, or by outlier detection.
+     * @return true, if the endpoint should not be resolved.
+     */
+    public boolean isEjected(){
+        return isEjected(System.nanoTime());
+    }
+
+    /**
+     * Checks whether the endpoint is ejected at the given time.
+     * @param now the current {@link System#nanoTime()}.
+     * @return true, if the endpoint should not be resolved.
+     */
+    boolean isEjected(long now){
+        if(!healthy){
+            return true;
+        }
+        if(!ejected){
+            return false;
+        }
+        if(now - ejectedUntilNanos < 0){
+            return true;
+        }
+        ejected = false;
+        return false;
+    }
+
+    /**
+     * Sets the result of the last active health check.
+     * @param healthy false, to eject the endpoint until it is reported healthy again.
+     */
+    public void setHealthy(boolean healthy){
+        this.healthy = healthy;
+    }
+
+    public boolean isHealthy(){
+        return healthy;
+    }
+
+    /**
+     * Get the number of calls failed in a row.
+     * @return the number of failures since the last successful call.
+     */
+    public int getConsecutiveFailures(){
+        return consecutiveFailures.get();
+    }
+
+    public String getInstanceKey() {
+        return instanceKey;
+    }
+
+    /**
+     * Get the weight, defined by the endpoint's {@code weight:<n>} tag.
+     * @return the weight, &gt;= 0.
+     */
+    public int getWeight() {
+        return weight;
+    }
+
+    public int getInFlight(){
+        return inFlight.get();
+    }
+
+    public long getCalls() {
+        return calls.get();
+    }
+
+    public long getFailures() {
+        return failures.get();
+    }
+
+    /**
+     * Get the peak EWMA latency.
+     * @return the latency in nanoseconds.
+     */
+    public double getLatencyNanos(){
+        return Double.longBitsToDouble(latencyBits.get());
+    }
+
+    /**
+     * Get the expected cost of sending another request, being the latency weighted with the requests
+     * outstanding.
+     * @return the cost, lower is better.
+     */
+    public double getCost(){
+        return getLatencyNanos() * (getInFlight() + 1);
+    }
+
+    @Override
+    public String toString() {
+        return "EndpointStats{" +
+                "instanceKey='" + instanceKey + '\'' +
+                ", weight=" + weight +
+                ", inFlight=" + inFlight +
+                ", latencyNanos=" + getLatencyNanos() +
+                ", calls=" + calls +
+                ", failures=" + failures +
+                ", healthy=" + healthy +
+                ", ejected=" + ejected +
+                '}';
+    }
+}
@@ -18,56 +18,116 @@
  */
 package io.github.jdocker.common;
 
-import java.io.BufferedReader;
+import io.vertx.core.Context;
+
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
- * Created by atsticks on 12.01.16.
+ * Convenience facade for running commands on the {@link ProcessEngine#getDefault() default process engine}.
+ * The {@code execute} methods block the calling thread until all commands completed, they are meant for worker
+ * threads (e.g. Vert.x {@code executeBlocking} or REST resources) and throw an {@link IllegalStateException} when
+ * called on a Vert.x event loop. Use the {@code executeAsync} methods there.
  */
 public final class Executor {
 
+    private static final Logger LOG = Logger.getLogger(Executor.class.getName());
+
     private Executor(){}
 
+    /**
+     * Runs the given commands sequentially and returns their combined stdout and stderr output.
+     * @param commands the commands.
+     * @return the trimmed output of all commands, never null.
+     */
     public static String execute(String... commands) {
-        StringBuffer output = new StringBuffer();
-        for(String command:commands) {
-            Process p;
-            try {
-                p = Runtime.getRuntime().exec(command);
-                p.waitFor();
-                BufferedReader reader =
-                        new BufferedReader(new InputStreamReader(p.getInputStream()));
-
-                String line = "";
-                while ((line = reader.readLine()) != null) {
-                    output.append(line + "\n");
-                }
-
-                reader =
-                        new BufferedReader(new InputStreamReader(p.getErrorStream()));
+        return execute(ProcessEngine.NO_TIMEOUT, commands);
+    }
 
-                line = "";
-                while ((line = reader.readLine()) != null) {
-                    if(line.isEmpty()){
-                        output.append("ERROR: ");
-                    }
-                    output.append(line + "\n");
-                }
+    /**
+     * Runs the given commands sequentially and returns their combined stdout and stderr output. Each command
+     * exceeding the timeout is killed.
+     * @param timeoutMillis the timeout per command in milliseconds, {@link ProcessEngine#NO_TIMEOUT} for none.
+     * @param commands the commands.
+     * @return the trimmed output of all commands, never null.
+     * @throws IllegalStateException if called on a Vert.x event loop thread.
+     */
+    public static String execute(long timeoutMillis, String... commands) {
+        if(Context.isOnEventLoopThread()){
+            throw new IllegalStateException("Blocking execute called on an event loop thread, use executeAsync.");
+        }
+        return executeAsync(timeoutMillis, commands).toCompletableFuture().join();
+    }
 
-            } catch (Exception e) {
-                output.append("ERROR: " + command + " - " + e.getMessage());
-                e.printStackTrace();
-            }
+    /**
+     * Runs the given commands sequentially without blocking, combining their stdout and stderr output. Each command
+     * exceeding the timeout is killed, failed commands are reported in the output.
+     * @param timeoutMillis the timeout per command in milliseconds, {@link ProcessEngine#NO_TIMEOUT} for none.
+     * @param commands the commands.
+     * @return the stage completed with the trimmed output of all commands.
+     */
+    public static CompletionStage<String> executeAsync(long timeoutMillis, String... commands) {
+        StringBuilder output = new StringBuilder();
+        CompletableFuture<Void> chain = CompletableFuture.completedFuture(null);
+        for(String command:commands) {
+            chain = chain.thenCompose(v -> ProcessEngine.getDefault()
+                    .execute(command, timeoutMillis, TimeUnit.MILLISECONDS)
+                    .handle((result, error) -> {
+                        if(error!=null){
+                            Throwable cause = error instanceof CompletionException && error.getCause()!=null ?
+                                    error.getCause() : error;
+                            output.append("ERROR: ").append(command).append(" - ").append(cause.getMessage())
+                                    .append('\n');
+                            LOG.log(Level.WARNING, "Failed to execute: " + command, cause);
+                        }else{
+                            output.append(result.getCombinedOutput()).append('\n');
+                            if(result.isTimedOut()){
+                                output.append("ERROR: ").append(command).append(" - timed out after ")
+                                        .append(timeoutMillis).append("ms\n");
+                            }
+                        }
+                        return null;
+                    }));
         }
-        return output.toString().trim();
+        return chain.thenApply(v -> output.toString().trim());
+    }
+
+    /**
+     * Runs the given command asynchronously.
+     * @param command the command, not null.
+     * @return the stage completed with the trimmed combined output.
+     */
+    public static CompletionStage<String> executeAsync(String command) {
+        return executeAsync(command, ProcessEngine.NO_TIMEOUT);
+    }
 
+    /**
+     * Runs the given command asynchronously.
+     * @param command the command, not null.
+     * @param timeoutMillis the timeout in milliseconds, {@link ProcessEngine#NO_TIMEOUT} for none.
+     * @return the stage completed with the trimmed combined output.
+     */
+    public static CompletionStage<String> executeAsync(String command, long timeoutMillis) {
+        CompletableFuture<ProcessResult> result = ProcessEngine.getDefault()
+                .execute(command, timeoutMillis, TimeUnit.MILLISECONDS);
+        return result.thenApply(ProcessResult::getCombinedOutput);
     }
 
-    public static InputStream executeToInputStream(String command) throws IOException, InterruptedException {
+    /**
+     * Starts the given command and returns its stdout. The caller is responsible for draining and closing the
+     * stream.
+     * @param command the command, not null.
+     * @return the process's stdout.
+     * @throws IOException if the process cannot be started.
+     */
+    public static InputStream executeToInputStream(String command) throws IOException {
         Process p = Runtime.getRuntime().exec(command);
-        p.waitFor();
         return p.getInputStream();
     }
 
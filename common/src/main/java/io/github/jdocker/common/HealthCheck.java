@@ -34,4 +34,11 @@ public interface HealthCheck {
      * @return
      */
     HealthCheckResult check();
+
+    /**
+     * Called when the check was removed and is no longer run, so state it maintains elsewhere, e.g. the health of
+     * an endpoint (see {@link EndpointStats#setHealthy(boolean)}), can be cleared.
+     */
+    default void removed(){
+    }
 }
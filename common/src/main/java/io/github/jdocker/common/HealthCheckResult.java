@@ -31,6 +31,7 @@ public class HealthCheckResult {
     private String shortDesc;
     private CheckResult result;
     private String message;
+    private long latencyNanos = -1L;
     private boolean closed;
 
     /**
@@ -158,6 +159,27 @@ public class HealthCheckResult {
         return this;
     }
 
+    /**
+     * Gets the latency measured by the check, e.g. the time to connect.
+     *
+     * @return the latency in nanoseconds, or -1, if not measured
+     */
+    public long getLatencyNanos() {
+        return latencyNanos;
+    }
+
+    /**
+     * Sets the latency measured by the check, e.g. the time to connect.
+     *
+     * @param latencyNanos the latency in nanoseconds, or -1, if not measured
+     * @return the health check result
+     */
+    public HealthCheckResult setLatencyNanos(long latencyNanos) {
+        ensureNotClosed();
+        this.latencyNanos = latencyNanos;
+        return this;
+    }
+
     /**
      * Close health check result.
      *
@@ -196,6 +218,7 @@ public class HealthCheckResult {
                 ", shortDesc='" + shortDesc + '\'' +
                 ", result=" + result +
                 ", message='" + message + '\'' +
+                ", latencyNanos=" + latencyNanos +
                 ", closed=" + closed +
                 '}';
     }
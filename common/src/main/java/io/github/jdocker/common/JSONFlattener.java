@@ -0,0 +1,196 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.jdocker.common;
+
+import org.apache.tamaya.ConfigException;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import javax.json.Json;
+import javax.json.JsonException;
+import javax.json.stream.JsonParser;
+import javax.json.stream.JsonParserFactory;
+
+/**
+ * Flattens JSON documents into dotted keys while streaming the parser events, without building a
+ * {@link javax.json.JsonObject} tree. Object members are separated by dots, array elements are indexed, e.g.
+ * {@code {"a":{"b":[1,{"c":true}]}}} results in {@code a.b[0]=1, a.b[1].c=true}. The current key is kept in a
+ * single {@link StringBuilder}, which is truncated when leaving a structure; the key strings are interned in a small
+ * cache shared by all calls, so flattening similar documents repeatedly reuses the same key instances. This class is
+ * thread safe.
+ */
+public final class JSONFlattener {
+
+    /** Size of the key cache, a power of two. */
+    private static final int KEY_CACHE_SIZE = 4096;
+
+    /** The parser factory used. */
+    private final JsonParserFactory parserFactory;
+    /** Cache of keys, written racy, which is safe as strings are immutable. */
+    private final String[] keyCache = new String[KEY_CACHE_SIZE];
+
+    /**
+     * Constructor, initializing the JSON parser factory, which accepts comments.
+     */
+    public JSONFlattener(){
+        Map<String, Object> config = new HashMap<>();
+        config.put(JSONMapper.JOHNZON_SUPPORTS_COMMENTS_PROP, true);
+        this.parserFactory = Json.createParserFactory(config);
+    }
+
+    /**
+     * Flattens the given document into a new map.
+     * @param inputStream the UTF-8 encoded document, containing a JSON object.
+     * @return the flattened entries, never null.
+     * @throws ConfigException if the document is invalid.
+     */
+    public Map<String, String> flatten(InputStream inputStream){
+        Map<String, String> values = new HashMap<>();
+        flatten(inputStream, values::put);
+        return values;
+    }
+
+    /**
+     * Flattens the given document, passing each entry to the consumer.
+     * @param inputStream the UTF-8 encoded document, containing a JSON object.
+     * @param consumer the consumer of the keys and values, values of JSON {@code null} are passed as null.
+     * @throws ConfigException if the document is invalid.
+     */
+    public void flatten(InputStream inputStream, BiConsumer<String, String> consumer){
+        try (JsonParser parser = parserFactory.createParser(inputStream, StandardCharsets.UTF_8)) {
+            flatten(parser, consumer);
+        } catch (JsonException e) {
+            throw new ConfigException("Failed to read data.", e);
+        }
+    }
+
+    /**
+     * Flattens the given document, passing each entry to the consumer.
+     * @param reader the reader of the document, containing a JSON object.
+     * @param consumer the consumer of the keys and values, values of JSON {@code null} are passed as null.
+     * @throws ConfigException if the document is invalid.
+     */
+    public void flatten(Reader reader, BiConsumer<String, String> consumer){
+        try (JsonParser parser = parserFactory.createParser(reader)) {
+            flatten(parser, consumer);
+        } catch (JsonException e) {
+            throw new ConfigException("Failed to read data.", e);
+        }
+    }
+
+    private void flatten(JsonParser parser, BiConsumer<String, String> consumer){
+        if(!parser.hasNext() || parser.next()!=JsonParser.Event.START_OBJECT){
+            throw new ConfigException("Failed to read data: not a JSON object.");
+        }
+        StringBuilder path = new StringBuilder(128);
+        // per open structure: the path length when entering it, and the next array index, or -1 for objects
+        int[] prefixLengths = new int[16];
+        int[] indexes = new int[16];
+        int depth = 0;
+        prefixLengths[0] = 0;
+        indexes[0] = -1;
+        while(parser.hasNext()){
+            JsonParser.Event event = parser.next();
+            switch(event){
+                case KEY_NAME:
+                    path.setLength(prefixLengths[depth]);
+                    if(path.length()>0){
+                        path.append('.');
+                    }
+                    path.append(parser.getString());
+                    break;
+                case START_OBJECT:
+                case START_ARRAY:
+                    appendIndex(path, prefixLengths, indexes, depth);
+                    if(++depth==prefixLengths.length){
+                        prefixLengths = Arrays.copyOf(prefixLengths, depth * 2);
+                        indexes = Arrays.copyOf(indexes, depth * 2);
+                    }
+                    prefixLengths[depth] = path.length();
+                    indexes[depth] = event==JsonParser.Event.START_ARRAY?0:-1;
+                    break;
+                case END_OBJECT:
+                case END_ARRAY:
+                    if(depth==0){
+                        return;
+                    }
+                    depth--;
+                    break;
+                case VALUE_STRING:
+                    appendIndex(path, prefixLengths, indexes, depth);
+                    consumer.accept(key(path), parser.getString());
+                    break;
+                case VALUE_NUMBER:
+                    appendIndex(path, prefixLengths, indexes, depth);
+                    consumer.accept(key(path), parser.isIntegralNumber()?parser.getString():
+                            parser.getBigDecimal().toString());
+                    break;
+                case VALUE_TRUE:
+                    appendIndex(path, prefixLengths, indexes, depth);
+                    consumer.accept(key(path), Boolean.TRUE.toString());
+                    break;
+                case VALUE_FALSE:
+                    appendIndex(path, prefixLengths, indexes, depth);
+                    consumer.accept(key(path), Boolean.FALSE.toString());
+                    break;
+                case VALUE_NULL:
+                    appendIndex(path, prefixLengths, indexes, depth);
+                    consumer.accept(key(path), null);
+                    break;
+                default:
+                    throw new ConfigException("Internal failure while processing JSON document.");
+            }
+        }
+    }
+
+    /**
+     * Sets the path to the next element, if the current structure is an array.
+     */
+    private static void appendIndex(StringBuilder path, int[] prefixLengths, int[] indexes, int depth){
+        if(indexes[depth]>=0){
+            path.setLength(prefixLengths[depth]);
+            path.append('[').append(indexes[depth]++).append(']');
+        }
+    }
+
+    /**
+     * Get the key for the current path, reusing the cached string if the same key was seen before.
+     */
+    private String key(StringBuilder path){
+        int length = path.length();
+        int hash = 0;
+        for(int i=0;i<length;i++){
+            hash = 31 * hash + path.charAt(i);
+        }
+        int slot = (hash ^ (hash >>> 16)) & (KEY_CACHE_SIZE - 1);
+        String cached = keyCache[slot];
+        if(cached!=null && cached.length()==length && cached.contentEquals(path)){
+            return cached;
+        }
+        String key = path.toString();
+        keyCache[slot] = key;
+        return key;
+    }
+}
@@ -21,15 +21,8 @@ package io.github.jdocker.common;
 import org.apache.tamaya.ConfigException;
 
 import java.io.InputStream;
-import java.nio.charset.Charset;
-import java.util.HashMap;
 import java.util.Map;
-
-import javax.json.Json;
-import javax.json.JsonException;
-import javax.json.JsonObject;
-import javax.json.JsonReader;
-import javax.json.JsonReaderFactory;
+import java.util.function.BiConsumer;
 
 /**
  * Implementation of the {@link org.apache.tamaya.format.ConfigurationFormat}
@@ -40,29 +33,28 @@ import javax.json.JsonReaderFactory;
 public class JSONMapper {
     /** Property that make Johnzon accept commentc. */
     public static final String JOHNZON_SUPPORTS_COMMENTS_PROP = "org.apache.johnzon.supports-comments";
-    /** The reader factory used. */
-    private final JsonReaderFactory readerFactory;
+    /** The streaming flattener used. */
+    private final JSONFlattener flattener = new JSONFlattener();
 
     /**
-     * Constructor, itniaitlizing zhe JSON reader factory.
+     * Reads the given JSON document, flattening it into dotted keys.
+     * @param inputStream the UTF-8 encoded document, containing a JSON object.
+     * @return the flattened entries, never null.
+     * @throws ConfigException if the document is invalid.
+     * @see JSONFlattener
      */
-    public JSONMapper(){
-        Map<String, Object> config = new HashMap<>();
-        config.put(JOHNZON_SUPPORTS_COMMENTS_PROP, true);
-        this.readerFactory = Json.createReaderFactory(config);
-    }
-
     public Map<String,String> readJsonData(InputStream inputStream) {
+        return flattener.flatten(inputStream);
+    }
 
-        try {
-            final JsonReader reader = this.readerFactory.createReader(inputStream, Charset.forName("UTF-8"));
-            JsonObject root = reader.readObject();
-            HashMap<String, String> values = new HashMap<>();
-            JSONVisitor visitor = new JSONVisitor(root, values);
-            visitor.run();
-            return values;
-        } catch (JsonException e) {
-            throw new ConfigException("Failed to read data.", e);
-        }
+    /**
+     * Reads the given JSON document, passing the flattened entries to the consumer without collecting them.
+     * @param inputStream the UTF-8 encoded document, containing a JSON object.
+     * @param consumer the consumer of the keys and values.
+     * @throws ConfigException if the document is invalid.
+     * @see JSONFlattener
+     */
+    public void readJsonData(InputStream inputStream, BiConsumer<String,String> consumer) {
+        flattener.flatten(inputStream, consumer);
     }
 }
@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.jdocker.common;
+
+import io.github.jdocker.common.internal.ConsistentHashResolutionPolicy;
+
+import java.util.Collection;
+
+/**
+ * Resolution policy that takes a request key (e.g. a tenant or session id) into account, so requests with the
+ * same key are routed to the same endpoint as long as possible.
+ */
+public interface KeyedEndpointResolutionPolicy extends EndpointResolutionPolicy {
+
+    /**
+     * Selects the endpoint for the given key.
+     *
+     * @param endpoints the endpoints available.
+     * @param key the request key, or null, if the request is not bound to any key.
+     * @return the endpoint to be used, or null, if no one is eligible.
+     */
+    Endpoint resolve(Collection<Endpoint> endpoints, String key);
+
+    @Override
+    default Endpoint resolve(Collection<Endpoint> endpoints){
+        return resolve(endpoints, null);
+    }
+
+    /**
+     * Consistent hashing with virtual nodes and bounded load: a key is mapped to the same endpoint as long as
+     * this endpoint is available and has not more than 125% of the average requests in flight.
+     */
+    KeyedEndpointResolutionPolicy CONSISTENTHASH_RESOLUTIONPOLICY = new ConsistentHashResolutionPolicy();
+}
@@ -18,6 +18,11 @@ public class OwnedResult {
         this.result = Objects.requireNonNull(result);
     }
 
+    public OwnedResult(String owner, String type, Object result, long timestamp){
+        this(owner, type, result);
+        this.timestamp = timestamp;
+    }
+
     public String getOwner() {
         return owner;
     }
@@ -0,0 +1,314 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.jdocker.common;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.StringTokenizer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Non blocking engine for running external processes. Stdout and stderr of each process are drained concurrently
+ * into bounded, pooled buffers, so a child filling its pipe never stalls. Each call returns a
+ * {@link CompletableFuture}, that completes once the process has terminated. Cancelling the future or exceeding the
+ * timeout destroys the process. Callers running on a Vert.x event loop must never {@code join()} the returned
+ * future, but chain their continuation instead.
+ */
+public final class ProcessEngine {
+
+    private static final Logger LOG = Logger.getLogger(ProcessEngine.class.getName());
+
+    /** Timeout value meaning the process may run forever. */
+    public static final long NO_TIMEOUT = 0L;
+    /** Default maximal number of characters kept per stream. */
+    public static final int DEFAULT_MAX_OUTPUT_CHARS = 4 * 1024 * 1024;
+    /** Size of the char buffers used for draining. */
+    private static final int BUFFER_SIZE = 8192;
+    /** Maximal number of idle buffers kept for reuse. */
+    private static final int MAX_POOLED_BUFFERS = 64;
+
+    private static final ProcessEngine DEFAULT = new ProcessEngine(DEFAULT_MAX_OUTPUT_CHARS);
+
+    /** Threads draining the process streams, reading pipes is inherently blocking. */
+    private final ExecutorService pumps;
+    /** Timer killing processes exceeding their timeout. */
+    private final ScheduledExecutorService watchdog;
+    /** Reusable read buffers. */
+    private final BlockingQueue<char[]> buffers = new ArrayBlockingQueue<>(MAX_POOLED_BUFFERS);
+    /** Maximal number of characters kept per stream, further output is drained but dropped. */
+    private final int maxOutputChars;
+
+    /**
+     * Creates a new engine.
+     * @param maxOutputChars the maximal number of characters kept per stream and process, &gt; 0.
+     */
+    public ProcessEngine(int maxOutputChars){
+        if(maxOutputChars<=0){
+            throw new IllegalArgumentException("maxOutputChars must be > 0: " + maxOutputChars);
+        }
+        this.maxOutputChars = maxOutputChars;
+        this.pumps = Executors.newCachedThreadPool(new DaemonThreadFactory("jdocker-process-pump-"));
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("jdocker-process-watchdog-"));
+    }
+
+    /**
+     * Access the shared default engine.
+     * @return the default engine, never null.
+     */
+    public static ProcessEngine getDefault(){
+        return DEFAULT;
+    }
+
+    /**
+     * Runs the given command without timeout.
+     * @param command the command, not null.
+     * @return the future result, never completed exceptionally for failing commands.
+     */
+    public CompletableFuture<ProcessResult> execute(String command){
+        return execute(command, NO_TIMEOUT, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Runs the given command.
+     * @param command the command, not null.
+     * @param timeout the timeout, {@link #NO_TIMEOUT} for none.
+     * @param unit the timeout's unit, not null.
+     * @return the future result, never completed exceptionally for failing commands.
+     */
+    public CompletableFuture<ProcessResult> execute(String command, long timeout, TimeUnit unit){
+        return run(command, unit.toMillis(timeout), null);
+    }
+
+    /**
+     * Runs the given command and passes each line written to stdout to the given handler as soon as it is read.
+     * Stdout is not accumulated, so {@link ProcessResult#getOutput()} of the result is empty.
+     * @param command the command, not null.
+     * @param timeout the timeout, {@link #NO_TIMEOUT} for none.
+     * @param unit the timeout's unit, not null.
+     * @param lineHandler the handler called on the draining thread for every line, not null.
+     * @return the future result, never completed exceptionally for failing commands.
+     */
+    public CompletableFuture<ProcessResult> stream(String command, long timeout, TimeUnit unit,
+                                                   Consumer<String> lineHandler){
+        return run(command, unit.toMillis(timeout), Objects.requireNonNull(lineHandler));
+    }
+
+    /**
+     * Stops the engine's threads. Processes still running are not affected.
+     */
+    public void shutdown(){
+        pumps.shutdown();
+        watchdog.shutdown();
+    }
+
+    private CompletableFuture<ProcessResult> run(String command, long timeoutMillis, Consumer<String> lineHandler){
+        Objects.requireNonNull(command);
+        final long started = System.currentTimeMillis();
+        final CompletableFuture<ProcessResult> result = new CompletableFuture<>();
+        final Process process;
+        try {
+            process = new ProcessBuilder(tokenize(command)).start();
+        } catch (IOException | RuntimeException e) {
+            LOG.log(Level.WARNING, "Failed to start process: " + command, e);
+            result.complete(new ProcessResult(command, ProcessResult.EXIT_NOT_STARTED, "",
+                    "ERROR: " + command + " - " + e.getMessage(), false, false, 0L));
+            return result;
+        }
+        try {
+            process.getOutputStream().close();
+        } catch (IOException e) {
+            LOG.log(Level.FINEST, "Failed to close stdin of: " + command, e);
+        }
+        final OutputPump out = new OutputPump(process.getInputStream(), lineHandler);
+        final OutputPump err = new OutputPump(process.getErrorStream(), null);
+        final AtomicBoolean timedOut = new AtomicBoolean();
+        final ScheduledFuture<?> timeoutTask = timeoutMillis>0?watchdog.schedule(() -> {
+            timedOut.set(true);
+            process.destroyForcibly();
+        }, timeoutMillis, TimeUnit.MILLISECONDS):null;
+        CompletableFuture.allOf(CompletableFuture.runAsync(out, pumps), CompletableFuture.runAsync(err, pumps))
+                .whenCompleteAsync((v, t) -> {
+                    try {
+                        int exitCode = process.waitFor();
+                        result.complete(new ProcessResult(command, exitCode, out.getText(), err.getText(),
+                                timedOut.get(), out.isTruncated() || err.isTruncated(),
+                                System.currentTimeMillis() - started));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        process.destroyForcibly();
+                        result.completeExceptionally(e);
+                    }
+                }, pumps);
+        result.whenComplete((r, t) -> {
+            if(timeoutTask!=null){
+                timeoutTask.cancel(false);
+            }
+            if(result.isCancelled()){
+                process.destroyForcibly();
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Splits the command the same way as {@link Runtime#exec(String)} does.
+     */
+    private static List<String> tokenize(String command){
+        StringTokenizer tokenizer = new StringTokenizer(command);
+        List<String> tokens = new ArrayList<>();
+        while(tokenizer.hasMoreTokens()){
+            tokens.add(tokenizer.nextToken());
+        }
+        if(tokens.isEmpty()){
+            throw new IllegalArgumentException("Empty command.");
+        }
+        return tokens;
+    }
+
+    private char[] acquireBuffer(){
+        char[] buffer = buffers.poll();
+        return buffer!=null?buffer:new char[BUFFER_SIZE];
+    }
+
+    private void releaseBuffer(char[] buffer){
+        buffers.offer(buffer);
+    }
+
+    /**
+     * Drains a process stream until EOF, either accumulating its text or emitting it line by line.
+     */
+    private final class OutputPump implements Runnable {
+        private final InputStream in;
+        private final Consumer<String> lineHandler;
+        private final StringBuilder text = new StringBuilder();
+        private volatile boolean truncated;
+
+        OutputPump(InputStream in, Consumer<String> lineHandler){
+            this.in = in;
+            this.lineHandler = lineHandler;
+        }
+
+        @Override
+        public void run() {
+            char[] buffer = acquireBuffer();
+            try (Reader reader = new InputStreamReader(in, Charset.defaultCharset())) {
+                int read;
+                while ((read = reader.read(buffer)) >= 0) {
+                    if (lineHandler != null) {
+                        emitLines(buffer, read);
+                    } else {
+                        append(buffer, read);
+                    }
+                }
+                if (lineHandler != null && text.length() > 0) {
+                    emitLine();
+                }
+            } catch (IOException e) {
+                // stream closed, e.g. because the process has been destroyed.
+                LOG.log(Level.FINEST, "Process stream closed.", e);
+            } finally {
+                releaseBuffer(buffer);
+            }
+        }
+
+        private void append(char[] buffer, int count){
+            int room = maxOutputChars - text.length();
+            if(count>room){
+                truncated = true;
+                count = room;
+            }
+            if(count>0) {
+                text.append(buffer, 0, count);
+            }
+        }
+
+        private void emitLines(char[] buffer, int count){
+            for(int i=0;i<count;i++){
+                char c = buffer[i];
+                if(c=='\n'){
+                    emitLine();
+                }else if(text.length()<maxOutputChars){
+                    text.append(c);
+                }else{
+                    truncated = true;
+                }
+            }
+        }
+
+        private void emitLine(){
+            int length = text.length();
+            if(length>0 && text.charAt(length-1)=='\r'){
+                text.setLength(length-1);
+            }
+            try {
+                lineHandler.accept(text.toString());
+            } catch (RuntimeException e) {
+                // keep on draining, otherwise the child may block on a full pipe.
+                LOG.log(Level.WARNING, "Line handler failed.", e);
+            }
+            text.setLength(0);
+        }
+
+        String getText(){
+            return lineHandler!=null?"":text.toString();
+        }
+
+        boolean isTruncated(){
+            return truncated;
+        }
+    }
+
+    /**
+     * Thread factory creating named daemon threads.
+     */
+    private static final class DaemonThreadFactory implements ThreadFactory{
+        private final String prefix;
+        private final AtomicInteger counter = new AtomicInteger();
+
+        DaemonThreadFactory(String prefix){
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, prefix + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
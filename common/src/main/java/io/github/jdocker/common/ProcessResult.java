@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.jdocker.common;
+
+import java.util.Objects;
+
+/**
+ * Immutable result of a process run by the {@link ProcessEngine}.
+ */
+public final class ProcessResult {
+
+    /** Exit code used, when the process could not be started at all. */
+    public static final int EXIT_NOT_STARTED = -1;
+
+    private final String command;
+    private final int exitCode;
+    private final String output;
+    private final String error;
+    private final boolean timedOut;
+    private final boolean truncated;
+    private final long durationMillis;
+
+    ProcessResult(String command, int exitCode, String output, String error,
+                  boolean timedOut, boolean truncated, long durationMillis) {
+        this.command = Objects.requireNonNull(command);
+        this.exitCode = exitCode;
+        this.output = output==null?"":output;
+        this.error = error==null?"":error;
+        this.timedOut = timedOut;
+        this.truncated = truncated;
+        this.durationMillis = durationMillis;
+    }
+
+    /**
+     * Get the command executed.
+     * @return the command, not null.
+     */
+    public String getCommand() {
+        return command;
+    }
+
+    /**
+     * Get the process's exit code.
+     * @return the exit code, or {@link #EXIT_NOT_STARTED}.
+     */
+    public int getExitCode() {
+        return exitCode;
+    }
+
+    /**
+     * Get the text written to stdout.
+     * @return the standard output, never null.
+     */
+    public String getOutput() {
+        return output;
+    }
+
+    /**
+     * Get the text written to stderr.
+     * @return the error output, never null.
+     */
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * Flag, if the process was killed because it exceeded its timeout.
+     * @return true, if the process timed out.
+     */
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+
+    /**
+     * Flag, if some output was dropped because it exceeded the engine's output limit.
+     * @return true, if the output was truncated.
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    /**
+     * Get the wall clock time the process was running.
+     * @return the duration in milliseconds.
+     */
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    /**
+     * Checks if the process terminated normally with exit code 0.
+     * @return true, if the process succeeded.
+     */
+    public boolean isSuccess() {
+        return exitCode==0 && !timedOut;
+    }
+
+    /**
+     * Get stdout followed by stderr, trimmed, as formerly returned by {@link Executor#execute(String...)}.
+     * @return the combined output, never null.
+     */
+    public String getCombinedOutput() {
+        if(error.isEmpty()){
+            return output.trim();
+        }
+        if(output.isEmpty()){
+            return error.trim();
+        }
+        return (output + '\n' + error).trim();
+    }
+
+    @Override
+    public String toString() {
+        return "ProcessResult{" +
+                "command='" + command + '\'' +
+                ", exitCode=" + exitCode +
+                ", timedOut=" + timedOut +
+                ", truncated=" + truncated +
+                ", durationMillis=" + durationMillis +
+                '}';
+    }
+}
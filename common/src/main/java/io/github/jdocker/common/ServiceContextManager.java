@@ -18,6 +18,10 @@
  */
 package io.github.jdocker.common;
 
+import io.github.jdocker.common.internal.ServiceIndex;
+
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 import java.util.ServiceLoader;
 import java.util.logging.Level;
@@ -54,7 +58,7 @@ public final class ServiceContextManager {
         ServiceContext highestServiceContext = null;
         try {
             int highestOrdinal = 0;
-            for (ServiceContext serviceContext : ServiceLoader.load(ServiceContext.class)) {
+            for (ServiceContext serviceContext : loadServiceContexts()) {
                 if (serviceContext.ordinal() > highestOrdinal) {
                     highestServiceContext = serviceContext;
                     highestOrdinal = serviceContext.ordinal();
@@ -80,6 +84,29 @@ public final class ServiceContextManager {
         return highestServiceContext;
     }
 
+    /**
+     * Loads the {@link ServiceContext} candidates from the {@link ServiceIndex}, or using the {@link ServiceLoader}
+     * if none are indexed.
+     *
+     * @return the candidates, never null.
+     * @throws ReflectiveOperationException if an indexed context cannot be created.
+     */
+    private static Iterable<ServiceContext> loadServiceContexts() throws ReflectiveOperationException {
+        ClassLoader cl = Thread.currentThread().getContextClassLoader();
+        if (cl == null) {
+            cl = ServiceContextManager.class.getClassLoader();
+        }
+        List<ServiceIndex.Entry> indexed = ServiceIndex.of(cl).get(ServiceContext.class.getName());
+        if (indexed == null) {
+            return ServiceLoader.load(ServiceContext.class, cl);
+        }
+        List<ServiceContext> contexts = new ArrayList<>(indexed.size());
+        for (ServiceIndex.Entry entry : indexed) {
+            contexts.add((ServiceContext) Class.forName(entry.getClassName(), true, cl).newInstance());
+        }
+        return contexts;
+    }
+
     /**
      * Replace the current {@link ServiceContext} in use.
      *
@@ -17,8 +17,10 @@
 package io.github.jdocker.common;
 
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 
 /**
  * Component interface for the service discovery mechanism.
@@ -39,6 +41,17 @@ public interface ServiceDiscovery {
      */
     Endpoint getEndpoint(String serviceName);
 
+    /**
+     * Selects the endpoint for the given request key from the list of known endpoints for the given service.
+     * @param serviceName the service name, not null.
+     * @param key the request key, e.g. a tenant or session id.
+     * @param policy the resolution policy, not null.
+     * @return the endpoint to be used, or null, if no one is eligible.
+     */
+    default Endpoint getEndpoint(String serviceName, String key, KeyedEndpointResolutionPolicy policy){
+        return policy.resolve(getEndpoints(serviceName), key);
+    }
+
     /**
      * Creates a new endpoint with the given service name and URI and registers it.
      * @param serviceName service name, not null.
@@ -66,4 +79,44 @@ public interface ServiceDiscovery {
      */
     void removeEndpoint(Endpoint endpoint);
 
+    /**
+     * Watches the endpoints of a service. The listener is called with the current endpoints as soon as they are
+     * known, and then on every change, until the watch returned is closed. This default implementation
+     * only reports the current endpoints once, implementations able to track changes override it.
+     * @param serviceName the service name, not null.
+     * @param listener the listener, not null.
+     * @return the watch, to be closed when no more updates are required.
+     */
+    default Watch watch(String serviceName, EndpointListener listener){
+        listener.endpointsChanged(serviceName, 0L, new ArrayList<>(getEndpoints(serviceName)));
+        return () -> {};
+    }
+
+    /**
+     * Listener notified about the current endpoints of a watched service.
+     */
+    @FunctionalInterface
+    interface EndpointListener{
+
+        /**
+         * Called with the current endpoints of a service.
+         * @param serviceName the service name.
+         * @param version the version of the endpoints, changing with every modification.
+         * @param endpoints the current endpoints, never null.
+         */
+        void endpointsChanged(String serviceName, long version, List<Endpoint> endpoints);
+    }
+
+    /**
+     * A running watch, see {@link #watch(String, EndpointListener)}.
+     */
+    @FunctionalInterface
+    interface Watch extends AutoCloseable{
+
+        /**
+         * Stops the watch, the listener is not called anymore afterwards.
+         */
+        @Override
+        void close();
+    }
 }
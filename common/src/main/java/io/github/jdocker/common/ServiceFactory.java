@@ -65,7 +65,7 @@ public interface ServiceFactory {
 
     /**
      * Creates a new accessor for the given service, the effective endpoints are looked up dynamically from
-     * the {@link ServiceDiscovery}. Hereby the random resolution policy is applied.
+     * the {@link ServiceDiscovery}. Hereby the default resolution policy is applied.
      * @param serviceType the target type to be created. The service name is derived from the fully qualified type name.
      * @param tags the tags for filtering the result
      * @param <T> the type
@@ -73,17 +73,17 @@ public interface ServiceFactory {
      * @throws IllegalStateException if no such proxy can be created.
      */
     default <T> T getService(Class<T> serviceType, Collection<String> tags){
-        return getService(serviceType, serviceType.getName(), tags, EndpointResolutionPolicy.RANDOM_RESOLUTIONPOLICY);
+        return getService(serviceType, serviceType.getName(), tags, EndpointResolutionPolicy.DEFAULT_RESOLUTIONPOLICY);
     }
 
     /**
      * Creates/returns a Java API accessor based on the registered accessor factory SPIs using the default
-     * resolution policy (random).
+     * resolution policy (peak EWMA).
      * @param endpoints the endpoints
      * @return a Java implementation of the required type, accessing the given endpoint.
      */
     default <T> T getStaticServiceProxy(Class<T> serviceType, Collection<Endpoint> endpoints){
-        return getStaticServiceProxy(serviceType, EndpointResolutionPolicy.RANDOM_RESOLUTIONPOLICY, endpoints);
+        return getStaticServiceProxy(serviceType, EndpointResolutionPolicy.DEFAULT_RESOLUTIONPOLICY, endpoints);
     }
 
     /**
@@ -107,17 +107,17 @@ public interface ServiceFactory {
 
     /**
      * Creates/returns a dynamic Java API accessor based on the registered accessor factory SPIs using the default
-     * resolution policy (mostly round robin). Dynamic accessor look up the current available resources in the
+     * resolution policy (peak EWMA). Dynamic accessor look up the current available resources in the
      * {@link ServiceDiscovery} instead of relying on a static list of resources.
      * @return a Java implementation of the required type, accessing the given endpoint.
      */
     default <T> T getService(Class<T> serviceType, String serviceName, Collection<String> tags){
-        return getService(serviceType, serviceName, tags, EndpointResolutionPolicy.RANDOM_RESOLUTIONPOLICY);
+        return getService(serviceType, serviceName, tags, EndpointResolutionPolicy.DEFAULT_RESOLUTIONPOLICY);
     }
 
     /**
      * Creates a new accessor for the given service, the effective endpoints are looked up dynamically from
-     * the {@link ServiceDiscovery}, uses a random resolution policy.
+     * the {@link ServiceDiscovery}, uses the default resolution policy.
      * @param serviceType the target type to be created.
      * @param serviceName the service name
      * @param tags the tags for filtering the result
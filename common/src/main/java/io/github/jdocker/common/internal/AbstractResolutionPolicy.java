@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.jdocker.common.internal;
+
+import io.github.jdocker.common.Endpoint;
+import io.github.jdocker.common.EndpointResolutionPolicy;
+import io.github.jdocker.common.EndpointStats;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Base class for resolution policies, giving indexed access to the endpoints without copying them. Ejected
+ * endpoints (see {@link EndpointStats#isEjected()}) are skipped when selecting, instead of being filtered out of
+ * the endpoints before.
+ */
+abstract class AbstractResolutionPolicy implements EndpointResolutionPolicy {
+
+    /**
+     * Access the endpoint at the given position.
+     * @param endpoints the endpoints, not null.
+     * @param index the index, 0 &lt;= index &lt; size.
+     * @return the endpoint at the given position.
+     */
+    static Endpoint get(Collection<Endpoint> endpoints, int index){
+        if(endpoints instanceof List && endpoints instanceof RandomAccess){
+            return ((List<Endpoint>)endpoints).get(index);
+        }
+        Iterator<Endpoint> it = endpoints.iterator();
+        for(int i=0;i<index;i++){
+            it.next();
+        }
+        return it.next();
+    }
+
+    /**
+     * Access the first endpoint not ejected, starting at the given position and wrapping around. Usually this is
+     * the endpoint at the position itself, so skipping ejected endpoints costs a single flag check.
+     * @param endpoints the endpoints, not null.
+     * @param index the index, 0 &lt;= index &lt; size.
+     * @return the endpoint found, or the endpoint at the given position, if all endpoints are ejected, so requests
+     * are still sent somewhere.
+     */
+    static Endpoint getAvailable(Collection<Endpoint> endpoints, int index){
+        int size = endpoints.size();
+        for(int i=0;i<size;i++){
+            Endpoint ep = get(endpoints, (index + i) % size);
+            if(!EndpointStats.of(ep).isEjected()){
+                return ep;
+            }
+        }
+        return get(endpoints, index);
+    }
+}
@@ -0,0 +1,300 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.jdocker.common.internal;
+
+import io.github.jdocker.common.Endpoint;
+import io.github.jdocker.common.EndpointStats;
+import io.github.jdocker.common.KeyedEndpointResolutionPolicy;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Consistent hashing with virtual nodes and bounded load. Rings are cached per service and endpoint set, so
+ * different subsets of a service, e.g. queried by tags, do not replace each other's rings; a cached ring is
+ * found using the endpoints' cached string hashes and verified against its members, without hashing the
+ * endpoints again. When the endpoints of a service change only the virtual nodes of the added and removed
+ * endpoints are hashed, and merged into the most recently used ring. A key is assigned to the first endpoint clockwise from its hash, that has
+ * fewer requests in flight than {@code ceil((total + 1) * loadFactor / endpoints)} and is not ejected.
+ */
+public final class ConsistentHashResolutionPolicy extends AbstractResolutionPolicy
+        implements KeyedEndpointResolutionPolicy {
+
+    /** Default number of virtual nodes per endpoint. */
+    public static final int DEFAULT_VIRTUAL_NODES = 100;
+    /** Default load bound, relative to the average load. */
+    public static final double DEFAULT_LOAD_FACTOR = 1.25d;
+    /** Number of rings, i.e. distinct endpoint sets, cached per service. */
+    static final int MAX_RINGS_PER_SERVICE = 8;
+
+    private final int virtualNodes;
+    private final double loadFactor;
+    /** The rings of each service, most recently used first. */
+    private final ConcurrentMap<String, Ring[]> rings = new ConcurrentHashMap<>();
+
+    public ConsistentHashResolutionPolicy(){
+        this(DEFAULT_VIRTUAL_NODES, DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Creates a new policy.
+     * @param virtualNodes the number of virtual nodes per endpoint, &gt; 0.
+     * @param loadFactor the maximal load of an endpoint relative to the average, &gt;= 1.
+     */
+    public ConsistentHashResolutionPolicy(int virtualNodes, double loadFactor){
+        if(virtualNodes<=0){
+            throw new IllegalArgumentException("virtualNodes must be > 0: " + virtualNodes);
+        }
+        if(loadFactor<1.0d){
+            throw new IllegalArgumentException("loadFactor must be >= 1: " + loadFactor);
+        }
+        this.virtualNodes = virtualNodes;
+        this.loadFactor = loadFactor;
+    }
+
+    @Override
+    public Endpoint resolve(Collection<Endpoint> endpoints, String key) {
+        int size = endpoints.size();
+        if(size==0){
+            return null;
+        }
+        if(size==1){
+            return get(endpoints, 0);
+        }
+        Ring ring = getRing(endpoints);
+        long hash = key==null?ThreadLocalRandom.current().nextLong():hash(key);
+        int index = Arrays.binarySearch(ring.points, hash);
+        if(index<0){
+            index = -index - 1;
+        }
+        long total = 0;
+        for(EndpointStats stats:ring.memberStats){
+            total += stats.getInFlight();
+        }
+        long limit = (long)Math.ceil((total + 1) * loadFactor / ring.memberStats.length);
+        int length = ring.points.length;
+        for(int i=0;i<length;i++){
+            int pos = (index + i) % length;
+            if(ring.stats[pos].getInFlight() < limit && !ring.stats[pos].isEjected()){
+                return ring.owners[pos];
+            }
+        }
+        // all endpoints are loaded or ejected, prefer the next one available
+        for(int i=0;i<length;i++){
+            int pos = (index + i) % length;
+            if(!ring.stats[pos].isEjected()){
+                return ring.owners[pos];
+            }
+        }
+        return ring.owners[index % length];
+    }
+
+    Ring getRing(Collection<Endpoint> endpoints){
+        String serviceName = get(endpoints, 0).getServiceName();
+        long fingerprint = fingerprint(endpoints);
+        Ring[] cached = rings.get(serviceName);
+        if(cached!=null){
+            for(Ring ring:cached){
+                if(ring.matches(endpoints, fingerprint)){
+                    return ring;
+                }
+            }
+        }
+        Ring updated = (cached==null?Ring.EMPTY:cached[0]).update(endpoints, fingerprint, virtualNodes);
+        int length = cached==null?1:Math.min(cached.length + 1, MAX_RINGS_PER_SERVICE);
+        Ring[] updatedRings = new Ring[length];
+        updatedRings[0] = updated;
+        if(cached!=null){
+            System.arraycopy(cached, 0, updatedRings, 1, length - 1);
+        }
+        rings.put(serviceName, updatedRings);
+        return updated;
+    }
+
+    /**
+     * Order independent fingerprint of an endpoint set, based on the instance keys' cached string hashes.
+     */
+    private static long fingerprint(Collection<Endpoint> endpoints){
+        long fingerprint = 0;
+        for(Endpoint ep:endpoints){
+            long h = ep.getInstanceKey().hashCode() * 0x9e3779b97f4a7c15L;
+            fingerprint += h ^ (h >>> 29);
+        }
+        return fingerprint;
+    }
+
+    /**
+     * 64 bit FNV-1a over the chars of the given string, finished with the murmur3 mixer for a uniform
+     * distribution on the ring.
+     * @param value the value, not null.
+     * @return the hash.
+     */
+    static long hash(String value){
+        long h = 0xcbf29ce484222325L;
+        for(int i=0;i<value.length();i++){
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    @Override
+    public String toString() {
+        return "ConsistentHashResolutionPolicy{" +
+                "virtualNodes=" + virtualNodes +
+                ", loadFactor=" + loadFactor +
+                '}';
+    }
+
+    /**
+     * Immutable ring, with the virtual nodes sorted by their hash.
+     */
+    static final class Ring {
+
+        static final Ring EMPTY = new Ring(0L, 0, new long[0], new Endpoint[0], new EndpointStats[0],
+                new EndpointStats[0], new HashMap<>());
+
+        final long fingerprint;
+        /** The number of endpoints the ring was built from, including duplicates. */
+        final int size;
+        final long[] points;
+        final Endpoint[] owners;
+        final EndpointStats[] stats;
+        final EndpointStats[] memberStats;
+        final Map<String, Endpoint> members;
+
+        private Ring(long fingerprint, int size, long[] points, Endpoint[] owners, EndpointStats[] stats,
+                     EndpointStats[] memberStats, Map<String, Endpoint> members){
+            this.fingerprint = fingerprint;
+            this.size = size;
+            this.points = points;
+            this.owners = owners;
+            this.stats = stats;
+            this.memberStats = memberStats;
+            this.members = members;
+        }
+
+        /**
+         * Checks if this ring was built from the given endpoints, and the statistics it refers to are still
+         * current.
+         */
+        boolean matches(Collection<Endpoint> endpoints, long fingerprint){
+            if(this.fingerprint!=fingerprint || size!=endpoints.size()){
+                return false;
+            }
+            for(Endpoint ep:endpoints){
+                if(!members.containsKey(ep.getInstanceKey())){
+                    return false;
+                }
+            }
+            for(EndpointStats stats:memberStats){
+                if(stats.isRemoved()){
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        Ring update(Collection<Endpoint> endpoints, long fingerprint, int virtualNodes){
+            Map<String, Endpoint> newMembers = new HashMap<>();
+            for(Endpoint ep:endpoints){
+                newMembers.put(ep.getInstanceKey(), ep);
+            }
+            // keep the virtual nodes of remaining endpoints, already in order
+            int kept = 0;
+            long[] keptPoints = new long[points.length];
+            Endpoint[] keptOwners = new Endpoint[points.length];
+            for(int i=0;i<points.length;i++){
+                Endpoint current = newMembers.get(owners[i].getInstanceKey());
+                if(current!=null){
+                    keptPoints[kept] = points[i];
+                    keptOwners[kept] = current;
+                    kept++;
+                }
+            }
+            // hash the virtual nodes of added endpoints only
+            int addedCount = 0;
+            for(String instanceKey:newMembers.keySet()){
+                if(!members.containsKey(instanceKey)){
+                    addedCount++;
+                }
+            }
+            long[] addedPoints = new long[addedCount * virtualNodes];
+            Endpoint[] addedOwners = new Endpoint[addedPoints.length];
+            int added = 0;
+            for(Map.Entry<String,Endpoint> en:newMembers.entrySet()){
+                if(!members.containsKey(en.getKey())){
+                    for(int v=0;v<virtualNodes;v++){
+                        addedPoints[added] = hash(en.getKey() + '#' + v);
+                        addedOwners[added] = en.getValue();
+                        added++;
+                    }
+                }
+            }
+            sort(addedPoints, addedOwners);
+            // merge both sorted runs
+            int length = kept + added;
+            long[] newPoints = new long[length];
+            Endpoint[] newOwners = new Endpoint[length];
+            EndpointStats[] newStats = new EndpointStats[length];
+            int k = 0, a = 0;
+            for(int i=0;i<length;i++){
+                if(a>=added || (k<kept && keptPoints[k]<=addedPoints[a])){
+                    newPoints[i] = keptPoints[k];
+                    newOwners[i] = keptOwners[k++];
+                }else{
+                    newPoints[i] = addedPoints[a];
+                    newOwners[i] = addedOwners[a++];
+                }
+                newStats[i] = EndpointStats.of(newOwners[i]);
+            }
+            EndpointStats[] newMemberStats = new EndpointStats[newMembers.size()];
+            int m = 0;
+            for(Endpoint ep:newMembers.values()){
+                newMemberStats[m++] = EndpointStats.of(ep);
+            }
+            return new Ring(fingerprint, endpoints.size(), newPoints, newOwners, newStats, newMemberStats,
+                    newMembers);
+        }
+
+        private static void sort(long[] points, Endpoint[] owners){
+            Integer[] order = new Integer[points.length];
+            for(int i=0;i<order.length;i++){
+                order[i] = i;
+            }
+            Arrays.sort(order, (o1, o2) -> Long.compare(points[o1], points[o2]));
+            long[] sortedPoints = new long[points.length];
+            Endpoint[] sortedOwners = new Endpoint[owners.length];
+            for(int i=0;i<order.length;i++){
+                sortedPoints[i] = points[order[i]];
+                sortedOwners[i] = owners[order[i]];
+            }
+            System.arraycopy(sortedPoints, 0, points, 0, points.length);
+            System.arraycopy(sortedOwners, 0, owners, 0, owners.length);
+        }
+    }
+}
@@ -18,20 +18,44 @@ package io.github.jdocker.common.internal;
 
 import io.github.jdocker.common.Endpoint;
 import io.github.jdocker.common.EndpointResolutionPolicy;
+import io.github.jdocker.common.ServiceDiscovery;
 import io.github.jdocker.common.ServiceFactory;
 import io.github.jdocker.common.ServiceContextManager;
+import io.github.jdocker.common.ServiceProvider;
 import io.github.jdocker.common.spi.ServiceAccessorProxyFactorySpi;
 
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Default implementation of the {@link ServiceFactory} hereby using the {@link ServiceAccessorProxyFactorySpi}
- * registered.
+ * registered. If a {@link ServiceDiscovery} is available, dynamic proxies are fed by a watch on the service, so
+ * they see registrations and removals without polling. These proxies are cached by type, service name, tags and
+ * resolution policy, so repeated lookups neither create new proxies nor open new watches. Static proxies are
+ * created per call, as callers may pass ever changing endpoint lists; the generated proxy classes are cached by
+ * the {@link ServiceAccessorProxyFactorySpi} implementations.
  */
+@ServiceProvider(ServiceFactory.class)
 public class DefaultServiceFactory implements ServiceFactory {
 
+    private final ConcurrentHashMap<ProxyKey, Object> proxies = new ConcurrentHashMap<>();
+
     @Override
     public <T> T getStaticServiceProxy(Class<T> serviceType, EndpointResolutionPolicy endpointResolutionPolicy, Collection<Endpoint> endpoints) {
+        return createStaticServiceProxy(serviceType, endpointResolutionPolicy, endpoints);
+    }
+
+    @Override
+    public <T> T getService(Class<T> serviceType, String serviceName, Collection<String> tags, EndpointResolutionPolicy endpointResolutionPolicy) {
+        ProxyKey key = new ProxyKey(serviceType, serviceName, tags, endpointResolutionPolicy);
+        return serviceType.cast(proxies.computeIfAbsent(key,
+                k -> createService(serviceType, serviceName, tags, endpointResolutionPolicy)));
+    }
+
+    private <T> T createStaticServiceProxy(Class<T> serviceType, EndpointResolutionPolicy endpointResolutionPolicy, Collection<Endpoint> endpoints) {
         for(ServiceAccessorProxyFactorySpi spi: ServiceContextManager.getServiceContext().getServices(ServiceAccessorProxyFactorySpi.class)){
             T t = spi.createStaticServiceProxy(serviceType, endpointResolutionPolicy, endpoints);
             if(t!=null){
@@ -41,8 +65,18 @@ public class DefaultServiceFactory implements ServiceFactory {
         throw new IllegalStateException("Cannot create service accessor for " + serviceType.getName());
     }
 
-    @Override
-    public <T> T getService(Class<T> serviceType, String serviceName, Collection<String> tags, EndpointResolutionPolicy endpointResolutionPolicy) {
+    private <T> T createService(Class<T> serviceType, String serviceName, Collection<String> tags, EndpointResolutionPolicy endpointResolutionPolicy) {
+        ServiceDiscovery discovery = ServiceContextManager.getServiceContext().getService(ServiceDiscovery.class);
+        if(discovery!=null){
+            WatchedEndpoints endpoints = WatchedEndpoints.watch(discovery, serviceName, tags);
+            for(ServiceAccessorProxyFactorySpi spi: ServiceContextManager.getServiceContext().getServices(ServiceAccessorProxyFactorySpi.class)){
+                T t = spi.createServiceProxy(serviceType, serviceName, endpoints, endpointResolutionPolicy);
+                if(t!=null){
+                    return t;
+                }
+            }
+            endpoints.close();
+        }
         for(ServiceAccessorProxyFactorySpi spi: ServiceContextManager.getServiceContext().getServices(ServiceAccessorProxyFactorySpi.class)){
             T t = spi.createServiceProxy(serviceType, serviceName, tags, endpointResolutionPolicy);
             if(t!=null){
@@ -51,4 +85,39 @@ public class DefaultServiceFactory implements ServiceFactory {
         }
         throw new IllegalStateException("Cannot create service accessor for " + serviceType.getName());
     }
+
+    /**
+     * Key of a cached proxy.
+     */
+    private static final class ProxyKey{
+        private final Class<?> type;
+        private final String serviceName;
+        private final Collection<String> tags;
+        private final EndpointResolutionPolicy policy;
+        private final int hash;
+
+        ProxyKey(Class<?> type, String serviceName, Collection<String> tags, EndpointResolutionPolicy policy){
+            this.type = type;
+            this.serviceName = serviceName;
+            this.tags = tags==null?Collections.emptySet():new HashSet<>(tags);
+            this.policy = policy;
+            this.hash = Objects.hash(type, serviceName, this.tags, policy);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof ProxyKey)) return false;
+            ProxyKey that = (ProxyKey) o;
+            return type == that.type &&
+                    Objects.equals(policy, that.policy) &&
+                    Objects.equals(serviceName, that.serviceName) &&
+                    tags.equals(that.tags);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
 }
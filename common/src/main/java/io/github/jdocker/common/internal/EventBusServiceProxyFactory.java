@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.jdocker.common.internal;
+
+import io.github.jdocker.common.Endpoint;
+import io.github.jdocker.common.EndpointResolutionPolicy;
+import io.github.jdocker.common.ServiceContextManager;
+import io.github.jdocker.common.ServiceDiscovery;
+import io.github.jdocker.common.ServiceProvider;
+import io.github.jdocker.common.spi.ServiceAccessorProxyFactorySpi;
+import io.github.jdocker.common.vertx.EventBusInvoker;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * Default {@link ServiceAccessorProxyFactorySpi} creating generated proxies (see {@link ProxyGenerator}), which
+ * call {@code eventbus://<address>} endpoints using an {@link EventBusInvoker}. The vertx instance used is the one
+ * set by {@link #setVertx(Vertx)}, or the owner of the current context. Without vertx instance no proxies are
+ * created.
+ */
+@ServiceProvider(ServiceAccessorProxyFactorySpi.class)
+public class EventBusServiceProxyFactory implements ServiceAccessorProxyFactorySpi {
+
+    private static volatile Vertx vertx;
+    private static volatile long timeout = EventBusInvoker.DEFAULT_TIMEOUT;
+
+    /**
+     * Sets the vertx instance used by the proxies created.
+     * @param vertx the vertx instance, or null to use the owner of the current context.
+     */
+    public static void setVertx(Vertx vertx){
+        EventBusServiceProxyFactory.vertx = vertx;
+    }
+
+    /**
+     * Sets the reply timeout of the proxies created.
+     * @param timeout the timeout in milliseconds, > 0.
+     */
+    public static void setTimeout(long timeout){
+        if(timeout<=0){
+            throw new IllegalArgumentException("Timeout must be > 0: " + timeout);
+        }
+        EventBusServiceProxyFactory.timeout = timeout;
+    }
+
+    private static Vertx getVertx(){
+        Vertx v = vertx;
+        if(v==null){
+            Context context = Vertx.currentContext();
+            if(context!=null){
+                v = context.owner();
+            }
+        }
+        return v;
+    }
+
+    @Override
+    public <T> T createStaticServiceProxy(Class<T> serviceType, EndpointResolutionPolicy endpointResolutionPolicy,
+                                          Collection<Endpoint> endpoints) {
+        List<Endpoint> fixed = Collections.unmodifiableList(new ArrayList<>(endpoints));
+        String serviceName = fixed.isEmpty()?serviceType.getName():fixed.get(0).getServiceName();
+        return createServiceProxy(serviceType, serviceName, () -> fixed, endpointResolutionPolicy);
+    }
+
+    @Override
+    public <T> T createServiceProxy(Class<T> serviceType, String serviceName, Collection<String> tags,
+                                    EndpointResolutionPolicy endpointResolutionPolicy) {
+        ServiceDiscovery discovery = ServiceContextManager.getServiceContext().getService(ServiceDiscovery.class);
+        if(discovery==null){
+            return null;
+        }
+        return createServiceProxy(serviceType, serviceName, () -> {
+            Collection<Endpoint> all = discovery.getEndpoints(serviceName);
+            if(tags==null || tags.isEmpty()){
+                return all;
+            }
+            List<Endpoint> matching = new ArrayList<>(all.size());
+            for(Endpoint ep:all){
+                if(ep.matchTags(tags)){
+                    matching.add(ep);
+                }
+            }
+            return matching;
+        }, endpointResolutionPolicy);
+    }
+
+    @Override
+    public <T> T createServiceProxy(Class<T> serviceType, String serviceName, Supplier<Collection<Endpoint>> endpoints,
+                                    EndpointResolutionPolicy endpointResolutionPolicy) {
+        Vertx v = getVertx();
+        if(v==null){
+            return null;
+        }
+        ProxyGenerator.ProxyClass proxyClass = ProxyGenerator.of(serviceType);
+        if(proxyClass==null){
+            return null;
+        }
+        EventBusInvoker invoker = new EventBusInvoker(v, serviceName, proxyClass.getMethods(), endpoints,
+                Objects.requireNonNull(endpointResolutionPolicy), timeout);
+        return proxyClass.newInstance(invoker);
+    }
+}
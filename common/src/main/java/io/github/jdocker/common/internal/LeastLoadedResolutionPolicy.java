@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.jdocker.common.internal;
+
+import io.github.jdocker.common.Endpoint;
+import io.github.jdocker.common.EndpointStats;
+
+import java.util.Collection;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Power of two choices: picks two endpoints at random and selects the one with fewer requests in flight.
+ */
+public final class LeastLoadedResolutionPolicy extends AbstractResolutionPolicy {
+
+    @Override
+    public Endpoint resolve(Collection<Endpoint> endpoints) {
+        int size = endpoints.size();
+        if(size==0){
+            return null;
+        }
+        if(size==1){
+            return get(endpoints, 0);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int a = random.nextInt(size);
+        int b = random.nextInt(size-1);
+        if(b>=a){
+            b++;
+        }
+        Endpoint first = getAvailable(endpoints, a);
+        Endpoint second = getAvailable(endpoints, b);
+        return EndpointStats.of(first).getInFlight() <= EndpointStats.of(second).getInFlight() ? first : second;
+    }
+
+    @Override
+    public String toString() {
+        return "LeastLoadedResolutionPolicy";
+    }
+}
@@ -0,0 +1,485 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.jdocker.common.internal;
+
+import io.github.jdocker.common.vertx.EventBusInvoker;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Generates proxy classes for service interfaces, which pass each call with its method index and boxed arguments
+ * to an {@link EventBusInvoker}. Unlike {@link java.lang.reflect.Proxy} calls are plain virtual calls, no
+ * {@link Method} lookup, argument array copy or {@link java.lang.reflect.InvocationHandler} dispatch happens per
+ * call. The class files are written directly (straight line code only, so no stack map frames are needed) and
+ * the generated class is cached per interface.
+ */
+public final class ProxyGenerator {
+
+    private static final Logger LOG = Logger.getLogger(ProxyGenerator.class.getName());
+
+    private static final String PACKAGE = ProxyGenerator.class.getPackage().getName() + ".";
+    private static final String INVOKER = EventBusInvoker.class.getName().replace('.', '/');
+    private static final String INVOKER_DESC = "L" + INVOKER + ";";
+    private static final AtomicInteger COUNTER = new AtomicInteger();
+
+    private static final ClassValue<ProxyClass> PROXY_CLASSES = new ClassValue<ProxyClass>() {
+        @Override
+        protected ProxyClass computeValue(Class<?> type) {
+            try {
+                return generate(type);
+            } catch (Exception e) {
+                LOG.log(Level.WARNING, "Failed to generate proxy for " + type.getName(), e);
+                return null;
+            }
+        }
+    };
+
+    private ProxyGenerator(){}
+
+    /**
+     * Get the proxy class for the given interface.
+     * @param type the service interface, not null.
+     * @return the proxy class, or null, if the type is not a public interface only using public types.
+     */
+    public static ProxyClass of(Class<?> type){
+        return PROXY_CLASSES.get(type);
+    }
+
+    /**
+     * A generated proxy class.
+     */
+    public static final class ProxyClass{
+        private final Method[] methods;
+        private final Constructor<?> constructor;
+
+        private ProxyClass(Method[] methods, Constructor<?> constructor){
+            this.methods = methods;
+            this.constructor = constructor;
+        }
+
+        /**
+         * Get the methods implemented, the index in the array is the index passed to the invoker.
+         * @return the methods, never null.
+         */
+        public Method[] getMethods(){
+            return methods.clone();
+        }
+
+        /**
+         * Creates a new proxy instance.
+         * @param invoker the invoker, not null.
+         * @param <T> the interface type.
+         * @return the new proxy, never null.
+         */
+        @SuppressWarnings("unchecked")
+        public <T> T newInstance(EventBusInvoker invoker){
+            try {
+                return (T) constructor.newInstance(invoker);
+            } catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
+                throw new IllegalStateException("Cannot create proxy " + constructor.getDeclaringClass().getName(), e);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "ProxyClass{" + constructor.getDeclaringClass().getName() + '}';
+        }
+    }
+
+    private static ProxyClass generate(Class<?> type) throws IOException, ReflectiveOperationException {
+        if(!type.isInterface() || !Modifier.isPublic(type.getModifiers())){
+            return null;
+        }
+        Map<String, Method> byDescriptor = new LinkedHashMap<>();
+        for(Method m:type.getMethods()){
+            if(Modifier.isStatic(m.getModifiers()) || m.isDefault()){
+                continue;
+            }
+            if(!isPublic(m.getReturnType())){
+                return null;
+            }
+            int slots = 1;
+            for(Class<?> param:m.getParameterTypes()){
+                if(!isPublic(param)){
+                    return null;
+                }
+                slots += param==long.class || param==double.class?2:1;
+            }
+            if(slots>255){
+                return null;
+            }
+            byDescriptor.putIfAbsent(m.getName() + descriptor(m), m);
+        }
+        Method[] methods = byDescriptor.values().toArray(new Method[byDescriptor.size()]);
+        String className = PACKAGE + type.getSimpleName() + "$$JDockerProxy" + COUNTER.incrementAndGet();
+        byte[] classFile = new ClassWriter(className.replace('.', '/'), type, methods).write();
+        Class<?> proxyClass = new ProxyClassLoader(type.getClassLoader()).define(className, classFile);
+        return new ProxyClass(methods, proxyClass.getConstructor(EventBusInvoker.class));
+    }
+
+    private static boolean isPublic(Class<?> type){
+        while(type.isArray()){
+            type = type.getComponentType();
+        }
+        return type.isPrimitive() || Modifier.isPublic(type.getModifiers());
+    }
+
+    private static String descriptor(Method m){
+        StringBuilder b = new StringBuilder("(");
+        for(Class<?> param:m.getParameterTypes()){
+            b.append(descriptor(param));
+        }
+        return b.append(')').append(descriptor(m.getReturnType())).toString();
+    }
+
+    private static String descriptor(Class<?> type){
+        if(type.isArray()){
+            return type.getName().replace('.', '/');
+        }
+        if(type.isPrimitive()){
+            return String.valueOf(primitiveCode(type));
+        }
+        return "L" + type.getName().replace('.', '/') + ";";
+    }
+
+    private static char primitiveCode(Class<?> type){
+        if(type==void.class){
+            return 'V';
+        }else if(type==boolean.class){
+            return 'Z';
+        }else if(type==byte.class){
+            return 'B';
+        }else if(type==char.class){
+            return 'C';
+        }else if(type==short.class){
+            return 'S';
+        }else if(type==int.class){
+            return 'I';
+        }else if(type==long.class){
+            return 'J';
+        }else if(type==float.class){
+            return 'F';
+        }
+        return 'D';
+    }
+
+    private static String wrapper(Class<?> type){
+        switch(primitiveCode(type)){
+            case 'Z':
+                return "java/lang/Boolean";
+            case 'B':
+                return "java/lang/Byte";
+            case 'C':
+                return "java/lang/Character";
+            case 'S':
+                return "java/lang/Short";
+            case 'I':
+                return "java/lang/Integer";
+            case 'J':
+                return "java/lang/Long";
+            case 'F':
+                return "java/lang/Float";
+            default:
+                return "java/lang/Double";
+        }
+    }
+
+    /**
+     * Loader of a single proxy class, seeing the interface's loader and the loader of this module.
+     */
+    private static final class ProxyClassLoader extends ClassLoader{
+
+        ProxyClassLoader(ClassLoader parent){
+            super(parent);
+        }
+
+        Class<?> define(String name, byte[] classFile){
+            return defineClass(name, classFile, 0, classFile.length, ProxyGenerator.class.getProtectionDomain());
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            try {
+                return super.loadClass(name, resolve);
+            } catch (ClassNotFoundException e) {
+                return Class.forName(name, resolve, ProxyGenerator.class.getClassLoader());
+            }
+        }
+    }
+
+    /**
+     * Minimal class file writer for the proxies.
+     */
+    private static final class ClassWriter{
+        private static final int ACC_PUBLIC = 0x0001;
+        private static final int ACC_PRIVATE = 0x0002;
+        private static final int ACC_FINAL = 0x0010;
+        private static final int ACC_SUPER = 0x0020;
+
+        private final ByteArrayOutputStream constantBytes = new ByteArrayOutputStream();
+        private final DataOutputStream constants = new DataOutputStream(constantBytes);
+        private final Map<String, Integer> constantIndex = new HashMap<>();
+        private int constantCount = 1;
+
+        private final String className;
+        private final Class<?> type;
+        private final Method[] methods;
+
+        ClassWriter(String className, Class<?> type, Method[] methods){
+            this.className = className;
+            this.type = type;
+            this.methods = methods;
+        }
+
+        byte[] write() throws IOException {
+            int thisClass = classRef(className);
+            int superClass = classRef("java/lang/Object");
+            int iface = classRef(type.getName().replace('.', '/'));
+            int fieldName = utf8("invoker");
+            int fieldDesc = utf8(INVOKER_DESC);
+            int code = utf8("Code");
+            List<byte[]> methodInfos = new ArrayList<>(methods.length + 1);
+            methodInfos.add(methodInfo(utf8("<init>"), utf8("(" + INVOKER_DESC + ")V"), code, constructorCode(), 2, 2));
+            for(int i=0;i<methods.length;i++){
+                Method m = methods[i];
+                int locals = 1;
+                for(Class<?> param:m.getParameterTypes()){
+                    locals += param==long.class || param==double.class?2:1;
+                }
+                methodInfos.add(methodInfo(utf8(m.getName()), utf8(descriptor(m)), code, methodCode(i, m), 8, locals));
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(512 + constantBytes.size());
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(52);
+            out.writeShort(constantCount);
+            constants.flush();
+            constantBytes.writeTo(out);
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(1);
+            out.writeShort(iface);
+            out.writeShort(1);
+            out.writeShort(ACC_PRIVATE | ACC_FINAL);
+            out.writeShort(fieldName);
+            out.writeShort(fieldDesc);
+            out.writeShort(0);
+            out.writeShort(methodInfos.size());
+            for(byte[] info:methodInfos){
+                out.write(info);
+            }
+            out.writeShort(0);
+            out.flush();
+            return bytes.toByteArray();
+        }
+
+        private byte[] methodInfo(int name, int desc, int codeAttr, byte[] code, int maxStack, int maxLocals)
+                throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(code.length + 32);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeShort(ACC_PUBLIC);
+            out.writeShort(name);
+            out.writeShort(desc);
+            out.writeShort(1);
+            out.writeShort(codeAttr);
+            out.writeInt(12 + code.length);
+            out.writeShort(maxStack);
+            out.writeShort(maxLocals);
+            out.writeInt(code.length);
+            out.write(code);
+            out.writeShort(0);
+            out.writeShort(0);
+            out.flush();
+            return bytes.toByteArray();
+        }
+
+        private byte[] constructorCode() throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(16);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(0x2a); // aload_0
+            out.writeByte(0xb7); // invokespecial
+            out.writeShort(memberRef(10, "java/lang/Object", "<init>", "()V"));
+            out.writeByte(0x2a); // aload_0
+            out.writeByte(0x2b); // aload_1
+            out.writeByte(0xb5); // putfield
+            out.writeShort(memberRef(9, className, "invoker", INVOKER_DESC));
+            out.writeByte(0xb1); // return
+            out.flush();
+            return bytes.toByteArray();
+        }
+
+        private byte[] methodCode(int index, Method m) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(0x2a); // aload_0
+            out.writeByte(0xb4); // getfield
+            out.writeShort(memberRef(9, className, "invoker", INVOKER_DESC));
+            pushInt(out, index);
+            Class<?>[] params = m.getParameterTypes();
+            if(params.length==0){
+                out.writeByte(0x01); // aconst_null
+            }else{
+                pushInt(out, params.length);
+                out.writeByte(0xbd); // anewarray
+                out.writeShort(classRef("java/lang/Object"));
+                int slot = 1;
+                for(int i=0;i<params.length;i++){
+                    Class<?> param = params[i];
+                    out.writeByte(0x59); // dup
+                    pushInt(out, i);
+                    out.writeByte(loadOpcode(param));
+                    out.writeByte(slot);
+                    if(param.isPrimitive()){
+                        String wrapper = wrapper(param);
+                        out.writeByte(0xb8); // invokestatic
+                        out.writeShort(memberRef(10, wrapper, "valueOf",
+                                "(" + primitiveCode(param) + ")L" + wrapper + ";"));
+                    }
+                    out.writeByte(0x53); // aastore
+                    slot += param==long.class || param==double.class?2:1;
+                }
+            }
+            out.writeByte(0xb6); // invokevirtual
+            out.writeShort(memberRef(10, INVOKER, "invoke", "(I[Ljava/lang/Object;)Ljava/lang/Object;"));
+            Class<?> ret = m.getReturnType();
+            if(ret==void.class){
+                out.writeByte(0x57); // pop
+                out.writeByte(0xb1); // return
+            }else if(ret.isPrimitive()){
+                String wrapper = wrapper(ret);
+                out.writeByte(0xc0); // checkcast
+                out.writeShort(classRef(wrapper));
+                out.writeByte(0xb6); // invokevirtual
+                out.writeShort(memberRef(10, wrapper, ret.getName() + "Value", "()" + primitiveCode(ret)));
+                out.writeByte(returnOpcode(ret));
+            }else{
+                if(ret!=Object.class){
+                    out.writeByte(0xc0); // checkcast
+                    out.writeShort(classRef(ret.isArray()?descriptor(ret):ret.getName().replace('.', '/')));
+                }
+                out.writeByte(0xb0); // areturn
+            }
+            out.flush();
+            return bytes.toByteArray();
+        }
+
+        private void pushInt(DataOutputStream out, int value) throws IOException {
+            if(value<=5){
+                out.writeByte(0x03 + value); // iconst_n
+            }else if(value<=Byte.MAX_VALUE){
+                out.writeByte(0x10); // bipush
+                out.writeByte(value);
+            }else{
+                out.writeByte(0x11); // sipush
+                out.writeShort(value);
+            }
+        }
+
+        private static int loadOpcode(Class<?> type){
+            if(type==long.class){
+                return 0x16; // lload
+            }else if(type==float.class){
+                return 0x17; // fload
+            }else if(type==double.class){
+                return 0x18; // dload
+            }else if(type.isPrimitive()){
+                return 0x15; // iload
+            }
+            return 0x19; // aload
+        }
+
+        private static int returnOpcode(Class<?> type){
+            if(type==long.class){
+                return 0xad; // lreturn
+            }else if(type==float.class){
+                return 0xae; // freturn
+            }else if(type==double.class){
+                return 0xaf; // dreturn
+            }
+            return 0xac; // ireturn
+        }
+
+        private int utf8(String value) throws IOException {
+            Integer index = constantIndex.get("U" + value);
+            if(index==null){
+                constants.writeByte(1);
+                constants.writeUTF(value);
+                index = constantCount++;
+                constantIndex.put("U" + value, index);
+            }
+            return index;
+        }
+
+        private int classRef(String internalName) throws IOException {
+            Integer index = constantIndex.get("C" + internalName);
+            if(index==null){
+                int name = utf8(internalName);
+                constants.writeByte(7);
+                constants.writeShort(name);
+                index = constantCount++;
+                constantIndex.put("C" + internalName, index);
+            }
+            return index;
+        }
+
+        private int memberRef(int tag, String owner, String name, String desc) throws IOException {
+            String key = "M" + tag + owner + '.' + name + desc;
+            Integer index = constantIndex.get(key);
+            if(index==null){
+                int ownerIndex = classRef(owner);
+                int nameAndType = nameAndType(name, desc);
+                constants.writeByte(tag);
+                constants.writeShort(ownerIndex);
+                constants.writeShort(nameAndType);
+                index = constantCount++;
+                constantIndex.put(key, index);
+            }
+            return index;
+        }
+
+        private int nameAndType(String name, String desc) throws IOException {
+            String key = "N" + name + ':' + desc;
+            Integer index = constantIndex.get(key);
+            if(index==null){
+                int nameIndex = utf8(name);
+                int descIndex = utf8(desc);
+                constants.writeByte(12);
+                constants.writeShort(nameIndex);
+                constants.writeShort(descIndex);
+                index = constantCount++;
+                constantIndex.put(key, index);
+            }
+            return index;
+        }
+    }
+}
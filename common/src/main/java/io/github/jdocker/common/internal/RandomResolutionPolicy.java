@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.jdocker.common.internal;
+
+import io.github.jdocker.common.Endpoint;
+
+import java.util.Collection;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Resolution policy that selects an endpoint uniformly at random.
+ */
+public final class RandomResolutionPolicy extends AbstractResolutionPolicy {
+
+    @Override
+    public Endpoint resolve(Collection<Endpoint> endpoints) {
+        int size = endpoints.size();
+        if(size==0){
+            return null;
+        }
+        return getAvailable(endpoints, ThreadLocalRandom.current().nextInt(size));
+    }
+
+    @Override
+    public String toString() {
+        return "RandomResolutionPolicy";
+    }
+}
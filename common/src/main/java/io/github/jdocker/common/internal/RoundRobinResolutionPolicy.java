@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.jdocker.common.internal;
+
+import io.github.jdocker.common.Endpoint;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Resolution policy that selects the endpoints in turn.
+ */
+public final class RoundRobinResolutionPolicy extends AbstractResolutionPolicy {
+
+    private final AtomicInteger counter = new AtomicInteger();
+
+    @Override
+    public Endpoint resolve(Collection<Endpoint> endpoints) {
+        int size = endpoints.size();
+        if(size==0){
+            return null;
+        }
+        int next = counter.getAndIncrement() & Integer.MAX_VALUE;
+        return getAvailable(endpoints, next % size);
+    }
+
+    @Override
+    public String toString() {
+        return "RoundRobinResolutionPolicy";
+    }
+}
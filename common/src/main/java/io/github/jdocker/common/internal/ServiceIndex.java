@@ -0,0 +1,222 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.jdocker.common.internal;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Service index written at compile time by the {@link ServiceIndexProcessor}. Each line of the
+ * {@link #RESOURCE} maps a service type to its implementations with their priorities, e.g.
+ * {@code a.b.Service=a.b.internal.DefaultService:1,a.b.internal.OtherService:0}. The indexes of all class path
+ * entries are merged; the implementations of each type are ordered by descending priority, then by simple class
+ * name, as done by the {@link io.github.jdocker.common.PriorityServiceComparator}.
+ */
+public final class ServiceIndex {
+
+    private static final Logger LOG = Logger.getLogger(ServiceIndex.class.getName());
+
+    /** The resource containing the index. */
+    public static final String RESOURCE = "META-INF/jdocker/services.index";
+
+    private static final Map<ClassLoader, ServiceIndex> INDEXES = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final Map<String, List<Entry>> services;
+
+    private ServiceIndex(Map<String, List<Entry>> services){
+        this.services = services;
+    }
+
+    /**
+     * Get the index of the given class loader, loading it on first access.
+     * @param classLoader the class loader, not null.
+     * @return the index, never null.
+     */
+    public static ServiceIndex of(ClassLoader classLoader){
+        return INDEXES.computeIfAbsent(classLoader, ServiceIndex::load);
+    }
+
+    /**
+     * Loads and merges all indexes visible to the given class loader.
+     * @param classLoader the class loader, not null.
+     * @return the index, never null.
+     */
+    public static ServiceIndex load(ClassLoader classLoader){
+        Map<String, List<Entry>> services = new HashMap<>();
+        try {
+            Enumeration<URL> urls = classLoader.getResources(RESOURCE);
+            while(urls.hasMoreElements()){
+                URL url = urls.nextElement();
+                try(Reader reader = new InputStreamReader(url.openStream(), StandardCharsets.UTF_8)){
+                    read(reader, services);
+                } catch (IOException | IllegalArgumentException e) {
+                    LOG.log(Level.WARNING, "Ignoring invalid service index: " + url, e);
+                }
+            }
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Cannot read service indexes.", e);
+        }
+        for(Map.Entry<String, List<Entry>> en:services.entrySet()){
+            en.setValue(Collections.unmodifiableList(sorted(en.getValue())));
+        }
+        return new ServiceIndex(services);
+    }
+
+    /**
+     * Get the implementations of a service type, highest priority first.
+     * @param serviceType the service type name, not null.
+     * @return the implementations, or null, if the type is not indexed.
+     */
+    public List<Entry> get(String serviceType){
+        return services.get(serviceType);
+    }
+
+    /**
+     * Get the service types indexed.
+     * @return the service type names, never null.
+     */
+    public Set<String> getServiceTypes(){
+        return Collections.unmodifiableSet(services.keySet());
+    }
+
+    /**
+     * Reads index lines, adding the implementations not yet contained.
+     * @param reader the reader, not null.
+     * @param services the target map.
+     * @throws IOException if reading fails.
+     * @throws IllegalArgumentException if a line is invalid.
+     */
+    static void read(Reader reader, Map<String, List<Entry>> services) throws IOException {
+        BufferedReader in = new BufferedReader(reader);
+        String line;
+        while((line = in.readLine())!=null){
+            line = line.trim();
+            if(line.isEmpty() || line.startsWith("#")){
+                continue;
+            }
+            int eq = line.indexOf('=');
+            if(eq<=0){
+                throw new IllegalArgumentException("Invalid index line: " + line);
+            }
+            List<Entry> entries = services.computeIfAbsent(line.substring(0, eq).trim(), k -> new ArrayList<>());
+            for(String impl:line.substring(eq+1).split(",")){
+                impl = impl.trim();
+                if(impl.isEmpty()){
+                    continue;
+                }
+                int colon = impl.lastIndexOf(':');
+                Entry entry = colon<0?new Entry(impl, 1):
+                        new Entry(impl.substring(0, colon), Integer.parseInt(impl.substring(colon+1)));
+                if(!entries.contains(entry)){
+                    entries.add(entry);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes index lines, sorted by service type.
+     * @param services the services, not null.
+     * @param writer the target writer, not null.
+     * @throws IOException if writing fails.
+     */
+    static void write(Map<String, List<Entry>> services, Writer writer) throws IOException {
+        for(Map.Entry<String, List<Entry>> en:new TreeMap<>(services).entrySet()){
+            StringBuilder b = new StringBuilder(en.getKey()).append('=');
+            List<Entry> entries = sorted(en.getValue());
+            for(int i=0;i<entries.size();i++){
+                if(i>0){
+                    b.append(',');
+                }
+                b.append(entries.get(i).className).append(':').append(entries.get(i).priority);
+            }
+            writer.write(b.append('\n').toString());
+        }
+    }
+
+    private static List<Entry> sorted(List<Entry> entries){
+        List<Entry> result = new ArrayList<>(entries);
+        result.sort((e1, e2) -> {
+            if(e1.priority!=e2.priority){
+                return e1.priority>e2.priority?-1:1;
+            }
+            return e1.getSimpleName().compareTo(e2.getSimpleName());
+        });
+        return result;
+    }
+
+    /**
+     * An indexed implementation.
+     */
+    public static final class Entry{
+        private final String className;
+        private final int priority;
+
+        Entry(String className, int priority){
+            this.className = className;
+            this.priority = priority;
+        }
+
+        public String getClassName() {
+            return className;
+        }
+
+        public int getPriority() {
+            return priority;
+        }
+
+        private String getSimpleName(){
+            int index = Math.max(className.lastIndexOf('.'), className.lastIndexOf('$'));
+            return className.substring(index+1);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Entry)) return false;
+            return className.equals(((Entry) o).className);
+        }
+
+        @Override
+        public int hashCode() {
+            return className.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return className + ':' + priority;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.jdocker.common.internal;
+
+import io.github.jdocker.common.ServiceProvider;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Annotation processor writing the {@link ServiceIndex} for all types annotated with {@link ServiceProvider}.
+ * Entries of a previous index in the class output are kept, as long as their classes still exist and were not
+ * compiled again, so incremental compilation does not lose entries.
+ */
+public class ServiceIndexProcessor extends AbstractProcessor {
+
+    private static final String PRIORITY = "javax.annotation.Priority";
+
+    private final Map<String, List<ServiceIndex.Entry>> services = new HashMap<>();
+    private final Set<String> processed = new HashSet<>();
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(ServiceProvider.class.getName());
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for(Element element:roundEnv.getElementsAnnotatedWith(ServiceProvider.class)){
+            if(element.getKind()==ElementKind.CLASS && isValid((TypeElement) element)){
+                addProvider((TypeElement) element);
+            }else{
+                error(element, "@ServiceProvider requires a public, non abstract, top level or static class " +
+                        "with a public no-args constructor.");
+            }
+        }
+        if(roundEnv.processingOver() && !processed.isEmpty()){
+            writeIndex();
+        }
+        return true;
+    }
+
+    private boolean isValid(TypeElement type){
+        Set<Modifier> modifiers = type.getModifiers();
+        if(!modifiers.contains(Modifier.PUBLIC) || modifiers.contains(Modifier.ABSTRACT) ||
+                (type.getNestingKind()==NestingKind.MEMBER && !modifiers.contains(Modifier.STATIC)) ||
+                (type.getNestingKind()!=NestingKind.TOP_LEVEL && type.getNestingKind()!=NestingKind.MEMBER)){
+            return false;
+        }
+        for(ExecutableElement ctor:ElementFilter.constructorsIn(type.getEnclosedElements())){
+            if(ctor.getParameters().isEmpty() && ctor.getModifiers().contains(Modifier.PUBLIC)){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void addProvider(TypeElement type){
+        String className = processingEnv.getElementUtils().getBinaryName(type).toString();
+        processed.add(className);
+        int priority = 1;
+        List<TypeMirror> serviceTypes = new ArrayList<>();
+        for(AnnotationMirror mirror:type.getAnnotationMirrors()){
+            String name = ((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().toString();
+            Object value = annotationValue(mirror);
+            if(PRIORITY.equals(name) && value instanceof Integer){
+                priority = (Integer) value;
+            }else if(ServiceProvider.class.getName().equals(name) && value instanceof List){
+                for(Object item:(List<?>) value){
+                    serviceTypes.add((TypeMirror) ((AnnotationValue) item).getValue());
+                }
+            }
+        }
+        if(serviceTypes.isEmpty()){
+            error(type, "@ServiceProvider requires at least one service type.");
+        }
+        for(TypeMirror serviceType:serviceTypes){
+            TypeMirror erased = processingEnv.getTypeUtils().erasure(serviceType);
+            if(!processingEnv.getTypeUtils().isAssignable(processingEnv.getTypeUtils().erasure(type.asType()), erased)){
+                error(type, className + " does not implement " + serviceType);
+                continue;
+            }
+            TypeElement serviceElement = (TypeElement) processingEnv.getTypeUtils().asElement(erased);
+            String serviceName = processingEnv.getElementUtils().getBinaryName(serviceElement).toString();
+            List<ServiceIndex.Entry> entries = services.computeIfAbsent(serviceName, k -> new ArrayList<>());
+            ServiceIndex.Entry entry = new ServiceIndex.Entry(className, priority);
+            if(!entries.contains(entry)){
+                entries.add(entry);
+            }
+        }
+    }
+
+    private static Object annotationValue(AnnotationMirror mirror){
+        for(Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> en:mirror.getElementValues().entrySet()){
+            if(en.getKey().getSimpleName().contentEquals("value")){
+                return en.getValue().getValue();
+            }
+        }
+        return null;
+    }
+
+    private void writeIndex(){
+        Map<String, List<ServiceIndex.Entry>> index = new HashMap<>();
+        try {
+            FileObject previous = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "",
+                    ServiceIndex.RESOURCE);
+            try(Reader reader = previous.openReader(true)){
+                ServiceIndex.read(reader, index);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            // no previous index
+        }
+        for(List<ServiceIndex.Entry> entries:index.values()){
+            for(Iterator<ServiceIndex.Entry> it = entries.iterator();it.hasNext();){
+                String className = it.next().getClassName();
+                if(processed.contains(className) ||
+                        processingEnv.getElementUtils().getTypeElement(className.replace('$', '.'))==null){
+                    it.remove();
+                }
+            }
+        }
+        for(Map.Entry<String, List<ServiceIndex.Entry>> en:services.entrySet()){
+            index.computeIfAbsent(en.getKey(), k -> new ArrayList<>()).addAll(en.getValue());
+        }
+        index.values().removeIf(List::isEmpty);
+        try {
+            FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "",
+                    ServiceIndex.RESOURCE);
+            try(Writer writer = file.openWriter()){
+                ServiceIndex.write(index, writer);
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Cannot write " + ServiceIndex.RESOURCE + ": " + e);
+        }
+    }
+
+    private void error(Element element, String message){
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
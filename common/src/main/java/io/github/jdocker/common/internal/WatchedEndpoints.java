@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.jdocker.common.internal;
+
+import io.github.jdocker.common.Endpoint;
+import io.github.jdocker.common.ServiceDiscovery;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Endpoints of a service kept up to date by a {@link ServiceDiscovery} watch. The endpoints matching the tags are
+ * filtered once per update, so reading them is a single volatile read.
+ */
+public final class WatchedEndpoints implements ServiceDiscovery.EndpointListener, Supplier<Collection<Endpoint>>,
+        AutoCloseable {
+
+    private final Collection<String> tags;
+    private volatile List<Endpoint> endpoints = Collections.emptyList();
+    private volatile long version = -1L;
+    private volatile ServiceDiscovery.Watch watch;
+
+    private WatchedEndpoints(Collection<String> tags){
+        this.tags = tags==null?Collections.emptyList():tags;
+    }
+
+    /**
+     * Starts watching the given service.
+     * @param discovery the service discovery, not null.
+     * @param serviceName the service name, not null.
+     * @param tags the tags, all of them are required on matching endpoints, may be null.
+     * @return the watched endpoints, to be closed when not used anymore.
+     */
+    public static WatchedEndpoints watch(ServiceDiscovery discovery, String serviceName, Collection<String> tags){
+        WatchedEndpoints watched = new WatchedEndpoints(tags);
+        watched.watch = discovery.watch(serviceName, watched);
+        return watched;
+    }
+
+    @Override
+    public void endpointsChanged(String serviceName, long version, List<Endpoint> endpoints) {
+        List<Endpoint> matching = new ArrayList<>(endpoints.size());
+        for(Endpoint ep:endpoints){
+            if(ep.getTags().containsAll(tags)){
+                matching.add(ep);
+            }
+        }
+        this.endpoints = Collections.unmodifiableList(matching);
+        this.version = version;
+    }
+
+    /**
+     * Get the current endpoints matching the tags.
+     * @return the endpoints, never null.
+     */
+    @Override
+    public Collection<Endpoint> get() {
+        return endpoints;
+    }
+
+    /**
+     * Get the version of the endpoints last received.
+     * @return the version, or -1, if no endpoints were received yet.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public void close() {
+        ServiceDiscovery.Watch current = watch;
+        if(current!=null){
+            current.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "WatchedEndpoints{" +
+                "tags=" + tags +
+                ", version=" + version +
+                ", endpoints=" + endpoints +
+                '}';
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.jdocker.common.internal;
+
+import io.github.jdocker.common.Endpoint;
+import io.github.jdocker.common.EndpointStats;
+
+import java.util.Collection;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Resolution policy that selects an endpoint randomly, proportional to the weight given by its
+ * {@code weight:<n>} tag (see {@link EndpointStats#getWeight()}).
+ */
+public final class WeightedResolutionPolicy extends AbstractResolutionPolicy {
+
+    @Override
+    public Endpoint resolve(Collection<Endpoint> endpoints) {
+        int size = endpoints.size();
+        if(size==0){
+            return null;
+        }
+        long total = 0;
+        for(Endpoint ep:endpoints){
+            total += weight(ep);
+        }
+        if(total==0){
+            return getAvailable(endpoints, ThreadLocalRandom.current().nextInt(size));
+        }
+        long pos = ThreadLocalRandom.current().nextLong(total);
+        for(Endpoint ep:endpoints){
+            pos -= weight(ep);
+            if(pos<0){
+                return ep;
+            }
+        }
+        // only reached if weights changed concurrently
+        return get(endpoints, size-1);
+    }
+
+    private static int weight(Endpoint endpoint){
+        EndpointStats stats = EndpointStats.of(endpoint);
+        return stats.isEjected()?0:stats.getWeight();
+    }
+
+    @Override
+    public String toString() {
+        return "WeightedResolutionPolicy";
+    }
+}
@@ -21,15 +21,18 @@ import io.github.jdocker.common.EndpointResolutionPolicy;
 import io.github.jdocker.common.ServiceDiscovery;
 
 import java.util.Collection;
+import java.util.function.Supplier;
 
 /**
  * SPI class to allow access of services using Java typed interfaces. Register instances with the ServiceContext.
+ * Proxies should report each call through {@link io.github.jdocker.common.EndpointStats}, so latency aware
+ * resolution policies get fed.
  */
 public interface ServiceAccessorProxyFactorySpi {
 
     /**
      * Creates/returns a Java API accessor based on the registered accessor factory SPIs using the default
-     * resolution policy (mostly round robin).
+     * resolution policy (peak EWMA).
      * @param endpoints the endpoints
      * @return a Java implementation of the required type, accessing the given endpoint.
      */
@@ -48,4 +51,19 @@ public interface ServiceAccessorProxyFactorySpi {
      */
     <T> T createServiceProxy(Class<T> serviceType, String serviceName, Collection<String> tags,
                      EndpointResolutionPolicy endpointResolutionPolicy);
+
+    /**
+     * Creates a new accessor for the given service, reading the current endpoints from the supplier on each call.
+     * The endpoints supplied are kept up to date by a {@link ServiceDiscovery#watch} and are cheap to read.
+     * @param serviceType the target type to be created.
+     * @param serviceName the service name
+     * @param endpoints the supplier of the current endpoints, already filtered by the tags required.
+     * @param endpointResolutionPolicy the resolution policy
+     * @param <T> the type
+     * @return a proxy instance of the given type T, or null, if not supported by this SPI.
+     */
+    default <T> T createServiceProxy(Class<T> serviceType, String serviceName, Supplier<Collection<Endpoint>> endpoints,
+                                     EndpointResolutionPolicy endpointResolutionPolicy){
+        return null;
+    }
 }
@@ -0,0 +1,466 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.jdocker.common.vertx;
+
+import io.github.jdocker.common.CheckResult;
+import io.github.jdocker.common.Endpoint;
+import io.github.jdocker.common.HealthCheckResult;
+import io.github.jdocker.common.OwnedResult;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.eventbus.MessageCodec;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary codec for the messages exchanged between the JDocker components, such as {@link OwnedResult},
+ * {@link Endpoint}, {@link HealthCheckResult} and JSON messages like heartbeats. Values are written directly into
+ * the target buffer, using a version byte, one type tag per value, variable length integers and length prefixed
+ * UTF-8 strings. Local messages are passed by reference, so senders must not modify a message after sending it.
+ */
+public class BinaryCodec implements MessageCodec<Object, Object> {
+
+    /** The codec name, to be used with {@link DeliveryOptions#setCodecName(String)}. */
+    public static final String NAME = "jdocker-binary";
+    /** The wire format version written. */
+    public static final byte VERSION = 2;
+
+    private static final byte T_NULL = 0;
+    private static final byte T_STRING = 1;
+    private static final byte T_INT = 2;
+    private static final byte T_LONG = 3;
+    private static final byte T_DOUBLE = 4;
+    private static final byte T_TRUE = 5;
+    private static final byte T_FALSE = 6;
+    private static final byte T_JSON_OBJECT = 7;
+    private static final byte T_JSON_ARRAY = 8;
+    private static final byte T_MAP = 9;
+    private static final byte T_LIST = 10;
+    private static final byte T_BYTES = 11;
+    private static final byte T_OWNED_RESULT = 20;
+    private static final byte T_ENDPOINT = 21;
+    private static final byte T_HEALTH_CHECK_RESULT = 22;
+
+    private static final CheckResult[] CHECK_RESULTS = CheckResult.values();
+
+    /**
+     * Registers the codec, if not already registered on the given bus.
+     * @param eventBus the event bus, not null.
+     */
+    public static void register(EventBus eventBus){
+        try{
+            eventBus.registerCodec(new BinaryCodec());
+        }catch(IllegalStateException e){
+            // already registered
+        }
+    }
+
+    /**
+     * Creates delivery options using this codec.
+     * @return new delivery options, never null.
+     */
+    public static DeliveryOptions deliveryOptions(){
+        return new DeliveryOptions().setCodecName(NAME);
+    }
+
+    @Override
+    public void encodeToWire(Buffer buffer, Object o) {
+        int lengthPos = buffer.length();
+        buffer.appendInt(0);
+        buffer.appendByte(VERSION);
+        writeValue(buffer, o);
+        buffer.setInt(lengthPos, buffer.length() - lengthPos - 4);
+    }
+
+    @Override
+    public Object decodeFromWire(int pos, Buffer buffer) {
+        if(pos<0 || pos + 4>buffer.length()){
+            throw new IllegalStateException("Truncated message at position " + pos);
+        }
+        int length = buffer.getInt(pos);
+        int end = pos + 4 + length;
+        if(length<1 || end>buffer.length() || end<0){
+            throw new IllegalStateException("Invalid message length " + length + " at position " + pos);
+        }
+        Reader reader = new Reader(buffer, pos + 4, end);
+        byte version = reader.readByte();
+        if(version!=VERSION){
+            throw new IllegalStateException("Unsupported wire format version: " + version);
+        }
+        Object value = reader.readValue();
+        if(reader.pos!=end){
+            throw new IllegalStateException("Message length mismatch, " + (end - reader.pos) + " bytes left.");
+        }
+        return value;
+    }
+
+    @Override
+    public Object transform(Object o) {
+        return o;
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public byte systemCodecID() {
+        return -1;
+    }
+
+    private static void writeValue(Buffer buffer, Object o){
+        if(o==null){
+            buffer.appendByte(T_NULL);
+        }else if(o instanceof String){
+            buffer.appendByte(T_STRING);
+            writeString(buffer, (String)o);
+        }else if(o instanceof Integer || o instanceof Short || o instanceof Byte){
+            buffer.appendByte(T_INT);
+            writeVarLong(buffer, zigZag(((Number)o).intValue()));
+        }else if(o instanceof Long){
+            buffer.appendByte(T_LONG);
+            writeVarLong(buffer, zigZag((Long)o));
+        }else if(o instanceof Double || o instanceof Float){
+            buffer.appendByte(T_DOUBLE);
+            buffer.appendDouble(((Number)o).doubleValue());
+        }else if(o instanceof Boolean){
+            buffer.appendByte((Boolean)o?T_TRUE:T_FALSE);
+        }else if(o instanceof JsonObject){
+            buffer.appendByte(T_JSON_OBJECT);
+            writeMap(buffer, ((JsonObject)o).getMap());
+        }else if(o instanceof JsonArray){
+            buffer.appendByte(T_JSON_ARRAY);
+            writeCollection(buffer, ((JsonArray)o).getList());
+        }else if(o instanceof Map){
+            buffer.appendByte(T_MAP);
+            writeMap(buffer, (Map<?,?>)o);
+        }else if(o instanceof Collection){
+            buffer.appendByte(T_LIST);
+            writeCollection(buffer, (Collection<?>)o);
+        }else if(o instanceof byte[]){
+            buffer.appendByte(T_BYTES);
+            writeVarLong(buffer, ((byte[])o).length);
+            buffer.appendBytes((byte[])o);
+        }else if(o instanceof OwnedResult){
+            OwnedResult result = (OwnedResult)o;
+            buffer.appendByte(T_OWNED_RESULT);
+            writeString(buffer, result.getOwner());
+            writeString(buffer, result.getType());
+            writeVarLong(buffer, zigZag(result.getTimestamp()));
+            writeValue(buffer, result.getResult());
+        }else if(o instanceof Endpoint){
+            Endpoint endpoint = (Endpoint)o;
+            buffer.appendByte(T_ENDPOINT);
+            writeString(buffer, endpoint.getServiceName());
+            writeString(buffer, endpoint.getProtocol());
+            writeVarLong(buffer, zigZag(endpoint.getPort()));
+            writeString(buffer, endpoint.getDomain());
+            writeString(buffer, endpoint.getHost());
+            writeString(buffer, endpoint.getURI()==null?null:endpoint.getURI().toString());
+            writeCollection(buffer, endpoint.getTags());
+            buffer.appendByte(endpoint.isClosed()?T_TRUE:T_FALSE);
+        }else if(o instanceof HealthCheckResult){
+            HealthCheckResult result = (HealthCheckResult)o;
+            buffer.appendByte(T_HEALTH_CHECK_RESULT);
+            writeVarLong(buffer, zigZag(result.getTimestamp()));
+            writeString(buffer, result.getInstance());
+            writeString(buffer, result.getCheckId());
+            writeString(buffer, result.getShortDesc());
+            buffer.appendByte(result.getResult()==null?-1:(byte)result.getResult().ordinal());
+            writeString(buffer, result.getMessage());
+            writeVarLong(buffer, zigZag(result.getLatencyNanos()));
+            buffer.appendByte(result.isClosed()?T_TRUE:T_FALSE);
+        }else{
+            throw new IllegalArgumentException("Unsupported message type: " + o.getClass().getName());
+        }
+    }
+
+    private static void writeMap(Buffer buffer, Map<?,?> map){
+        writeVarLong(buffer, map.size());
+        for(Map.Entry<?,?> en:map.entrySet()){
+            writeString(buffer, String.valueOf(en.getKey()));
+            writeValue(buffer, en.getValue());
+        }
+    }
+
+    private static void writeCollection(Buffer buffer, Collection<?> values){
+        writeVarLong(buffer, values.size());
+        for(Object value:values){
+            writeValue(buffer, value);
+        }
+    }
+
+    /**
+     * Writes a string as its UTF-8 length, followed by the UTF-8 bytes, without creating an intermediate array.
+     * Null is written as length 0 followed by a zero byte, empty strings as length 0 only.
+     */
+    private static void writeString(Buffer buffer, String s){
+        if(s==null){
+            writeVarLong(buffer, 0);
+            buffer.appendByte((byte)0);
+            return;
+        }
+        int length = s.length();
+        int utf8Length = 0;
+        for(int i=0;i<length;i++){
+            char c = s.charAt(i);
+            if(c<0x80){
+                utf8Length++;
+            }else if(c<0x800){
+                utf8Length += 2;
+            }else if(Character.isHighSurrogate(c) && i+1<length && Character.isLowSurrogate(s.charAt(i+1))){
+                utf8Length += 4;
+                i++;
+            }else if(Character.isSurrogate(c)){
+                utf8Length++;
+            }else{
+                utf8Length += 3;
+            }
+        }
+        writeVarLong(buffer, utf8Length);
+        if(utf8Length==0){
+            buffer.appendByte((byte)1);
+            return;
+        }
+        for(int i=0;i<length;i++){
+            char c = s.charAt(i);
+            if(c<0x80){
+                buffer.appendByte((byte)c);
+            }else if(c<0x800){
+                buffer.appendByte((byte)(0xC0 | (c >> 6)));
+                buffer.appendByte((byte)(0x80 | (c & 0x3F)));
+            }else if(Character.isHighSurrogate(c) && i+1<length && Character.isLowSurrogate(s.charAt(i+1))){
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                buffer.appendByte((byte)(0xF0 | (cp >> 18)));
+                buffer.appendByte((byte)(0x80 | ((cp >> 12) & 0x3F)));
+                buffer.appendByte((byte)(0x80 | ((cp >> 6) & 0x3F)));
+                buffer.appendByte((byte)(0x80 | (cp & 0x3F)));
+            }else if(Character.isSurrogate(c)){
+                // unpaired surrogates are replaced, as String.getBytes does.
+                buffer.appendByte((byte)'?');
+            }else{
+                buffer.appendByte((byte)(0xE0 | (c >> 12)));
+                buffer.appendByte((byte)(0x80 | ((c >> 6) & 0x3F)));
+                buffer.appendByte((byte)(0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
+    private static long zigZag(long value){
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static void writeVarLong(Buffer buffer, long value){
+        while((value & ~0x7FL)!=0){
+            buffer.appendByte((byte)((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.appendByte((byte)value);
+    }
+
+    /**
+     * Reading cursor on a buffer, never reading beyond the end of the current message, so malformed input fails
+     * with an {@link IllegalStateException}.
+     */
+    private static final class Reader{
+        private final Buffer buffer;
+        private final int end;
+        private int pos;
+
+        Reader(Buffer buffer, int pos, int end){
+            this.buffer = buffer;
+            this.pos = pos;
+            this.end = end;
+        }
+
+        private void require(int bytes){
+            if(bytes<0 || pos + bytes>end || pos + bytes<0){
+                throw new IllegalStateException("Truncated message at position " + pos);
+            }
+        }
+
+        byte readByte(){
+            require(1);
+            return buffer.getByte(pos++);
+        }
+
+        Object readValue(){
+            byte type = readByte();
+            switch(type){
+                case T_NULL:
+                    return null;
+                case T_STRING:
+                    return readString();
+                case T_INT:
+                    return (int)unZigZag(readVarLong());
+                case T_LONG:
+                    return unZigZag(readVarLong());
+                case T_DOUBLE:
+                    require(8);
+                    double d = buffer.getDouble(pos);
+                    pos += 8;
+                    return d;
+                case T_TRUE:
+                    return Boolean.TRUE;
+                case T_FALSE:
+                    return Boolean.FALSE;
+                case T_JSON_OBJECT:
+                    return new JsonObject(readMap());
+                case T_JSON_ARRAY:
+                    return new JsonArray(readList());
+                case T_MAP:
+                    return readMap();
+                case T_LIST:
+                    return readList();
+                case T_BYTES:
+                    int length = readSize();
+                    byte[] bytes = buffer.getBytes(pos, pos + length);
+                    pos += length;
+                    return bytes;
+                case T_OWNED_RESULT:
+                    return readOwnedResult();
+                case T_ENDPOINT:
+                    return readEndpoint();
+                case T_HEALTH_CHECK_RESULT:
+                    return readHealthCheckResult();
+                default:
+                    throw new IllegalStateException("Unknown type tag " + type + " at position " + (pos - 1));
+            }
+        }
+
+        private OwnedResult readOwnedResult(){
+            String owner = readString();
+            String type = readString();
+            long timestamp = unZigZag(readVarLong());
+            return new OwnedResult(owner, type, readValue(), timestamp);
+        }
+
+        private Endpoint readEndpoint(){
+            String serviceName = readString();
+            String protocol = readString();
+            int port = (int)unZigZag(readVarLong());
+            String domain = readString();
+            String host = readString();
+            String uri = readString();
+            List<String> tags = readTags();
+            boolean closed = readByte()==T_TRUE;
+            Endpoint endpoint = uri==null?new Endpoint(serviceName, tags):
+                    new Endpoint(serviceName, URI.create(uri), tags);
+            endpoint.setProtocol(protocol).setPort(port).setDomain(domain).setHost(host);
+            if(closed){
+                endpoint.close();
+            }
+            return endpoint;
+        }
+
+        private List<String> readTags(){
+            int size = readSize();
+            List<String> tags = new ArrayList<>(size);
+            for(int i=0;i<size;i++){
+                tags.add(String.valueOf(readValue()));
+            }
+            return tags;
+        }
+
+        private HealthCheckResult readHealthCheckResult(){
+            HealthCheckResult result = new HealthCheckResult().setTimestamp(unZigZag(readVarLong()))
+                    .setInstance(readString()).setCheckId(readString()).setShortDesc(readString());
+            byte ordinal = readByte();
+            if(ordinal>=CHECK_RESULTS.length){
+                throw new IllegalStateException("Unknown check result " + ordinal + " at position " + (pos - 1));
+            }
+            result.setResult(ordinal<0?null:CHECK_RESULTS[ordinal]).setMessage(readString())
+                    .setLatencyNanos(unZigZag(readVarLong()));
+            if(readByte()==T_TRUE){
+                result.close();
+            }
+            return result;
+        }
+
+        private Map<String,Object> readMap(){
+            int size = readSize();
+            Map<String,Object> map = new HashMap<>(Math.max(4, size * 4 / 3 + 1));
+            for(int i=0;i<size;i++){
+                String key = readString();
+                map.put(key, readValue());
+            }
+            return map;
+        }
+
+        private List<Object> readList(){
+            int size = readSize();
+            List<Object> list = new ArrayList<>(size);
+            for(int i=0;i<size;i++){
+                list.add(readValue());
+            }
+            return list;
+        }
+
+        private String readString(){
+            int length = readSize();
+            if(length==0){
+                // marker byte: 0 for null, 1 for the empty string.
+                return readByte()==0?null:"";
+            }
+            String s = buffer.getString(pos, pos + length, "UTF-8");
+            pos += length;
+            return s;
+        }
+
+        private long readVarLong(){
+            long value = 0L;
+            int shift = 0;
+            byte b;
+            do{
+                if(shift>=64){
+                    throw new IllegalStateException("Malformed variable length integer at position " + pos);
+                }
+                b = readByte();
+                value |= (long)(b & 0x7F) << shift;
+                shift += 7;
+            }while((b & 0x80)!=0);
+            return value;
+        }
+
+        /**
+         * Reads a length or element count, which cannot exceed the remaining bytes, as every element takes at
+         * least one byte.
+         */
+        private int readSize(){
+            long size = readVarLong();
+            if(size<0 || size>end - pos){
+                throw new IllegalStateException("Invalid size " + size + " at position " + pos);
+            }
+            return (int)size;
+        }
+
+        private static long unZigZag(long value){
+            return (value >>> 1) ^ -(value & 1);
+        }
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.jdocker.common.vertx;
+
+import io.github.jdocker.common.Endpoint;
+import io.github.jdocker.common.EndpointResolutionPolicy;
+import io.github.jdocker.common.EndpointStats;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.Message;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Sends the method calls of a service proxy over the event bus to the endpoint selected by the resolution policy.
+ * Endpoints use the {@code eventbus} protocol, the host being the address, e.g. {@code eventbus://billing.1}.
+ * The method signature is sent in the {@link #METHOD_HEADER} header, the arguments as list using the
+ * {@link BinaryCodec}. Methods returning {@code void} are sent without waiting for a reply, methods returning a
+ * {@link CompletionStage} or {@link CompletableFuture} complete asynchronously; all other methods wait for the
+ * reply, which is not allowed on an event loop thread. See {@link EventBusServiceExporter} for the receiving side.
+ */
+public final class EventBusInvoker {
+
+    /** The protocol of endpoints reachable over the event bus. */
+    public static final String PROTOCOL = "eventbus";
+    /** Header carrying the method signature. */
+    public static final String METHOD_HEADER = "method";
+    /** Default reply timeout in milliseconds. */
+    public static final long DEFAULT_TIMEOUT = 30000L;
+
+    private static final int KIND_VOID = 0;
+    private static final int KIND_ASYNC = 1;
+    private static final int KIND_SYNC = 2;
+
+    private final Vertx vertx;
+    private final String serviceName;
+    private final Supplier<Collection<Endpoint>> endpoints;
+    private final EndpointResolutionPolicy policy;
+    private final long timeout;
+    private final DeliveryOptions[] options;
+    private final int[] kinds;
+    private final Object[] defaults;
+
+    /**
+     * Creates a new invoker.
+     * @param vertx the vertx instance, not null.
+     * @param serviceName the service name, used for error messages.
+     * @param methods the methods, indexed as used by the proxy.
+     * @param endpoints the supplier of the current endpoints, not null.
+     * @param policy the resolution policy, not null.
+     * @param timeout the reply timeout in milliseconds.
+     */
+    public EventBusInvoker(Vertx vertx, String serviceName, Method[] methods, Supplier<Collection<Endpoint>> endpoints,
+                           EndpointResolutionPolicy policy, long timeout){
+        this.vertx = vertx;
+        this.serviceName = serviceName;
+        this.endpoints = endpoints;
+        this.policy = policy;
+        this.timeout = timeout;
+        this.options = new DeliveryOptions[methods.length];
+        this.kinds = new int[methods.length];
+        this.defaults = new Object[methods.length];
+        BinaryCodec.register(vertx.eventBus());
+        for(int i=0;i<methods.length;i++){
+            Class<?> returnType = methods[i].getReturnType();
+            options[i] = BinaryCodec.deliveryOptions().setSendTimeout(timeout)
+                    .addHeader(METHOD_HEADER, signature(methods[i]));
+            if(returnType==void.class){
+                kinds[i] = KIND_VOID;
+            }else if(returnType==CompletionStage.class || returnType==CompletableFuture.class){
+                kinds[i] = KIND_ASYNC;
+            }else{
+                kinds[i] = KIND_SYNC;
+            }
+            defaults[i] = defaultValue(returnType);
+        }
+    }
+
+    /**
+     * Get the signature of a method as sent in the {@link #METHOD_HEADER}.
+     * @param method the method, not null.
+     * @return the signature, e.g. {@code charge(java.lang.String,long)}.
+     */
+    public static String signature(Method method){
+        StringBuilder b = new StringBuilder(method.getName()).append('(');
+        Class<?>[] types = method.getParameterTypes();
+        for(int i=0;i<types.length;i++){
+            if(i>0){
+                b.append(',');
+            }
+            b.append(types[i].getName());
+        }
+        return b.append(')').toString();
+    }
+
+    private static Object defaultValue(Class<?> type){
+        if(type==boolean.class){
+            return Boolean.FALSE;
+        }else if(type==char.class){
+            return (char) 0;
+        }else if(type==byte.class){
+            return (byte) 0;
+        }else if(type==short.class){
+            return (short) 0;
+        }else if(type==int.class){
+            return 0;
+        }else if(type==long.class){
+            return 0L;
+        }else if(type==float.class){
+            return 0f;
+        }else if(type==double.class){
+            return 0d;
+        }
+        return null;
+    }
+
+    /**
+     * Invokes a method, called by the generated proxies.
+     * @param method the method index.
+     * @param args the arguments, null for methods without parameters.
+     * @return the result, a {@link CompletableFuture} for asynchronous methods.
+     * @throws IllegalStateException if no endpoint is available, or the call failed.
+     */
+    public Object invoke(int method, Object[] args){
+        Endpoint endpoint = policy.resolve(endpoints.get());
+        if(endpoint==null){
+            throw new IllegalStateException("No endpoint available for service " + serviceName);
+        }
+        if(!PROTOCOL.equals(endpoint.getProtocol())){
+            throw new IllegalStateException("Not an event bus endpoint: " + endpoint.getInstanceKey());
+        }
+        List<Object> body = args==null?Collections.emptyList():Arrays.asList(args);
+        if(kinds[method]==KIND_VOID){
+            // no reply, so neither latency nor failures to record
+            vertx.eventBus().send(endpoint.getHost(), body, options[method]);
+            return null;
+        }
+        if(kinds[method]==KIND_SYNC && Context.isOnEventLoopThread()){
+            throw new IllegalStateException("Blocking call of service " + serviceName + " on an event loop thread, " +
+                    "return a CompletionStage instead.");
+        }
+        EndpointStats stats = EndpointStats.of(endpoint);
+        long start = stats.start();
+        CompletableFuture<Object> result = new CompletableFuture<>();
+        vertx.eventBus().send(endpoint.getHost(), body, options[method], (Handler<AsyncResult<Message<Object>>>) reply -> {
+            stats.complete(start, reply.succeeded());
+            if(reply.succeeded()){
+                result.complete(reply.result().body());
+            }else{
+                result.completeExceptionally(reply.cause());
+            }
+        });
+        if(kinds[method]==KIND_ASYNC){
+            return result;
+        }
+        try {
+            Object value = result.get(timeout + 1000L, TimeUnit.MILLISECONDS);
+            return value==null?defaults[method]:value;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted calling service " + serviceName, e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new IllegalStateException("Failed to call service " + serviceName, e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "EventBusInvoker{" +
+                "serviceName='" + serviceName + '\'' +
+                ", policy=" + policy +
+                ", timeout=" + timeout +
+                '}';
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.jdocker.common.vertx;
+
+import io.github.jdocker.common.Endpoint;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.eventbus.MessageConsumer;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.URISyntaxException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Exports a service implementation on the event bus, so it can be called by proxies using an {@link EventBusInvoker}.
+ * The methods are looked up once when exporting, the replies use the {@link BinaryCodec}.
+ */
+public final class EventBusServiceExporter {
+
+    private static final Logger LOG = Logger.getLogger(EventBusServiceExporter.class.getName());
+
+    private EventBusServiceExporter(){}
+
+    /**
+     * Exports the given service.
+     * @param vertx the vertx instance, not null.
+     * @param address the address to listen on, not null.
+     * @param serviceType the service interface, not null.
+     * @param service the implementation, not null.
+     * @param <T> the service type.
+     * @return the consumer registered, unregister it to stop exporting.
+     */
+    public static <T> MessageConsumer<List<Object>> export(Vertx vertx, String address, Class<T> serviceType, T service){
+        BinaryCodec.register(vertx.eventBus());
+        Map<String, Method> methods = new HashMap<>();
+        for(Method m:serviceType.getMethods()){
+            if(!Modifier.isStatic(m.getModifiers())){
+                methods.putIfAbsent(EventBusInvoker.signature(m), m);
+            }
+        }
+        DeliveryOptions replyOptions = BinaryCodec.deliveryOptions();
+        return vertx.eventBus().consumer(address, (Message<List<Object>> msg) -> {
+            String signature = msg.headers().get(EventBusInvoker.METHOD_HEADER);
+            Method method = signature==null?null:methods.get(signature);
+            if(method==null){
+                msg.fail(404, "No such method on " + serviceType.getName() + ": " + signature);
+                return;
+            }
+            Object result;
+            try {
+                List<Object> args = msg.body();
+                result = method.invoke(service, args==null?null:args.toArray());
+            } catch (InvocationTargetException e) {
+                LOG.log(Level.FINE, "Call of " + signature + " failed.", e.getCause());
+                msg.fail(500, String.valueOf(e.getCause()));
+                return;
+            } catch (IllegalAccessException | IllegalArgumentException e) {
+                msg.fail(400, String.valueOf(e));
+                return;
+            }
+            if(result instanceof CompletionStage){
+                ((CompletionStage<?>) result).whenComplete((value, error) -> {
+                    if(error!=null){
+                        msg.fail(500, String.valueOf(error));
+                    }else{
+                        msg.reply(value, replyOptions);
+                    }
+                });
+            }else{
+                msg.reply(result, replyOptions);
+            }
+        });
+    }
+
+    /**
+     * Creates the endpoint to register for a service exported on the given address.
+     * @param serviceName the service name, not null.
+     * @param address the event bus address, not null.
+     * @return the endpoint, never null.
+     * @throws IllegalArgumentException if the address is not a valid host name.
+     */
+    public static Endpoint endpoint(String serviceName, String address){
+        try {
+            return new Endpoint(serviceName, EventBusInvoker.PROTOCOL, -1, address, null, null, Collections.emptyList());
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException("Invalid event bus address: " + address, e);
+        }
+    }
+}
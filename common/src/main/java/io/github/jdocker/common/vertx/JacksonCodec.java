@@ -31,7 +31,9 @@ import java.util.IllegalFormatException;
 
 /**
  * Created by atsticks on 02.02.16.
+ * @deprecated builds intermediate strings and ignores the decoding position, use {@link BinaryCodec} instead.
  */
+@Deprecated
 public class JacksonCodec implements MessageCodec {
 
     private ObjectMapper mapper = new ObjectMapper();
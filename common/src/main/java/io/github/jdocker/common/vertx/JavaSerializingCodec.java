@@ -28,7 +28,9 @@ import java.io.ObjectOutputStream;
 
 /**
  * Codec that uses Java serialization for remoting and simply forwards references for local messages.
+ * @deprecated Java serialization is slow and fragile across versions, use {@link BinaryCodec} instead.
  */
+@Deprecated
 public class JavaSerializingCodec implements MessageCodec {
     @Override
     public void encodeToWire(Buffer buffer, Object o) {
@@ -0,0 +1,212 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.jdocker.common;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the call statistics kept by {@link EndpointStats}.
+ */
+public class EndpointStatsTest {
+
+    private static final AtomicInteger PORTS = new AtomicInteger(20000);
+
+    private final List<Endpoint> created = new ArrayList<>();
+
+    /**
+     * Creates an endpoint with a unique instance key, as the statistics are shared by all tests.
+     */
+    private Endpoint endpoint(String... tags){
+        Endpoint endpoint = new Endpoint("stats", URI.create("http://10.0.0.1:" + PORTS.incrementAndGet()),
+                Arrays.asList(tags));
+        created.add(endpoint);
+        return endpoint;
+    }
+
+    @After
+    public void tearDown() {
+        for(Endpoint endpoint:created){
+            EndpointStats.remove(endpoint);
+        }
+    }
+
+    @Test
+    public void testSameInstanceKeySharesStats() {
+        Endpoint endpoint = endpoint();
+        Endpoint sameInstance = new Endpoint("stats", endpoint.getURI(), Collections.emptyList());
+        assertSame(EndpointStats.of(endpoint), EndpointStats.of(sameInstance));
+        assertNotSame(EndpointStats.of(endpoint), EndpointStats.of(endpoint()));
+    }
+
+    @Test
+    public void testRemove() {
+        Endpoint endpoint = endpoint();
+        EndpointStats stats = EndpointStats.of(endpoint);
+        stats.complete(stats.start());
+        assertFalse(stats.isRemoved());
+        EndpointStats.remove(endpoint);
+        assertTrue(stats.isRemoved());
+        EndpointStats fresh = EndpointStats.of(endpoint);
+        assertNotSame(stats, fresh);
+        assertEquals(0L, fresh.getCalls());
+        assertFalse(fresh.isRemoved());
+    }
+
+    @Test
+    public void testWeight() {
+        assertEquals(EndpointStats.DEFAULT_WEIGHT, EndpointStats.of(endpoint()).getWeight());
+        assertEquals(25, EndpointStats.of(endpoint("zone:a", "weight:25")).getWeight());
+        assertEquals(0, EndpointStats.of(endpoint("weight:-3")).getWeight());
+        assertEquals(EndpointStats.DEFAULT_WEIGHT, EndpointStats.of(endpoint("weight:heavy")).getWeight());
+    }
+
+    @Test
+    public void testInFlightAndCalls() {
+        EndpointStats stats = EndpointStats.of(endpoint());
+        long first = stats.start();
+        long second = stats.start();
+        assertEquals(2, stats.getInFlight());
+        stats.complete(first);
+        stats.complete(second, false);
+        assertEquals(0, stats.getInFlight());
+        assertEquals(2L, stats.getCalls());
+        assertEquals(1L, stats.getFailures());
+        assertEquals(1, stats.getConsecutiveFailures());
+        stats.complete(stats.start());
+        assertEquals(0, stats.getConsecutiveFailures());
+    }
+
+    @Test
+    public void testNewEndpointUsesDefaultLatency() {
+        EndpointStats stats = EndpointStats.of(endpoint());
+        assertEquals(EndpointStats.DEFAULT_LATENCY_NANOS, stats.getLatencyNanos(), 0.0d);
+        assertEquals(EndpointStats.DEFAULT_LATENCY_NANOS, stats.getCost(), 0.0d);
+    }
+
+    @Test
+    public void testSlowCallRaisesLatencyAtOnce() {
+        EndpointStats stats = EndpointStats.of(endpoint());
+        long slow = 50_000_000L;
+        stats.complete(System.nanoTime() - slow);
+        assertTrue(stats.getLatencyNanos() >= slow);
+    }
+
+    @Test
+    public void testFastCallsDecayLatencyGradually() {
+        EndpointStats stats = EndpointStats.of(endpoint());
+        stats.complete(System.nanoTime() - 50_000_000L);
+        double peak = stats.getLatencyNanos();
+        stats.complete(stats.start());
+        double decayed = stats.getLatencyNanos();
+        assertTrue(decayed <= peak);
+        // calls in quick succession barely move the average within the decay time
+        assertTrue(decayed > peak / 2);
+    }
+
+    /**
+     * Fails calls at the given time, until the endpoint is ejected.
+     */
+    private static int failUntilEjected(EndpointStats stats, long now){
+        int failed = 0;
+        while(!stats.isEjected(now)){
+            stats.start();
+            stats.complete(now, false, now);
+            failed++;
+        }
+        return failed;
+    }
+
+    @Test
+    public void testConsecutiveFailuresEject() {
+        EndpointStats stats = EndpointStats.of(endpoint());
+        long now = System.nanoTime();
+        for(int i=1;i<EndpointStats.EJECTION_THRESHOLD;i++){
+            stats.start();
+            stats.complete(now, false, now);
+            assertFalse(stats.isEjected(now));
+        }
+        // a success in between resets the count
+        stats.start();
+        stats.complete(now, true, now);
+        assertEquals(0, stats.getConsecutiveFailures());
+        assertEquals(EndpointStats.EJECTION_THRESHOLD, failUntilEjected(stats, now));
+    }
+
+    @Test
+    public void testEjectionExpiresAndDoubles() {
+        EndpointStats stats = EndpointStats.of(endpoint());
+        long now = System.nanoTime();
+        failUntilEjected(stats, now);
+        long base = EndpointStats.BASE_EJECTION_NANOS;
+        assertTrue(stats.isEjected(now + base - 1));
+        // re-admitted after the ejection time
+        now += base;
+        assertFalse(stats.isEjected(now));
+        // a single failure ejects again, for twice the time
+        assertEquals(1, failUntilEjected(stats, now));
+        assertTrue(stats.isEjected(now + 2 * base - 1));
+        now += 2 * base;
+        assertFalse(stats.isEjected(now));
+        // a success resets both the failures and the ejection time
+        stats.start();
+        stats.complete(now, true, now);
+        assertEquals(EndpointStats.EJECTION_THRESHOLD, failUntilEjected(stats, now));
+        assertFalse(stats.isEjected(now + base));
+    }
+
+    @Test
+    public void testEjectionTimeIsBounded() {
+        EndpointStats stats = EndpointStats.of(endpoint());
+        long now = System.nanoTime();
+        for(int i=0;i<10;i++){
+            failUntilEjected(stats, now);
+            now += EndpointStats.MAX_EJECTION_NANOS;
+            assertFalse(stats.isEjected(now));
+        }
+    }
+
+    @Test
+    public void testUnhealthyEjectsUntilHealthy() {
+        EndpointStats stats = EndpointStats.of(endpoint());
+        stats.setHealthy(false);
+        assertTrue(stats.isEjected());
+        assertTrue(stats.isEjected(System.nanoTime() + EndpointStats.MAX_EJECTION_NANOS));
+        stats.setHealthy(true);
+        assertFalse(stats.isEjected());
+    }
+
+    @Test
+    public void testCostGrowsWithInFlight() {
+        EndpointStats stats = EndpointStats.of(endpoint());
+        double idle = stats.getCost();
+        long start = stats.start();
+        assertEquals(2 * idle, stats.getCost(), 1.0d);
+        stats.complete(start);
+    }
+}
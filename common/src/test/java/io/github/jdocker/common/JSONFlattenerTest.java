@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.jdocker.common;
+
+import org.apache.tamaya.ConfigException;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the keys and values created by the {@link JSONFlattener}.
+ */
+public class JSONFlattenerTest {
+
+    private final JSONFlattener flattener = new JSONFlattener();
+
+    private static InputStream stream(String json){
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Map<String, String> flatten(String json){
+        return flattener.flatten(stream(json));
+    }
+
+    @Test
+    public void testNestedObjects() {
+        Map<String, String> values = flatten("{\"a\":{\"b\":{\"c\":\"x\"},\"d\":\"y\"},\"e\":\"z\"}");
+        assertEquals(3, values.size());
+        assertEquals("x", values.get("a.b.c"));
+        assertEquals("y", values.get("a.d"));
+        assertEquals("z", values.get("e"));
+    }
+
+    @Test
+    public void testArrays() {
+        Map<String, String> values = flatten("{\"a\":{\"b\":[1,{\"c\":true},[2,3]],\"d\":\"after\"}}");
+        assertEquals(5, values.size());
+        assertEquals("1", values.get("a.b[0]"));
+        assertEquals("true", values.get("a.b[1].c"));
+        assertEquals("2", values.get("a.b[2][0]"));
+        assertEquals("3", values.get("a.b[2][1]"));
+        assertEquals("after", values.get("a.d"));
+    }
+
+    @Test
+    public void testArrayOfObjects() {
+        Map<String, String> values = flatten("{\"hosts\":[{\"name\":\"a\",\"port\":80},{\"name\":\"b\"}]}");
+        assertEquals("a", values.get("hosts[0].name"));
+        assertEquals("80", values.get("hosts[0].port"));
+        assertEquals("b", values.get("hosts[1].name"));
+        assertEquals(3, values.size());
+    }
+
+    @Test
+    public void testValueTypes() {
+        Map<String, String> values = flatten("{\"s\":\"text\",\"i\":-42,\"d\":2.50,\"t\":true,\"f\":false,\"n\":null}");
+        assertEquals("text", values.get("s"));
+        assertEquals("-42", values.get("i"));
+        assertEquals("2.50", values.get("d"));
+        assertEquals("true", values.get("t"));
+        assertEquals("false", values.get("f"));
+        assertTrue(values.containsKey("n"));
+        assertNull(values.get("n"));
+    }
+
+    @Test
+    public void testEmptyStructures() {
+        Map<String, String> values = flatten("{\"o\":{},\"a\":[],\"v\":\"1\"}");
+        assertEquals(1, values.size());
+        assertEquals("1", values.get("v"));
+        assertTrue(flatten("{}").isEmpty());
+    }
+
+    @Test
+    public void testDeepNesting() {
+        StringBuilder json = new StringBuilder("{");
+        StringBuilder key = new StringBuilder();
+        for(int i=0;i<40;i++){
+            json.append("\"k").append(i).append("\":{");
+            key.append(i==0?"":".").append('k').append(i);
+        }
+        json.append("\"leaf\":[0,[1]]");
+        for(int i=0;i<40;i++){
+            json.append('}');
+        }
+        json.append('}');
+        Map<String, String> values = flatten(json.toString());
+        assertEquals(2, values.size());
+        assertEquals("0", values.get(key + ".leaf[0]"));
+        assertEquals("1", values.get(key + ".leaf[1][0]"));
+    }
+
+    @Test
+    public void testKeysAreReused() {
+        String json = "{\"a\":{\"b\":[1,2]}}";
+        Map<String, String> first = flatten(json);
+        Map<String, String> second = flatten(json);
+        for(String key:first.keySet()){
+            for(String other:second.keySet()){
+                if(key.equals(other)){
+                    assertSame(key, other);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testConsumerSeesDocumentOrder() {
+        StringBuilder keys = new StringBuilder();
+        flattener.flatten(stream("{\"b\":1,\"a\":[2,3],\"c\":{\"d\":4}}"),
+                (key, value) -> keys.append(key).append('=').append(value).append(';'));
+        assertEquals("b=1;a[0]=2;a[1]=3;c.d=4;", keys.toString());
+    }
+
+    @Test
+    public void testReader() {
+        Map<String, String> values = new HashMap<>();
+        flattener.flatten(new StringReader("{\"a\":{\"b\":\"c\"}}"), values::put);
+        assertEquals("c", values.get("a.b"));
+    }
+
+    @Test
+    public void testJSONMapperDelegates() {
+        assertEquals("c", new JSONMapper().readJsonData(stream("{\"a\":{\"b\":\"c\"}}")).get("a.b"));
+    }
+
+    @Test(expected = ConfigException.class)
+    public void testRootArrayIsRejected() {
+        flatten("[1,2]");
+    }
+
+    @Test(expected = ConfigException.class)
+    public void testMalformedDocumentIsRejected() {
+        flatten("{\"a\":{\"b\":");
+    }
+}
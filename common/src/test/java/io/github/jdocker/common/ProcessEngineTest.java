@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.jdocker.common;
+
+import io.vertx.core.Vertx;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests running processes with the {@link ProcessEngine}.
+ */
+public class ProcessEngineTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ProcessEngine engine = new ProcessEngine(ProcessEngine.DEFAULT_MAX_OUTPUT_CHARS);
+
+    @After
+    public void tearDown() {
+        engine.shutdown();
+    }
+
+    /**
+     * Writes the given shell script and returns the command running it, as commands are split at whitespace only.
+     */
+    private String script(String script) throws IOException {
+        File file = folder.newFile("script" + System.nanoTime() + ".sh");
+        Files.write(file.toPath(), script.getBytes(StandardCharsets.UTF_8));
+        return "sh " + file.getAbsolutePath();
+    }
+
+    private static ProcessResult get(CompletableFuture<ProcessResult> result) throws Exception {
+        return result.get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testSuccess() throws Exception {
+        ProcessResult result = get(engine.execute(script("printf out\necho err >&2\n")));
+        assertEquals(0, result.getExitCode());
+        assertTrue(result.isSuccess());
+        assertFalse(result.isTimedOut());
+        assertFalse(result.isTruncated());
+        assertEquals("out", result.getOutput());
+        assertEquals("err\n", result.getError());
+        assertEquals("out\nerr", result.getCombinedOutput());
+    }
+
+    @Test
+    public void testNonZeroExit() throws Exception {
+        ProcessResult result = get(engine.execute(script("echo failed >&2\nexit 3\n")));
+        assertEquals(3, result.getExitCode());
+        assertFalse(result.isSuccess());
+        assertFalse(result.isTimedOut());
+        assertEquals("failed", result.getCombinedOutput());
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        long start = System.currentTimeMillis();
+        ProcessResult result = get(engine.execute("sleep 30", 200, TimeUnit.MILLISECONDS));
+        assertTrue(result.isTimedOut());
+        assertFalse(result.isSuccess());
+        assertTrue(System.currentTimeMillis() - start < 10_000L);
+    }
+
+    @Test
+    public void testNotStarted() throws Exception {
+        ProcessResult result = get(engine.execute("/does/not/exist --help"));
+        assertEquals(ProcessResult.EXIT_NOT_STARTED, result.getExitCode());
+        assertFalse(result.isSuccess());
+        assertTrue(result.getError(), result.getError().startsWith("ERROR: /does/not/exist --help"));
+        assertEquals(ProcessResult.EXIT_NOT_STARTED, get(engine.execute(" ")).getExitCode());
+    }
+
+    @Test
+    public void testLargeOutputOnBothStreams() throws Exception {
+        // far more than a pipe buffer on both streams, the child blocks unless both are drained concurrently.
+        ProcessResult result = get(engine.execute(script(
+                "head -c 500000 /dev/zero | tr '\\0' e >&2\nhead -c 500000 /dev/zero | tr '\\0' o\n")));
+        assertTrue(result.isSuccess());
+        assertEquals(500000, result.getOutput().length());
+        assertEquals(500000, result.getError().length());
+    }
+
+    @Test
+    public void testTruncated() throws Exception {
+        engine.shutdown();
+        engine = new ProcessEngine(10);
+        ProcessResult result = get(engine.execute(script("head -c 100000 /dev/zero | tr '\\0' o\n")));
+        assertTrue(result.isSuccess());
+        assertTrue(result.isTruncated());
+        assertEquals("oooooooooo", result.getOutput());
+    }
+
+    @Test
+    public void testLineHandler() throws Exception {
+        List<String> lines = new CopyOnWriteArrayList<>();
+        ProcessResult result = get(engine.stream(script("printf 'first\\nsecond\\r\\n\\nlast'\n"),
+                ProcessEngine.NO_TIMEOUT, TimeUnit.MILLISECONDS, line -> {
+                    lines.add(line);
+                    if(line.equals("first")){
+                        throw new IllegalStateException("Failing handler.");
+                    }
+                }));
+        assertTrue(result.isSuccess());
+        assertEquals("", result.getOutput());
+        assertEquals("[first, second, , last]", lines.toString());
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        CompletableFuture<ProcessResult> result = engine.execute("sleep 30");
+        assertTrue(result.cancel(true));
+        assertTrue(result.isCancelled());
+    }
+
+    @Test
+    public void testBlockingExecuteOnEventLoop() throws Exception {
+        Vertx vertx = Vertx.vertx();
+        try {
+            CompletableFuture<Throwable> failure = new CompletableFuture<>();
+            vertx.runOnContext(v -> {
+                try {
+                    Executor.execute("true");
+                    failure.complete(null);
+                } catch (RuntimeException e) {
+                    failure.complete(e);
+                }
+            });
+            assertTrue(failure.get(10, TimeUnit.SECONDS) instanceof IllegalStateException);
+            assertEquals("ok", Executor.executeAsync(script("echo ok\n")).toCompletableFuture()
+                    .get(10, TimeUnit.SECONDS));
+        } finally {
+            vertx.close();
+        }
+    }
+}
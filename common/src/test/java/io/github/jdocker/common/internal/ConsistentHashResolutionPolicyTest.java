@@ -0,0 +1,235 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.jdocker.common.internal;
+
+import io.github.jdocker.common.Endpoint;
+import io.github.jdocker.common.EndpointStats;
+import org.junit.After;
+import org.junit.Test;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link ConsistentHashResolutionPolicy}.
+ */
+public class ConsistentHashResolutionPolicyTest {
+
+    private static final int KEYS = 2000;
+
+    private final ConsistentHashResolutionPolicy policy = new ConsistentHashResolutionPolicy();
+    private final List<Endpoint> created = new ArrayList<>();
+
+    private List<Endpoint> endpoints(String serviceName, int count){
+        List<Endpoint> endpoints = new ArrayList<>();
+        for(int i=0;i<count;i++){
+            endpoints.add(endpoint(serviceName, i));
+        }
+        return endpoints;
+    }
+
+    private Endpoint endpoint(String serviceName, int index){
+        Endpoint endpoint = new Endpoint(serviceName, URI.create("http://" + serviceName + ".host" + index + ":8080"),
+                Collections.emptyList());
+        created.add(endpoint);
+        return endpoint;
+    }
+
+    @After
+    public void tearDown() {
+        for(Endpoint endpoint:created){
+            EndpointStats.remove(endpoint);
+        }
+    }
+
+    private Map<String, String> assign(List<Endpoint> endpoints){
+        Map<String, String> assignment = new HashMap<>();
+        for(int i=0;i<KEYS;i++){
+            assignment.put("key" + i, policy.resolve(endpoints, "key" + i).getInstanceKey());
+        }
+        return assignment;
+    }
+
+    @Test
+    public void testEmptyAndSingle() {
+        assertNull(policy.resolve(Collections.emptyList(), "a"));
+        List<Endpoint> single = endpoints("single", 1);
+        assertSame(single.get(0), policy.resolve(single, "a"));
+    }
+
+    @Test
+    public void testSameKeySameEndpoint() {
+        List<Endpoint> endpoints = endpoints("stable", 5);
+        Map<String, String> first = assign(endpoints);
+        List<Endpoint> reordered = new ArrayList<>(endpoints);
+        Collections.reverse(reordered);
+        assertEquals(first, assign(reordered));
+        assertEquals(5, new HashSet<>(first.values()).size());
+    }
+
+    @Test
+    public void testAddingEndpointMovesFewKeys() {
+        List<Endpoint> endpoints = endpoints("grow", 4);
+        Map<String, String> before = assign(endpoints);
+        endpoints.add(endpoint("grow", 4));
+        Map<String, String> after = assign(endpoints);
+        int moved = 0;
+        for(Map.Entry<String, String> en:before.entrySet()){
+            if(!en.getValue().equals(after.get(en.getKey()))){
+                moved++;
+                // keys only move to the new endpoint
+                assertEquals(endpoints.get(4).getInstanceKey(), after.get(en.getKey()));
+            }
+        }
+        // about a fifth of the keys move, but never most of them
+        assertTrue("Moved: " + moved, moved > KEYS / 10 && moved < KEYS / 3);
+    }
+
+    @Test
+    public void testRemovingEndpointOnlyMovesItsKeys() {
+        List<Endpoint> endpoints = endpoints("shrink", 5);
+        Map<String, String> before = assign(endpoints);
+        Endpoint removed = endpoints.remove(2);
+        Map<String, String> after = assign(endpoints);
+        for(Map.Entry<String, String> en:before.entrySet()){
+            if(!en.getValue().equals(removed.getInstanceKey())){
+                assertEquals(en.getValue(), after.get(en.getKey()));
+            }
+        }
+    }
+
+    @Test
+    public void testRingIsReusedForEqualEndpointSets() {
+        List<Endpoint> endpoints = endpoints("reuse", 3);
+        ConsistentHashResolutionPolicy.Ring ring = policy.getRing(endpoints);
+        List<Endpoint> copy = new ArrayList<>(endpoints);
+        Collections.reverse(copy);
+        assertSame(ring, policy.getRing(copy));
+    }
+
+    @Test
+    public void testSubsetsDoNotReplaceEachOther() {
+        List<Endpoint> all = endpoints("subsets", 4);
+        List<Endpoint> subset = new ArrayList<>(all.subList(0, 2));
+        ConsistentHashResolutionPolicy.Ring allRing = policy.getRing(all);
+        ConsistentHashResolutionPolicy.Ring subsetRing = policy.getRing(subset);
+        assertNotSame(allRing, subsetRing);
+        assertSame(allRing, policy.getRing(all));
+        assertSame(subsetRing, policy.getRing(subset));
+        assertEquals(2, subsetRing.memberStats.length);
+    }
+
+    @Test
+    public void testSameInstancesOfOtherServiceGetOwnRing() {
+        List<Endpoint> first = endpoints("first", 2);
+        List<Endpoint> second = new ArrayList<>();
+        for(Endpoint ep:first){
+            second.add(new Endpoint("second", ep.getURI(), Collections.emptyList()));
+        }
+        assertNotSame(policy.getRing(first), policy.getRing(second));
+        assertEquals("second", policy.getRing(second).owners[0].getServiceName());
+    }
+
+    @Test
+    public void testRingIsRebuiltAfterStatsWereRemoved() {
+        List<Endpoint> endpoints = endpoints("removed", 3);
+        ConsistentHashResolutionPolicy.Ring ring = policy.getRing(endpoints);
+        EndpointStats.remove(endpoints.get(1));
+        ConsistentHashResolutionPolicy.Ring rebuilt = policy.getRing(endpoints);
+        assertNotSame(ring, rebuilt);
+        for(EndpointStats stats:rebuilt.stats){
+            assertFalse(stats.isRemoved());
+        }
+    }
+
+    @Test
+    public void testBoundedLoad() {
+        List<Endpoint> endpoints = endpoints("bounded", 4);
+        Endpoint preferred = policy.resolve(endpoints, "hot");
+        EndpointStats stats = EndpointStats.of(preferred);
+        List<Long> calls = new ArrayList<>();
+        try{
+            for(int i=0;i<3;i++){
+                calls.add(stats.start());
+            }
+            // (3 + 1) * 1.25 / 4 rounds up to 2 calls in flight, exceeded by the preferred endpoint
+            Endpoint resolved = policy.resolve(endpoints, "hot");
+            assertNotSame(preferred, resolved);
+        }finally{
+            for(long start:calls){
+                stats.complete(start);
+            }
+        }
+        assertSame(preferred, policy.resolve(endpoints, "hot"));
+    }
+
+    @Test
+    public void testEjectedEndpointIsSkipped() {
+        List<Endpoint> endpoints = endpoints("ejected", 3);
+        Endpoint preferred = policy.resolve(endpoints, "key");
+        EndpointStats.of(preferred).setHealthy(false);
+        Endpoint resolved = policy.resolve(endpoints, "key");
+        assertNotSame(preferred, resolved);
+        EndpointStats.of(preferred).setHealthy(true);
+        assertSame(preferred, policy.resolve(endpoints, "key"));
+    }
+
+    @Test
+    public void testAllEjectedStillResolves() {
+        List<Endpoint> endpoints = endpoints("allejected", 3);
+        for(Endpoint ep:endpoints){
+            EndpointStats.of(ep).setHealthy(false);
+        }
+        assertNotNull(policy.resolve(endpoints, "key"));
+    }
+
+    @Test
+    public void testNullKeySpreadsRequests() {
+        List<Endpoint> endpoints = endpoints("random", 3);
+        Set<String> keys = new HashSet<>();
+        for(int i=0;i<200;i++){
+            keys.add(policy.resolve(endpoints).getInstanceKey());
+        }
+        assertEquals(3, keys.size());
+    }
+
+    @Test
+    public void testHashIsStable() {
+        assertEquals(ConsistentHashResolutionPolicy.hash("key"), ConsistentHashResolutionPolicy.hash("key"));
+        assertNotEquals(ConsistentHashResolutionPolicy.hash("key1"), ConsistentHashResolutionPolicy.hash("key2"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidVirtualNodes() {
+        new ConsistentHashResolutionPolicy(0, 1.25d);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidLoadFactor() {
+        new ConsistentHashResolutionPolicy(100, 0.5d);
+    }
+}
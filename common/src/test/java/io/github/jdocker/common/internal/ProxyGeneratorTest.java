@@ -0,0 +1,200 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.jdocker.common.internal;
+
+import io.github.jdocker.common.Endpoint;
+import io.github.jdocker.common.EndpointResolutionPolicy;
+import io.github.jdocker.common.vertx.EventBusInvoker;
+import io.github.jdocker.common.vertx.EventBusServiceExporter;
+import io.vertx.test.core.VertxTestBase;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * Tests the proxies generated by the {@link ProxyGenerator}, calling a service exported on the event bus.
+ */
+public class ProxyGeneratorTest extends VertxTestBase {
+
+    /**
+     * Service covering the return types the proxies handle.
+     */
+    public interface Calculator {
+        void reset();
+        int add(int a, int b);
+        long scale(long value, double factor);
+        boolean positive(float value);
+        float half(float value);
+        byte[] bytes(String value);
+        String[] split(String value);
+        CompletionStage<String> echo(String value);
+        default int twice(int value){
+            return add(value, value);
+        }
+    }
+
+    interface Hidden {
+        void call();
+    }
+
+    /**
+     * The exported implementation, counting the calls received.
+     */
+    public class CalculatorService implements Calculator {
+        final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public void reset(){
+            calls.incrementAndGet();
+            testComplete();
+        }
+
+        @Override
+        public int add(int a, int b){
+            calls.incrementAndGet();
+            return a + b;
+        }
+
+        @Override
+        public long scale(long value, double factor){
+            calls.incrementAndGet();
+            return (long) (value * factor);
+        }
+
+        @Override
+        public boolean positive(float value){
+            calls.incrementAndGet();
+            return value > 0;
+        }
+
+        @Override
+        public float half(float value){
+            calls.incrementAndGet();
+            return value / 2;
+        }
+
+        @Override
+        public byte[] bytes(String value){
+            calls.incrementAndGet();
+            return value.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public String[] split(String value){
+            calls.incrementAndGet();
+            return value.split(",");
+        }
+
+        @Override
+        public CompletionStage<String> echo(String value){
+            calls.incrementAndGet();
+            return CompletableFuture.completedFuture(value);
+        }
+    }
+
+    private CalculatorService service;
+    private Calculator proxy;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        service = new CalculatorService();
+        EventBusServiceExporter.export(vertx, "calculator.1", Calculator.class, service);
+        Endpoint endpoint = EventBusServiceExporter.endpoint("calculator", "calculator.1");
+        ProxyGenerator.ProxyClass proxyClass = ProxyGenerator.of(Calculator.class);
+        assertNotNull(proxyClass);
+        proxy = proxyClass.newInstance(new EventBusInvoker(vertx, "calculator", proxyClass.getMethods(),
+                () -> Collections.singletonList(endpoint), EndpointResolutionPolicy.DEFAULT_RESOLUTIONPOLICY, 5000L));
+    }
+
+    @Test
+    public void testGeneratedClass(){
+        ProxyGenerator.ProxyClass proxyClass = ProxyGenerator.of(Calculator.class);
+        assertSame(proxyClass, ProxyGenerator.of(Calculator.class));
+        // default methods are inherited, not sent
+        assertEquals(8, proxyClass.getMethods().length);
+        for(Method m:proxyClass.getMethods()){
+            assertFalse(m.isDefault());
+        }
+        assertNull(ProxyGenerator.of(Object.class));
+        assertNull(ProxyGenerator.of(Hidden.class));
+    }
+
+    @Test
+    public void testVoid(){
+        proxy.reset();
+        await();
+        assertEquals(1, service.calls.get());
+    }
+
+    @Test
+    public void testPrimitives(){
+        assertEquals(5, proxy.add(2, 3));
+        assertEquals(10L, proxy.scale(4L, 2.5));
+        assertTrue(proxy.positive(1.5f));
+        assertFalse(proxy.positive(-1f));
+        assertEquals(0.75f, proxy.half(1.5f), 0f);
+    }
+
+    @Test
+    public void testArrays(){
+        assertArrayEquals("abc".getBytes(StandardCharsets.UTF_8), proxy.bytes("abc"));
+        assertArrayEquals(new String[]{"a", "b"}, proxy.split("a,b"));
+    }
+
+    @Test
+    public void testCompletionStage(){
+        proxy.echo("hello").whenComplete((value, error) -> {
+            assertNull(error);
+            assertEquals("hello", value);
+            testComplete();
+        });
+        await();
+    }
+
+    @Test
+    public void testDefaultMethod(){
+        assertEquals(8, proxy.twice(4));
+        assertEquals(1, service.calls.get());
+    }
+
+    @Test
+    public void testBlockingCallOnEventLoop(){
+        vertx.runOnContext(v -> {
+            try{
+                proxy.add(1, 2);
+                fail("Blocking call allowed on an event loop thread.");
+            }catch(IllegalStateException e){
+                // rejected before sending, so the service is never called
+                vertx.setTimer(100, id -> {
+                    assertEquals(0, service.calls.get());
+                    testComplete();
+                });
+            }
+        });
+        await();
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.jdocker.common.internal;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link ServiceIndexProcessor} by compiling sources with it.
+ */
+public class ServiceIndexProcessorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File output;
+    private final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+
+    @Before
+    public void setUp() throws IOException {
+        output = folder.newFolder();
+    }
+
+    private static JavaFileObject source(String className, String code){
+        return new SimpleJavaFileObject(URI.create("string:///" + className.replace('.', '/') + ".java"),
+                JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return code;
+            }
+        };
+    }
+
+    private static JavaFileObject provider(String simpleName, String annotations){
+        return source("test." + simpleName, "package test;\n" + annotations + "\n" +
+                "public class " + simpleName + " implements Service {}\n");
+    }
+
+    /**
+     * Compiles the sources into the output folder, which is on the class path as well, as in an incremental build.
+     */
+    private boolean compile(JavaFileObject... sources) throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        try (StandardJavaFileManager files = compiler.getStandardFileManager(diagnostics, null,
+                StandardCharsets.UTF_8)) {
+            List<String> options = Arrays.asList("-d", output.getPath(), "-classpath",
+                    output.getPath() + File.pathSeparator + System.getProperty("java.class.path"),
+                    "-processor", ServiceIndexProcessor.class.getName());
+            return compiler.getTask(null, files, diagnostics, options, null, Arrays.asList(sources)).call();
+        }
+    }
+
+    private String index() throws IOException {
+        return new String(Files.readAllBytes(new File(output, ServiceIndex.RESOURCE).toPath()),
+                StandardCharsets.UTF_8);
+    }
+
+    private List<String> errors(){
+        List<String> errors = new ArrayList<>();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                errors.add(diagnostic.getMessage(null));
+            }
+        }
+        return errors;
+    }
+
+    private static final JavaFileObject SERVICE = source("test.Service", "package test;\npublic interface Service {}\n");
+    private static final String ANNOTATION = "@io.github.jdocker.common.ServiceProvider(Service.class)";
+
+    @Test
+    public void testIndexWithPriorities() throws IOException {
+        assertTrue(errors().toString(), compile(SERVICE,
+                provider("Default", ANNOTATION),
+                provider("Preferred", ANNOTATION + "\n@javax.annotation.Priority(10)"),
+                source("test.Outer", "package test;\npublic class Outer {\n" + ANNOTATION + "\n" +
+                        "public static class Nested implements Service {}\n}\n"),
+                provider("NotIndexed", "")));
+        assertEquals("test.Service=test.Preferred:10,test.Default:1,test.Outer$Nested:1\n", index());
+    }
+
+    @Test
+    public void testInvalidProviders() throws IOException {
+        assertFalse(compile(SERVICE,
+                provider("Default", ANNOTATION),
+                source("test.Abstract", "package test;\n" + ANNOTATION + "\n" +
+                        "public abstract class Abstract implements Service {}\n"),
+                source("test.NoDefaultConstructor", "package test;\n" + ANNOTATION + "\n" +
+                        "public class NoDefaultConstructor implements Service {\n" +
+                        "public NoDefaultConstructor(String arg) {}\n}\n"),
+                source("test.Unrelated", "package test;\n" + ANNOTATION + "\npublic class Unrelated {}\n")));
+        List<String> errors = errors();
+        assertEquals(errors.toString(), 3, errors.size());
+        assertTrue(errors.get(2), errors.get(2).contains("does not implement"));
+    }
+
+    @Test
+    public void testIncrementalCompile() throws IOException {
+        assertTrue(errors().toString(), compile(SERVICE, provider("First", ANNOTATION),
+                provider("Second", ANNOTATION)));
+        // compiling one class again keeps the others, and updates its priority
+        assertTrue(errors().toString(), compile(provider("First", ANNOTATION + "\n@javax.annotation.Priority(5)"),
+                provider("Third", ANNOTATION)));
+        assertEquals("test.Service=test.First:5,test.Second:1,test.Third:1\n", index());
+        // entries of deleted classes are dropped
+        assertTrue(new File(output, "test/Second.class").delete());
+        assertTrue(errors().toString(), compile(provider("Third", ANNOTATION)));
+        assertEquals("test.Service=test.First:5,test.Third:1\n", index());
+    }
+}
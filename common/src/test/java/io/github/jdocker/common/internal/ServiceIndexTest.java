@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.jdocker.common.internal;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests reading, writing and merging the {@link ServiceIndex}.
+ */
+public class ServiceIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Map<String, List<ServiceIndex.Entry>> read(String... indexes) throws IOException {
+        Map<String, List<ServiceIndex.Entry>> services = new HashMap<>();
+        for(String index:indexes){
+            ServiceIndex.read(new StringReader(index), services);
+        }
+        return services;
+    }
+
+    private static String write(Map<String, List<ServiceIndex.Entry>> services) throws IOException {
+        StringWriter writer = new StringWriter();
+        ServiceIndex.write(services, writer);
+        return writer.toString();
+    }
+
+    @Test
+    public void testReadAndWrite() throws IOException {
+        Map<String, List<ServiceIndex.Entry>> services = read("# comment\n\n" +
+                "b.Service = b.impl.Default\n" +
+                "a.Service=a.impl.Low:-1, a.impl.High:10,a.impl.Default:1\n");
+        assertEquals(2, services.size());
+        assertEquals(1, services.get("b.Service").get(0).getPriority());
+        // sorted by type, then by descending priority
+        String written = write(services);
+        assertEquals("a.Service=a.impl.High:10,a.impl.Default:1,a.impl.Low:-1\n" +
+                "b.Service=b.impl.Default:1\n", written);
+        assertEquals(written, write(read(written)));
+    }
+
+    @Test
+    public void testEqualPrioritiesOrderedBySimpleName() throws IOException {
+        assertEquals("a.Service=z.Alpha:1,a.Beta:1,b.Outer$Gamma:1\n",
+                write(read("a.Service=b.Outer$Gamma,a.Beta,z.Alpha\n")));
+    }
+
+    @Test
+    public void testMergeKeepsFirstEntry() throws IOException {
+        Map<String, List<ServiceIndex.Entry>> services = read("a.Service=a.impl.Default:5\n",
+                "a.Service=a.impl.Default:1,a.impl.Other:2\nb.Service=b.impl.Default\n");
+        assertEquals("a.Service=a.impl.Default:5,a.impl.Other:2\nb.Service=b.impl.Default:1\n", write(services));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMissingServiceType() throws IOException {
+        read("a.impl.Default\n");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidPriority() throws IOException {
+        read("a.Service=a.impl.Default:high\n");
+    }
+
+    private URL index(String content) throws IOException {
+        File root = folder.newFolder();
+        File file = new File(root, ServiceIndex.RESOURCE);
+        assertTrue(file.getParentFile().mkdirs());
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return root.toURI().toURL();
+    }
+
+    @Test
+    public void testLoadMergesClassPathIndexes() throws IOException {
+        URLClassLoader classLoader = new URLClassLoader(new URL[]{
+                index("a.Service=a.impl.Default:1\n"),
+                index("not an index\n"),
+                index("a.Service=b.impl.Preferred:2\nb.Service=b.impl.Default\n")}, null);
+        ServiceIndex index = ServiceIndex.load(classLoader);
+        assertEquals(2, index.getServiceTypes().size());
+        List<ServiceIndex.Entry> entries = index.get("a.Service");
+        assertEquals(Arrays.asList("b.impl.Preferred", "a.impl.Default"),
+                Arrays.asList(entries.get(0).getClassName(), entries.get(1).getClassName()));
+        assertNull(index.get("c.Service"));
+        assertSame(ServiceIndex.of(classLoader), ServiceIndex.of(classLoader));
+    }
+}
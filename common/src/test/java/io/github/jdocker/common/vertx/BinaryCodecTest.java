@@ -0,0 +1,215 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.jdocker.common.vertx;
+
+import io.github.jdocker.common.CheckResult;
+import io.github.jdocker.common.Endpoint;
+import io.github.jdocker.common.HealthCheckResult;
+import io.github.jdocker.common.OwnedResult;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.junit.Test;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the wire format of the {@link BinaryCodec}.
+ */
+public class BinaryCodecTest {
+
+    private final BinaryCodec codec = new BinaryCodec();
+
+    private Object roundTrip(Object value){
+        Buffer buffer = Buffer.buffer();
+        // leading bytes of other message parts, decoding must start at the given position.
+        buffer.appendBytes(new byte[]{9, 9, 9});
+        codec.encodeToWire(buffer, value);
+        buffer.appendBytes(new byte[]{7, 7});
+        return codec.decodeFromWire(3, buffer);
+    }
+
+    private Buffer encode(Object value){
+        Buffer buffer = Buffer.buffer();
+        codec.encodeToWire(buffer, value);
+        return buffer;
+    }
+
+    @Test
+    public void testScalars() {
+        assertNull(roundTrip(null));
+        assertEquals("hello", roundTrip("hello"));
+        assertEquals("", roundTrip(""));
+        assertEquals(-42, roundTrip(-42));
+        assertEquals(Integer.MIN_VALUE, roundTrip(Integer.MIN_VALUE));
+        assertEquals(Long.MAX_VALUE, roundTrip(Long.MAX_VALUE));
+        assertEquals(Long.MIN_VALUE, roundTrip(Long.MIN_VALUE));
+        assertEquals(3.25d, roundTrip(3.25d));
+        assertEquals(Boolean.TRUE, roundTrip(true));
+        assertEquals(Boolean.FALSE, roundTrip(false));
+        assertArrayEquals(new byte[]{1, 2, 3}, (byte[]) roundTrip(new byte[]{1, 2, 3}));
+    }
+
+    @Test
+    public void testUnicodeStrings() {
+        String s = "a\u00e4\u20ac\ud83d\ude00z";
+        assertEquals(s, roundTrip(s));
+        assertEquals("x?y", roundTrip("x\ud800y"));
+    }
+
+    @Test
+    public void testSmallIntegersAreCompact() {
+        // length, version, tag and one varint byte
+        assertEquals(4 + 1 + 1 + 1, encode(-1).length());
+        assertEquals(4 + 1 + 1 + 2, encode(100).length());
+    }
+
+    @Test
+    public void testJson() {
+        JsonObject json = new JsonObject().put("name", "agent1").put("seq", 12L).put("load", 0.5d)
+                .put("tags", new JsonArray().add("a").add(1).add(new JsonObject().put("x", true)))
+                .put("nested", new JsonObject().put("empty", new JsonArray()).put("none", (Object) null));
+        assertEquals(json, roundTrip(json));
+    }
+
+    @Test
+    public void testMapsAndLists() {
+        Map<String,Object> map = new HashMap<>();
+        map.put("a", 1);
+        map.put("b", Arrays.asList("x", "y"));
+        assertEquals(map, roundTrip(map));
+        List<Object> list = Arrays.asList(1, "two", 3L, null);
+        assertEquals(list, roundTrip(list));
+    }
+
+    @Test
+    public void testOwnedResult() {
+        OwnedResult result = (OwnedResult) roundTrip(new OwnedResult("agent1", "info",
+                new JsonObject().put("cpus", 8), 1234L));
+        assertEquals("agent1", result.getOwner());
+        assertEquals("info", result.getType());
+        assertEquals(1234L, result.getTimestamp());
+        assertEquals(new JsonObject().put("cpus", 8), result.getResult());
+    }
+
+    @Test
+    public void testEndpoint() {
+        Endpoint endpoint = new Endpoint("billing", URI.create("http://10.0.0.1:8080/api"),
+                Arrays.asList("zone:a", "stage:test")).close();
+        Endpoint read = (Endpoint) roundTrip(endpoint);
+        assertEquals("billing", read.getServiceName());
+        assertEquals("http", read.getProtocol());
+        assertEquals(8080, read.getPort());
+        assertEquals("10.0.0.1", read.getHost());
+        assertEquals("/api", read.getDomain());
+        assertEquals(endpoint.getURI(), read.getURI());
+        assertEquals(endpoint.getTags(), read.getTags());
+        assertTrue(read.isClosed());
+    }
+
+    @Test
+    public void testHealthCheckResult() {
+        HealthCheckResult result = (HealthCheckResult) roundTrip(new HealthCheckResult().setTimestamp(99L)
+                .setInstance("host1").setCheckId("ping").setShortDesc("Ping").setResult(CheckResult.WARN)
+                .setMessage(null).setLatencyNanos(1500L));
+        assertEquals(99L, result.getTimestamp());
+        assertEquals("host1", result.getInstance());
+        assertEquals("ping", result.getCheckId());
+        assertEquals("Ping", result.getShortDesc());
+        assertEquals(CheckResult.WARN, result.getResult());
+        assertNull(result.getMessage());
+        assertEquals(1500L, result.getLatencyNanos());
+        assertFalse(result.isClosed());
+    }
+
+    @Test
+    public void testTransformPassesReference() {
+        JsonObject json = new JsonObject();
+        assertSame(json, codec.transform(json));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsupportedType() {
+        encode(new Object());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testUnknownVersion() {
+        Buffer buffer = encode("x");
+        buffer.setByte(4, (byte) (BinaryCodec.VERSION + 1));
+        codec.decodeFromWire(0, buffer);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testUnknownTag() {
+        Buffer buffer = encode("x");
+        buffer.setByte(5, (byte) 99);
+        codec.decodeFromWire(0, buffer);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testTruncatedMessage() {
+        Buffer buffer = encode(new JsonObject().put("name", "agent1"));
+        codec.decodeFromWire(0, buffer.getBuffer(0, buffer.length() - 2));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testTruncatedLengthPrefix() {
+        codec.decodeFromWire(0, Buffer.buffer(new byte[]{0, 0}));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testLengthMismatch() {
+        Buffer buffer = encode("x");
+        buffer.appendByte((byte) 0);
+        buffer.setInt(0, buffer.length() - 4);
+        codec.decodeFromWire(0, buffer);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testOversizedString() {
+        // a string claiming 100 bytes within a message of 3 bytes.
+        Buffer buffer = Buffer.buffer().appendInt(3).appendByte(BinaryCodec.VERSION).appendByte((byte) 1)
+                .appendByte((byte) 100);
+        codec.decodeFromWire(0, buffer);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testOversizedList() {
+        // a list claiming 2^28 elements must not be allocated.
+        Buffer buffer = Buffer.buffer().appendInt(6).appendByte(BinaryCodec.VERSION).appendByte((byte) 10)
+                .appendBytes(new byte[]{(byte) 0x80, (byte) 0x80, (byte) 0x80, 1});
+        codec.decodeFromWire(0, buffer);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testOverlongVarint() {
+        Buffer buffer = Buffer.buffer().appendInt(13).appendByte(BinaryCodec.VERSION).appendByte((byte) 3);
+        for(int i=0;i<11;i++){
+            buffer.appendByte((byte) 0xFF);
+        }
+        codec.decodeFromWire(0, buffer);
+    }
+}
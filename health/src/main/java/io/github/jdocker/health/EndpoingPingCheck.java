@@ -19,39 +19,159 @@
 package io.github.jdocker.health;
 
 import io.github.jdocker.common.*;
+import io.vertx.core.Context;
 
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
- * Simple health check that pings an endpoint host.
+ * Simple health check that probes whether an endpoint accepts TCP connections, using the shared
+ * {@link ReachabilityProber}. Optionally a request is sent, the check then succeeds when the endpoint replies.
+ * The connect latency is reported in the result. Endpoints failing the check are ejected from resolution.
  */
 public class EndpoingPingCheck implements HealthCheck{
 
+    /** Maximal time a probe may take before the check fails. */
+    private static final long PING_TIMEOUT_MS = ReachabilityProber.DEFAULT_TIMEOUT;
+
     private Endpoint endpoint;
+    private byte[] request;
     private String id = UUID.randomUUID().toString();
+    private volatile boolean removed;
 
     public EndpoingPingCheck(Endpoint endpoint){
+        this(endpoint, null);
+    }
+
+    /**
+     * Creates a check sending the given request after connecting, e.g. a protocol greeting or ping command.
+     *
+     * @param endpoint the endpoint, not null
+     * @param request the request, or null, to check connecting only
+     */
+    public EndpoingPingCheck(Endpoint endpoint, byte[] request){
         this.endpoint = Objects.requireNonNull(endpoint);
+        this.request = request==null?null:request.clone();
     }
 
     public String getId(){
         return id;
     }
 
+    /**
+     * Probes the endpoint, blocking until the probe completed, ejecting the endpoint from resolution while it is not
+     * reachable (see {@link EndpointStats#setHealthy(boolean)}).
+     *
+     * @return the result
+     * @throws IllegalStateException if called on an event loop thread
+     */
     @Override
     public HealthCheckResult check() {
+        if(Context.isOnEventLoopThread()){
+            throw new IllegalStateException("Blocking health check on an event loop thread, use checkAsync().");
+        }
+        try {
+            return checkAsync().get(PING_TIMEOUT_MS + 1000L, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return failure("Interrupted.");
+        } catch (ExecutionException | TimeoutException e) {
+            return failure(String.valueOf(e));
+        }
+    }
+
+    /**
+     * Probes the endpoint without blocking, ejecting it from resolution while it is not reachable.
+     *
+     * @return the result, completed on the prober thread, so dependent stages must not block
+     */
+    public CompletableFuture<HealthCheckResult> checkAsync() {
+        return probe(endpoint, request, PING_TIMEOUT_MS).thenApply(result -> {
+            result.setCheckId(id).close();
+            if(!removed){
+                EndpointStats.of(endpoint).setHealthy(result.getResult()!=CheckResult.FAILED);
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Re-admits the endpoint, as it is no longer checked.
+     */
+    @Override
+    public void removed() {
+        removed = true;
+        EndpointStats.of(endpoint).setHealthy(true);
+    }
+
+    private HealthCheckResult failure(String message){
+        return new HealthCheckResult().setCheckId(id).setInstance("Endpoint:"+endpoint.getInstanceKey())
+                .setResult(CheckResult.FAILED).setMessage(message).close();
+    }
+
+    /**
+     * Probes all given endpoints concurrently.
+     *
+     * @param endpoints the endpoints, not null
+     * @param timeout the timeout per endpoint in milliseconds
+     * @return the results, in the order of the endpoints, completed when all probes completed
+     */
+    public static CompletableFuture<List<HealthCheckResult>> checkAll(Collection<Endpoint> endpoints, long timeout){
+        List<CompletableFuture<HealthCheckResult>> probes = new ArrayList<>(endpoints.size());
+        for(Endpoint ep:endpoints){
+            probes.add(probe(ep, null, timeout).thenApply(HealthCheckResult::close));
+        }
+        return CompletableFuture.allOf(probes.toArray(new CompletableFuture[probes.size()])).thenApply(v -> {
+            List<HealthCheckResult> results = new ArrayList<>(probes.size());
+            for(CompletableFuture<HealthCheckResult> probe:probes){
+                // all completed
+                results.add(probe.getNow(null));
+            }
+            return results;
+        });
+    }
+
+    private static CompletableFuture<HealthCheckResult> probe(Endpoint endpoint, byte[] request, long timeout){
         HealthCheckResult result = new HealthCheckResult()
-                .setInstance("Endpoint:"+endpoint.getName())
-                .setShortDesc("Pings the endpoint address.");
-        String resv= Executor.execute("ping -c 2 " + endpoint.getHost());
-        result.setMessage(resv);
-        if(resv.contains("2 packets transmitted, 2 received")){
-            result.setResult(CheckResult.SUCCESS);
-        }else{
-            result.setResult(CheckResult.FAILED);
+                .setInstance("Endpoint:"+endpoint.getInstanceKey())
+                .setShortDesc("Probes the endpoint address.");
+        int port = getPort(endpoint);
+        if(endpoint.getHost()==null || port<=0){
+            return CompletableFuture.completedFuture(result.setResult(CheckResult.NOT_APPLICABLE)
+                    .setMessage("Endpoint has no host and port."));
+        }
+        // resolved by the prober, not on the calling thread
+        InetSocketAddress address = InetSocketAddress.createUnresolved(endpoint.getHost(), port);
+        return ReachabilityProber.getDefault().probe(address, timeout, request).thenApply(probe -> {
+            result.setLatencyNanos(probe.getConnectNanos());
+            if(probe.isReachable()){
+                long latency = probe.getReplyNanos()>=0?probe.getReplyNanos():probe.getConnectNanos();
+                return result.setResult(CheckResult.SUCCESS).setMessage(probe.getMessage() + " (" +
+                        TimeUnit.NANOSECONDS.toMicros(latency) / 1000.0 + " ms)");
+            }
+            return result.setResult(CheckResult.FAILED).setMessage(probe.getMessage());
+        });
+    }
+
+    private static int getPort(Endpoint endpoint){
+        if(endpoint.getPort()>0){
+            return endpoint.getPort();
+        }
+        String protocol = endpoint.getProtocol();
+        if("http".equalsIgnoreCase(protocol)){
+            return 80;
+        }else if("https".equalsIgnoreCase(protocol)){
+            return 443;
         }
-        return result;
+        return -1;
     }
 
     @Override
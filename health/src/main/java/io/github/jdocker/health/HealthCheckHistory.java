@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.jdocker.health;
+
+import io.github.jdocker.common.CheckResult;
+import io.github.jdocker.common.HealthCheckResult;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Ring buffer of the latest results of a health check. Only the result state, timestamp and latency of each run
+ * are kept, in primitive arrays, together with the number of runs per state within the buffer; the complete
+ * result is kept for the latest run only. So a history costs a few bytes per run, and the latest result and the
+ * state counts are read in constant time.
+ */
+public final class HealthCheckHistory {
+
+    private static final CheckResult[] STATES = CheckResult.values();
+
+    private final byte[] states;
+    private final long[] timestamps;
+    private final long[] latencies;
+    private final int[] stateCounts = new int[STATES.length];
+    private long count;
+    private volatile HealthCheckResult latest;
+
+    /**
+     * Creates a new history.
+     *
+     * @param capacity the number of results kept, > 0
+     */
+    public HealthCheckHistory(int capacity){
+        if(capacity<=0){
+            throw new IllegalArgumentException("Capacity must be > 0: " + capacity);
+        }
+        this.states = new byte[capacity];
+        this.timestamps = new long[capacity];
+        this.latencies = new long[capacity];
+    }
+
+    /**
+     * Adds a result, replacing the oldest one if the history is full.
+     *
+     * @param result the result, not null
+     * @return the state of the result added before, or null, if this is the first result
+     */
+    public synchronized CheckResult add(HealthCheckResult result){
+        CheckResult previous = latest==null?null:latest.getResult();
+        CheckResult state = result.getResult()==null?CheckResult.FAILED:result.getResult();
+        int pos = (int) (count % states.length);
+        if(count>=states.length){
+            stateCounts[states[pos]]--;
+        }
+        states[pos] = (byte) state.ordinal();
+        timestamps[pos] = result.getTimestamp();
+        latencies[pos] = result.getLatencyNanos();
+        stateCounts[state.ordinal()]++;
+        count++;
+        latest = result;
+        return previous;
+    }
+
+    /**
+     * Gets the latest result.
+     *
+     * @return the latest result, or null, if the check has not run yet
+     */
+    public HealthCheckResult getLatest(){
+        return latest;
+    }
+
+    /**
+     * Gets the states of the results kept.
+     *
+     * @return the states, oldest first, never null
+     */
+    public synchronized List<CheckResult> getResults(){
+        int size = size();
+        List<CheckResult> list = new ArrayList<>(size);
+        for(long i=count-size;i<count;i++){
+            list.add(STATES[states[(int) (i % states.length)]]);
+        }
+        return list;
+    }
+
+    /**
+     * Gets the timestamps of the results kept.
+     *
+     * @return the timestamps, oldest first, never null
+     */
+    public synchronized long[] getTimestamps(){
+        return copy(timestamps);
+    }
+
+    /**
+     * Gets the latencies of the results kept.
+     *
+     * @return the latencies in nanoseconds, 0 if not measured, oldest first, never null
+     */
+    public synchronized long[] getLatencies(){
+        return copy(latencies);
+    }
+
+    private long[] copy(long[] values){
+        int size = size();
+        long[] result = new long[size];
+        for(int i=0;i<size;i++){
+            result[i] = values[(int) ((count - size + i) % values.length)];
+        }
+        return result;
+    }
+
+    /**
+     * Gets the number of results kept with the given state.
+     *
+     * @param state the state, not null
+     * @return the number of results kept with this state
+     */
+    public synchronized int getCount(CheckResult state){
+        return stateCounts[state.ordinal()];
+    }
+
+    /**
+     * Gets the total number of results added.
+     *
+     * @return the count
+     */
+    public synchronized long getCount(){
+        return count;
+    }
+
+    private int size(){
+        return (int) Math.min(count, states.length);
+    }
+
+    /**
+     * Gets the number of results kept.
+     *
+     * @return the capacity
+     */
+    public int getCapacity(){
+        return states.length;
+    }
+
+    @Override
+    public String toString() {
+        return "HealthCheckHistory{" +
+                "capacity=" + states.length +
+                ", latest=" + latest +
+                '}';
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.jdocker.health;
+
+/**
+ * Scheduling options of a health check run by the {@link HealthCheckScheduler}.
+ */
+public class HealthCheckOptions {
+
+    /** Default interval between two runs in milliseconds. */
+    public static final long DEFAULT_INTERVAL = 30000L;
+    /** Default jitter, as fraction of the interval. */
+    public static final double DEFAULT_JITTER = 0.1;
+    /** Default time a check may take in milliseconds. */
+    public static final long DEFAULT_TIMEOUT = 10000L;
+    /** Default maximal interval of a failing check in milliseconds. */
+    public static final long DEFAULT_MAX_BACKOFF = 300000L;
+    /** Default number of results kept. */
+    public static final int DEFAULT_HISTORY_SIZE = 32;
+
+    private long interval = DEFAULT_INTERVAL;
+    private double jitter = DEFAULT_JITTER;
+    private long timeout = DEFAULT_TIMEOUT;
+    private long maxBackoff = DEFAULT_MAX_BACKOFF;
+    private int historySize = DEFAULT_HISTORY_SIZE;
+    private String target;
+
+    /**
+     * Gets the interval between two runs.
+     *
+     * @return the interval in milliseconds
+     */
+    public long getInterval() {
+        return interval;
+    }
+
+    /**
+     * Sets the interval between two runs.
+     *
+     * @param interval the interval in milliseconds, > 0
+     * @return the options
+     */
+    public HealthCheckOptions setInterval(long interval) {
+        if(interval<=0){
+            throw new IllegalArgumentException("Interval must be > 0: " + interval);
+        }
+        this.interval = interval;
+        return this;
+    }
+
+    /**
+     * Gets the jitter, the effective interval is randomly varied by this fraction.
+     *
+     * @return the jitter
+     */
+    public double getJitter() {
+        return jitter;
+    }
+
+    /**
+     * Sets the jitter, the effective interval is randomly varied by this fraction, so checks added at the same
+     * time spread out.
+     *
+     * @param jitter the jitter, between 0 and 1
+     * @return the options
+     */
+    public HealthCheckOptions setJitter(double jitter) {
+        if(jitter<0 || jitter>1){
+            throw new IllegalArgumentException("Jitter must be between 0 and 1: " + jitter);
+        }
+        this.jitter = jitter;
+        return this;
+    }
+
+    /**
+     * Gets the time a check may take, before it is interrupted and considered failed.
+     *
+     * @return the timeout in milliseconds
+     */
+    public long getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Sets the time a check may take, before it is interrupted and considered failed.
+     *
+     * @param timeout the timeout in milliseconds, > 0
+     * @return the options
+     */
+    public HealthCheckOptions setTimeout(long timeout) {
+        if(timeout<=0){
+            throw new IllegalArgumentException("Timeout must be > 0: " + timeout);
+        }
+        this.timeout = timeout;
+        return this;
+    }
+
+    /**
+     * Gets the maximal interval of a failing check. The interval doubles with each consecutive failure, until
+     * this value is reached.
+     *
+     * @return the maximal back-off in milliseconds
+     */
+    public long getMaxBackoff() {
+        return maxBackoff;
+    }
+
+    /**
+     * Sets the maximal interval of a failing check.
+     *
+     * @param maxBackoff the maximal back-off in milliseconds, > 0
+     * @return the options
+     */
+    public HealthCheckOptions setMaxBackoff(long maxBackoff) {
+        if(maxBackoff<=0){
+            throw new IllegalArgumentException("Max back-off must be > 0: " + maxBackoff);
+        }
+        this.maxBackoff = maxBackoff;
+        return this;
+    }
+
+    /**
+     * Gets the number of results kept.
+     *
+     * @return the history size
+     */
+    public int getHistorySize() {
+        return historySize;
+    }
+
+    /**
+     * Sets the number of results kept.
+     *
+     * @param historySize the history size, > 0
+     * @return the options
+     */
+    public HealthCheckOptions setHistorySize(int historySize) {
+        if(historySize<=0){
+            throw new IllegalArgumentException("History size must be > 0: " + historySize);
+        }
+        this.historySize = historySize;
+        return this;
+    }
+
+    /**
+     * Gets the target checked, e.g. a host. Checks of the same target share its concurrency limit.
+     *
+     * @return the target, or null, if the check is its own target
+     */
+    public String getTarget() {
+        return target;
+    }
+
+    /**
+     * Sets the target checked, e.g. a host. Checks of the same target share its concurrency limit.
+     *
+     * @param target the target, or null
+     * @return the options
+     */
+    public HealthCheckOptions setTarget(String target) {
+        this.target = target;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "HealthCheckOptions{" +
+                "interval=" + interval +
+                ", jitter=" + jitter +
+                ", timeout=" + timeout +
+                ", maxBackoff=" + maxBackoff +
+                ", historySize=" + historySize +
+                ", target='" + target + '\'' +
+                '}';
+    }
+}
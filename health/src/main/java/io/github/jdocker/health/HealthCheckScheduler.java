@@ -0,0 +1,417 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.jdocker.health;
+
+import io.github.jdocker.common.CheckResult;
+import io.github.jdocker.common.HealthCheck;
+import io.github.jdocker.common.HealthCheckResult;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs health checks periodically. A single timer thread dispatches the due checks to a bounded pool of worker
+ * threads, so blocking checks never run on an event loop and thousands of checks do not need thousands of threads.
+ * <ul>
+ *     <li>The first run of a check is delayed randomly within its interval, and each interval is varied by the
+ *     jitter configured, so checks added together do not run in bursts.</li>
+ *     <li>A check never runs concurrently with itself; the next run is scheduled when the current one completed.</li>
+ *     <li>Checks of the same target (see {@link HealthCheckOptions#setTarget(String)}) run at most
+ *     {@code targetConcurrency} at a time, further checks wait for the target to become free.</li>
+ *     <li>The interval of a failing check doubles with each consecutive failure, up to the maximal back-off
+ *     configured; a successful run resets it.</li>
+ *     <li>Checks exceeding their timeout are interrupted and recorded as failed. The check keeps its place at its
+ *     target and is not scheduled again before it returned, so a hung check never runs twice.</li>
+ * </ul>
+ * The results are kept in a {@link HealthCheckHistory} per check, the number of checks per state of their latest
+ * result in {@link HealthCounters}.
+ */
+public final class HealthCheckScheduler implements AutoCloseable {
+
+    private static final Logger LOG = Logger.getLogger(HealthCheckScheduler.class.getName());
+
+    /** Default number of checks running concurrently per target. */
+    public static final int DEFAULT_TARGET_CONCURRENCY = 2;
+
+    private final ScheduledThreadPoolExecutor timer;
+    private final ThreadPoolExecutor workers;
+    private final int targetConcurrency;
+    private final ConcurrentHashMap<String, ScheduledCheck> checks = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, TargetGate> gates = new ConcurrentHashMap<>();
+    private final HealthCounters counters;
+
+    /**
+     * Creates a new scheduler.
+     *
+     * @param workers the number of worker threads running checks, > 0
+     * @param targetConcurrency the maximal number of checks running concurrently per target, > 0
+     */
+    public HealthCheckScheduler(int workers, int targetConcurrency){
+        this(workers, targetConcurrency, new HealthCounters());
+    }
+
+    /**
+     * Creates a new scheduler.
+     *
+     * @param workers the number of worker threads running checks, > 0
+     * @param targetConcurrency the maximal number of checks running concurrently per target, > 0
+     * @param counters the counters updated with the checks scheduled and the state of their results, not null
+     */
+    public HealthCheckScheduler(int workers, int targetConcurrency, HealthCounters counters){
+        if(workers<=0 || targetConcurrency<=0){
+            throw new IllegalArgumentException("Workers and target concurrency must be > 0.");
+        }
+        this.targetConcurrency = targetConcurrency;
+        this.counters = Objects.requireNonNull(counters);
+        this.timer = new ScheduledThreadPoolExecutor(1, new DaemonThreadFactory("jdocker-health-timer-"));
+        this.timer.setRemoveOnCancelPolicy(true);
+        this.workers = new ThreadPoolExecutor(workers, workers, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                new DaemonThreadFactory("jdocker-health-worker-"));
+        this.workers.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Schedules a check, replacing a check with the same id.
+     *
+     * @param check the check, not null
+     * @param options the options, not null
+     * @return the history of the check, never null
+     */
+    public HealthCheckHistory schedule(HealthCheck check, HealthCheckOptions options){
+        ScheduledCheck scheduled = new ScheduledCheck(Objects.requireNonNull(check), options, counters);
+        ScheduledCheck previous = checks.put(check.getId(), scheduled);
+        if(previous!=null){
+            previous.cancel();
+        }
+        long delay = (long) (ThreadLocalRandom.current().nextDouble() * options.getInterval());
+        scheduled.next = timer.schedule(() -> dispatch(scheduled), delay, TimeUnit.MILLISECONDS);
+        return scheduled.history;
+    }
+
+    /**
+     * Stops running the given check.
+     *
+     * @param id the check id
+     * @return true, if the check was scheduled
+     */
+    public boolean unschedule(String id){
+        ScheduledCheck scheduled = checks.remove(id);
+        if(scheduled!=null){
+            scheduled.cancel();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Gets the history of a check.
+     *
+     * @param id the check id
+     * @return the history, or null, if the check is not scheduled
+     */
+    public HealthCheckHistory getHistory(String id){
+        ScheduledCheck scheduled = checks.get(id);
+        return scheduled==null?null:scheduled.history;
+    }
+
+    /**
+     * Gets the counters of the checks scheduled.
+     *
+     * @return the counters, never null
+     */
+    public HealthCounters getCounters(){
+        return counters;
+    }
+
+    /**
+     * Gets the checks scheduled.
+     *
+     * @return the checks, never null
+     */
+    public Collection<HealthCheck> getHealthChecks(){
+        Collection<HealthCheck> result = new ArrayList<>(checks.size());
+        for(ScheduledCheck scheduled:checks.values()){
+            result.add(scheduled.check);
+        }
+        return Collections.unmodifiableCollection(result);
+    }
+
+    /**
+     * Gets the number of checks scheduled.
+     *
+     * @return the number of checks
+     */
+    public int size(){
+        return checks.size();
+    }
+
+    /**
+     * Stops all checks, running checks are interrupted.
+     */
+    @Override
+    public void close(){
+        for(ScheduledCheck scheduled:checks.values()){
+            scheduled.cancel();
+        }
+        checks.clear();
+        timer.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    /**
+     * Called on the timer thread, when a check is due.
+     */
+    private void dispatch(ScheduledCheck scheduled){
+        if(scheduled.cancelled){
+            return;
+        }
+        TargetGate gate = gates.computeIfAbsent(scheduled.target, k -> new TargetGate());
+        synchronized (gate){
+            if(gate.running>=targetConcurrency){
+                gate.waiting.add(scheduled);
+                return;
+            }
+            gate.running++;
+        }
+        submit(scheduled, gate);
+    }
+
+    private void submit(ScheduledCheck scheduled, TargetGate gate){
+        try {
+            workers.execute(new CheckRun(scheduled, gate));
+        } catch (RejectedExecutionException e) {
+            // closed
+        }
+    }
+
+    /**
+     * Called when a run returned, after its result (or its timeout) was recorded.
+     */
+    private void completed(ScheduledCheck scheduled, TargetGate gate, boolean failed){
+        if(failed){
+            scheduled.failures++;
+        }else{
+            scheduled.failures = 0;
+        }
+        ScheduledCheck next;
+        synchronized (gate){
+            do {
+                next = gate.waiting.poll();
+            } while(next!=null && next.cancelled);
+            if(next==null){
+                gate.running--;
+            }
+        }
+        if(next!=null){
+            submit(next, gate);
+        }
+        if(!scheduled.cancelled){
+            try {
+                scheduled.next = timer.schedule(() -> dispatch(scheduled), nextDelay(scheduled),
+                        TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // closed
+            }
+        }
+    }
+
+    private static long nextDelay(ScheduledCheck scheduled){
+        HealthCheckOptions options = scheduled.options;
+        long base = options.getInterval();
+        if(scheduled.failures>0){
+            base = Math.max(base, Math.min(options.getMaxBackoff(),
+                    base << Math.min(scheduled.failures, 20)));
+        }
+        double jitter = options.getJitter() * (ThreadLocalRandom.current().nextDouble() * 2 - 1);
+        return Math.max(1L, (long) (base + base * jitter));
+    }
+
+    private static HealthCheckResult failure(ScheduledCheck scheduled, String message){
+        return new HealthCheckResult().setCheckId(scheduled.check.getId()).setInstance(scheduled.target)
+                .setResult(CheckResult.FAILED).setMessage(message).close();
+    }
+
+    /**
+     * A check scheduled.
+     */
+    private static final class ScheduledCheck{
+        final HealthCheck check;
+        final HealthCheckOptions options;
+        final String target;
+        final HealthCheckHistory history;
+        final HealthCounters counters;
+        /** Consecutive failures, only accessed by the single run in progress. */
+        int failures;
+        /** State counted, guarded by this instance. */
+        CheckResult state;
+        volatile boolean cancelled;
+        volatile ScheduledFuture<?> next;
+
+        ScheduledCheck(HealthCheck check, HealthCheckOptions options, HealthCounters counters){
+            this.check = check;
+            this.options = Objects.requireNonNull(options);
+            this.target = options.getTarget()!=null?options.getTarget():check.getId();
+            this.history = new HealthCheckHistory(options.getHistorySize());
+            this.counters = counters;
+            counters.added();
+        }
+
+        /**
+         * Adds a result to the history, counting the change of the state unless the check was cancelled.
+         */
+        synchronized void record(HealthCheckResult result){
+            history.add(result);
+            if(!cancelled){
+                CheckResult updated = result.getResult()==null?CheckResult.FAILED:result.getResult();
+                counters.transition(state, updated);
+                state = updated;
+            }
+        }
+
+        void cancel(){
+            synchronized (this){
+                if(cancelled){
+                    return;
+                }
+                cancelled = true;
+                counters.removed(state);
+            }
+            ScheduledFuture<?> f = next;
+            if(f!=null){
+                f.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Concurrency limit of a target.
+     */
+    private static final class TargetGate{
+        int running;
+        final ArrayDeque<ScheduledCheck> waiting = new ArrayDeque<>();
+    }
+
+    /**
+     * A single run of a check. Its result is recorded exactly once, either when the check returns or when its
+     * timeout elapses; the target is released and the next run scheduled only when the check returned.
+     */
+    private final class CheckRun implements Runnable{
+        private final ScheduledCheck scheduled;
+        private final TargetGate gate;
+        private final AtomicBoolean recorded = new AtomicBoolean();
+        /** The worker thread running the check, guarded by this instance. */
+        private Thread runner;
+
+        CheckRun(ScheduledCheck scheduled, TargetGate gate){
+            this.scheduled = scheduled;
+            this.gate = gate;
+        }
+
+        @Override
+        public void run() {
+            synchronized (this){
+                runner = Thread.currentThread();
+            }
+            ScheduledFuture<?> timeout = null;
+            try {
+                timeout = timer.schedule(this::timedOut, scheduled.options.getTimeout(), TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // closed
+            }
+            HealthCheckResult result = null;
+            try {
+                result = scheduled.check.check();
+                if(result==null){
+                    result = failure(scheduled, "Check returned no result.");
+                }
+            } catch (Exception e) {
+                LOG.log(Level.FINE, "Health check failed: " + scheduled.check.getId(), e);
+                result = failure(scheduled, String.valueOf(e));
+            } finally {
+                if(timeout!=null){
+                    timeout.cancel(false);
+                }
+                synchronized (this){
+                    runner = null;
+                }
+                // clears an interrupt of the timeout, the worker thread is reused
+                Thread.interrupted();
+                boolean failed = true;
+                if(recorded.compareAndSet(false, true)){
+                    if(result==null){
+                        result = failure(scheduled, "Check did not complete.");
+                    }
+                    scheduled.record(result);
+                    failed = result.getResult()==CheckResult.FAILED;
+                }
+                completed(scheduled, gate, failed);
+            }
+        }
+
+        /**
+         * Called on the timer thread, records the timeout and interrupts the check.
+         */
+        private void timedOut(){
+            if(recorded.compareAndSet(false, true)){
+                scheduled.record(failure(scheduled, "Check timed out after " + scheduled.options.getTimeout()
+                        + " ms."));
+                synchronized (this){
+                    if(runner!=null){
+                        runner.interrupt();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Thread factory creating named daemon threads.
+     */
+    private static final class DaemonThreadFactory implements ThreadFactory{
+        private final String prefix;
+        private final AtomicInteger counter = new AtomicInteger();
+
+        DaemonThreadFactory(String prefix){
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, prefix + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.jdocker.health;
+
+import io.github.jdocker.common.CheckResult;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Number of health checks per state of their latest result. The counters are updated when the state of a check
+ * changes, not by counting the checks, so they are read in constant time however many checks are scheduled.
+ * Striped {@link LongAdder} counters are used, so checks completing concurrently do not contend.
+ */
+public final class HealthCounters {
+
+    private final LongAdder pending = new LongAdder();
+    private final LongAdder[] counts = new LongAdder[CheckResult.values().length];
+
+    public HealthCounters(){
+        for(int i=0;i<counts.length;i++){
+            counts[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Counts a check added, pending until its first result.
+     */
+    void added(){
+        pending.increment();
+    }
+
+    /**
+     * Counts a check removed.
+     *
+     * @param state the state of its latest result, or null, if it has not run yet
+     */
+    void removed(CheckResult state){
+        counter(state).decrement();
+    }
+
+    /**
+     * Counts a check moving to another state.
+     *
+     * @param from the state of its previous result, or null, if it has not run yet
+     * @param to the state of its latest result, not null
+     */
+    void transition(CheckResult from, CheckResult to){
+        if(from!=to){
+            counter(from).decrement();
+            counter(to).increment();
+        }
+    }
+
+    private LongAdder counter(CheckResult state){
+        return state==null?pending:counts[state.ordinal()];
+    }
+
+    /**
+     * Gets the number of checks, whose latest result has the given state.
+     *
+     * @param state the state, not null
+     * @return the number of checks
+     */
+    public long getCount(CheckResult state){
+        return counts[state.ordinal()].sum();
+    }
+
+    /**
+     * Gets the number of checks not run yet.
+     *
+     * @return the number of checks
+     */
+    public long getPending(){
+        return pending.sum();
+    }
+
+    /**
+     * Gets the number of checks counted.
+     *
+     * @return the number of checks
+     */
+    public long getTotal(){
+        long total = pending.sum();
+        for(LongAdder count:counts){
+            total += count.sum();
+        }
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder b = new StringBuilder("HealthCounters{pending=").append(getPending());
+        for(CheckResult state:CheckResult.values()){
+            b.append(", ").append(state).append('=').append(getCount(state));
+        }
+        return b.append('}').toString();
+    }
+}
@@ -18,15 +18,25 @@
  */
 package io.github.jdocker.health;
 
+import io.github.jdocker.common.CheckResult;
 import io.github.jdocker.common.HealthCheck;
+import io.github.jdocker.common.HealthCheckResult;
 import io.vertx.core.AbstractVerticle;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A HealthManager instance. There are multiple health managers in the system. Normally one per docker host is
- * automatically setup along the jdocker agent.
+ * automatically setup along the jdocker agent. The checks added are run by a {@link HealthCheckScheduler} while the
+ * verticle is deployed. The config may contain the {@code name}, the number of {@code workers} running checks and
+ * the {@code targetConcurrency}, the number of checks running concurrently per target.
+ * <p>
+ * The number of checks per state of their latest result is maintained in {@link HealthCounters}, updated whenever
+ * the state of a check changes, so the {@link HealthAgentCommands#AGENT_HEALTHMANAGER_INFO} reply does not depend
+ * on the number of checks.
  */
 public class HealthManager extends AbstractVerticle{
 
@@ -34,10 +44,37 @@ public class HealthManager extends AbstractVerticle{
     private String name;
     /* The currently contained health checks. */
     private Map<String,HealthCheck> healthChecks = new ConcurrentHashMap<>();
+    /* The options of the checks contained. */
+    private Map<String,HealthCheckOptions> healthCheckOptions = new ConcurrentHashMap<>();
+    /* The scheduler, when started. */
+    private volatile HealthCheckScheduler scheduler;
+    /* The counters of the checks scheduled. */
+    private final HealthCounters counters = new HealthCounters();
+    /** The description of the health manager. */
+    private String description;
 
+    @Override
+    public void start() throws Exception {
+        name = config().getString("name", deploymentID());
+        description = config().getString("description", "HealthManager " + name);
+        int workers = config().getInteger("workers", Math.max(2, Runtime.getRuntime().availableProcessors()));
+        int targetConcurrency = config().getInteger("targetConcurrency",
+                HealthCheckScheduler.DEFAULT_TARGET_CONCURRENCY);
+        HealthCheckScheduler newScheduler = new HealthCheckScheduler(workers, targetConcurrency, counters);
+        for(HealthCheck check:healthChecks.values()){
+            newScheduler.schedule(check, healthCheckOptions.get(check.getId()));
+        }
+        scheduler = newScheduler;
+    }
 
-
-
+    @Override
+    public void stop() throws Exception {
+        HealthCheckScheduler current = scheduler;
+        scheduler = null;
+        if(current!=null){
+            current.close();
+        }
+    }
 
     /**
      * Get name string.
@@ -48,6 +85,30 @@ public class HealthManager extends AbstractVerticle{
         return name;
     }
 
+    /**
+     * Adds a health check using the default options, replacing a check with the same id.
+     *
+     * @param check the check
+     */
+    public void addHealthCheck(HealthCheck check){
+        addHealthCheck(check, new HealthCheckOptions());
+    }
+
+    /**
+     * Adds a health check, replacing a check with the same id.
+     *
+     * @param check the check
+     * @param options the scheduling options
+     */
+    public void addHealthCheck(HealthCheck check, HealthCheckOptions options){
+        healthCheckOptions.put(check.getId(), Objects.requireNonNull(options));
+        healthChecks.put(check.getId(), check);
+        HealthCheckScheduler current = scheduler;
+        if(current!=null){
+            current.schedule(check, options);
+        }
+    }
+
     /**
      * Get health check health check.
      *
@@ -59,13 +120,82 @@ public class HealthManager extends AbstractVerticle{
     }
 
     /**
-     * Remove health check health check.
+     * Get the results of a health check, kept while the manager is running.
+     *
+     * @param id the id
+     * @return the history, or null, if the check is unknown or the manager is not running
+     */
+    public HealthCheckHistory getHistory(String id){
+        HealthCheckScheduler current = scheduler;
+        return current==null?null:current.getHistory(id);
+    }
+
+    /**
+     * Get the counters of the checks running, per state of their latest result.
+     *
+     * @return the counters
+     */
+    public HealthCounters getCounters(){
+        return counters;
+    }
+
+    /**
+     * Get the reply of the {@link HealthAgentCommands#AGENT_HEALTHMANAGER_INFO} command, read from the counters.
+     *
+     * @return the info
+     */
+    public JsonObject getInfo(){
+        return new JsonObject().put("healthManager", new JsonArray()
+                .add(new JsonObject().put("name", name))
+                .add(new JsonObject().put("description", description))
+                .add(new JsonObject().put("healthChecks", new JsonArray()
+                        .add(new JsonObject().put("total", healthChecks.size()))
+                        .add(new JsonObject().put("success", counters.getCount(CheckResult.SUCCESS)))
+                        .add(new JsonObject().put("warn", counters.getCount(CheckResult.WARN)))
+                        .add(new JsonObject().put("fail", counters.getCount(CheckResult.FAILED))))));
+    }
+
+    /**
+     * Get the reply of the {@link HealthAgentCommands#AGENT_HEALTHMANAGER_LIST_CHECKS} command, with the latest
+     * result of each check.
+     *
+     * @return the checks
+     */
+    public JsonObject listHealthChecks(){
+        JsonArray checks = new JsonArray();
+        for(HealthCheck check:healthChecks.values()){
+            JsonObject entry = new JsonObject().put("id", check.getId()).put("type", check.getClass().getName());
+            HealthCheckHistory history = getHistory(check.getId());
+            HealthCheckResult latest = history==null?null:history.getLatest();
+            if(latest!=null){
+                entry.put("result", String.valueOf(latest.getResult()))
+                        .put("message", latest.getMessage())
+                        .put("description", latest.getShortDesc());
+            }
+            checks.add(entry);
+        }
+        return new JsonObject().put("healthManager", new JsonArray()
+                .add(new JsonObject().put("name", name))
+                .add(new JsonObject().put("healthChecks", checks)));
+    }
+
+    /**
+     * Remove health check health check, notifying it by {@link HealthCheck#removed()}.
      *
      * @param id the id
      * @return the health check
      */
     public HealthCheck removeHealthCheck(String id){
-        return healthChecks.remove(id);
+        HealthCheckScheduler current = scheduler;
+        if(current!=null){
+            current.unschedule(id);
+        }
+        healthCheckOptions.remove(id);
+        HealthCheck removed = healthChecks.remove(id);
+        if(removed!=null){
+            removed.removed();
+        }
+        return removed;
     }
 
     /**
@@ -0,0 +1,431 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.jdocker.health;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Probes the reachability of TCP endpoints from a single selector thread, without forking processes or blocking a
+ * thread per probe. A probe connects to the address, and optionally writes a request and waits for the first bytes
+ * of a reply, e.g. to check a protocol greeting. Thousands of probes can be in flight at once, the number of open
+ * sockets is limited by {@code maxConcurrent}, further probes wait until sockets are released. Unresolved addresses
+ * are resolved by a few resolver threads before the probe is started, so slow name lookups never block the caller
+ * or the selector; resolved addresses are cached by the JDK ({@code networkaddress.cache.ttl}). The futures returned
+ * are completed on the prober thread, so dependent stages must not block.
+ */
+public final class ReachabilityProber implements AutoCloseable {
+
+    private static final Logger LOG = Logger.getLogger(ReachabilityProber.class.getName());
+
+    /** Default time a probe may take in milliseconds. */
+    public static final long DEFAULT_TIMEOUT = 2000L;
+    /** Default maximal number of sockets open at the same time. */
+    public static final int DEFAULT_MAX_CONCURRENT = 1024;
+    /** Number of threads resolving host names. */
+    private static final int RESOLVER_THREADS = 4;
+
+    private static volatile ReachabilityProber defaultProber;
+
+    private final Selector selector;
+    private final int maxConcurrent;
+    private final Thread thread;
+    private final ThreadPoolExecutor resolver;
+    private final ConcurrentLinkedQueue<Probe> submitted = new ConcurrentLinkedQueue<>();
+    /** Probes waiting for a free socket, accessed by the prober thread only. */
+    private final ArrayDeque<Probe> waiting = new ArrayDeque<>();
+    /** Probes in flight ordered by deadline, completed ones are removed lazily. */
+    private final PriorityQueue<Probe> deadlines = new PriorityQueue<>(
+            (p1, p2) -> Long.compare(p1.deadline, p2.deadline));
+    /** Buffer for the replies, which are only checked for being non empty. */
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(512);
+    private int inFlight;
+    private volatile boolean closed;
+
+    /**
+     * Creates a new prober, starting its thread.
+     *
+     * @param maxConcurrent the maximal number of sockets open at the same time, > 0
+     * @throws IllegalStateException if no selector can be opened
+     */
+    public ReachabilityProber(int maxConcurrent){
+        if(maxConcurrent<=0){
+            throw new IllegalArgumentException("Max concurrent must be > 0: " + maxConcurrent);
+        }
+        this.maxConcurrent = maxConcurrent;
+        try {
+            this.selector = Selector.open();
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot open selector.", e);
+        }
+        this.resolver = new ThreadPoolExecutor(RESOLVER_THREADS, RESOLVER_THREADS, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread t = new Thread(r, "jdocker-reachability-resolver");
+                    t.setDaemon(true);
+                    return t;
+                });
+        this.resolver.allowCoreThreadTimeOut(true);
+        this.thread = new Thread(this::run, "jdocker-reachability-prober");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Get the shared prober, created on first access.
+     *
+     * @return the shared prober, never null
+     */
+    public static ReachabilityProber getDefault(){
+        ReachabilityProber prober = defaultProber;
+        if(prober==null){
+            synchronized (ReachabilityProber.class){
+                prober = defaultProber;
+                if(prober==null){
+                    prober = new ReachabilityProber(DEFAULT_MAX_CONCURRENT);
+                    defaultProber = prober;
+                }
+            }
+        }
+        return prober;
+    }
+
+    /**
+     * Probes whether a TCP connection can be established.
+     *
+     * @param address the address, not null; unresolved addresses are resolved on a resolver thread
+     * @param timeout the timeout in milliseconds, > 0
+     * @return the result, never failing exceptionally
+     */
+    public CompletableFuture<Result> probe(InetSocketAddress address, long timeout){
+        return probe(address, timeout, null);
+    }
+
+    /**
+     * Probes whether a TCP connection can be established, then writes the request given and waits for the first
+     * bytes of the reply.
+     *
+     * @param address the address, not null; unresolved addresses are resolved on a resolver thread
+     * @param timeout the timeout in milliseconds for connecting and replying, > 0
+     * @param request the request, or null, to check connecting only
+     * @return the result, never failing exceptionally
+     */
+    public CompletableFuture<Result> probe(InetSocketAddress address, long timeout, byte[] request){
+        Objects.requireNonNull(address);
+        if(timeout<=0){
+            throw new IllegalArgumentException("Timeout must be > 0: " + timeout);
+        }
+        Probe probe = new Probe(address, TimeUnit.MILLISECONDS.toNanos(timeout), request);
+        if(!address.isUnresolved()){
+            submit(probe);
+            return probe.future;
+        }
+        try {
+            resolver.execute(() -> {
+                InetSocketAddress resolved = new InetSocketAddress(address.getHostString(), address.getPort());
+                if(resolved.isUnresolved()){
+                    probe.future.complete(new Result(address, false, -1L, -1L, "Unresolved address."));
+                }else{
+                    submit(new Probe(resolved, probe.timeout, probe.request, probe.future));
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            probe.future.complete(new Result(address, false, -1L, -1L, "Prober closed."));
+        }
+        return probe.future;
+    }
+
+    private void submit(Probe probe){
+        if(closed){
+            probe.future.complete(new Result(probe.address, false, -1L, -1L, "Prober closed."));
+            return;
+        }
+        submitted.add(probe);
+        selector.wakeup();
+    }
+
+    /**
+     * Stops the prober, probes in flight complete as failed.
+     */
+    @Override
+    public void close(){
+        closed = true;
+        resolver.shutdownNow();
+        selector.wakeup();
+    }
+
+    private void run(){
+        try {
+            while(!closed){
+                Probe probe;
+                while((probe = submitted.poll())!=null){
+                    waiting.add(probe);
+                }
+                while(inFlight<maxConcurrent && (probe = waiting.poll())!=null){
+                    start(probe);
+                }
+                long now = System.nanoTime();
+                expire(now);
+                Probe next = deadlines.peek();
+                long wait = next==null?0L:Math.max(1L, TimeUnit.NANOSECONDS.toMillis(next.deadline - now) + 1);
+                selector.select(wait);
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while(keys.hasNext()){
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    handle(key, (Probe) key.attachment());
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            LOG.log(Level.SEVERE, "Reachability prober failed.", e);
+        } finally {
+            closed = true;
+            failAll();
+        }
+    }
+
+    private void start(Probe probe){
+        inFlight++;
+        probe.start = System.nanoTime();
+        probe.deadline = probe.start + probe.timeout;
+        try {
+            SocketChannel channel = SocketChannel.open();
+            probe.channel = channel;
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            deadlines.add(probe);
+            if(channel.connect(probe.address)){
+                connected(probe);
+            }else{
+                probe.key = channel.register(selector, SelectionKey.OP_CONNECT, probe);
+            }
+        } catch (IOException | RuntimeException e) {
+            finish(probe, false, String.valueOf(e));
+        }
+    }
+
+    private void connected(Probe probe) throws IOException {
+        probe.connectNanos = System.nanoTime() - probe.start;
+        if(probe.request==null){
+            finish(probe, true, "Connected.");
+            return;
+        }
+        probe.buffer = ByteBuffer.wrap(probe.request);
+        if(probe.key==null){
+            probe.key = probe.channel.register(selector, SelectionKey.OP_WRITE, probe);
+        }else{
+            probe.key.interestOps(SelectionKey.OP_WRITE);
+        }
+    }
+
+    private void handle(SelectionKey key, Probe probe){
+        if(probe.done){
+            return;
+        }
+        try {
+            if(key.isConnectable()){
+                probe.channel.finishConnect();
+                connected(probe);
+            }else if(key.isWritable()){
+                probe.channel.write(probe.buffer);
+                if(!probe.buffer.hasRemaining()){
+                    key.interestOps(SelectionKey.OP_READ);
+                }
+            }else if(key.isReadable()){
+                readBuffer.clear();
+                int read = probe.channel.read(readBuffer);
+                if(read>0){
+                    probe.replyNanos = System.nanoTime() - probe.start;
+                    finish(probe, true, "Connected and replied.");
+                }else if(read<0){
+                    finish(probe, false, "Connection closed without reply.");
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            finish(probe, false, String.valueOf(e));
+        }
+    }
+
+    private void expire(long now){
+        Probe probe;
+        while((probe = deadlines.peek())!=null && (probe.done || probe.deadline - now <= 0)){
+            deadlines.poll();
+            if(!probe.done){
+                finish(probe, false, "Timed out after " + TimeUnit.NANOSECONDS.toMillis(probe.timeout) + " ms.");
+            }
+        }
+    }
+
+    private void finish(Probe probe, boolean success, String message){
+        if(probe.done){
+            return;
+        }
+        probe.done = true;
+        inFlight--;
+        if(probe.channel!=null){
+            try {
+                probe.channel.close();
+            } catch (IOException e) {
+                LOG.log(Level.FINEST, "Failed to close probe channel.", e);
+            }
+        }
+        probe.future.complete(new Result(probe.address, success, probe.connectNanos, probe.replyNanos, message));
+    }
+
+    private void failAll(){
+        for(Probe probe:deadlines){
+            finish(probe, false, "Prober closed.");
+        }
+        deadlines.clear();
+        Probe probe;
+        while((probe = submitted.poll())!=null){
+            waiting.add(probe);
+        }
+        for(Probe p:waiting){
+            p.future.complete(new Result(p.address, false, -1L, -1L, "Prober closed."));
+        }
+        waiting.clear();
+        try {
+            selector.close();
+        } catch (IOException e) {
+            LOG.log(Level.FINEST, "Failed to close selector.", e);
+        }
+    }
+
+    /**
+     * State of a probe, accessed by the prober thread only.
+     */
+    private static final class Probe{
+        final InetSocketAddress address;
+        final long timeout;
+        final byte[] request;
+        final CompletableFuture<Result> future;
+        long start;
+        long deadline;
+        long connectNanos = -1L;
+        long replyNanos = -1L;
+        SocketChannel channel;
+        SelectionKey key;
+        ByteBuffer buffer;
+        boolean done;
+
+        Probe(InetSocketAddress address, long timeout, byte[] request){
+            this(address, timeout, request, new CompletableFuture<>());
+        }
+
+        Probe(InetSocketAddress address, long timeout, byte[] request, CompletableFuture<Result> future){
+            this.address = address;
+            this.timeout = timeout;
+            this.request = request;
+            this.future = future;
+        }
+    }
+
+    /**
+     * The result of a probe.
+     */
+    public static final class Result{
+        private final InetSocketAddress address;
+        private final boolean reachable;
+        private final long connectNanos;
+        private final long replyNanos;
+        private final String message;
+
+        Result(InetSocketAddress address, boolean reachable, long connectNanos, long replyNanos, String message){
+            this.address = address;
+            this.reachable = reachable;
+            this.connectNanos = connectNanos;
+            this.replyNanos = replyNanos;
+            this.message = message;
+        }
+
+        /**
+         * Gets the address probed.
+         *
+         * @return the address
+         */
+        public InetSocketAddress getAddress() {
+            return address;
+        }
+
+        /**
+         * Checks if the endpoint was reachable, and replied, if a request was sent.
+         *
+         * @return true, if the probe succeeded
+         */
+        public boolean isReachable() {
+            return reachable;
+        }
+
+        /**
+         * Gets the time to connect.
+         *
+         * @return the connect latency in nanoseconds, or -1, if not connected
+         */
+        public long getConnectNanos() {
+            return connectNanos;
+        }
+
+        /**
+         * Gets the time until the first reply bytes were received, measured from the start of connecting.
+         *
+         * @return the reply latency in nanoseconds, or -1, if no request was sent or no reply received
+         */
+        public long getReplyNanos() {
+            return replyNanos;
+        }
+
+        /**
+         * Gets a message describing the result.
+         *
+         * @return the message
+         */
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return "Result{" +
+                    "address=" + address +
+                    ", reachable=" + reachable +
+                    ", connectNanos=" + connectNanos +
+                    ", replyNanos=" + replyNanos +
+                    ", message='" + message + '\'' +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.jdocker.health;
+
+import io.github.jdocker.common.CheckResult;
+import io.github.jdocker.common.HealthCheck;
+import io.github.jdocker.common.HealthCheckResult;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the timeouts, the target concurrency and the back-off of the {@link HealthCheckScheduler}. Instead of
+ * sleeping for fixed times, the tests wait for conditions, and use a check on a separate target as a clock, which
+ * shows that the scheduler made progress.
+ */
+public class HealthCheckSchedulerTest {
+
+    private final HealthCheckScheduler scheduler = new HealthCheckScheduler(4, 1);
+
+    @After
+    public void tearDown() {
+        scheduler.close();
+    }
+
+    private static HealthCheckResult result(String id, CheckResult state){
+        return new HealthCheckResult().setCheckId(id).setResult(state).close();
+    }
+
+    /**
+     * Waits until the condition holds, failing after 10 seconds.
+     */
+    private static void waitUntil(String message, BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() - deadline > 0) {
+                fail("Timed out waiting: " + message);
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    /**
+     * Schedules a check on its own target, running every 10 ms.
+     */
+    private CountingCheck clock(){
+        CountingCheck clock = new CountingCheck("clock", new AtomicInteger(), new AtomicInteger(), null);
+        scheduler.schedule(clock, new HealthCheckOptions().setInterval(10).setTarget("clock"));
+        return clock;
+    }
+
+    /**
+     * Waits until the clock ran some more times, e.g. so a check, that must not run, had the chance to.
+     */
+    private static void tick(CountingCheck clock) throws InterruptedException {
+        int runs = clock.runs.get() + 10;
+        waitUntil("clock", () -> clock.runs.get() >= runs);
+    }
+
+    /**
+     * A check counting its runs and the maximal number of runs in progress at its target, optionally blocking
+     * until a latch is released.
+     */
+    private static class CountingCheck implements HealthCheck{
+        final String id;
+        final AtomicInteger running;
+        final AtomicInteger maxRunning;
+        final AtomicInteger runs = new AtomicInteger();
+        final CountDownLatch blocked;
+
+        CountingCheck(String id, AtomicInteger running, AtomicInteger maxRunning, CountDownLatch blocked){
+            this.id = id;
+            this.running = running;
+            this.maxRunning = maxRunning;
+            this.blocked = blocked;
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public HealthCheckResult check() {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                runs.incrementAndGet();
+                if (blocked != null) {
+                    blocked.await();
+                }
+                return result(id, CheckResult.SUCCESS);
+            } catch (InterruptedException e) {
+                return result(id, CheckResult.FAILED);
+            } finally {
+                running.decrementAndGet();
+            }
+        }
+    }
+
+    @Test
+    public void testTimedOutCheckRunsAgainOnlyWhenReturned() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger runs = new AtomicInteger();
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        HealthCheckHistory history = scheduler.schedule(new HealthCheck() {
+            @Override
+            public String getId() {
+                return "hung";
+            }
+
+            @Override
+            public HealthCheckResult check() {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    if (runs.incrementAndGet() == 1) {
+                        // ignores the interrupt of the timeout
+                        while (true) {
+                            try {
+                                release.await();
+                                break;
+                            } catch (InterruptedException e) {
+                                // still hung
+                            }
+                        }
+                    }
+                    return result("hung", CheckResult.SUCCESS);
+                } finally {
+                    running.decrementAndGet();
+                }
+            }
+        }, new HealthCheckOptions().setInterval(10).setTimeout(50).setJitter(0));
+        // the timeout is recorded
+        waitUntil("timeout recorded", () -> history.getCount() == 1);
+        assertEquals(CheckResult.FAILED, history.getLatest().getResult());
+        // but the check is not run again while hung
+        tick(clock());
+        assertEquals(1, runs.get());
+        assertEquals(1, history.getCount());
+        release.countDown();
+        waitUntil("run again", () -> runs.get() >= 3);
+        assertEquals(1, maxRunning.get());
+    }
+
+    @Test
+    public void testTargetConcurrency() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CountDownLatch blocked = new CountDownLatch(1);
+        List<CountingCheck> checks = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            CountingCheck check = new CountingCheck("check" + i, running, maxRunning, blocked);
+            checks.add(check);
+            scheduler.schedule(check, new HealthCheckOptions().setInterval(10).setTarget("host1"));
+        }
+        waitUntil("first check running", () -> running.get() == 1);
+        // another target is not held up by the blocked one
+        tick(clock());
+        assertEquals(1, running.get());
+        blocked.countDown();
+        for (CountingCheck check : checks) {
+            waitUntil(check.id, () -> check.runs.get() >= 3);
+        }
+        assertEquals(1, maxRunning.get());
+    }
+
+    @Test
+    public void testBackoffAndReset() throws Exception {
+        List<Long> runs = new CopyOnWriteArrayList<>();
+        scheduler.schedule(new HealthCheck() {
+            @Override
+            public String getId() {
+                return "flaky";
+            }
+
+            @Override
+            public HealthCheckResult check() {
+                runs.add(System.nanoTime());
+                return result("flaky", runs.size() <= 5 ? CheckResult.FAILED : CheckResult.SUCCESS);
+            }
+        }, new HealthCheckOptions().setInterval(10).setJitter(0).setMaxBackoff(10000));
+        waitUntil("recovered", () -> runs.size() >= 7);
+        // doubled after each of the 5 failures, to at least 320 ms
+        long backedOff = runs.get(5) - runs.get(4);
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(backedOff) >= 320);
+        // reset by the success
+        assertTrue(runs.get(6) - runs.get(5) < backedOff);
+    }
+
+    @Test
+    public void testUnschedule() throws Exception {
+        CountingCheck check = new CountingCheck("removed", new AtomicInteger(), new AtomicInteger(), null);
+        scheduler.schedule(check, new HealthCheckOptions().setInterval(10));
+        waitUntil("run", () -> check.runs.get() > 0);
+        assertNotNull(scheduler.getHistory("removed"));
+        assertTrue(scheduler.unschedule("removed"));
+        assertFalse(scheduler.unschedule("removed"));
+        assertNull(scheduler.getHistory("removed"));
+        CountingCheck clock = clock();
+        // a run in progress when unscheduled may still complete
+        tick(clock);
+        int runs = check.runs.get();
+        tick(clock);
+        assertEquals(runs, check.runs.get());
+        assertEquals(1, scheduler.size());
+    }
+}
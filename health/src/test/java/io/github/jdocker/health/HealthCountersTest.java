@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.jdocker.health;
+
+import io.github.jdocker.common.CheckResult;
+import io.github.jdocker.common.HealthCheck;
+import io.github.jdocker.common.HealthCheckResult;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that the {@link HealthCounters} maintained by the {@link HealthCheckScheduler} agree with the latest results
+ * kept in the {@link HealthCheckHistory} of each check.
+ */
+public class HealthCountersTest {
+
+    private final HealthCheckScheduler scheduler = new HealthCheckScheduler(4, 2);
+    private final List<HealthCheckHistory> histories = new ArrayList<>();
+
+    @After
+    public void tearDown() {
+        scheduler.close();
+    }
+
+    /**
+     * A check returning the given states one after the other, repeating the last one. The latch is counted down by
+     * the run after the one returning the last state, as a check runs again only after its result was recorded.
+     */
+    private HealthCheckHistory schedule(String id, long interval, CountDownLatch settled, CheckResult... states){
+        AtomicInteger runs = new AtomicInteger();
+        HealthCheckHistory history = scheduler.schedule(new HealthCheck() {
+            @Override
+            public String getId() {
+                return id;
+            }
+
+            @Override
+            public HealthCheckResult check() {
+                int run = runs.getAndIncrement();
+                if (run == states.length) {
+                    settled.countDown();
+                }
+                return new HealthCheckResult().setCheckId(id)
+                        .setResult(states[Math.min(run, states.length - 1)]).close();
+            }
+        }, new HealthCheckOptions().setInterval(interval).setJitter(0));
+        histories.add(history);
+        return history;
+    }
+
+    private void assertCountersAgree(){
+        HealthCounters counters = scheduler.getCounters();
+        long pending = 0;
+        long[] counts = new long[CheckResult.values().length];
+        for (HealthCheckHistory history : histories) {
+            HealthCheckResult latest = history.getLatest();
+            if (latest == null) {
+                pending++;
+            } else {
+                counts[latest.getResult().ordinal()]++;
+            }
+        }
+        assertEquals(pending, counters.getPending());
+        for (CheckResult state : CheckResult.values()) {
+            assertEquals(state.toString(), counts[state.ordinal()], counters.getCount(state));
+        }
+        assertEquals(histories.size(), counters.getTotal());
+    }
+
+    @Test
+    public void testCountersAgreeWithHistories() throws Exception {
+        CountDownLatch settled = new CountDownLatch(20);
+        for (int i = 0; i < 5; i++) {
+            schedule("success" + i, 10, settled, CheckResult.SUCCESS);
+            schedule("warn" + i, 10, settled, CheckResult.FAILED, CheckResult.WARN);
+            schedule("failed" + i, 10, settled, CheckResult.SUCCESS, CheckResult.WARN, CheckResult.FAILED);
+            schedule("recovered" + i, 10, settled, CheckResult.FAILED, CheckResult.FAILED, CheckResult.SUCCESS);
+        }
+        // not run within the test
+        schedule("pending", TimeUnit.HOURS.toMillis(1), settled, CheckResult.SUCCESS);
+        assertTrue(settled.await(10, TimeUnit.SECONDS));
+        assertCountersAgree();
+        assertEquals(1, scheduler.getCounters().getPending());
+        assertEquals(10, scheduler.getCounters().getCount(CheckResult.SUCCESS));
+        assertEquals(5, scheduler.getCounters().getCount(CheckResult.WARN));
+        assertEquals(5, scheduler.getCounters().getCount(CheckResult.FAILED));
+    }
+
+    @Test
+    public void testUnscheduleAndReplace() throws Exception {
+        CountDownLatch settled = new CountDownLatch(3);
+        schedule("a", 10, settled, CheckResult.SUCCESS);
+        schedule("b", 10, settled, CheckResult.FAILED);
+        HealthCheckHistory replaced = schedule("c", 10, settled, CheckResult.WARN);
+        assertTrue(settled.await(10, TimeUnit.SECONDS));
+        assertCountersAgree();
+        assertTrue(scheduler.unschedule("b"));
+        histories.remove(1);
+        assertCountersAgree();
+        // the replaced check is no longer counted, the new one is pending until its first result
+        CountDownLatch replacedSettled = new CountDownLatch(1);
+        histories.remove(replaced);
+        HealthCheckHistory replacement = schedule("c", TimeUnit.HOURS.toMillis(1), replacedSettled,
+                CheckResult.SUCCESS);
+        assertCountersAgree();
+        assertNull(replacement.getLatest());
+        assertEquals(1, scheduler.getCounters().getPending());
+        assertEquals(0, scheduler.getCounters().getCount(CheckResult.WARN));
+        scheduler.close();
+        assertEquals(0, scheduler.getCounters().getTotal());
+    }
+}
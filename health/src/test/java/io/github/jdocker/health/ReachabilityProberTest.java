@@ -0,0 +1,195 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.jdocker.health;
+
+import io.github.jdocker.common.CheckResult;
+import io.github.jdocker.common.Endpoint;
+import io.github.jdocker.common.EndpointStats;
+import io.github.jdocker.common.HealthCheckResult;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the NIO probes of the {@link ReachabilityProber} against a local server.
+ */
+public class ReachabilityProberTest {
+
+    private final ReachabilityProber prober = new ReachabilityProber(2);
+    private ServerSocket server;
+    private final List<Socket> accepted = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void setUp() throws IOException {
+        server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(() -> {
+            try {
+                while (true) {
+                    Socket socket = server.accept();
+                    accepted.add(socket);
+                    // replies "pong" to a "ping", does not reply to anything else
+                    InputStream in = socket.getInputStream();
+                    byte[] request = new byte[4];
+                    if (in.read(request) == 4 && "ping".equals(new String(request, "US-ASCII"))) {
+                        socket.getOutputStream().write("pong".getBytes("US-ASCII"));
+                    }
+                }
+            } catch (IOException e) {
+                // closed
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        prober.close();
+        server.close();
+        for (Socket socket : accepted) {
+            socket.close();
+        }
+    }
+
+    private InetSocketAddress address() {
+        return new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getLocalPort());
+    }
+
+    @Test
+    public void testConnect() {
+        ReachabilityProber.Result result = prober.probe(address(), 2000).join();
+        assertTrue(result.getMessage(), result.isReachable());
+        assertTrue(result.getConnectNanos() >= 0);
+        assertEquals(-1L, result.getReplyNanos());
+    }
+
+    @Test
+    public void testRequestAndReply() throws Exception {
+        ReachabilityProber.Result result = prober.probe(address(), 2000, "ping".getBytes("US-ASCII")).join();
+        assertTrue(result.getMessage(), result.isReachable());
+        assertTrue(result.getReplyNanos() >= result.getConnectNanos());
+    }
+
+    @Test
+    public void testNoReplyTimesOut() throws Exception {
+        ReachabilityProber.Result result = prober.probe(address(), 200, "noop".getBytes("US-ASCII")).join();
+        assertFalse(result.isReachable());
+        assertTrue(result.getConnectNanos() >= 0);
+        assertTrue(result.getMessage(), result.getMessage().startsWith("Timed out"));
+    }
+
+    @Test
+    public void testRefused() throws IOException {
+        InetSocketAddress closed;
+        try (ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            closed = new InetSocketAddress(InetAddress.getLoopbackAddress(), socket.getLocalPort());
+        }
+        ReachabilityProber.Result result = prober.probe(closed, 2000).join();
+        assertFalse(result.isReachable());
+        assertEquals(-1L, result.getConnectNanos());
+    }
+
+    @Test
+    public void testUnresolvedAddresses() {
+        ReachabilityProber.Result result = prober.probe(InetSocketAddress.createUnresolved(
+                InetAddress.getLoopbackAddress().getHostAddress(), server.getLocalPort()), 2000).join();
+        assertTrue(result.getMessage(), result.isReachable());
+        assertFalse(result.getAddress().isUnresolved());
+        result = prober.probe(InetSocketAddress.createUnresolved("unknown.invalid", 80), 2000).join();
+        assertFalse(result.isReachable());
+        assertEquals("Unresolved address.", result.getMessage());
+    }
+
+    @Test
+    public void testMaxConcurrent() throws Exception {
+        // more probes than sockets allowed, the others wait for a free socket
+        List<CompletableFuture<ReachabilityProber.Result>> probes = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            probes.add(prober.probe(address(), 2000, "ping".getBytes("US-ASCII")));
+        }
+        for (CompletableFuture<ReachabilityProber.Result> probe : probes) {
+            assertTrue(probe.get(5, TimeUnit.SECONDS).isReachable());
+        }
+    }
+
+    @Test
+    public void testClosed() {
+        prober.close();
+        assertFalse(prober.probe(address(), 2000).join().isReachable());
+    }
+
+    @Test
+    public void testPingCheck() {
+        Endpoint reachable = new Endpoint("ping", URI.create("tcp://" +
+                InetAddress.getLoopbackAddress().getHostAddress() + ":" + server.getLocalPort()), Collections.emptyList());
+        Endpoint noPort = new Endpoint("ping", URI.create("tcp://somewhere"), Collections.emptyList());
+        try {
+            EndpoingPingCheck check = new EndpoingPingCheck(reachable);
+            HealthCheckResult result = check.check();
+            assertEquals(result.getMessage(), CheckResult.SUCCESS, result.getResult());
+            assertEquals(check.getId(), result.getCheckId());
+            assertFalse(EndpointStats.of(reachable).isEjected());
+            List<HealthCheckResult> results = EndpoingPingCheck.checkAll(Arrays.asList(reachable, noPort), 2000)
+                    .join();
+            assertEquals(CheckResult.SUCCESS, results.get(0).getResult());
+            assertEquals(CheckResult.NOT_APPLICABLE, results.get(1).getResult());
+        } finally {
+            EndpointStats.remove(reachable);
+        }
+    }
+
+    @Test
+    public void testRemovedPingCheckReadmits() throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            port = socket.getLocalPort();
+        }
+        Endpoint unreachable = new Endpoint("ping", URI.create("tcp://" +
+                InetAddress.getLoopbackAddress().getHostAddress() + ":" + port), Collections.emptyList());
+        try {
+            EndpoingPingCheck check = new EndpoingPingCheck(unreachable);
+            assertEquals(CheckResult.FAILED, check.check().getResult());
+            assertTrue(EndpointStats.of(unreachable).isEjected());
+            check.removed();
+            assertFalse(EndpointStats.of(unreachable).isEjected());
+            // results of runs still in flight are no longer applied
+            check.check();
+            assertFalse(EndpointStats.of(unreachable).isEjected());
+        } finally {
+            EndpointStats.remove(unreachable);
+        }
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.jdocker.agent;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import io.github.jdocker.DockerContainer;
+import io.github.jdocker.agent.internal.DockerEngineClient;
+import io.github.jdocker.common.vertx.BinaryCodec;
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.json.JsonObject;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Verticle subscribing to the docker engine's {@code /events} stream, keeping the agent's
+ * {@link ContainerInventory} up to date and publishing the resulting deltas on the event bus. After a connection
+ * loss the containers are listed once and the differences are published, before the subscription is resumed.
+ */
+public class ContainerEventsVerticle extends AbstractVerticle{
+
+    private static final Logger LOG = Logger.getLogger(ContainerEventsVerticle.class.getName());
+
+    /** Address, where container deltas are published. */
+    public static final String CONTAINER_EVENTS_ADDRESS = "jdocker.docker-agent:containers";
+    /** Address, where a full inventory snapshot can be requested. */
+    public static final String CONTAINER_SNAPSHOT_ADDRESS = "jdocker.docker-agent:containers-snapshot";
+
+    private static final String EVENTS_PATH = "/events?filters=%7B%22type%22%3A%5B%22container%22%5D%7D";
+    private static final long MIN_RECONNECT_DELAY_MS = 500L;
+    private static final long MAX_RECONNECT_DELAY_MS = 30000L;
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private DockerAgent agent;
+    private ContainerInventory inventory;
+    private DockerEngineClient client;
+    private volatile boolean running;
+    private volatile DockerEngineClient.ResponseStream stream;
+    private Thread subscriber;
+
+    @Override
+    public void start() throws Exception {
+        agent = DockerAgent.getInstance();
+        inventory = agent.getContainerInventory();
+        client = DockerEngineClient.fromConfiguration();
+        BinaryCodec.register(vertx.eventBus());
+        vertx.eventBus().consumer(CONTAINER_SNAPSHOT_ADDRESS, message -> message.reply(snapshot()));
+        running = true;
+        subscriber = new Thread(this::subscribe, "jdocker-container-events");
+        subscriber.setDaemon(true);
+        subscriber.start();
+    }
+
+    @Override
+    public void stop() throws Exception {
+        running = false;
+        DockerEngineClient.ResponseStream current = stream;
+        if(current!=null){
+            current.close();
+        }
+        subscriber.interrupt();
+        client.close();
+    }
+
+    private JsonObject snapshot(){
+        return inventory.toJSON().put("host", agent.getAgentName());
+    }
+
+    private void subscribe(){
+        long delay = MIN_RECONNECT_DELAY_MS;
+        while(running){
+            try {
+                // subscribe first, so no event between listing and subscribing is lost.
+                try(DockerEngineClient.ResponseStream events = client.openStream(EVENTS_PATH)){
+                    stream = events;
+                    publish(inventory.replaceAll(client.listContainers(true, agent.getAgentName())));
+                    delay = MIN_RECONNECT_DELAY_MS;
+                    readEvents(events);
+                }
+            } catch (IOException e) {
+                if(running){
+                    LOG.log(Level.WARNING, "Docker event stream interrupted, reconnecting in " + delay + "ms.", e);
+                }
+            } finally {
+                stream = null;
+            }
+            if(running){
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                delay = Math.min(delay * 2, MAX_RECONNECT_DELAY_MS);
+            }
+        }
+    }
+
+    private void readEvents(DockerEngineClient.ResponseStream events) throws IOException {
+        try(JsonParser parser = JSON_FACTORY.createParser(events.getBody())){
+            JsonToken token;
+            while(running && (token = parser.nextToken())!=null){
+                if(token==JsonToken.START_OBJECT){
+                    onEvent(parser);
+                }else{
+                    parser.skipChildren();
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads an event object, supporting the legacy ({@code status}, {@code id}) as well as the current
+     * ({@code Type}, {@code Action}, {@code Actor.ID}) format.
+     */
+    private void onEvent(JsonParser parser) throws IOException {
+        String type = null, action = null, id = null;
+        while(parser.nextToken()==JsonToken.FIELD_NAME){
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            switch(field){
+                case "Type": type = parser.getValueAsString(); break;
+                case "Action": action = parser.getValueAsString(); break;
+                case "status":
+                    if(action==null){
+                        action = parser.getValueAsString();
+                    }
+                    break;
+                case "id": id = parser.getValueAsString(); break;
+                case "Actor":
+                    if(token==JsonToken.START_OBJECT){
+                        while(parser.nextToken()==JsonToken.FIELD_NAME){
+                            String actorField = parser.getCurrentName();
+                            parser.nextToken();
+                            if("ID".equals(actorField) && id==null){
+                                id = parser.getValueAsString();
+                            }else{
+                                parser.skipChildren();
+                            }
+                        }
+                    }
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        if(id==null || action==null || (type!=null && !"container".equals(type))){
+            return;
+        }
+        switch(action){
+            case "destroy":
+                publish(inventory.remove(id));
+                break;
+            case "create":
+            case "start":
+            case "restart":
+            case "die":
+            case "stop":
+            case "kill":
+            case "oom":
+            case "pause":
+            case "unpause":
+            case "rename":
+            case "update":
+                refresh(id);
+                break;
+            default:
+                // exec, attach, resize etc. do not change the inventory.
+        }
+    }
+
+    private void refresh(String id){
+        DockerContainer container;
+        try {
+            container = client.inspectContainer(id, agent.getAgentName());
+        } catch (IOException e) {
+            // already removed again, the destroy event follows.
+            LOG.log(Level.FINE, "Failed to inspect container " + id, e);
+            return;
+        }
+        publish(inventory.put(container));
+    }
+
+    private void publish(List<JsonObject> deltas){
+        for(JsonObject delta:deltas){
+            publish(delta);
+        }
+    }
+
+    private void publish(JsonObject delta){
+        if(delta!=null){
+            delta.put("host", agent.getAgentName());
+            context.runOnContext(v -> vertx.eventBus().publish(CONTAINER_EVENTS_ADDRESS, delta,
+                    BinaryCodec.deliveryOptions()));
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.jdocker.agent;
+
+import io.github.jdocker.DockerContainer;
+import io.vertx.core.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory view of the containers of the local docker engine, kept up to date incrementally from the engine's
+ * event stream. Reads are plain map lookups, each modification returns a compact delta that can be published
+ * to other nodes. Deltas are numbered, so receivers can detect gaps and request a full resync.
+ */
+public final class ContainerInventory {
+
+    /** Delta operation for a new or changed container. */
+    public static final String OP_PUT = "put";
+    /** Delta operation for a destroyed container. */
+    public static final String OP_REMOVE = "remove";
+
+    private final ConcurrentMap<String, DockerContainer> containers = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * Get a container by id.
+     * @param id the container id.
+     * @return the container, or null.
+     */
+    public DockerContainer get(String id){
+        return containers.get(id);
+    }
+
+    /**
+     * Get all known containers.
+     * @return the containers, never null.
+     */
+    public Collection<DockerContainer> getContainers(){
+        return Collections.unmodifiableCollection(containers.values());
+    }
+
+    public int size(){
+        return containers.size();
+    }
+
+    /**
+     * Get the sequence number of the last delta created.
+     * @return the sequence number, 0 if nothing was recorded so far.
+     */
+    public long getSequence(){
+        return sequence.get();
+    }
+
+    /**
+     * Adds or updates a container.
+     * @param container the container, not null.
+     * @return the delta containing only the changed fields, or null if a known container did not change. New
+     * containers always yield a delta, even if none of their fields is set.
+     */
+    public synchronized JsonObject put(DockerContainer container){
+        DockerContainer previous = containers.put(container.getId(), container);
+        JsonObject changes = diff(previous, container);
+        if(previous!=null && changes.isEmpty()){
+            return null;
+        }
+        return delta(OP_PUT, container.getId()).put("data", changes);
+    }
+
+    /**
+     * Removes a container.
+     * @param id the container id, not null.
+     * @return the delta, or null if the container was not known.
+     */
+    public synchronized JsonObject remove(String id){
+        if(containers.remove(id)==null){
+            return null;
+        }
+        return delta(OP_REMOVE, id);
+    }
+
+    /**
+     * Replaces the inventory with a full listing, e.g. after the event stream was interrupted.
+     * @param current the current containers, not null.
+     * @return the deltas needed to bring a receiver from the previous to the new state.
+     */
+    public synchronized List<JsonObject> replaceAll(Collection<DockerContainer> current){
+        List<JsonObject> deltas = new ArrayList<>();
+        Set<String> ids = new HashSet<>();
+        for(DockerContainer container:current){
+            ids.add(container.getId());
+            JsonObject delta = put(container);
+            if(delta!=null){
+                deltas.add(delta);
+            }
+        }
+        for(String id:new ArrayList<>(containers.keySet())){
+            if(!ids.contains(id)){
+                deltas.add(remove(id));
+            }
+        }
+        return deltas;
+    }
+
+    /**
+     * Creates a full snapshot of all containers.
+     * @return the snapshot, with the current sequence number.
+     */
+    public synchronized JsonObject toJSON(){
+        JsonObject data = new JsonObject();
+        for(DockerContainer container:containers.values()){
+            data.put(container.getId(), diff(null, container));
+        }
+        return new JsonObject().put("seq", sequence.get()).put("containers", data);
+    }
+
+    private JsonObject delta(String op, String id){
+        return new JsonObject().put("seq", sequence.incrementAndGet()).put("op", op).put("id", id);
+    }
+
+    private static JsonObject diff(DockerContainer previous, DockerContainer current){
+        JsonObject changes = new JsonObject();
+        putIfChanged(changes, "name", previous==null?null:previous.getName(), current.getName());
+        putIfChanged(changes, "image", previous==null?null:previous.getImage(), current.getImage());
+        putIfChanged(changes, "status", previous==null?null:previous.getStatus(), current.getStatus());
+        putIfChanged(changes, "ip", previous==null?null:previous.getIPAddress(), current.getIPAddress());
+        putIfChanged(changes, "mac", previous==null?null:previous.getMacAddress(), current.getMacAddress());
+        putIfChanged(changes, "ports", previous==null?null:previous.getPortsInfo(), current.getPortsInfo());
+        return changes;
+    }
+
+    private static void putIfChanged(JsonObject changes, String key, String previous, String current){
+        if(!Objects.equals(previous, current)){
+            changes.put(key, current);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ContainerInventory{" +
+                "containers=" + containers.size() +
+                ", sequence=" + sequence.get() +
+                '}';
+    }
+}
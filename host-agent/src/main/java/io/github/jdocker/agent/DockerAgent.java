@@ -25,6 +25,8 @@ import java.util.*;
 
 /**
  * Main Docker process, which is able to perform deployment, monitoring as well as statistical functions.
+ * Methods querying the docker engine or running commands block the calling thread, so they must be called from
+ * worker threads, never on a Vert.x event loop.
  */
 public interface DockerAgent{
 
@@ -89,44 +91,58 @@ public interface DockerAgent{
     String getKernelVersion();
 
     // command line commands
-    /*
-    Client:
- Version:      1.9.1
- API version:  1.21
- Go version:   go1.4.2
- Git commit:   a34a1d5
- Built:
- OS/Arch:      linux/amd64
-
-Server:
- Version:      1.9.1
- API version:  1.21
- Go version:   go1.4.2
- Git commit:   a34a1d5
- Built:
- OS/Arch:      linux/amd6
+    /**
+     * Get the version of the Docker engine, in the layout of the {@code Server:} section printed by
+     * {@code docker version}, regardless if read from the engine API or the command line:
+     * <pre>
+     * Server:
+     *  Version:      1.9.1
+     *  API version:  1.21
+     *  Go version:   go1.4.2
+     *  Git commit:   a34a1d5
+     *  Built:
+     *  OS/Arch:      linux/amd64
+     * </pre>
+     * @return the version text, never null.
      */
     String getDockerVersion();
 
-    /*
-    Containers: 34
-Images: 222
-Server Version: 1.9.1
-Storage Driver: btrfs
- Build Version: Btrfs v4.3+20151116
- Library Version: 101
-Execution Driver: native-0.2
-Logging Driver: json-file
-Kernel Version: 3.16.7-29-desktop
-Operating System: openSUSE 13.2 (Harlequin) (x86_64)
-CPUs: 8
-Total Memory: 15.6 GiB
-Name: workhorse.atsticks.ch
-ID: Q3SM:6EYV:MFLM:BFWF:S6T4:WDL3:MONH:4NF5:MKXC:H2R6:ZMQZ:DJ4B
-WARNING: No swap limit support
+    /**
+     * Get the Docker engine's system information, in the layout printed by {@code docker info}, regardless if
+     * read from the engine API or the command line:
+     * <pre>
+     * Containers: 34
+     * Images: 222
+     * Server Version: 1.9.1
+     * Storage Driver: btrfs
+     *  Build Version: Btrfs v4.3+20151116
+     *  Library Version: 101
+     * Execution Driver: native-0.2
+     * Logging Driver: json-file
+     * Kernel Version: 3.16.7-29-desktop
+     * Operating System: openSUSE 13.2 (Harlequin) (x86_64)
+     * CPUs: 8
+     * Total Memory: 15.6 GiB
+     * Name: workhorse.atsticks.ch
+     * ID: Q3SM:6EYV:MFLM:BFWF:S6T4:WDL3:MONH:4NF5:MKXC:H2R6:ZMQZ:DJ4B
+     * WARNING: No swap limit support
+     * </pre>
+     * @return the info text, never null.
      */
     String getDockerInfo();
 
+    /**
+     * Get the docker engine's host facts, as reported by the engine API.
+     * @return the engine info, or null, if the engine is not reachable.
+     */
+    DockerEngineInfo getDockerEngineInfo();
+
+    /**
+     * Get the inventory of the containers running on this agent's docker engine.
+     * @return the inventory, never null.
+     */
+    ContainerInventory getContainerInventory();
+
     /**
      * Access the singleton instance of the agent.
      * @return the agent instance.
@@ -5,7 +5,7 @@ import io.dropwizard.setup.Bootstrap;
 import io.dropwizard.setup.Environment;
 import io.github.jdocker.agent.rest.DockerMachineResource;
 import io.github.jdocker.common.ServiceContextManager;
-import io.vertx.core.Launcher;
+import io.vertx.core.Vertx;
 
 public class DockerAgentMain extends Application<DockerAgentConfiguration> {
 
@@ -49,7 +49,9 @@ public class DockerAgentMain extends Application<DockerAgentConfiguration> {
 //        agent.setAgentName(configuration.getAgentName());
         final DockerMachineResource dockerMachine = new DockerMachineResource();
         environment.jersey().register(dockerMachine);
-        Launcher.main(new String[]{"run", HeartBeatVerticle.class.getName()});
+        Vertx vertx = Vertx.vertx();
+        vertx.deployVerticle(HeartBeatVerticle.class.getName());
+        vertx.deployVerticle(ContainerEventsVerticle.class.getName());
     }
 
 
@@ -27,6 +27,8 @@ import java.util.Map;
 
 /**
  * Main Docker process, which is able to perform deployment, monitoring as well as statistical functions.
+ * Methods running docker-machine commands block the calling thread, so they must be called from worker threads,
+ * never on a Vert.x event loop.
  */
 public interface DockerMachine {
 
@@ -18,57 +18,129 @@
  */
 package io.github.jdocker.agent;
 
+import io.github.jdocker.DockerContainer;
+import io.github.jdocker.DockerEngineInfo;
+import io.github.jdocker.HeartbeatEncoder;
+import io.github.jdocker.common.vertx.BinaryCodec;
 import io.vertx.core.AbstractVerticle;
-import io.vertx.core.eventbus.EventBus;
 import io.vertx.core.json.JsonObject;
+import org.apache.tamaya.Configuration;
 import org.apache.tamaya.ConfigurationProvider;
 import io.github.jdocker.common.ServiceContextManager;
 
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
 /**
- * Verticle for pulishing heartbeats on the vertx event bus.
+ * Verticle for pulishing heartbeats on the vertx event bus. Heartbeats are sent periodically, with a random jitter
+ * so agents started together do not report in lockstep. Only the first heartbeat and heartbeats requested on
+ * {@link HeartbeatEncoder#HEARTBEAT_RESYNC_ADDRESS} carry the full state, all others only the changes.
  */
 public class HeartBeatVerticle extends AbstractVerticle{
 
+    private static final Logger LOG = Logger.getLogger(HeartBeatVerticle.class.getName());
+
     private static final long DEFAULT_HEARTBEAT_INTERVAL_MS = 10000L;
+    /** Default jitter, as fraction of the interval. */
+    private static final double DEFAULT_HEARTBEAT_JITTER = 0.1d;
+    /** The engine capacity is only refreshed every n-th heartbeat. */
+    private static final int CAPACITY_REFRESH_BEATS = 10;
+
     private long timerID;
+    private long interval;
+    private double jitter;
+    private volatile boolean stopped;
+    private int beats;
+    private DockerEngineInfo engineInfo;
+    private DockerAgent agent;
+    private HeartbeatEncoder encoder;
 
     @Override
     public void start() throws Exception {
-        Long heartbeatInternal = ConfigurationProvider.getConfiguration().get("jdocker.Docker.Agent.heartbeatInterval", Long.class);
+        Configuration config = ConfigurationProvider.getConfiguration();
+        Long heartbeatInternal = config.get("jdocker.Docker.Agent.heartbeatInterval", Long.class);
         if (heartbeatInternal == null) {
             heartbeatInternal = Long.valueOf(DEFAULT_HEARTBEAT_INTERVAL_MS);
         }
-        timerID = vertx.setTimer(heartbeatInternal, id -> {
-            // register node into known nodes
-            EventBus bus = vertx.eventBus();
-            bus.send("jdocker.docker-agent:heartbeat", createHeartbeat());
+        Double heartbeatJitter = config.get("jdocker.Docker.Agent.heartbeatJitter", Double.class);
+        if (heartbeatJitter == null) {
+            heartbeatJitter = Double.valueOf(DEFAULT_HEARTBEAT_JITTER);
+        }
+        interval = heartbeatInternal;
+        jitter = Math.max(0d, Math.min(1d, heartbeatJitter));
+        agent = ServiceContextManager.getServiceContext().getService(DockerAgent.class);
+        encoder = new HeartbeatEncoder(agent.getAgentName());
+        BinaryCodec.register(vertx.eventBus());
+        vertx.eventBus().<String>consumer(HeartbeatEncoder.HEARTBEAT_RESYNC_ADDRESS, message -> {
+            Object name = message.body();
+            if(name==null || agent.getAgentName().equals(String.valueOf(name))){
+                encoder.requestFull();
+            }
         });
+        // spread the first, full heartbeats of agents started together over one interval.
+        scheduleHeartbeat(ThreadLocalRandom.current().nextLong(interval + 1));
     }
 
     @Override
     public void stop() throws Exception {
+        stopped = true;
         vertx.cancelTimer(timerID);
     }
 
-    private JsonObject createHeartbeat(){
-        DockerAgent agent = ServiceContextManager.getServiceContext().getService(DockerAgent.class);
+    private long nextDelay(){
+        long spread = (long)(interval * jitter);
+        if(spread<=0){
+            return interval;
+        }
+        return interval - spread + ThreadLocalRandom.current().nextLong(2 * spread + 1);
+    }
+
+    private void scheduleHeartbeat(long delay){
+        if(stopped){
+            return;
+        }
+        timerID = vertx.setTimer(Math.max(1L, delay), id ->
+                // the agent state may require blocking engine calls.
+                vertx.<JsonObject>executeBlocking(f -> f.complete(createState()), false, res -> {
+                    if(res.succeeded()){
+                        vertx.eventBus().publish(HeartbeatEncoder.HEARTBEAT_ADDRESS, encoder.encode(res.result()),
+                                BinaryCodec.deliveryOptions());
+                    }else{
+                        LOG.log(Level.WARNING, "Failed to evaluate heartbeat state.", res.cause());
+                    }
+                    scheduleHeartbeat(nextDelay());
+                }));
+    }
+
+    private JsonObject createState(){
+        if(engineInfo==null || beats++ % CAPACITY_REFRESH_BEATS == 0){
+            DockerEngineInfo info = agent.getDockerEngineInfo();
+            if(info!=null){
+                engineInfo = info;
+            }
+        }
+        JsonObject labels = new JsonObject();
+        for(Map.Entry<String,String> en:agent.getLabels().entrySet()){
+            labels.put(en.getKey(), en.getValue());
+        }
+        int running = 0;
+        for(DockerContainer container:agent.getContainerInventory().getContainers()){
+            if("running".equals(container.getStatus())){
+                running++;
+            }
+        }
         JsonObject o = new JsonObject()
                 .put("component", "docker-agent")
-                .put("class", agent.getClass().getName())
-                .put("uri", agent.getURI())
-                .put("name", agent.getAgentName())
-                .put("state", agent.getStatus());
-//        switch(agent.getStatus()){
-//            case Running:
-//                o.put("started", agent.getStarted());
-//                break;
-//            case Stopped:
-//                o.put("stopped", agent.getStopped());
-//                break;
-//            case Failed:
-//                o.put("failed", agent.getFailed());
-//                break;
-//        }
+                .put("uri", agent.getURI()==null?null:agent.getURI().toString())
+                .put("state", agent.getStatus().toString())
+                .put("labels", labels)
+                .put("containers", agent.getContainerInventory().size())
+                .put("containersRunning", running);
+        if(engineInfo!=null){
+            o.put("cpus", engineInfo.getCPUs()).put("memory", engineInfo.getMemory());
+        }
         return o;
     }
 }
@@ -18,12 +18,15 @@
  */
 package io.github.jdocker.agent.internal;
 
+import io.github.jdocker.DockerEngineInfo;
 import io.github.jdocker.Machine;
 import io.github.jdocker.MachineConfig;
 import io.github.jdocker.MachineConfigBuilder;
 import io.github.jdocker.SwarmConfig;
+import io.github.jdocker.agent.ContainerInventory;
 import io.github.jdocker.agent.DockerAgent;
 import io.github.jdocker.common.Executor;
+import io.github.jdocker.common.ServiceProvider;
 import org.apache.tamaya.Configuration;
 import org.apache.tamaya.ConfigurationProvider;
 
@@ -39,12 +42,19 @@ import java.util.logging.Logger;
 /**
  * Main Docker process, which is able to perform deployment, monitoring as well as statistical functions.
  */
+@ServiceProvider(DockerAgent.class)
 public class DefaultDockerAgent implements DockerAgent{
 
     private static final Logger LOG = Logger.getLogger(DefaultDockerAgent.class.getName());
 
+    /** Timeout for local query commands like {@code docker info}. */
+    private static final long QUERY_TIMEOUT_MS = 30000L;
     /** Default interval that defines how often an agent sends its heatbeat data. */
     private static final long DEFAULT_HEARTBEAT_INTERVAL_MS = 30000L; // all 30 seconds
+    /** Client for the local docker engine API, the CLI is only used as fallback. */
+    private final DockerEngineClient engineClient = DockerEngineClient.fromConfiguration();
+    /** The containers of the local engine, maintained by the ContainerEventsVerticle. */
+    private final ContainerInventory containerInventory = new ContainerInventory();
     /** The current node's machine config. */
     private MachineConfig machineConfig;
     /** The id of zhe timer for sending the heartbeats. */
@@ -92,7 +102,7 @@ public class DefaultDockerAgent implements DockerAgent{
     }
 
     public String getKernelVersion(){
-        return Executor.execute("uname -r");
+        return Executor.execute(QUERY_TIMEOUT_MS, "uname -r");
     }
 
     public String getCommand(String commandName){
@@ -163,47 +173,41 @@ public class DefaultDockerAgent implements DockerAgent{
 
 
     // command line commands
-    /*
-    Client:
- Version:      1.9.1
- API version:  1.21
- Go version:   go1.4.2
- Git commit:   a34a1d5
- Built:
- OS/Arch:      linux/amd64
-
-Server:
- Version:      1.9.1
- API version:  1.21
- Go version:   go1.4.2
- Git commit:   a34a1d5
- Built:
- OS/Arch:      linux/amd6
-     */
+    @Override
     public String getDockerVersion(){
-        return Executor.execute("docker version");
+        try {
+            return engineClient.getVersionText();
+        } catch (IOException e) {
+            LOG.log(Level.FINE, "Docker engine API not reachable, using docker CLI.", e);
+            String output = Executor.execute(QUERY_TIMEOUT_MS, "docker version");
+            int server = output.indexOf("Server:");
+            return server<0?output:output.substring(server);
+        }
     }
 
-    /*
-    Containers: 34
-Images: 222
-Server Version: 1.9.1
-Storage Driver: btrfs
- Build Version: Btrfs v4.3+20151116
- Library Version: 101
-Execution Driver: native-0.2
-Logging Driver: json-file
-Kernel Version: 3.16.7-29-desktop
-Operating System: openSUSE 13.2 (Harlequin) (x86_64)
-CPUs: 8
-Total Memory: 15.6 GiB
-Name: workhorse.atsticks.ch
-ID: Q3SM:6EYV:MFLM:BFWF:S6T4:WDL3:MONH:4NF5:MKXC:H2R6:ZMQZ:DJ4B
-WARNING: No swap limit support
-
-     */
+    @Override
     public String getDockerInfo(){
-        return Executor.execute("docker info");
+        try {
+            return engineClient.getInfoText();
+        } catch (IOException e) {
+            LOG.log(Level.FINE, "Docker engine API not reachable, using docker CLI.", e);
+            return Executor.execute(QUERY_TIMEOUT_MS, "docker info");
+        }
+    }
+
+    @Override
+    public DockerEngineInfo getDockerEngineInfo(){
+        try {
+            return engineClient.getInfo();
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Docker engine API not reachable at " + engineClient.getDockerHost(), e);
+            return null;
+        }
+    }
+
+    @Override
+    public ContainerInventory getContainerInventory(){
+        return containerInventory;
     }
 
 
@@ -245,7 +249,7 @@ vboxnet0  Link encap:Ethernet  Hardware Adresse 0A:00:27:00:00:00
           RX bytes:0 (0.0 b)  TX bytes:0 (0.0 b)
      */
     public String getIFConfig(){
-        return Executor.execute("sudo ifconfig");
+        return Executor.execute(QUERY_TIMEOUT_MS, "sudo ifconfig");
         // Look for
 //        inet Adresse:192.168.1.4  Bcast:192.168.1.255  Maske:255.255.255.0
 //        inet6 Adresse: fe80::a2b3:ccff:fe4e:46ae/64 Gültigkeitsbereich:Verbindung
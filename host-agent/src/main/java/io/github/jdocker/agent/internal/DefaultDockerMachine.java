@@ -25,6 +25,7 @@ import io.github.jdocker.SwarmConfig;
 import io.github.jdocker.agent.DockerAgent;
 import io.github.jdocker.agent.DockerMachine;
 import io.github.jdocker.common.Executor;
+import io.github.jdocker.common.ServiceProvider;
 import org.apache.tamaya.Configuration;
 import org.apache.tamaya.ConfigurationProvider;
 
@@ -40,9 +41,12 @@ import java.util.logging.Logger;
 /**
  * Main Docker process, which is able to perform deployment, monitoring as well as statistical functions.
  */
+@ServiceProvider(DockerMachine.class)
 public class DefaultDockerMachine implements DockerMachine{
 
     private static final Logger LOG = Logger.getLogger(DefaultDockerMachine.class.getName());
+    /** Timeout for docker-machine query commands, e.g. {@code status, ip, inspect, ls}. */
+    private static final long QUERY_TIMEOUT_MS = 60000L;
 
     /**
      * Access a machine status.
@@ -50,7 +54,7 @@ public class DefaultDockerMachine implements DockerMachine{
      * @return the status, not null
      */
     public String machineStatus(String name){
-        return Executor.execute("docker-machine status " +name);
+        return Executor.execute(QUERY_TIMEOUT_MS, "docker-machine status " +name);
     }
 
     /**
@@ -59,7 +63,7 @@ public class DefaultDockerMachine implements DockerMachine{
      * @return the status, not null
      */
     public String machineIP(String name){
-        return Executor.execute("docker-machine ip " +name);
+        return Executor.execute(QUERY_TIMEOUT_MS, "docker-machine ip " +name);
     }
 
     /**
@@ -114,7 +118,7 @@ public class DefaultDockerMachine implements DockerMachine{
 
     @Override
     public List<String> machineList() {
-        String namesToParse = Executor.execute("docker-machine ls");
+        String namesToParse = Executor.execute(QUERY_TIMEOUT_MS, "docker-machine ls");
         BufferedReader reader = new BufferedReader(new StringReader(namesToParse));
         List<String> result = new ArrayList<>();
         String line = null;
@@ -215,7 +219,7 @@ public class DefaultDockerMachine implements DockerMachine{
         else{
             LOG.info("MACHINE CREATION PROBABLY FAILED: " + result);
         }
-        return Executor.execute(command);
+        return result;
     }
 
 
@@ -226,7 +230,7 @@ public class DefaultDockerMachine implements DockerMachine{
      * @return the MachineConfig instance, or null.
      */
     public String machineInspect(String name){
-        return Executor.execute("docker-machine inspect " + name);
+        return Executor.execute(QUERY_TIMEOUT_MS, "docker-machine inspect " + name);
     }
 
 
@@ -0,0 +1,891 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.jdocker.agent.internal;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spotify.docker.client.messages.ContainerState;
+import io.github.jdocker.DockerContainer;
+import io.github.jdocker.DockerEngineInfo;
+import org.apache.tamaya.ConfigurationProvider;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.net.InetSocketAddress;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Minimal HTTP/1.1 client for the docker engine API, by default talking to {@code /var/run/docker.sock}. Connections
+ * are kept alive and pooled, responses are stream parsed directly into the target objects. Calls are blocking and
+ * must not be performed on a Vert.x event loop.<br/>
+ * Unix domain socket channels are only available on Java 16 or later, on older runtimes the engine must be reached
+ * using a {@code tcp://host:port} address.
+ */
+public final class DockerEngineClient implements Closeable {
+
+    private static final Logger LOG = Logger.getLogger(DockerEngineClient.class.getName());
+
+    /** Configuration key for the docker engine address, e.g. {@code unix:///var/run/docker.sock}. */
+    public static final String DOCKER_HOST_KEY = "jdocker.Docker.Agent.dockerHost";
+    /** The default docker engine address. */
+    public static final String DEFAULT_DOCKER_HOST = "unix:///var/run/docker.sock";
+    /** The default number of idle connections kept open. */
+    public static final int DEFAULT_MAX_IDLE_CONNECTIONS = 4;
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    /** Reader for a successful response body. */
+    @FunctionalInterface
+    public interface ResponseReader<T>{
+        /**
+         * Reads the body, the stream must not be used after returning.
+         * @param body the response body, not null.
+         * @return the result.
+         * @throws IOException if reading fails.
+         */
+        T read(InputStream body) throws IOException;
+    }
+
+    private final String dockerHost;
+    private final BlockingQueue<Connection> idleConnections;
+    private volatile boolean closed;
+
+    /**
+     * Creates a new client.
+     * @param dockerHost the engine address, either {@code unix:///path}, a plain socket path or
+     *                   {@code tcp://host:port}, not null.
+     * @param maxIdleConnections the maximal number of idle connections kept open, &gt; 0.
+     */
+    public DockerEngineClient(String dockerHost, int maxIdleConnections){
+        if(dockerHost==null || dockerHost.trim().isEmpty()){
+            throw new IllegalArgumentException("dockerHost is required.");
+        }
+        this.dockerHost = dockerHost.trim();
+        this.idleConnections = new ArrayBlockingQueue<>(maxIdleConnections);
+    }
+
+    /**
+     * Creates a client for the address configured with {@link #DOCKER_HOST_KEY}, by default
+     * {@link #DEFAULT_DOCKER_HOST}.
+     * @return a new client, never null.
+     */
+    public static DockerEngineClient fromConfiguration(){
+        String dockerHost = ConfigurationProvider.getConfiguration().get(DOCKER_HOST_KEY);
+        if(dockerHost==null){
+            dockerHost = DEFAULT_DOCKER_HOST;
+        }
+        return new DockerEngineClient(dockerHost, DEFAULT_MAX_IDLE_CONNECTIONS);
+    }
+
+    public String getDockerHost() {
+        return dockerHost;
+    }
+
+    /**
+     * Performs a GET request.
+     * @param path the API path including the query, e.g. {@code /containers/json?all=1}.
+     * @param reader the reader consuming the body.
+     * @return the reader's result.
+     * @throws IOException if the engine is not reachable or returns a non 2xx status.
+     */
+    public <T> T get(String path, ResponseReader<T> reader) throws IOException {
+        return request("GET", path, reader);
+    }
+
+    /**
+     * Performs a GET request and returns the body as text.
+     * @param path the API path.
+     * @return the body, never null.
+     * @throws IOException if the engine is not reachable or returns a non 2xx status.
+     */
+    public String getString(String path) throws IOException {
+        return get(path, DockerEngineClient::readFully);
+    }
+
+    /**
+     * Reads the engine's host facts from {@code /info}.
+     * @return the engine info, never null.
+     * @throws IOException if the engine is not reachable.
+     */
+    public DockerEngineInfo getInfo() throws IOException {
+        return get("/info", DockerEngineClient::readInfo);
+    }
+
+    /**
+     * Reads {@code /version} and renders it like the {@code Server:} section of {@code docker version}.
+     * @return the version text, never null.
+     * @throws IOException if the engine is not reachable.
+     */
+    public String getVersionText() throws IOException {
+        return get("/version", DockerEngineClient::formatVersion);
+    }
+
+    /**
+     * Reads {@code /info} and renders it like the output of {@code docker info}.
+     * @return the info text, never null.
+     * @throws IOException if the engine is not reachable.
+     */
+    public String getInfoText() throws IOException {
+        return get("/info", DockerEngineClient::formatInfo);
+    }
+
+    /**
+     * Lists the containers from {@code /containers/json}.
+     * @param all if true, also stopped containers are returned.
+     * @param hostName the host name to be set on the containers.
+     * @return the containers, never null.
+     * @throws IOException if the engine is not reachable.
+     */
+    public List<DockerContainer> listContainers(boolean all, String hostName) throws IOException {
+        return get(all?"/containers/json?all=1":"/containers/json", body -> readContainers(body, hostName));
+    }
+
+    /**
+     * Inspects a container using {@code /containers/<id>/json}.
+     * @param id the container id or name, not null.
+     * @param hostName the host name to be set on the container.
+     * @return the container, never null.
+     * @throws IOException if the engine is not reachable or the container does not exist.
+     */
+    public DockerContainer inspectContainer(String id, String hostName) throws IOException {
+        return get("/containers/" + id + "/json", body -> {
+            try(JsonParser parser = JSON_FACTORY.createParser(body)){
+                if(parser.nextToken()!=JsonToken.START_OBJECT){
+                    throw new IOException("Expected a JSON object for container " + id);
+                }
+                return readContainer(parser, hostName);
+            }
+        });
+    }
+
+    /**
+     * Opens a long running streaming request, such as {@code /events}, on a dedicated connection. The connection is
+     * never returned to the pool, closing the stream closes the connection, which also unblocks a pending read.
+     * @param path the API path including the query.
+     * @return the open stream, never null.
+     * @throws IOException if the engine is not reachable or returns a non 2xx status.
+     */
+    public ResponseStream openStream(String path) throws IOException {
+        if(closed){
+            throw new IOException("Docker engine client is closed.");
+        }
+        Connection connection = new Connection(openChannel(dockerHost));
+        try {
+            connection.writeRequest("GET", path);
+            Response response = connection.readResponse();
+            if(response.status<200 || response.status>=300){
+                throw new IOException("Docker engine returned " + response.status + " for GET " + path +
+                        ": " + readFully(response.body).trim());
+            }
+            return new ResponseStream(connection, response.body);
+        } catch (IOException | RuntimeException e) {
+            connection.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        Connection connection;
+        while((connection = idleConnections.poll())!=null){
+            connection.close();
+        }
+    }
+
+    private <T> T request(String method, String path, ResponseReader<T> reader) throws IOException {
+        Connection connection = acquire();
+        boolean reusable = false;
+        try {
+            connection.writeRequest(method, path);
+            Response response = connection.readResponse();
+            if(response.status<200 || response.status>=300){
+                String message = readFully(response.body);
+                reusable = response.keepAlive;
+                throw new IOException("Docker engine returned " + response.status + " for " + method + ' ' + path +
+                        ": " + message.trim());
+            }
+            T result = reader.read(response.body);
+            response.body.drain();
+            reusable = response.keepAlive;
+            return result;
+        } finally {
+            release(connection, reusable);
+        }
+    }
+
+    private Connection acquire() throws IOException {
+        if(closed){
+            throw new IOException("Docker engine client is closed.");
+        }
+        Connection connection = idleConnections.poll();
+        if(connection!=null && connection.isOpen()){
+            return connection;
+        }
+        return new Connection(openChannel(dockerHost));
+    }
+
+    private void release(Connection connection, boolean reusable){
+        if(!reusable || closed || !idleConnections.offer(connection)){
+            connection.close();
+        }
+    }
+
+    private static SocketChannel openChannel(String dockerHost) throws IOException {
+        if(dockerHost.startsWith("tcp://")){
+            URI uri = URI.create(dockerHost);
+            return SocketChannel.open(new InetSocketAddress(uri.getHost(), uri.getPort()));
+        }
+        String path = dockerHost.startsWith("unix://")?dockerHost.substring("unix://".length()):dockerHost;
+        return openUnixChannel(path);
+    }
+
+    /**
+     * Opens a unix domain socket channel. Reflection is used, so the agent still runs on Java 8, where only
+     * {@code tcp://} addresses are supported.
+     */
+    private static SocketChannel openUnixChannel(String path) throws IOException {
+        try {
+            Class<?> addressType = Class.forName("java.net.UnixDomainSocketAddress");
+            SocketAddress address = (SocketAddress) addressType.getMethod("of", String.class).invoke(null, path);
+            ProtocolFamily unix = StandardProtocolFamily.valueOf("UNIX");
+            SocketChannel channel = (SocketChannel) SocketChannel.class.getMethod("open", ProtocolFamily.class)
+                    .invoke(null, unix);
+            try {
+                channel.connect(address);
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+            return channel;
+        } catch (ClassNotFoundException | NoSuchMethodException | IllegalArgumentException e) {
+            throw new IOException("Unix domain sockets require Java 16 or later, configure a tcp:// docker host.", e);
+        } catch (IllegalAccessException e) {
+            throw new IOException("Cannot open unix domain socket: " + path, e);
+        } catch (InvocationTargetException e) {
+            if(e.getCause() instanceof IOException){
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Cannot open unix domain socket: " + path, e.getCause());
+        }
+    }
+
+    static String readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while((read = in.read(buffer))>=0){
+            bos.write(buffer, 0, read);
+        }
+        return new String(bos.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    static DockerEngineInfo readInfo(InputStream body) throws IOException {
+        String id = null, name = null, serverVersion = null, kernelVersion = null, operatingSystem = null;
+        int cpus = 0, containers = 0, containersRunning = 0, images = 0;
+        long memory = 0L;
+        Map<String,String> labels = new HashMap<>();
+        try(JsonParser parser = JSON_FACTORY.createParser(body)){
+            if(parser.nextToken()!=JsonToken.START_OBJECT){
+                throw new IOException("Expected a JSON object from /info.");
+            }
+            while(parser.nextToken()==JsonToken.FIELD_NAME){
+                String field = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                switch(field){
+                    case "ID": id = parser.getValueAsString(); break;
+                    case "Name": name = parser.getValueAsString(); break;
+                    case "ServerVersion": serverVersion = parser.getValueAsString(); break;
+                    case "KernelVersion": kernelVersion = parser.getValueAsString(); break;
+                    case "OperatingSystem": operatingSystem = parser.getValueAsString(); break;
+                    case "NCPU": cpus = parser.getValueAsInt(); break;
+                    case "MemTotal": memory = parser.getValueAsLong(); break;
+                    case "Containers": containers = parser.getValueAsInt(); break;
+                    case "ContainersRunning": containersRunning = parser.getValueAsInt(); break;
+                    case "Images": images = parser.getValueAsInt(); break;
+                    case "Labels":
+                        if(token==JsonToken.START_ARRAY){
+                            while(parser.nextToken()!=JsonToken.END_ARRAY){
+                                String label = parser.getValueAsString();
+                                int index = label==null?-1:label.indexOf('=');
+                                if(index>0){
+                                    labels.put(label.substring(0, index), label.substring(index+1));
+                                }else if(label!=null){
+                                    labels.put(label, label);
+                                }
+                            }
+                        }
+                        break;
+                    default:
+                        parser.skipChildren();
+                }
+            }
+        }
+        return new DockerEngineInfo(id, name==null?"unknown":name, serverVersion, kernelVersion, operatingSystem,
+                cpus, memory, containers, containersRunning, images, labels);
+    }
+
+    static String formatVersion(InputStream body) throws IOException {
+        JsonNode node = readObject(body, "/version");
+        StringBuilder b = new StringBuilder("Server:\n");
+        appendVersionLine(b, "Version:", node.path("Version").asText());
+        appendVersionLine(b, "API version:", node.path("ApiVersion").asText());
+        appendVersionLine(b, "Go version:", node.path("GoVersion").asText());
+        appendVersionLine(b, "Git commit:", node.path("GitCommit").asText());
+        appendVersionLine(b, "Built:", node.path("BuildTime").asText());
+        appendVersionLine(b, "OS/Arch:", node.path("Os").asText() + '/' + node.path("Arch").asText());
+        return b.toString();
+    }
+
+    private static void appendVersionLine(StringBuilder b, String label, String value){
+        b.append(' ');
+        if(value.isEmpty()){
+            b.append(label);
+        }else{
+            b.append(String.format("%-14s", label)).append(value);
+        }
+        b.append('\n');
+    }
+
+    static String formatInfo(InputStream body) throws IOException {
+        JsonNode node = readObject(body, "/info");
+        StringBuilder b = new StringBuilder();
+        b.append("Containers: ").append(node.path("Containers").asInt()).append('\n');
+        b.append("Images: ").append(node.path("Images").asInt()).append('\n');
+        b.append("Server Version: ").append(node.path("ServerVersion").asText()).append('\n');
+        b.append("Storage Driver: ").append(node.path("Driver").asText()).append('\n');
+        for(JsonNode status:node.path("DriverStatus")){
+            b.append(' ').append(status.path(0).asText()).append(": ").append(status.path(1).asText()).append('\n');
+        }
+        b.append("Execution Driver: ").append(node.path("ExecutionDriver").asText()).append('\n');
+        b.append("Logging Driver: ").append(node.path("LoggingDriver").asText()).append('\n');
+        b.append("Kernel Version: ").append(node.path("KernelVersion").asText()).append('\n');
+        b.append("Operating System: ").append(node.path("OperatingSystem").asText()).append('\n');
+        b.append("CPUs: ").append(node.path("NCPU").asInt()).append('\n');
+        b.append("Total Memory: ").append(String.format(Locale.ROOT, "%.1f GiB",
+                node.path("MemTotal").asLong() / (1024.0 * 1024.0 * 1024.0))).append('\n');
+        b.append("Name: ").append(node.path("Name").asText()).append('\n');
+        b.append("ID: ").append(node.path("ID").asText()).append('\n');
+        for(JsonNode warning:node.path("Warnings")){
+            String text = warning.asText();
+            b.append(text.startsWith("WARNING:")?text:"WARNING: " + text).append('\n');
+        }
+        return b.toString();
+    }
+
+    private static JsonNode readObject(InputStream body, String path) throws IOException {
+        JsonNode node = MAPPER.readTree(body);
+        if(node==null || !node.isObject()){
+            throw new IOException("Expected a JSON object from " + path + '.');
+        }
+        return node;
+    }
+
+    static List<DockerContainer> readContainers(InputStream body, String hostName) throws IOException {
+        List<DockerContainer> containers = new ArrayList<>();
+        try(JsonParser parser = JSON_FACTORY.createParser(body)){
+            if(parser.nextToken()!=JsonToken.START_ARRAY){
+                throw new IOException("Expected a JSON array from /containers/json.");
+            }
+            while(parser.nextToken()==JsonToken.START_OBJECT){
+                containers.add(readContainer(parser, hostName));
+            }
+        }
+        return containers;
+    }
+
+    /**
+     * Reads a container object, either from the container list or from an inspect response, the parser must be
+     * positioned on the object's start token.
+     */
+    static DockerContainer readContainer(JsonParser parser, String hostName) throws IOException {
+        String id = null, name = null, image = null, configImage = null, status = null, portsInfo = null;
+        String[] network = new String[2];
+        ContainerState state = null;
+        while(parser.nextToken()==JsonToken.FIELD_NAME){
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            switch(field){
+                case "Id": id = parser.getValueAsString(); break;
+                case "Name": name = stripSlash(parser.getValueAsString()); break;
+                case "Names":
+                    if(token==JsonToken.START_ARRAY){
+                        while(parser.nextToken()!=JsonToken.END_ARRAY){
+                            if(name==null){
+                                name = stripSlash(parser.getValueAsString());
+                            }
+                        }
+                    }
+                    break;
+                case "Image": image = parser.getValueAsString(); break;
+                case "Config":
+                    configImage = readField(parser, "Image");
+                    break;
+                case "State":
+                    if(token==JsonToken.START_OBJECT){
+                        JsonNode node = MAPPER.readTree(parser);
+                        status = node.path("Status").asText(null);
+                        state = MAPPER.treeToValue(node, ContainerState.class);
+                    }else{
+                        status = parser.getValueAsString();
+                    }
+                    break;
+                case "Ports":
+                    portsInfo = readPorts(parser, token);
+                    break;
+                case "NetworkSettings":
+                    readNetworkSettings(parser, network);
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        if(id==null){
+            throw new IOException("Container without Id.");
+        }
+        return DockerContainer.builder(id).setName(name).setHostName(hostName)
+                .setImage(configImage!=null?configImage:image).setStatus(status).setState(state)
+                .setIPAddress(network[0]).setMacAddress(network[1]).setPortsInfo(portsInfo).build();
+    }
+
+    private static String stripSlash(String name){
+        if(name!=null && name.startsWith("/")){
+            return name.substring(1);
+        }
+        return name;
+    }
+
+    /**
+     * Reads the given text field of the current object, skipping all others.
+     */
+    private static String readField(JsonParser parser, String fieldName) throws IOException {
+        if(parser.getCurrentToken()!=JsonToken.START_OBJECT){
+            parser.skipChildren();
+            return null;
+        }
+        String value = null;
+        while(parser.nextToken()==JsonToken.FIELD_NAME){
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            if(fieldName.equals(field)){
+                value = parser.getValueAsString();
+            }else{
+                parser.skipChildren();
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Reads IP and MAC address, preferring the top level values and falling back to the first network.
+     */
+    private static void readNetworkSettings(JsonParser parser, String[] network) throws IOException {
+        if(parser.getCurrentToken()!=JsonToken.START_OBJECT){
+            parser.skipChildren();
+            return;
+        }
+        while(parser.nextToken()==JsonToken.FIELD_NAME){
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            switch(field){
+                case "IPAddress": setIfEmpty(network, 0, parser.getValueAsString()); break;
+                case "MacAddress": setIfEmpty(network, 1, parser.getValueAsString()); break;
+                case "Networks":
+                    if(token==JsonToken.START_OBJECT){
+                        while(parser.nextToken()==JsonToken.FIELD_NAME){
+                            parser.nextToken();
+                            readNetworkSettings(parser, network);
+                        }
+                    }
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+    }
+
+    private static void setIfEmpty(String[] values, int index, String value){
+        if((values[index]==null || values[index].isEmpty()) && value!=null && !value.isEmpty()){
+            values[index] = value;
+        }
+    }
+
+    /**
+     * Formats the port mappings in the style of {@code docker ps}, e.g. {@code 0.0.0.0:8080->80/tcp}. Supports
+     * the list format of {@code /containers/json} as well as the map format of the inspect response.
+     */
+    private static String readPorts(JsonParser parser, JsonToken token) throws IOException {
+        StringBuilder b = new StringBuilder();
+        if(token==JsonToken.START_ARRAY){
+            while(parser.nextToken()==JsonToken.START_OBJECT){
+                String ip = null, type = null;
+                int privatePort = 0, publicPort = 0;
+                while(parser.nextToken()==JsonToken.FIELD_NAME){
+                    String field = parser.getCurrentName();
+                    parser.nextToken();
+                    switch(field){
+                        case "IP": ip = parser.getValueAsString(); break;
+                        case "PrivatePort": privatePort = parser.getValueAsInt(); break;
+                        case "PublicPort": publicPort = parser.getValueAsInt(); break;
+                        case "Type": type = parser.getValueAsString(); break;
+                        default: parser.skipChildren();
+                    }
+                }
+                appendSeparator(b);
+                if(publicPort>0){
+                    b.append(ip==null?"":ip).append(':').append(publicPort).append("->");
+                }
+                b.append(privatePort).append('/').append(type);
+            }
+        }else if(token==JsonToken.START_OBJECT){
+            while(parser.nextToken()==JsonToken.FIELD_NAME){
+                String containerPort = parser.getCurrentName();
+                if(parser.nextToken()==JsonToken.START_ARRAY){
+                    while(parser.nextToken()==JsonToken.START_OBJECT){
+                        String hostIp = null, hostPort = null;
+                        while(parser.nextToken()==JsonToken.FIELD_NAME){
+                            String field = parser.getCurrentName();
+                            parser.nextToken();
+                            if("HostIp".equals(field)){
+                                hostIp = parser.getValueAsString();
+                            }else if("HostPort".equals(field)){
+                                hostPort = parser.getValueAsString();
+                            }else{
+                                parser.skipChildren();
+                            }
+                        }
+                        appendSeparator(b);
+                        b.append(hostIp==null?"":hostIp).append(':').append(hostPort).append("->").append(containerPort);
+                    }
+                }else{
+                    appendSeparator(b);
+                    b.append(containerPort);
+                }
+            }
+        }else{
+            parser.skipChildren();
+        }
+        return b.toString();
+    }
+
+    private static void appendSeparator(StringBuilder b){
+        if(b.length()>0){
+            b.append(", ");
+        }
+    }
+
+    /**
+     * Body of a streaming response, owning its connection.
+     */
+    public static final class ResponseStream implements Closeable {
+        private final Connection connection;
+        private final InputStream body;
+
+        private ResponseStream(Connection connection, InputStream body) {
+            this.connection = connection;
+            this.body = body;
+        }
+
+        /**
+         * Access the body, which ends when the engine or this stream closes the connection.
+         * @return the body stream, never null.
+         */
+        public InputStream getBody() {
+            return body;
+        }
+
+        public boolean isOpen(){
+            return connection.isOpen();
+        }
+
+        @Override
+        public void close() {
+            connection.close();
+        }
+    }
+
+    /**
+     * A parsed response head with its body stream.
+     */
+    private static final class Response {
+        final int status;
+        final boolean keepAlive;
+        final BodyInputStream body;
+
+        Response(int status, boolean keepAlive, BodyInputStream body) {
+            this.status = status;
+            this.keepAlive = keepAlive;
+            this.body = body;
+        }
+    }
+
+    /**
+     * A single, persistent connection to the engine. Only used by one request at a time.
+     */
+    private static final class Connection {
+        private final SocketChannel channel;
+        private final InputStream in;
+        private final OutputStream out;
+        private final StringBuilder line = new StringBuilder(128);
+
+        Connection(SocketChannel channel){
+            this.channel = channel;
+            this.in = new BufferedInputStream(Channels.newInputStream(channel), BUFFER_SIZE);
+            this.out = Channels.newOutputStream(channel);
+        }
+
+        boolean isOpen(){
+            return channel.isOpen();
+        }
+
+        void writeRequest(String method, String path) throws IOException {
+            String request = method + ' ' + path + " HTTP/1.1\r\n" +
+                    "Host: docker\r\n" +
+                    "Accept: application/json\r\n" +
+                    "\r\n";
+            out.write(request.getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+        }
+
+        Response readResponse() throws IOException {
+            String statusLine = readLine();
+            if(statusLine==null){
+                throw new IOException("Connection closed by docker engine.");
+            }
+            // HTTP/1.1 200 OK
+            int first = statusLine.indexOf(' ');
+            if(first<0 || statusLine.length()<first+4){
+                throw new IOException("Invalid status line: " + statusLine);
+            }
+            int status;
+            try{
+                status = Integer.parseInt(statusLine.substring(first+1, first+4));
+            }catch(NumberFormatException e){
+                throw new IOException("Invalid status line: " + statusLine, e);
+            }
+            boolean keepAlive = statusLine.startsWith("HTTP/1.1");
+            long contentLength = -1L;
+            boolean chunked = false;
+            String header;
+            while((header = readLine())!=null && !header.isEmpty()){
+                int colon = header.indexOf(':');
+                if(colon<=0){
+                    continue;
+                }
+                String name = header.substring(0, colon).trim();
+                String value = header.substring(colon+1).trim();
+                if("Content-Length".equalsIgnoreCase(name)){
+                    try {
+                        contentLength = Long.parseLong(value);
+                    }catch(NumberFormatException e){
+                        throw new IOException("Invalid Content-Length: " + value, e);
+                    }
+                    if(contentLength<0){
+                        throw new IOException("Invalid Content-Length: " + value);
+                    }
+                }else if("Transfer-Encoding".equalsIgnoreCase(name)){
+                    chunked = value.toLowerCase().contains("chunked");
+                }else if("Connection".equalsIgnoreCase(name)){
+                    if("close".equalsIgnoreCase(value)){
+                        keepAlive = false;
+                    }else if("keep-alive".equalsIgnoreCase(value)){
+                        keepAlive = true;
+                    }
+                }
+            }
+            BodyInputStream body;
+            if(status==204 || status==304 || (status>=100 && status<200)){
+                body = new FixedLengthInputStream(in, 0L);
+            }else if(chunked){
+                body = new ChunkedInputStream(this);
+            }else if(contentLength>=0){
+                body = new FixedLengthInputStream(in, contentLength);
+            }else{
+                // body delimited by closing the connection.
+                body = new FixedLengthInputStream(in, Long.MAX_VALUE);
+                keepAlive = false;
+            }
+            return new Response(status, keepAlive, body);
+        }
+
+        /**
+         * Reads a CRLF terminated ASCII line.
+         * @return the line without terminator, or null on EOF.
+         */
+        String readLine() throws IOException {
+            line.setLength(0);
+            int c;
+            while((c = in.read())>=0){
+                if(c=='\n'){
+                    int length = line.length();
+                    if(length>0 && line.charAt(length-1)=='\r'){
+                        line.setLength(length-1);
+                    }
+                    return line.toString();
+                }
+                line.append((char)c);
+            }
+            return line.length()==0?null:line.toString();
+        }
+
+        void close(){
+            try {
+                channel.close();
+            } catch (IOException e) {
+                LOG.log(Level.FINEST, "Failed to close docker engine connection.", e);
+            }
+        }
+    }
+
+    /**
+     * Body stream, closing it does not close the underlying connection.
+     */
+    private abstract static class BodyInputStream extends InputStream {
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int read = read(single, 0, 1);
+            return read<0?-1:(single[0] & 0xFF);
+        }
+
+        /**
+         * Skips the rest of the body, so the connection can be reused.
+         */
+        void drain() throws IOException {
+            byte[] buffer = new byte[512];
+            while(read(buffer, 0, buffer.length)>=0){
+                // skip
+            }
+        }
+
+        @Override
+        public void close() {
+            // the connection is released by the client.
+        }
+    }
+
+    private static final class FixedLengthInputStream extends BodyInputStream {
+        private final InputStream in;
+        private long remaining;
+
+        FixedLengthInputStream(InputStream in, long length){
+            this.in = in;
+            this.remaining = length;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if(remaining<=0){
+                return -1;
+            }
+            int read = in.read(b, off, (int)Math.min(len, remaining));
+            if(read<0){
+                remaining = 0;
+                return -1;
+            }
+            remaining -= read;
+            return read;
+        }
+    }
+
+    private static final class ChunkedInputStream extends BodyInputStream {
+        private final Connection connection;
+        private long chunkRemaining;
+        private boolean eof;
+
+        ChunkedInputStream(Connection connection){
+            this.connection = connection;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if(eof){
+                return -1;
+            }
+            if(chunkRemaining==0){
+                if(!nextChunk()){
+                    return -1;
+                }
+            }
+            int read = connection.in.read(b, off, (int)Math.min(len, chunkRemaining));
+            if(read<0){
+                throw new IOException("Unexpected end of chunked body.");
+            }
+            chunkRemaining -= read;
+            if(chunkRemaining==0){
+                // CRLF after chunk data
+                connection.readLine();
+            }
+            return read;
+        }
+
+        private boolean nextChunk() throws IOException {
+            String sizeLine = connection.readLine();
+            if(sizeLine==null){
+                throw new IOException("Unexpected end of chunked body.");
+            }
+            int ext = sizeLine.indexOf(';');
+            if(ext>=0){
+                sizeLine = sizeLine.substring(0, ext);
+            }
+            try {
+                chunkRemaining = Long.parseLong(sizeLine.trim(), 16);
+            }catch(NumberFormatException e){
+                throw new IOException("Invalid chunk size: " + sizeLine, e);
+            }
+            if(chunkRemaining==0){
+                // trailers
+                String trailer;
+                while((trailer = connection.readLine())!=null && !trailer.isEmpty()){
+                    // ignore
+                }
+                eof = true;
+                return false;
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.jdocker.agent;
+
+import io.github.jdocker.DockerContainer;
+import io.vertx.core.json.JsonObject;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the delta creation of the {@link ContainerInventory}.
+ */
+public class ContainerInventoryTest {
+
+    private final ContainerInventory inventory = new ContainerInventory();
+
+    @Test
+    public void testPutCreatesDeltaWithChangedFieldsOnly() {
+        JsonObject created = inventory.put(DockerContainer.builder("a").setName("web").setImage("nginx")
+                .setStatus("created").build());
+        assertEquals(1L, created.getLong("seq").longValue());
+        assertEquals(ContainerInventory.OP_PUT, created.getString("op"));
+        assertEquals("web", created.getJsonObject("data").getString("name"));
+
+        JsonObject started = inventory.put(DockerContainer.builder("a").setName("web").setImage("nginx")
+                .setStatus("running").setIPAddress("172.17.0.2").build());
+        JsonObject data = started.getJsonObject("data");
+        assertEquals(2, data.size());
+        assertEquals("running", data.getString("status"));
+        assertEquals("172.17.0.2", data.getString("ip"));
+        assertEquals("running", inventory.get("a").getStatus());
+    }
+
+    @Test
+    public void testUnchangedPutCreatesNoDelta() {
+        inventory.put(DockerContainer.builder("a").setStatus("running").build());
+        assertNull(inventory.put(DockerContainer.builder("a").setStatus("running").build()));
+        assertEquals(1L, inventory.getSequence());
+    }
+
+    @Test
+    public void testNewContainerWithoutFieldsCreatesDelta() {
+        JsonObject created = inventory.put(DockerContainer.builder("a").build());
+        assertNotNull(created);
+        assertEquals(ContainerInventory.OP_PUT, created.getString("op"));
+        assertEquals("a", created.getString("id"));
+        assertTrue(created.getJsonObject("data").isEmpty());
+        assertNull(inventory.put(DockerContainer.builder("a").build()));
+        assertEquals(1L, inventory.getSequence());
+    }
+
+    @Test
+    public void testRemove() {
+        inventory.put(DockerContainer.builder("a").build());
+        assertEquals(ContainerInventory.OP_REMOVE, inventory.remove("a").getString("op"));
+        assertNull(inventory.remove("a"));
+        assertEquals(0, inventory.size());
+    }
+
+    @Test
+    public void testReplaceAll() {
+        inventory.put(DockerContainer.builder("a").setStatus("running").build());
+        inventory.put(DockerContainer.builder("b").setStatus("running").build());
+        List<JsonObject> deltas = inventory.replaceAll(Arrays.asList(
+                DockerContainer.builder("a").setStatus("running").build(),
+                DockerContainer.builder("c").setStatus("created").build()));
+        assertEquals(2, deltas.size());
+        assertEquals("c", deltas.get(0).getString("id"));
+        assertEquals(ContainerInventory.OP_REMOVE, deltas.get(1).getString("op"));
+        assertEquals("b", deltas.get(1).getString("id"));
+        assertNull(inventory.get("b"));
+        assertEquals(2, inventory.size());
+    }
+}
@@ -1,10 +1,9 @@
 package io.github.jdocker.agent;
 
-import io.github.jdocker.common.vertx.JavaSerializingCodec;
+import io.github.jdocker.common.vertx.BinaryCodec;
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.DeploymentOptions;
 import io.vertx.core.Launcher;
-import io.vertx.core.eventbus.DeliveryOptions;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -16,13 +15,13 @@ public class ReceiverV extends AbstractVerticle{
 
     @Override
     public void start() throws Exception {
-        vertx.eventBus().registerCodec(new JavaSerializingCodec());
+        BinaryCodec.register(vertx.eventBus());
         vertx.eventBus().consumer("test")
                 .handler(h -> {
                     System.out.println("Received:\n  headers=" + h.headers() + "\n  body="+h.body());
                     Map map = new HashMap<>();
                     map.put("reply","Thanks!");
-                    vertx.eventBus().publish("test-result", map, new DeliveryOptions().setCodecName("JavaSerializer"));
+                    vertx.eventBus().publish("test-result", map, BinaryCodec.deliveryOptions());
                 });
         System.out.println("Receiver started.");
     }
@@ -0,0 +1,238 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.jdocker.agent.internal;
+
+import io.github.jdocker.DockerContainer;
+import io.github.jdocker.DockerEngineInfo;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the engine client against a fake engine serving canned responses over TCP.
+ */
+public class DockerEngineClientTest {
+
+    private ServerSocket serverSocket;
+    private final Queue<String> responses = new ConcurrentLinkedQueue<>();
+    private final Queue<String> requests = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger connections = new AtomicInteger();
+    private DockerEngineClient client;
+
+    @Before
+    public void setUp() throws IOException {
+        serverSocket = new ServerSocket(0, 10, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::serve, "fake-docker-engine");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        client = new DockerEngineClient("tcp://127.0.0.1:" + serverSocket.getLocalPort(), 2);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        client.close();
+        serverSocket.close();
+    }
+
+    private void serve(){
+        try {
+            while(!serverSocket.isClosed()){
+                Socket socket = serverSocket.accept();
+                connections.incrementAndGet();
+                try(BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                        StandardCharsets.US_ASCII)); OutputStream out = socket.getOutputStream()){
+                    String line;
+                    while((line = reader.readLine())!=null){
+                        requests.add(line);
+                        while(!(line = reader.readLine()).isEmpty()){
+                            // skip headers
+                        }
+                        String response = responses.poll();
+                        out.write(response.getBytes(StandardCharsets.UTF_8));
+                        out.flush();
+                        if(response.contains("Connection: close")){
+                            break;
+                        }
+                    }
+                }
+            }
+        } catch (Exception e) {
+            // server closed
+        }
+    }
+
+    private static String response(String body){
+        return "HTTP/1.1 200 OK\r\nContent-Type: application/json\r\nContent-Length: " +
+                body.getBytes(StandardCharsets.UTF_8).length + "\r\n\r\n" + body;
+    }
+
+    private static String chunked(String... chunks){
+        StringBuilder b = new StringBuilder("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n");
+        for(String chunk:chunks){
+            b.append(Integer.toHexString(chunk.length())).append("\r\n").append(chunk).append("\r\n");
+        }
+        return b.append("0\r\n\r\n").toString();
+    }
+
+    @Test
+    public void testKeepAliveConnectionIsReused() throws IOException {
+        responses.add(response("{\"Version\":\"1.9.1\"}"));
+        responses.add(response("{\"Version\":\"1.9.2\"}"));
+        assertEquals("{\"Version\":\"1.9.1\"}", client.getString("/version"));
+        assertEquals("{\"Version\":\"1.9.2\"}", client.getString("/version"));
+        assertEquals(1, connections.get());
+        assertEquals("GET /version HTTP/1.1", requests.peek());
+    }
+
+    @Test
+    public void testConnectionCloseOpensNewConnection() throws IOException {
+        responses.add("HTTP/1.1 200 OK\r\nConnection: close\r\nContent-Length: 2\r\n\r\n{}");
+        responses.add(response("{}"));
+        assertEquals("{}", client.getString("/info"));
+        assertEquals("{}", client.getString("/info"));
+        assertEquals(2, connections.get());
+    }
+
+    @Test
+    public void testListContainersChunked() throws IOException {
+        responses.add(chunked("[{\"Id\":\"abc\",\"Names\":[\"/web\"],\"Image\":\"nginx\",",
+                "\"State\":\"running\",\"Ports\":[{\"IP\":\"0.0.0.0\",\"PrivatePort\":80,\"PublicPort\":8080," +
+                        "\"Type\":\"tcp\"}],",
+                "\"NetworkSettings\":{\"Networks\":{\"bridge\":{\"IPAddress\":\"172.17.0.2\"," +
+                        "\"MacAddress\":\"02:42:ac:11:00:02\"}}}}]"));
+        responses.add(response("[]"));
+        List<DockerContainer> containers = client.listContainers(true, "host1");
+        assertEquals(1, containers.size());
+        DockerContainer container = containers.get(0);
+        assertEquals("abc", container.getId());
+        assertEquals("web", container.getName());
+        assertEquals("host1", container.getHostName());
+        assertEquals("nginx", container.getImage());
+        assertEquals("running", container.getStatus());
+        assertEquals("172.17.0.2", container.getIPAddress());
+        assertEquals("02:42:ac:11:00:02", container.getMacAddress());
+        assertEquals("0.0.0.0:8080->80/tcp", container.getPortsInfo());
+        assertTrue(client.listContainers(false, "host1").isEmpty());
+        assertEquals(1, connections.get());
+    }
+
+    @Test
+    public void testGetInfo() throws IOException {
+        responses.add(response("{\"ID\":\"Q3SM\",\"Name\":\"workhorse\",\"ServerVersion\":\"1.9.1\"," +
+                "\"KernelVersion\":\"3.16.7\",\"OperatingSystem\":\"openSUSE\",\"NCPU\":8,\"MemTotal\":16000000," +
+                "\"Containers\":34,\"ContainersRunning\":3,\"Images\":222,\"Plugins\":{\"Volume\":[\"local\"]}," +
+                "\"Labels\":[\"zone=a\"]}"));
+        DockerEngineInfo info = client.getInfo();
+        assertEquals("workhorse", info.getName());
+        assertEquals("1.9.1", info.getServerVersion());
+        assertEquals(8, info.getCPUs());
+        assertEquals(16000000L, info.getMemory());
+        assertEquals(34, info.getContainers());
+        assertEquals("a", info.getLabels().get("zone"));
+    }
+
+    @Test
+    public void testGetVersionText() throws IOException {
+        responses.add(response("{\"Version\":\"1.9.1\",\"ApiVersion\":\"1.21\",\"GitCommit\":\"a34a1d5\"," +
+                "\"GoVersion\":\"go1.4.2\",\"Os\":\"linux\",\"Arch\":\"amd64\"}"));
+        assertEquals("Server:\n" +
+                " Version:      1.9.1\n" +
+                " API version:  1.21\n" +
+                " Go version:   go1.4.2\n" +
+                " Git commit:   a34a1d5\n" +
+                " Built:\n" +
+                " OS/Arch:      linux/amd64\n", client.getVersionText());
+    }
+
+    @Test
+    public void testGetInfoText() throws IOException {
+        responses.add(response("{\"Containers\":34,\"Images\":222,\"ServerVersion\":\"1.9.1\"," +
+                "\"Driver\":\"btrfs\",\"DriverStatus\":[[\"Build Version\",\"Btrfs v4.3\"],[\"Library Version\",\"101\"]]," +
+                "\"ExecutionDriver\":\"native-0.2\",\"LoggingDriver\":\"json-file\",\"KernelVersion\":\"3.16.7\"," +
+                "\"OperatingSystem\":\"openSUSE\",\"NCPU\":8,\"MemTotal\":16750372454,\"Name\":\"workhorse\"," +
+                "\"ID\":\"Q3SM\",\"Warnings\":[\"WARNING: No swap limit support\"]}"));
+        assertEquals("Containers: 34\n" +
+                "Images: 222\n" +
+                "Server Version: 1.9.1\n" +
+                "Storage Driver: btrfs\n" +
+                " Build Version: Btrfs v4.3\n" +
+                " Library Version: 101\n" +
+                "Execution Driver: native-0.2\n" +
+                "Logging Driver: json-file\n" +
+                "Kernel Version: 3.16.7\n" +
+                "Operating System: openSUSE\n" +
+                "CPUs: 8\n" +
+                "Total Memory: 15.6 GiB\n" +
+                "Name: workhorse\n" +
+                "ID: Q3SM\n" +
+                "WARNING: No swap limit support\n", client.getInfoText());
+    }
+
+    @Test
+    public void testVersionTextRejectsNonObject() {
+        responses.add(response("[]"));
+        try {
+            client.getVersionText();
+            fail("IOException expected.");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("/version"));
+        }
+    }
+
+    @Test
+    public void testInvalidContentLength() throws IOException {
+        responses.add("HTTP/1.1 200 OK\r\nContent-Length: 2x\r\n\r\n{}");
+        responses.add(response("{}"));
+        try {
+            client.getString("/info");
+            fail("IOException expected.");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("Content-Length"));
+        }
+        // the connection is discarded
+        assertEquals("{}", client.getString("/info"));
+        assertEquals(2, connections.get());
+    }
+
+    @Test
+    public void testErrorStatus() {
+        responses.add("HTTP/1.1 404 Not Found\r\nContent-Length: 21\r\n\r\nNo such container: x\n");
+        try {
+            client.inspectContainer("x", "host1");
+            fail("IOException expected.");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("404"));
+        }
+    }
+}
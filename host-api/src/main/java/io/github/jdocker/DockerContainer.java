@@ -21,6 +21,8 @@ package io.github.jdocker;
 import com.spotify.docker.client.messages.ContainerInfo;
 import com.spotify.docker.client.messages.ContainerState;
 
+import java.util.Objects;
+
 /**
  * Structure that allows to identify a container globally.
  */
@@ -33,8 +35,20 @@ public class DockerContainer{
     private String macAddress;
     private String portsInfo;
     private String image;
+    private String status;
     private ContainerState state;
 
+    DockerContainer(DockerContainerBuilder builder){
+        this.id = Objects.requireNonNull(builder.id);
+        this.name = builder.name;
+        this.hostName = builder.hostName;
+        this.ipAddress = builder.ipAddress;
+        this.macAddress = builder.macAddress;
+        this.portsInfo = builder.portsInfo;
+        this.image = builder.image;
+        this.status = builder.status;
+        this.state = builder.state;
+    }
 
     /**
      * Get the container's id, used for identifying the container throughout the system.
@@ -68,6 +82,14 @@ public class DockerContainer{
         return image;
     }
 
+    /**
+     * Get the container's short status as reported by the docker engine, e.g. {@code running} or {@code exited}.
+     * @return the status, or null.
+     */
+    public String getStatus(){
+        return status;
+    }
+
     /**
      * Get the current container state.
      * @return the current container state.
@@ -100,5 +122,25 @@ public class DockerContainer{
         return portsInfo;
     }
 
+    public static DockerContainerBuilder builder(String id){
+        return new DockerContainerBuilder(id);
+    }
+
+    public DockerContainerBuilder builder(){
+        return new DockerContainerBuilder(id).setName(name).setHostName(hostName).setIPAddress(ipAddress)
+                .setMacAddress(macAddress).setPortsInfo(portsInfo).setImage(image).setStatus(status)
+                .setState(state);
+    }
+
+    @Override
+    public String toString() {
+        return "DockerContainer{" +
+                "id='" + id + '\'' +
+                ", name='" + name + '\'' +
+                ", hostName='" + hostName + '\'' +
+                ", image='" + image + '\'' +
+                ", status='" + status + '\'' +
+                '}';
+    }
 
 }
@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.jdocker;
+
+import com.spotify.docker.client.messages.ContainerState;
+
+import java.util.Objects;
+
+/**
+ * Builder for a {@link DockerContainer}.
+ */
+public class DockerContainerBuilder {
+
+    String id;
+    String name;
+    String hostName;
+    String ipAddress;
+    String macAddress;
+    String portsInfo;
+    String image;
+    String status;
+    ContainerState state;
+
+    public DockerContainerBuilder(String id) {
+        this.id = Objects.requireNonNull(id);
+    }
+
+    public DockerContainerBuilder setName(String name) {
+        this.name = name;
+        return this;
+    }
+
+    public DockerContainerBuilder setHostName(String hostName) {
+        this.hostName = hostName;
+        return this;
+    }
+
+    public DockerContainerBuilder setIPAddress(String ipAddress) {
+        this.ipAddress = ipAddress;
+        return this;
+    }
+
+    public DockerContainerBuilder setMacAddress(String macAddress) {
+        this.macAddress = macAddress;
+        return this;
+    }
+
+    public DockerContainerBuilder setPortsInfo(String portsInfo) {
+        this.portsInfo = portsInfo;
+        return this;
+    }
+
+    public DockerContainerBuilder setImage(String image) {
+        this.image = image;
+        return this;
+    }
+
+    public DockerContainerBuilder setStatus(String status) {
+        this.status = status;
+        return this;
+    }
+
+    public DockerContainerBuilder setState(ContainerState state) {
+        this.state = state;
+        return this;
+    }
+
+    public DockerContainer build(){
+        return new DockerContainer(this);
+    }
+
+    @Override
+    public String toString() {
+        return "DockerContainerBuilder{" +
+                "id='" + id + '\'' +
+                ", name='" + name + '\'' +
+                ", image='" + image + '\'' +
+                ", status='" + status + '\'' +
+                '}';
+    }
+}
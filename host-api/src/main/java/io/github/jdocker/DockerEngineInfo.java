@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.jdocker;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Host facts reported by a docker engine's {@code /info} endpoint.
+ */
+public final class DockerEngineInfo {
+
+    private final String id;
+    private final String name;
+    private final String serverVersion;
+    private final String kernelVersion;
+    private final String operatingSystem;
+    private final int cpus;
+    private final long memory;
+    private final int containers;
+    private final int containersRunning;
+    private final int images;
+    private final Map<String,String> labels = new HashMap<>();
+
+    public DockerEngineInfo(String id, String name, String serverVersion, String kernelVersion,
+                            String operatingSystem, int cpus, long memory, int containers,
+                            int containersRunning, int images, Map<String,String> labels){
+        this.id = id;
+        this.name = Objects.requireNonNull(name);
+        this.serverVersion = serverVersion;
+        this.kernelVersion = kernelVersion;
+        this.operatingSystem = operatingSystem;
+        this.cpus = cpus;
+        this.memory = memory;
+        this.containers = containers;
+        this.containersRunning = containersRunning;
+        this.images = images;
+        if(labels!=null) {
+            this.labels.putAll(labels);
+        }
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getServerVersion() {
+        return serverVersion;
+    }
+
+    public String getKernelVersion() {
+        return kernelVersion;
+    }
+
+    public String getOperatingSystem() {
+        return operatingSystem;
+    }
+
+    /**
+     * Get the number of CPUs of the host.
+     * @return the number of CPUs.
+     */
+    public int getCPUs() {
+        return cpus;
+    }
+
+    /**
+     * Get the total memory of the host.
+     * @return the memory in bytes.
+     */
+    public long getMemory() {
+        return memory;
+    }
+
+    public int getContainers() {
+        return containers;
+    }
+
+    public int getContainersRunning() {
+        return containersRunning;
+    }
+
+    public int getImages() {
+        return images;
+    }
+
+    /**
+     * Get the engine labels, labels without a value are mapped to themselves.
+     * @return the labels, not null.
+     */
+    public Map<String,String> getLabels() {
+        return Collections.unmodifiableMap(labels);
+    }
+
+    public JsonObject toJSON(){
+        JsonArray labelArray = new JsonArray();
+        for(Map.Entry<String,String> en:labels.entrySet()){
+            labelArray.add(new JsonObject().put(en.getKey(), en.getValue()));
+        }
+        return new JsonObject()
+                .put("id", id)
+                .put("name", name)
+                .put("serverVersion", serverVersion)
+                .put("kernelVersion", kernelVersion)
+                .put("operatingSystem", operatingSystem)
+                .put("cpus", cpus)
+                .put("memory", memory)
+                .put("containers", containers)
+                .put("containersRunning", containersRunning)
+                .put("images", images)
+                .put("labels", labelArray);
+    }
+
+    @Override
+    public String toString() {
+        return "DockerEngineInfo{" +
+                "name='" + name + '\'' +
+                ", serverVersion='" + serverVersion + '\'' +
+                ", cpus=" + cpus +
+                ", memory=" + memory +
+                ", containersRunning=" + containersRunning +
+                '}';
+    }
+}
@@ -137,7 +137,7 @@ public class DockerHost {
     public JsonObject toJSON(){
         JsonObject ob = new JsonObject()
                 .put("name", getName())
-                .put("uri", getUri());
+                .put("uri", getUri()==null?null:getUri().toString());
         JsonArray propsArray = new JsonArray();
         for(Map.Entry<String,String> en: properties.entrySet()){
             propsArray.add(new JsonObject().put(en.getKey(), en.getValue()));
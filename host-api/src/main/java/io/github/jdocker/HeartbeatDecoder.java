@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.jdocker;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Rebuilds the agents' states from the heartbeats created by {@link HeartbeatEncoder}.
+ */
+public final class HeartbeatDecoder {
+
+    private final Map<String, AgentState> agents = new ConcurrentHashMap<>();
+
+    /**
+     * Applies a heartbeat.
+     * @param heartbeat the heartbeat received, not null.
+     * @return the agent's updated state, or null, if the agent is unknown or heartbeats were missed. In that case
+     * a full heartbeat must be requested on {@link HeartbeatEncoder#HEARTBEAT_RESYNC_ADDRESS}.
+     */
+    public JsonObject apply(JsonObject heartbeat){
+        String name = heartbeat.getString("name");
+        Long sequence = heartbeat.getLong("seq");
+        if(name==null || sequence==null){
+            throw new IllegalArgumentException("Invalid heartbeat: " + heartbeat);
+        }
+        JsonObject data = heartbeat.getJsonObject("data");
+        if(heartbeat.getBoolean("full", false)){
+            AgentState state = new AgentState(sequence, data==null?new JsonObject():data.copy());
+            agents.put(name, state);
+            return state.state;
+        }
+        AgentState state = agents.get(name);
+        if(state==null){
+            return null;
+        }
+        synchronized (state){
+            if(sequence<=state.sequence){
+                // duplicate or reordered, already contained in the state.
+                return state.state;
+            }
+            if(sequence!=state.sequence+1){
+                return null;
+            }
+            state.sequence = sequence;
+            if(data!=null){
+                for(String key:data.fieldNames()){
+                    state.state.put(key, data.getValue(key));
+                }
+            }
+            JsonArray removed = heartbeat.getJsonArray("removed");
+            if(removed!=null){
+                for(Object key:removed){
+                    state.state.remove(String.valueOf(key));
+                }
+            }
+            return state.state;
+        }
+    }
+
+    /**
+     * Get the last known state of an agent.
+     * @param name the agent's name.
+     * @return the state, or null.
+     */
+    public JsonObject getState(String name){
+        AgentState state = agents.get(name);
+        return state==null?null:state.state;
+    }
+
+    /**
+     * Get the names of all known agents.
+     * @return the agent names, never null.
+     */
+    public Set<String> getAgentNames(){
+        return Collections.unmodifiableSet(agents.keySet());
+    }
+
+    /**
+     * Forgets an agent, e.g. after it was detected as failed.
+     * @param name the agent's name.
+     */
+    public void remove(String name){
+        agents.remove(name);
+    }
+
+    private static final class AgentState{
+        long sequence;
+        final JsonObject state;
+
+        AgentState(long sequence, JsonObject state){
+            this.sequence = sequence;
+            this.state = state;
+        }
+    }
+}
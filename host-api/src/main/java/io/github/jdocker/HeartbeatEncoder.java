@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.jdocker;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.Objects;
+
+/**
+ * Encodes the heartbeats of an agent. The first heartbeat, and the first one after a resync request, carries the
+ * full state, all others only a sequence number and the fields changed since the last heartbeat. Receivers rebuild
+ * the state using a {@link HeartbeatDecoder}.
+ */
+public final class HeartbeatEncoder {
+
+    /** Address, where agents publish their heartbeats. */
+    public static final String HEARTBEAT_ADDRESS = "jdocker.docker-agent:heartbeat";
+    /** Address, where receivers request a full heartbeat, the body contains the agent's name. */
+    public static final String HEARTBEAT_RESYNC_ADDRESS = "jdocker.docker-agent:heartbeat-resync";
+
+    private final String name;
+    private JsonObject lastSent;
+    private long sequence;
+    private boolean fullRequested = true;
+
+    /**
+     * Creates a new encoder.
+     * @param name the agent's name, not null.
+     */
+    public HeartbeatEncoder(String name){
+        this.name = Objects.requireNonNull(name);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Requests the next heartbeat to contain the full state.
+     */
+    public synchronized void requestFull(){
+        this.fullRequested = true;
+    }
+
+    /**
+     * Creates the next heartbeat.
+     * @param state the agent's current state, not null.
+     * @return the heartbeat message, never null.
+     */
+    public synchronized JsonObject encode(JsonObject state){
+        JsonObject heartbeat = new JsonObject().put("name", name).put("seq", ++sequence);
+        if(fullRequested || lastSent==null){
+            heartbeat.put("full", true).put("data", state.copy());
+            fullRequested = false;
+        }else{
+            JsonObject changes = new JsonObject();
+            for(String key:state.fieldNames()){
+                Object value = state.getValue(key);
+                if(!lastSent.containsKey(key) || !Objects.equals(lastSent.getValue(key), value)){
+                    changes.put(key, value);
+                }
+            }
+            if(!changes.isEmpty()){
+                heartbeat.put("data", changes);
+            }
+            JsonArray removed = new JsonArray();
+            for(String key:lastSent.fieldNames()){
+                if(!state.containsKey(key)){
+                    removed.add(key);
+                }
+            }
+            if(!removed.isEmpty()){
+                heartbeat.put("removed", removed);
+            }
+        }
+        lastSent = state.copy();
+        return heartbeat;
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.jdocker;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests heartbeats round-tripping through {@link HeartbeatEncoder} and {@link HeartbeatDecoder}.
+ */
+public class HeartbeatDecoderTest {
+
+    private final HeartbeatEncoder encoder = new HeartbeatEncoder("agent1");
+    private final HeartbeatDecoder decoder = new HeartbeatDecoder();
+
+    private static JsonObject state(int containers, String status){
+        return new JsonObject().put("containers", containers).put("status", status);
+    }
+
+    @Test
+    public void testFirstHeartbeatIsFull() {
+        JsonObject heartbeat = encoder.encode(state(1, "up"));
+        assertTrue(heartbeat.getBoolean("full", false));
+        assertEquals(1L, heartbeat.getLong("seq").longValue());
+        assertEquals(state(1, "up"), decoder.apply(heartbeat));
+        assertEquals(state(1, "up"), decoder.getState("agent1"));
+        assertTrue(decoder.getAgentNames().contains("agent1"));
+    }
+
+    @Test
+    public void testDeltaContainsChangedAndRemovedFieldsOnly() {
+        decoder.apply(encoder.encode(state(1, "up")));
+        JsonObject heartbeat = encoder.encode(new JsonObject().put("containers", 2).put("load", 3));
+        assertFalse(heartbeat.getBoolean("full", false));
+        JsonObject data = heartbeat.getJsonObject("data");
+        assertEquals(2, data.size());
+        assertEquals(2, data.getInteger("containers").intValue());
+        assertEquals(3, data.getInteger("load").intValue());
+        assertEquals(new JsonArray().add("status"), heartbeat.getJsonArray("removed"));
+        assertEquals(new JsonObject().put("containers", 2).put("load", 3), decoder.apply(heartbeat));
+    }
+
+    @Test
+    public void testUnchangedStateSendsSequenceOnly() {
+        decoder.apply(encoder.encode(state(1, "up")));
+        JsonObject heartbeat = encoder.encode(state(1, "up"));
+        assertNull(heartbeat.getJsonObject("data"));
+        assertNull(heartbeat.getJsonArray("removed"));
+        assertEquals(state(1, "up"), decoder.apply(heartbeat));
+    }
+
+    @Test
+    public void testEncoderDoesNotAliasState() {
+        JsonObject state = state(1, "up");
+        decoder.apply(encoder.encode(state));
+        state.put("containers", 5);
+        assertEquals(1, decoder.getState("agent1").getInteger("containers").intValue());
+        JsonObject heartbeat = encoder.encode(state);
+        assertEquals(5, heartbeat.getJsonObject("data").getInteger("containers").intValue());
+        assertEquals(5, decoder.apply(heartbeat).getInteger("containers").intValue());
+    }
+
+    @Test
+    public void testMissedHeartbeatRequiresResync() {
+        decoder.apply(encoder.encode(state(1, "up")));
+        encoder.encode(state(2, "up"));
+        assertNull(decoder.apply(encoder.encode(state(3, "up"))));
+        assertEquals(state(1, "up"), decoder.getState("agent1"));
+
+        encoder.requestFull();
+        JsonObject full = encoder.encode(state(4, "up"));
+        assertTrue(full.getBoolean("full", false));
+        assertEquals(state(4, "up"), decoder.apply(full));
+    }
+
+    @Test
+    public void testDuplicateHeartbeatIsIgnored() {
+        decoder.apply(encoder.encode(state(1, "up")));
+        JsonObject delta = encoder.encode(state(2, "up"));
+        decoder.apply(delta);
+        JsonObject stale = new JsonObject().put("name", "agent1").put("seq", 1L)
+                .put("data", new JsonObject().put("containers", 1));
+        assertEquals(state(2, "up"), decoder.apply(stale));
+        assertEquals(state(2, "up"), decoder.apply(delta));
+    }
+
+    @Test
+    public void testDeltaFromUnknownAgentRequiresResync() {
+        JsonObject heartbeat = new JsonObject().put("name", "agent2").put("seq", 7L)
+                .put("data", new JsonObject().put("containers", 1));
+        assertNull(decoder.apply(heartbeat));
+        assertNull(decoder.getState("agent2"));
+    }
+
+    @Test
+    public void testRemovedAgentRequiresResync() {
+        decoder.apply(encoder.encode(state(1, "up")));
+        decoder.remove("agent1");
+        assertNull(decoder.apply(encoder.encode(state(2, "up"))));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testHeartbeatWithoutNameIsRejected() {
+        decoder.apply(new JsonObject().put("seq", 1L).put("full", true));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testHeartbeatWithoutSequenceIsRejected() {
+        decoder.apply(new JsonObject().put("name", "agent1").put("full", true));
+    }
+}
@@ -30,6 +30,9 @@ import java.util.concurrent.ConcurrentHashMap;
  */
 public class CalicoIPAMSpi implements IPAddressManager {
 
+    /** Timeout for calicoctl query commands, e.g. {@code calicoctl pool show}. */
+    private static final long QUERY_TIMEOUT_MS = 30000L;
+
     private Map<String,AddressPool> pools = new ConcurrentHashMap<>();
     private Set<String> networks = new TreeSet<>();
 
@@ -150,12 +153,12 @@ public class CalicoIPAMSpi implements IPAddressManager {
      */
     @Override
     public String getIPInfo(String ip){
-        return Executor.execute("calicoctl ipam info " + ip);
+        return Executor.execute(QUERY_TIMEOUT_MS, "calicoctl ipam info " + ip);
     }
 
     @Override
     public String getAddressPoolInfo(){
-        String result = Executor.execute("calicoctl pool show");
+        String result = Executor.execute(QUERY_TIMEOUT_MS, "calicoctl pool show");
         // TODO read into Collection type
         return result;
     }
@@ -37,11 +37,14 @@ import java.util.concurrent.ConcurrentHashMap;
  */
 public class CalicoNetworkingSpi implements NetworkManager {
 
+    /** Timeout for calicoctl query commands, e.g. {@code calicoctl endpoint show}. */
+    private static final long QUERY_TIMEOUT_MS = 30000L;
+
     private final Map<String,SecurityProfile> profiles = new ConcurrentHashMap<>();
 
     @Override
     public NetworkingStatus getStatus(){
-        String result = Executor.execute("calicoctl status");
+        String result = Executor.execute(QUERY_TIMEOUT_MS, "calicoctl status");
         if(result.contains("Error")){
             return NetworkingStatus.Error;
         }
@@ -50,7 +53,7 @@ public class CalicoNetworkingSpi implements NetworkManager {
 
     @Override
     public String getVersion(){
-        return "Calico Networking: " + Executor.execute("calicoctl version");
+        return "Calico Networking: " + Executor.execute(QUERY_TIMEOUT_MS, "calicoctl version");
     }
 
     @Override
@@ -207,7 +210,7 @@ public class CalicoNetworkingSpi implements NetworkManager {
 
     @Override
     public Collection<String> getSecurityProfiles(ContainerInfo container){
-        String result = Executor.execute("calicoctl container "+container.id()+" profile show");
+        String result = Executor.execute(QUERY_TIMEOUT_MS, "calicoctl container "+container.id()+" profile show");
         // TODO parse result:
 //        +------+
 //        | Name |
@@ -233,21 +236,21 @@ public class CalicoNetworkingSpi implements NetworkManager {
     }
 
     public Collection<String> getEndpointsForHost(String hostname){
-        String data = Executor.execute("calicoctl endpoint show --host="+hostname+" --orchestrator=docker");
+        String data = Executor.execute(QUERY_TIMEOUT_MS, "calicoctl endpoint show --host="+hostname+" --orchestrator=docker");
         // TODO parse. see Endpoint class
         return Collections.emptySet();
     }
 
     public String getEndpoint(String endpointId){
-        return Executor.execute("calicoctl endpoint show --endpoint="+endpointId+" --orchestrator=docker");
+        return Executor.execute(QUERY_TIMEOUT_MS, "calicoctl endpoint show --endpoint="+endpointId+" --orchestrator=docker");
     }
 
     public String getAllEndpoints(){
-        return Executor.execute("calicoctl endpoint show");
+        return Executor.execute(QUERY_TIMEOUT_MS, "calicoctl endpoint show");
     }
 
     public String getEndpoints(ContainerInfo container){
-        return Executor.execute("calicoctl container "+container.id()+" endpoint show");
+        return Executor.execute(QUERY_TIMEOUT_MS, "calicoctl container "+container.id()+" endpoint show");
     }
 
     public String setSecurityProfiles(String endpoint, SecurityProfile... profiles){
@@ -263,7 +266,7 @@ public class CalicoNetworkingSpi implements NetworkManager {
     }
 
     public Collection<String> getSecurityProfiles(String endpoint){
-        String result = Executor.execute("calicoctl endpoint "+endpoint+" profile show");
+        String result = Executor.execute(QUERY_TIMEOUT_MS, "calicoctl endpoint "+endpoint+" profile show");
         // TODO parse result:
 //        +------+
 //        | Name |
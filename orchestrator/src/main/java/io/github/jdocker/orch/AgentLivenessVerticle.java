@@ -0,0 +1,197 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.jdocker.orch;
+
+import io.github.jdocker.DockerHost;
+import io.github.jdocker.DockerHostBuilder;
+import io.github.jdocker.HeartbeatDecoder;
+import io.github.jdocker.HeartbeatEncoder;
+import io.github.jdocker.MachineStatus;
+import io.github.jdocker.common.vertx.BinaryCodec;
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.json.JsonObject;
+import org.apache.tamaya.Configuration;
+import org.apache.tamaya.ConfigurationProvider;
+
+import java.net.URI;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * Verticle tracking the liveness of the docker agents based on their heartbeats. Agents whose phi exceeds the
+ * suspect threshold are set to {@link MachineStatus#Unknown}, those exceeding the failed threshold to
+ * {@link MachineStatus#Stopped}. Status changes are published on {@link #HOST_STATUS_ADDRESS}.
+ */
+public class AgentLivenessVerticle extends AbstractVerticle{
+
+    private static final Logger LOG = Logger.getLogger(AgentLivenessVerticle.class.getName());
+
+    /** Address, where status changes of docker hosts are published. */
+    public static final String HOST_STATUS_ADDRESS = "jdocker.orchestrator:host-status";
+
+    private static final long DEFAULT_HEARTBEAT_INTERVAL_MS = 10000L;
+    private static final long DEFAULT_CHECK_INTERVAL_MS = 1000L;
+    private static final double DEFAULT_FAILED_THRESHOLD = 16.0d;
+
+    private final Map<String, DockerHost> hosts = new ConcurrentHashMap<>();
+    private final HeartbeatDecoder decoder = new HeartbeatDecoder();
+    private PhiAccrualFailureDetector detector;
+    private double suspectThreshold;
+    private double failedThreshold;
+    private long timerID;
+
+    @Override
+    public void start() throws Exception {
+        Configuration config = ConfigurationProvider.getConfiguration();
+        Long heartbeatInterval = config.get("jdocker.Docker.Agent.heartbeatInterval", Long.class);
+        if(heartbeatInterval==null){
+            heartbeatInterval = Long.valueOf(DEFAULT_HEARTBEAT_INTERVAL_MS);
+        }
+        Long checkInterval = config.get("jdocker.Orchestrator.livenessCheckInterval", Long.class);
+        if(checkInterval==null){
+            checkInterval = Long.valueOf(DEFAULT_CHECK_INTERVAL_MS);
+        }
+        Double threshold = config.get("jdocker.Orchestrator.phiSuspectThreshold", Double.class);
+        suspectThreshold = threshold==null?PhiAccrualFailureDetector.DEFAULT_THRESHOLD:threshold;
+        threshold = config.get("jdocker.Orchestrator.phiFailedThreshold", Double.class);
+        failedThreshold = threshold==null?DEFAULT_FAILED_THRESHOLD:threshold;
+        detector = new PhiAccrualFailureDetector(heartbeatInterval);
+        BinaryCodec.register(vertx.eventBus());
+        vertx.eventBus().<JsonObject>consumer(HeartbeatEncoder.HEARTBEAT_ADDRESS, message ->
+                onHeartbeat(message.body()));
+        timerID = vertx.setPeriodic(checkInterval, id -> checkAgents(System.currentTimeMillis()));
+    }
+
+    @Override
+    public void stop() throws Exception {
+        vertx.cancelTimer(timerID);
+    }
+
+    /**
+     * Get a docker host by name.
+     * @param name the agent's name.
+     * @return the host, or null.
+     */
+    public DockerHost getDockerHost(String name){
+        return hosts.get(name);
+    }
+
+    /**
+     * Get all docker hosts known.
+     * @return the hosts, never null.
+     */
+    public Collection<DockerHost> getDockerHosts(){
+        return Collections.unmodifiableCollection(hosts.values());
+    }
+
+    private void onHeartbeat(JsonObject heartbeat){
+        String name = heartbeat.getString("name");
+        if(name==null){
+            return;
+        }
+        detector.heartbeat(name, System.currentTimeMillis());
+        JsonObject state = decoder.apply(heartbeat);
+        if(state==null){
+            // first contact with the orchestrator or heartbeats missed.
+            vertx.eventBus().publish(HeartbeatEncoder.HEARTBEAT_RESYNC_ADDRESS, name);
+            return;
+        }
+        DockerHost previous = hosts.get(name);
+        DockerHost host = toDockerHost(name, state, previous);
+        if(host!=null){
+            hosts.put(name, host);
+            if(previous==null || previous.getStatus()!=host.getStatus()){
+                publishStatus(host);
+            }
+        }
+    }
+
+    private DockerHost toDockerHost(String name, JsonObject state, DockerHost previous){
+        String uri = state.getString("uri");
+        DockerHostBuilder builder;
+        try{
+            builder = DockerHost.builder(name, URI.create(uri==null?"tcp://" + name:uri));
+        }catch(IllegalArgumentException e){
+            LOG.warning("Ignoring heartbeat with invalid uri from " + name + ": " + uri);
+            return previous;
+        }
+        JsonObject labels = state.getJsonObject("labels");
+        if(labels!=null){
+            for(String key:labels.fieldNames()){
+                builder.addProperty(key, String.valueOf(labels.getValue(key)));
+            }
+        }
+        builder.setCpus(state.getInteger("cpus", 0));
+        builder.setMemory((int)(state.getLong("memory", 0L) / (1024L * 1024L)));
+        if(previous!=null){
+            builder.setDisksize(previous.getDiskSize());
+        }
+        builder.setStatus(toMachineStatus(state.getString("state")));
+        return builder.build();
+    }
+
+    private static MachineStatus toMachineStatus(String agentState){
+        if(agentState==null){
+            return MachineStatus.Unknown;
+        }
+        switch(agentState){
+            case "Running":
+                return MachineStatus.Running;
+            case "Stopped":
+                return MachineStatus.Stopped;
+            case "Failed":
+                return MachineStatus.Error;
+            default:
+                return MachineStatus.Unknown;
+        }
+    }
+
+    private void checkAgents(long now){
+        for(DockerHost host:hosts.values()){
+            MachineStatus current = host.getStatus();
+            if(current==MachineStatus.Stopped || current==MachineStatus.Error){
+                continue;
+            }
+            double phi = detector.phi(host.getName(), now);
+            MachineStatus status = current;
+            if(phi>=failedThreshold){
+                status = MachineStatus.Stopped;
+            }else if(phi>=suspectThreshold){
+                status = MachineStatus.Unknown;
+            }
+            if(status!=current){
+                LOG.info("Docker host " + host.getName() + " is " + status + ", phi=" + phi);
+                DockerHost updated = host.builder().setStatus(status).build();
+                hosts.put(host.getName(), updated);
+                if(status==MachineStatus.Stopped){
+                    // the next heartbeat must carry the full state again.
+                    decoder.remove(host.getName());
+                }
+                publishStatus(updated);
+            }
+        }
+    }
+
+    private void publishStatus(DockerHost host){
+        vertx.eventBus().publish(HOST_STATUS_ADDRESS, host.toJSON());
+    }
+}
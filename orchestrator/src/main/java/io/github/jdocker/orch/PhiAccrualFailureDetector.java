@@ -0,0 +1,197 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.jdocker.orch;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Phi accrual failure detector (Hayashibara et al.). Instead of a fixed timeout it calculates a suspicion level
+ * {@code phi} from the distribution of the recent heartbeat inter-arrival times of each agent, so slow but regular
+ * agents are not flagged, while silent agents are detected quickly. The intervals are kept in a primitive ring
+ * buffer with running sums, so evaluating phi is constant time and does not allocate.
+ */
+public final class PhiAccrualFailureDetector {
+
+    /** Default phi, above which an agent is suspected. */
+    public static final double DEFAULT_THRESHOLD = 8.0d;
+    /** Default number of inter-arrival times kept per agent. */
+    public static final int DEFAULT_MAX_SAMPLE_SIZE = 200;
+    /** Default lower bound of the standard deviation, avoiding over sensitivity of very regular agents. */
+    public static final long DEFAULT_MIN_STD_DEVIATION_MS = 500L;
+
+    private final int maxSampleSize;
+    private final long minStdDeviationMs;
+    private final long acceptableHeartbeatPauseMs;
+    private final long firstHeartbeatEstimateMs;
+    private final ConcurrentMap<String, History> histories = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new detector.
+     * @param maxSampleSize the number of inter-arrival times kept per agent, &gt; 0.
+     * @param minStdDeviationMs the minimal standard deviation used.
+     * @param acceptableHeartbeatPauseMs additional pause tolerated, e.g. for GC pauses.
+     * @param firstHeartbeatEstimateMs the expected heartbeat interval, used to bootstrap the history.
+     */
+    public PhiAccrualFailureDetector(int maxSampleSize, long minStdDeviationMs, long acceptableHeartbeatPauseMs,
+                                     long firstHeartbeatEstimateMs){
+        if(maxSampleSize<=0){
+            throw new IllegalArgumentException("maxSampleSize must be > 0.");
+        }
+        if(firstHeartbeatEstimateMs<=0){
+            throw new IllegalArgumentException("firstHeartbeatEstimateMs must be > 0.");
+        }
+        this.maxSampleSize = maxSampleSize;
+        this.minStdDeviationMs = minStdDeviationMs;
+        this.acceptableHeartbeatPauseMs = acceptableHeartbeatPauseMs;
+        this.firstHeartbeatEstimateMs = firstHeartbeatEstimateMs;
+    }
+
+    /**
+     * Creates a detector with default settings.
+     * @param heartbeatIntervalMs the expected heartbeat interval.
+     */
+    public PhiAccrualFailureDetector(long heartbeatIntervalMs){
+        this(DEFAULT_MAX_SAMPLE_SIZE, DEFAULT_MIN_STD_DEVIATION_MS, 0L, heartbeatIntervalMs);
+    }
+
+    /**
+     * Records a heartbeat.
+     * @param name the agent's name, not null.
+     * @param timestampMillis the arrival time.
+     */
+    public void heartbeat(String name, long timestampMillis){
+        History history = histories.get(name);
+        if(history==null){
+            history = new History(maxSampleSize, firstHeartbeatEstimateMs);
+            History existing = histories.putIfAbsent(name, history);
+            if(existing!=null){
+                history = existing;
+            }
+        }
+        history.add(timestampMillis);
+    }
+
+    /**
+     * Calculates the current suspicion level.
+     * @param name the agent's name.
+     * @param nowMillis the current time.
+     * @return phi, 0.0 for agents without heartbeats.
+     */
+    public double phi(String name, long nowMillis){
+        History history = histories.get(name);
+        if(history==null){
+            return 0.0d;
+        }
+        return history.phi(nowMillis, minStdDeviationMs, acceptableHeartbeatPauseMs);
+    }
+
+    /**
+     * Checks if an agent is considered available.
+     * @param name the agent's name.
+     * @param nowMillis the current time.
+     * @param threshold the phi threshold.
+     * @return true, if phi is below the threshold.
+     */
+    public boolean isAvailable(String name, long nowMillis, double threshold){
+        return phi(name, nowMillis) < threshold;
+    }
+
+    /**
+     * Get the names of all tracked agents.
+     * @return the names, never null.
+     */
+    public Set<String> getNames(){
+        return Collections.unmodifiableSet(histories.keySet());
+    }
+
+    /**
+     * Stops tracking an agent.
+     * @param name the agent's name.
+     */
+    public void remove(String name){
+        histories.remove(name);
+    }
+
+    /**
+     * Calculates phi using the logistic approximation of the normal distribution's cumulative distribution.
+     */
+    static double phi(long timeDiff, double mean, double stdDeviation){
+        double y = (timeDiff - mean) / stdDeviation;
+        double e = Math.exp(-y * (1.5976d + 0.070566d * y * y));
+        if(timeDiff > mean){
+            return -Math.log10(e / (1.0d + e));
+        }
+        return -Math.log10(1.0d - 1.0d / (1.0d + e));
+    }
+
+    /**
+     * The inter-arrival times of one agent.
+     */
+    private static final class History{
+        private final long[] intervals;
+        private int index;
+        private int size;
+        private double sum;
+        private double squaredSum;
+        private long lastTimestamp = -1L;
+
+        History(int maxSampleSize, long firstHeartbeatEstimateMs){
+            this.intervals = new long[maxSampleSize];
+            // bootstrap with a high variance, so the first intervals are not overly suspicious.
+            long stdDeviation = firstHeartbeatEstimateMs / 4;
+            add0(firstHeartbeatEstimateMs - stdDeviation);
+            add0(firstHeartbeatEstimateMs + stdDeviation);
+        }
+
+        synchronized void add(long timestamp){
+            if(lastTimestamp>=0 && timestamp>lastTimestamp){
+                add0(timestamp - lastTimestamp);
+            }
+            lastTimestamp = timestamp;
+        }
+
+        private void add0(long interval){
+            if(size==intervals.length){
+                long removed = intervals[index];
+                sum -= removed;
+                squaredSum -= (double)removed * removed;
+            }else{
+                size++;
+            }
+            intervals[index] = interval;
+            index = (index + 1) % intervals.length;
+            sum += interval;
+            squaredSum += (double)interval * interval;
+        }
+
+        synchronized double phi(long now, long minStdDeviationMs, long acceptableHeartbeatPauseMs){
+            if(lastTimestamp<0){
+                return 0.0d;
+            }
+            double mean = sum / size;
+            double variance = Math.max(0.0d, squaredSum / size - mean * mean);
+            double stdDeviation = Math.max(Math.sqrt(variance), minStdDeviationMs);
+            return PhiAccrualFailureDetector.phi(now - lastTimestamp, mean + acceptableHeartbeatPauseMs,
+                    stdDeviation);
+        }
+    }
+}
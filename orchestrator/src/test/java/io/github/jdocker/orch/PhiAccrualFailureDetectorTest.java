@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.jdocker.orch;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the suspicion levels calculated by the {@link PhiAccrualFailureDetector}.
+ */
+public class PhiAccrualFailureDetectorTest {
+
+    private static final long INTERVAL = 1000L;
+    private static final double THRESHOLD = PhiAccrualFailureDetector.DEFAULT_THRESHOLD;
+
+    private final PhiAccrualFailureDetector detector = new PhiAccrualFailureDetector(INTERVAL);
+
+    private long regularHeartbeats(String name, int count){
+        long time = 0L;
+        for(int i=0;i<count;i++){
+            time += INTERVAL;
+            detector.heartbeat(name, time);
+        }
+        return time;
+    }
+
+    @Test
+    public void testUnknownAgentIsAvailable() {
+        assertEquals(0.0d, detector.phi("agent1", 100000L), 0.0d);
+        assertTrue(detector.isAvailable("agent1", 100000L, THRESHOLD));
+    }
+
+    @Test
+    public void testSingleHeartbeatHasNoSuspicion() {
+        detector.heartbeat("agent1", 1000L);
+        assertTrue(detector.phi("agent1", 1000L) < 1.0d);
+        assertTrue(detector.isAvailable("agent1", 2000L, THRESHOLD));
+    }
+
+    @Test
+    public void testPhiAtMeanIntervalIsLow() {
+        long last = regularHeartbeats("agent1", 50);
+        assertEquals(-Math.log10(0.5d), detector.phi("agent1", last + INTERVAL), 0.05d);
+        assertTrue(detector.isAvailable("agent1", last + 2 * INTERVAL, THRESHOLD));
+    }
+
+    @Test
+    public void testPhiGrowsWithSilence() {
+        long last = regularHeartbeats("agent1", 50);
+        double previous = detector.phi("agent1", last);
+        for(long pause=INTERVAL/2;pause<=5*INTERVAL;pause+=INTERVAL/2){
+            double phi = detector.phi("agent1", last + pause);
+            assertTrue("phi must increase, pause " + pause, phi > previous);
+            previous = phi;
+        }
+    }
+
+    @Test
+    public void testThresholdIsCrossedAfterLongSilence() {
+        long last = regularHeartbeats("agent1", 50);
+        assertTrue(detector.isAvailable("agent1", last + 3 * INTERVAL, THRESHOLD));
+        assertFalse(detector.isAvailable("agent1", last + 5 * INTERVAL, THRESHOLD));
+        // a lower threshold suspects earlier
+        assertFalse(detector.isAvailable("agent1", last + 3 * INTERVAL, 1.0d));
+    }
+
+    @Test
+    public void testHeartbeatResetsSuspicion() {
+        long last = regularHeartbeats("agent1", 50);
+        assertFalse(detector.isAvailable("agent1", last + 10 * INTERVAL, THRESHOLD));
+        detector.heartbeat("agent1", last + 10 * INTERVAL);
+        assertTrue(detector.isAvailable("agent1", last + 10 * INTERVAL + INTERVAL, THRESHOLD));
+    }
+
+    @Test
+    public void testAdaptsToSlowerAgents() {
+        PhiAccrualFailureDetector small = new PhiAccrualFailureDetector(10, 100L, 0L, INTERVAL);
+        long time = 0L;
+        for(int i=0;i<20;i++){
+            time += 4 * INTERVAL;
+            small.heartbeat("agent1", time);
+        }
+        // all bootstrap and 1s samples were evicted, a 4s pause is expected now
+        assertTrue(small.isAvailable("agent1", time + 4 * INTERVAL, THRESHOLD));
+        assertFalse(small.isAvailable("agent1", time + 6 * INTERVAL, THRESHOLD));
+    }
+
+    @Test
+    public void testAcceptablePauseDelaysSuspicion() {
+        PhiAccrualFailureDetector tolerant = new PhiAccrualFailureDetector(
+                PhiAccrualFailureDetector.DEFAULT_MAX_SAMPLE_SIZE,
+                PhiAccrualFailureDetector.DEFAULT_MIN_STD_DEVIATION_MS, 3 * INTERVAL, INTERVAL);
+        long time = 0L;
+        for(int i=0;i<50;i++){
+            time += INTERVAL;
+            tolerant.heartbeat("agent1", time);
+            detector.heartbeat("agent1", time);
+        }
+        assertFalse(detector.isAvailable("agent1", time + 5 * INTERVAL, THRESHOLD));
+        assertTrue(tolerant.isAvailable("agent1", time + 5 * INTERVAL, THRESHOLD));
+    }
+
+    @Test
+    public void testOutOfOrderHeartbeatIsIgnored() {
+        long last = regularHeartbeats("agent1", 50);
+        double phi = detector.phi("agent1", last + INTERVAL);
+        detector.heartbeat("agent1", last - INTERVAL);
+        assertTrue(detector.phi("agent1", last + INTERVAL) >= phi);
+    }
+
+    @Test
+    public void testRemove() {
+        regularHeartbeats("agent1", 5);
+        regularHeartbeats("agent2", 5);
+        assertEquals(2, detector.getNames().size());
+        detector.remove("agent1");
+        assertFalse(detector.getNames().contains("agent1"));
+        assertEquals(0.0d, detector.phi("agent1", 100000L), 0.0d);
+    }
+
+    @Test
+    public void testPhiFunction() {
+        assertEquals(-Math.log10(0.5d), PhiAccrualFailureDetector.phi(1000L, 1000.0d, 100.0d), 0.001d);
+        assertTrue(PhiAccrualFailureDetector.phi(500L, 1000.0d, 100.0d) < 0.01d);
+        assertTrue(PhiAccrualFailureDetector.phi(1600L, 1000.0d, 100.0d) > THRESHOLD);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidSampleSize() {
+        new PhiAccrualFailureDetector(0, 100L, 0L, INTERVAL);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidHeartbeatEstimate() {
+        new PhiAccrualFailureDetector(10, 100L, 0L, 0L);
+    }
+}
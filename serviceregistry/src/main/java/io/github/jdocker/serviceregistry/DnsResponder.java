@@ -0,0 +1,578 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.jdocker.serviceregistry;
+
+import io.github.jdocker.common.Endpoint;
+import io.github.jdocker.common.EndpointStats;
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.datagram.DatagramSocket;
+import io.vertx.core.datagram.DatagramSocketOptions;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.net.NetServer;
+import io.vertx.core.net.NetSocket;
+import io.vertx.core.parsetools.RecordParser;
+
+import java.io.ByteArrayOutputStream;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * DNS server answering A and SRV queries for {@code <service>.<domain>} (default {@code <service>.jdocker}) from the
+ * {@link ServiceRegistry}, over UDP and TCP. The answer records of a service are encoded once, when the service is
+ * queried first, and again, whenever the registry publishes a change of it; a query only copies the question and the
+ * precomputed records into the response. A records are returned for instances with an IPv4 address, SRV records
+ * for all instances, using the {@code weight:<n>} tag as weight. Names are case insensitive, services are looked up
+ * by their lower case name. Names without records are dropped from the cache after the TTL, and at most
+ * {@code maxServices} names are cached, further names are looked up for each query.
+ * <p>
+ * Configuration: {@code port} (default 5353), {@code host} (default 0.0.0.0), {@code domain}, {@code ttl} in seconds
+ * (default 5), {@code maxServices} (default 10000) and {@code shards} of the registry.
+ */
+public class DnsResponder extends AbstractVerticle {
+
+    private static final Logger LOG = Logger.getLogger(DnsResponder.class.getName());
+
+    public static final int DEFAULT_PORT = 5353;
+    public static final String DEFAULT_DOMAIN = "jdocker";
+    private static final int DEFAULT_TTL = 5;
+    private static final int DEFAULT_MAX_SERVICES = 10000;
+
+    private static final String REG_ADDRESS_INVALIDATE = "services.shared.invalidate";
+
+    static final int TYPE_A = 1;
+    static final int TYPE_SRV = 33;
+    static final int TYPE_ANY = 255;
+    private static final int CLASS_IN = 1;
+    private static final int HEADER_SIZE = 12;
+    private static final int MAX_UDP_SIZE = 512;
+    private static final int RCODE_FORMERR = 1;
+    private static final int RCODE_SERVFAIL = 2;
+    private static final int RCODE_NXDOMAIN = 3;
+    private static final int RCODE_NOTIMP = 4;
+    private static final int RCODE_REFUSED = 5;
+    private static final Records NO_RECORDS = new Records(new byte[0], new int[0]);
+
+    private byte[] domain;
+    private int domainLabels;
+    private int ttl;
+    private int shards;
+    private int maxServices;
+    private final AnswerTable answers = new AnswerTable();
+    private DatagramSocket socket;
+    private NetServer tcpServer;
+
+    @Override
+    public void start(Future<Void> startFuture) throws Exception {
+        String domainName = config().getString("domain", DEFAULT_DOMAIN).toLowerCase(Locale.ENGLISH);
+        domain = encodeName(domainName);
+        domainLabels = domainName.split("\\.").length;
+        ttl = config().getInteger("ttl", DEFAULT_TTL);
+        shards = config().getInteger("shards", 0);
+        maxServices = config().getInteger("maxServices", DEFAULT_MAX_SERVICES);
+        int port = config().getInteger("port", DEFAULT_PORT);
+        String host = config().getString("host", "0.0.0.0");
+
+        vertx.eventBus().consumer(REG_ADDRESS_INVALIDATE, (Handler<Message<String>>) message -> {
+            ServiceAnswers entry = answers.get(message.body());
+            if (entry != null) {
+                load(entry);
+            }
+        });
+
+        socket = vertx.createDatagramSocket(new DatagramSocketOptions());
+        socket.handler(packet -> handleQuery(packet.data(), MAX_UDP_SIZE, false,
+                response -> socket.send(response, packet.sender().port(), packet.sender().host(), null)));
+        tcpServer = vertx.createNetServer();
+        tcpServer.connectHandler(this::handleConnection);
+        socket.listen(port, host, udp -> {
+            if (udp.failed()) {
+                startFuture.fail(udp.cause());
+                return;
+            }
+            tcpServer.listen(port, host, tcp -> {
+                if (tcp.failed()) {
+                    startFuture.fail(tcp.cause());
+                } else {
+                    LOG.info("DNS responder listening on " + host + ':' + port + " for ." + domainName);
+                    startFuture.complete();
+                }
+            });
+        });
+    }
+
+    @Override
+    public void stop() throws Exception {
+        if (socket != null) {
+            socket.close();
+        }
+        if (tcpServer != null) {
+            tcpServer.close();
+        }
+    }
+
+    /**
+     * Reads length prefixed queries from a TCP connection.
+     */
+    private void handleConnection(NetSocket connection) {
+        RecordParser parser = RecordParser.newFixed(2, null);
+        parser.setOutput(new Handler<Buffer>() {
+            private boolean readLength = true;
+
+            @Override
+            public void handle(Buffer buffer) {
+                if (readLength) {
+                    int length = buffer.getUnsignedShort(0);
+                    if (length < HEADER_SIZE) {
+                        connection.close();
+                        return;
+                    }
+                    readLength = false;
+                    parser.fixedSizeMode(length);
+                } else {
+                    readLength = true;
+                    parser.fixedSizeMode(2);
+                    handleQuery(buffer, 0xFFFF, true, connection::write);
+                }
+            }
+        });
+        connection.handler(parser);
+    }
+
+    /**
+     * Answers a query.
+     * @param query the query message.
+     * @param maxSize the maximal response size, larger answers are truncated.
+     * @param tcp if true, the response is prefixed with its length.
+     * @param sender the consumer sending the response.
+     */
+    private void handleQuery(Buffer query, int maxSize, boolean tcp, Handler<Buffer> sender) {
+        if (query.length() < HEADER_SIZE || (query.getUnsignedShort(2) & 0x8000) != 0) {
+            // no query, never answer responses
+            return;
+        }
+        if (query.getUnsignedShort(4) != 1) {
+            respond(query, HEADER_SIZE, NO_RECORDS, RCODE_FORMERR, maxSize, tcp, sender);
+            return;
+        }
+        // walk the question name, counting its labels
+        int pos = HEADER_SIZE;
+        int labels = 0;
+        while (pos < query.length()) {
+            int length = query.getUnsignedByte(pos);
+            if (length == 0 || length > 63) {
+                break;
+            }
+            labels++;
+            pos += length + 1;
+        }
+        int questionEnd = pos + 5;
+        if (pos >= query.length() || query.getUnsignedByte(pos) != 0 || questionEnd > query.length()) {
+            respond(query, HEADER_SIZE, NO_RECORDS, RCODE_FORMERR, maxSize, tcp, sender);
+            return;
+        }
+        int qtype = query.getUnsignedShort(pos + 1);
+        int qclass = query.getUnsignedShort(pos + 3);
+        // split the name into the service and the domain part
+        int serviceEnd = HEADER_SIZE;
+        for (int i = 0; i < labels - domainLabels; i++) {
+            serviceEnd += query.getUnsignedByte(serviceEnd) + 1;
+        }
+        if (labels <= domainLabels || serviceEnd + domain.length != pos
+                || !matches(query, serviceEnd, domain, 0, domain.length)) {
+            respond(query, questionEnd, NO_RECORDS, RCODE_REFUSED, maxSize, tcp, sender);
+            return;
+        }
+        if (qclass != CLASS_IN) {
+            respond(query, questionEnd, NO_RECORDS, RCODE_NOTIMP, maxSize, tcp, sender);
+            return;
+        }
+        ServiceAnswers entry = answers.get(query, HEADER_SIZE, serviceEnd - HEADER_SIZE);
+        if (entry == null) {
+            entry = new ServiceAnswers(decodeName(query, HEADER_SIZE, serviceEnd));
+            if (answers.size() < maxServices) {
+                answers.put(entry);
+            }
+            load(entry);
+        }
+        if (!entry.loaded) {
+            entry.waiting.add(() -> handleQuery(query, maxSize, tcp, sender));
+            return;
+        }
+        if (entry.failed) {
+            respond(query, questionEnd, NO_RECORDS, RCODE_SERVFAIL, maxSize, tcp, sender);
+        } else if (entry.srv.ends.length == 0) {
+            respond(query, questionEnd, NO_RECORDS, RCODE_NXDOMAIN, maxSize, tcp, sender);
+        } else if (qtype == TYPE_A) {
+            respond(query, questionEnd, entry.a, 0, maxSize, tcp, sender);
+        } else if (qtype == TYPE_SRV) {
+            respond(query, questionEnd, entry.srv, 0, maxSize, tcp, sender);
+        } else if (qtype == TYPE_ANY) {
+            respond(query, questionEnd, entry.any, 0, maxSize, tcp, sender);
+        } else {
+            // name exists, but no records of the type queried
+            respond(query, questionEnd, NO_RECORDS, 0, maxSize, tcp, sender);
+        }
+    }
+
+    /**
+     * Writes the response: header, the question copied from the query and as many precomputed records as fit.
+     */
+    private static void respond(Buffer query, int questionEnd, Records records, int rcode, int maxSize, boolean tcp,
+                                Handler<Buffer> sender) {
+        int count = records.ends.length;
+        boolean truncated = false;
+        while (count > 0 && questionEnd + records.ends[count - 1] > maxSize) {
+            count--;
+            truncated = true;
+        }
+        int recordsLength = count == 0 ? 0 : records.ends[count - 1];
+        int length = questionEnd + recordsLength;
+        Buffer response = Buffer.buffer(length + (tcp ? 2 : 0));
+        if (tcp) {
+            response.appendShort((short) length);
+        }
+        int flags = 0x8000 | 0x0400 | (query.getUnsignedShort(2) & 0x7900) | (truncated ? 0x0200 : 0) | rcode;
+        response.appendShort(query.getShort(0))
+                .appendShort((short) flags)
+                .appendShort((short) (questionEnd > HEADER_SIZE ? 1 : 0))
+                .appendShort((short) count)
+                .appendInt(0)
+                .appendBuffer(query, HEADER_SIZE, questionEnd - HEADER_SIZE)
+                .appendBytes(records.data, 0, recordsLength);
+        sender.handle(response);
+    }
+
+    /**
+     * Reads the current instances of a service from the registry and encodes its records.
+     */
+    private void load(ServiceAnswers entry) {
+        vertx.eventBus().<String>send(ServiceRegistry.address(ServiceRegistry.REG_ADDRESS_GET, entry.name, shards),
+                entry.name, reply -> {
+                    if (reply.succeeded()) {
+                        JsonArray array = new JsonArray(reply.result().body());
+                        List<Endpoint> endpoints = new ArrayList<>(array.size());
+                        for (int i = 0; i < array.size(); i++) {
+                            endpoints.add(Endpoint.fromJSON(array.getJsonObject(i)));
+                        }
+                        entry.update(endpoints, ttl);
+                        entry.failed = false;
+                    } else if (!entry.loaded) {
+                        LOG.log(Level.WARNING, "Failed to read service " + entry.name, reply.cause());
+                        entry.failed = true;
+                    }
+                    entry.loaded = true;
+                    List<Runnable> waiting = new ArrayList<>(entry.waiting);
+                    entry.waiting.clear();
+                    waiting.forEach(Runnable::run);
+                    if (entry.failed) {
+                        // retried by the next query
+                        answers.remove(entry);
+                    } else {
+                        expireIfEmpty(entry);
+                    }
+                });
+    }
+
+    /**
+     * Drops the answers of a name without records after the TTL, so queries for unknown names do not fill the cache.
+     */
+    private void expireIfEmpty(ServiceAnswers entry) {
+        if (entry.expiring || entry.srv.ends.length > 0) {
+            return;
+        }
+        entry.expiring = true;
+        vertx.setTimer(Math.max(1L, ttl * 1000L), id -> {
+            entry.expiring = false;
+            if (entry.srv.ends.length == 0) {
+                answers.remove(entry);
+            }
+        });
+    }
+
+    private static boolean matches(Buffer buffer, int offset, byte[] name, int nameOffset, int length) {
+        if (offset + length > buffer.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (lower(buffer.getByte(offset + i)) != name[nameOffset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte lower(byte b) {
+        return b >= 'A' && b <= 'Z' ? (byte) (b + 32) : b;
+    }
+
+    /**
+     * Encodes a dotted name as DNS labels, without the terminating root label.
+     */
+    static byte[] encodeName(String name) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (String label : name.split("\\.")) {
+            byte[] bytes = label.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length == 0 || bytes.length > 63) {
+                throw new IllegalArgumentException("Invalid DNS name: " + name);
+            }
+            out.write(bytes.length);
+            out.write(bytes, 0, bytes.length);
+        }
+        return out.toByteArray();
+    }
+
+    private static String decodeName(Buffer buffer, int start, int end) {
+        StringBuilder b = new StringBuilder();
+        int pos = start;
+        while (pos < end) {
+            int length = buffer.getUnsignedByte(pos);
+            if (b.length() > 0) {
+                b.append('.');
+            }
+            b.append(new String(buffer.getBytes(pos + 1, pos + 1 + length), StandardCharsets.UTF_8));
+            pos += length + 1;
+        }
+        return b.toString();
+    }
+
+    /**
+     * Encoded answer records, {@code ends[i]} being the end offset of record {@code i}.
+     */
+    private static final class Records {
+        final byte[] data;
+        final int[] ends;
+
+        Records(byte[] data, int[] ends) {
+            this.data = data;
+            this.ends = ends;
+        }
+    }
+
+    /**
+     * Precomputed answers of a service.
+     */
+    private static final class ServiceAnswers {
+        final String name;
+        final byte[] key;
+        final int hash;
+        final List<Runnable> waiting = new ArrayList<>();
+        boolean loaded;
+        boolean failed;
+        boolean expiring;
+        Records a = NO_RECORDS;
+        Records srv = NO_RECORDS;
+        Records any = NO_RECORDS;
+
+        ServiceAnswers(String name) {
+            this.name = name.toLowerCase(Locale.ENGLISH);
+            this.key = encodeName(this.name);
+            this.hash = AnswerTable.hash(key, 0, key.length);
+        }
+
+        void update(List<Endpoint> endpoints, int ttl) {
+            ByteArrayOutputStream aData = new ByteArrayOutputStream();
+            ByteArrayOutputStream srvData = new ByteArrayOutputStream();
+            List<Integer> aEnds = new ArrayList<>();
+            List<Integer> srvEnds = new ArrayList<>();
+            for (Endpoint endpoint : endpoints) {
+                byte[] address = toIPv4(endpoint.getHost());
+                if (address != null) {
+                    writeRecordHeader(aData, TYPE_A, ttl, address.length);
+                    aData.write(address, 0, address.length);
+                    aEnds.add(aData.size());
+                }
+                byte[] target;
+                try {
+                    target = encodeName(endpoint.getHost());
+                } catch (IllegalArgumentException e) {
+                    LOG.warning("Skipping SRV record of " + endpoint.getInstanceKey() + ": " + e.getMessage());
+                    continue;
+                }
+                writeRecordHeader(srvData, TYPE_SRV, ttl, 6 + target.length + 1);
+                writeShort(srvData, 0);
+                writeShort(srvData, Math.min(0xFFFF, EndpointStats.of(endpoint).getWeight()));
+                writeShort(srvData, endpoint.getPort());
+                srvData.write(target, 0, target.length);
+                srvData.write(0);
+                srvEnds.add(srvData.size());
+            }
+            byte[] aBytes = aData.toByteArray();
+            byte[] srvBytes = srvData.toByteArray();
+            byte[] anyBytes = new byte[aBytes.length + srvBytes.length];
+            System.arraycopy(aBytes, 0, anyBytes, 0, aBytes.length);
+            System.arraycopy(srvBytes, 0, anyBytes, aBytes.length, srvBytes.length);
+            int[] anyEnds = new int[aEnds.size() + srvEnds.size()];
+            for (int i = 0; i < aEnds.size(); i++) {
+                anyEnds[i] = aEnds.get(i);
+            }
+            for (int i = 0; i < srvEnds.size(); i++) {
+                anyEnds[aEnds.size() + i] = aBytes.length + srvEnds.get(i);
+            }
+            this.a = new Records(aBytes, toArray(aEnds));
+            this.srv = new Records(srvBytes, toArray(srvEnds));
+            this.any = new Records(anyBytes, anyEnds);
+        }
+
+        private static int[] toArray(List<Integer> values) {
+            int[] result = new int[values.size()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = values.get(i);
+            }
+            return result;
+        }
+
+        private static void writeRecordHeader(ByteArrayOutputStream out, int type, int ttl, int length) {
+            // name: pointer to the question name at offset 12
+            writeShort(out, 0xC000 | HEADER_SIZE);
+            writeShort(out, type);
+            writeShort(out, CLASS_IN);
+            writeShort(out, ttl >>> 16);
+            writeShort(out, ttl);
+            writeShort(out, length);
+        }
+
+        private static void writeShort(ByteArrayOutputStream out, int value) {
+            out.write((value >>> 8) & 0xFF);
+            out.write(value & 0xFF);
+        }
+
+        private static byte[] toIPv4(String host) {
+            String[] parts = host.split("\\.");
+            if (parts.length != 4) {
+                return null;
+            }
+            for (String part : parts) {
+                if (part.isEmpty() || part.length() > 3 || !part.chars().allMatch(Character::isDigit)) {
+                    return null;
+                }
+            }
+            try {
+                return InetAddress.getByName(host).getAddress();
+            } catch (UnknownHostException e) {
+                return null;
+            }
+        }
+
+        boolean matches(Buffer buffer, int offset, int length) {
+            return length == key.length && DnsResponder.matches(buffer, offset, key, 0, length);
+        }
+    }
+
+    /**
+     * Open addressing table of the answers with linear probing, looked up by the encoded service name in the query,
+     * without decoding it. Only used on the event loop of this verticle.
+     */
+    private static final class AnswerTable {
+        private ServiceAnswers[] slots = new ServiceAnswers[64];
+        private int size;
+
+        static int hash(byte[] name, int offset, int length) {
+            int h = 0;
+            for (int i = 0; i < length; i++) {
+                h = 31 * h + name[offset + i];
+            }
+            return h ^ (h >>> 16);
+        }
+
+        private static int hash(Buffer buffer, int offset, int length) {
+            int h = 0;
+            for (int i = 0; i < length; i++) {
+                h = 31 * h + lower(buffer.getByte(offset + i));
+            }
+            return h ^ (h >>> 16);
+        }
+
+        ServiceAnswers get(Buffer buffer, int offset, int length) {
+            int h = hash(buffer, offset, length);
+            int mask = slots.length - 1;
+            for (int i = h & mask; ; i = (i + 1) & mask) {
+                ServiceAnswers entry = slots[i];
+                if (entry == null) {
+                    return null;
+                }
+                if (entry.hash == h && entry.matches(buffer, offset, length)) {
+                    return entry;
+                }
+            }
+        }
+
+        ServiceAnswers get(String serviceName) {
+            Buffer key = Buffer.buffer(encodeName(serviceName.toLowerCase(Locale.ENGLISH)));
+            return get(key, 0, key.length());
+        }
+
+        void put(ServiceAnswers entry) {
+            if ((size + 1) * 2 > slots.length) {
+                ServiceAnswers[] old = slots;
+                slots = new ServiceAnswers[old.length * 2];
+                size = 0;
+                for (ServiceAnswers e : old) {
+                    if (e != null) {
+                        insert(e);
+                    }
+                }
+            }
+            insert(entry);
+        }
+
+        private void insert(ServiceAnswers entry) {
+            int mask = slots.length - 1;
+            int i = entry.hash & mask;
+            while (slots[i] != null) {
+                i = (i + 1) & mask;
+            }
+            slots[i] = entry;
+            size++;
+        }
+
+        int size() {
+            return size;
+        }
+
+        void remove(ServiceAnswers entry) {
+            int mask = slots.length - 1;
+            int i = entry.hash & mask;
+            while (slots[i] != entry) {
+                if (slots[i] == null) {
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+            slots[i] = null;
+            size--;
+            // move the following entries of the cluster into the gap, unless their home slot is behind it
+            for (int j = (i + 1) & mask; slots[j] != null; j = (j + 1) & mask) {
+                int home = slots[j].hash & mask;
+                if (((j - home) & mask) >= ((j - i) & mask)) {
+                    slots[i] = slots[j];
+                    slots[j] = null;
+                    i = j;
+                }
+            }
+        }
+    }
+}
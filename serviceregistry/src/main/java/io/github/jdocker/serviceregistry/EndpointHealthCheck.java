@@ -16,22 +16,79 @@
  */
 package io.github.jdocker.serviceregistry;
 
-import com.google.common.base.MoreObjects;
 import io.github.jdocker.common.CheckResult;
 import io.github.jdocker.common.Endpoint;
+import io.github.jdocker.common.EndpointStats;
 import io.github.jdocker.common.HealthCheck;
 import io.github.jdocker.common.HealthCheckResult;
+import io.github.jdocker.serviceregistry.internal.LatencyRecorder;
+import io.vertx.core.Context;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpClientRequest;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
 
+import java.util.Locale;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
- * Simple HealthCheck for an endpoint.
+ * HTTP(S) HealthCheck for an endpoint. A GET request is sent to the configured path, the check succeeds if the
+ * status matches (any 2xx status by default) and the body contains the text configured, if any. The requests of all
+ * checks share two HTTP clients per Vert.x instance, one for HTTP, one for HTTPS, with keep-alive and pipelining
+ * enabled, so repeated rounds reuse at most {@link #POOL_SIZE} connections per endpoint. The latencies are kept
+ * per check, so percentiles can be reported.
+ * <p>
+ * Each result is applied to the endpoint's {@link EndpointStats}, so a failed endpoint is ejected from resolution
+ * at once. Changes of the health are also reported to the {@link ServiceRegistry}, which leaves unhealthy endpoints
+ * out of its lookups.
  */
 public class EndpointHealthCheck implements HealthCheck {
 
+  /** Default request timeout in milliseconds. */
+  public static final long DEFAULT_TIMEOUT = 5000L;
+  /** Maximal number of connections per endpoint. */
+  public static final int POOL_SIZE = 2;
+
+  private static final String CLIENTS_MAP = "jdocker.healthcheck.httpclients";
+
+  private final Vertx vertx;
   private final Endpoint endpoint;
+  private final LatencyRecorder latencies = new LatencyRecorder(LatencyRecorder.DEFAULT_SAMPLES);
+  private volatile String path;
+  private volatile int expectedStatus = -1;
+  private volatile String bodyMatch;
+  private volatile long timeout = DEFAULT_TIMEOUT;
+  /** The health last reported to the registry, null if not reported yet. */
+  private volatile Boolean reportedHealth;
+  /** Set when the check was removed, so results still in flight are no longer applied. */
+  private volatile boolean removed;
 
+  /**
+   * Creates a check using the Vert.x instance of the calling context.
+   *
+   * @param endpoint the endpoint
+   */
   public EndpointHealthCheck(Endpoint endpoint) {
+    this(null, endpoint);
+  }
+
+  /**
+   * Creates a check.
+   *
+   * @param vertx the Vert.x instance, or null, to use the one of the calling context
+   * @param endpoint the endpoint
+   */
+  public EndpointHealthCheck(Vertx vertx, Endpoint endpoint) {
+    this.vertx = vertx;
     this.endpoint = Objects.requireNonNull(endpoint);
   }
 
@@ -39,21 +96,273 @@ public class EndpointHealthCheck implements HealthCheck {
     return endpoint;
   }
 
+  /**
+   * Get the id of the check, unique per endpoint instance, so checks of several instances on the same host are not
+   * replacing each other.
+   *
+   * @return the id
+   */
   public String getId(){
-    return "EndpointHealthCheck:"+endpoint.getHost();
+    return "EndpointHealthCheck:"+endpoint.getInstanceKey();
   }
 
+  /**
+   * Sets the path requested, by default the path of the endpoint URI, or {@code /}.
+   *
+   * @param path the path, including an optional query
+   * @return this check
+   */
+  public EndpointHealthCheck setPath(String path) {
+    this.path = path;
+    return this;
+  }
+
+  /**
+   * Sets the status expected.
+   *
+   * @param expectedStatus the status, or -1 to accept any 2xx status
+   * @return this check
+   */
+  public EndpointHealthCheck setExpectedStatus(int expectedStatus) {
+    this.expectedStatus = expectedStatus;
+    return this;
+  }
+
+  /**
+   * Sets a text the response body must contain.
+   *
+   * @param bodyMatch the text, or null, to not check the body
+   * @return this check
+   */
+  public EndpointHealthCheck setBodyMatch(String bodyMatch) {
+    this.bodyMatch = bodyMatch;
+    return this;
+  }
+
+  /**
+   * Sets the request timeout.
+   *
+   * @param timeout the timeout in milliseconds, &gt; 0
+   * @return this check
+   */
+  public EndpointHealthCheck setTimeout(long timeout) {
+    if (timeout <= 0) {
+      throw new IllegalArgumentException("Timeout must be > 0: " + timeout);
+    }
+    this.timeout = timeout;
+    return this;
+  }
+
+  /**
+   * Get percentiles of the latest response latencies.
+   *
+   * @param percentiles the percentiles, between 0 and 100
+   * @return the latencies in nanoseconds, -1 if no response was received yet
+   */
+  public long[] getLatencyPercentiles(double... percentiles) {
+    return latencies.getPercentiles(percentiles);
+  }
+
+  /**
+   * Performs the check, blocking until the response is received or the request timed out.
+   *
+   * @return the result
+   * @throws IllegalStateException if called on an event loop thread
+   */
   @Override
   public HealthCheckResult check() {
-    // TODO implement endpoint health check.
-    return new HealthCheckResult().setInstance(endpoint.getHost()).setMessage("Not implemented.")
-            .setResult(CheckResult.FAILED).close();
+    if (Context.isOnEventLoopThread()) {
+      throw new IllegalStateException("Blocking health check on an event loop thread, use check(Handler).");
+    }
+    CompletableFuture<HealthCheckResult> result = new CompletableFuture<>();
+    check(result::complete);
+    try {
+      return result.get(timeout + 1000L, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return failure("Interrupted.");
+    } catch (ExecutionException | TimeoutException e) {
+      return failure(String.valueOf(e));
+    }
+  }
+
+  /**
+   * Performs the check without blocking.
+   *
+   * @param handler the handler receiving the result, called exactly once
+   */
+  public void check(Handler<HealthCheckResult> handler) {
+    Vertx v = vertx;
+    if (v == null) {
+      Context context = Vertx.currentContext();
+      if (context == null) {
+        handler.handle(failure("No Vert.x instance available."));
+        return;
+      }
+      v = context.owner();
+    }
+    String protocol = endpoint.getProtocol() == null ? "http" : endpoint.getProtocol().toLowerCase(Locale.ENGLISH);
+    boolean ssl = "https".equals(protocol);
+    if (!ssl && !"http".equals(protocol)) {
+      handler.handle(new HealthCheckResult().setCheckId(getId()).setInstance(endpoint.getInstanceKey())
+              .setResult(CheckResult.NOT_APPLICABLE).setMessage("Not an HTTP endpoint.").close());
+      return;
+    }
+    Vertx owner = v;
+    Handler<HealthCheckResult> reporting = result -> {
+      report(owner, result);
+      handler.handle(result);
+    };
+    int port = endpoint.getPort() > 0 ? endpoint.getPort() : ssl ? 443 : 80;
+    String requestPath = getRequestPath();
+    AtomicBoolean done = new AtomicBoolean();
+    long start = System.nanoTime();
+    HttpClientRequest request = client(v, ssl).get(port, endpoint.getHost(), requestPath, response -> {
+      response.exceptionHandler(e -> {
+        if (done.compareAndSet(false, true)) {
+          reporting.handle(failure(String.valueOf(e)));
+        }
+      });
+      response.bodyHandler(body -> {
+        if (!done.compareAndSet(false, true)) {
+          return;
+        }
+        long latency = System.nanoTime() - start;
+        latencies.record(latency);
+        int status = response.statusCode();
+        String match = bodyMatch;
+        boolean statusOk = expectedStatus > 0 ? status == expectedStatus : status >= 200 && status < 300;
+        boolean bodyOk = match == null || body.toString().contains(match);
+        long[] p = latencies.getPercentiles(50, 99);
+        String message = "HTTP " + status + " for " + requestPath + " in " + millis(latency) + " ms (p50 " +
+                millis(p[0]) + " ms, p99 " + millis(p[1]) + " ms)";
+        HealthCheckResult result = new HealthCheckResult().setCheckId(getId())
+                .setInstance(endpoint.getInstanceKey()).setLatencyNanos(latency);
+        if (!statusOk) {
+          result.setResult(CheckResult.FAILED).setMessage(message + ", unexpected status.");
+        } else if (!bodyOk) {
+          result.setResult(CheckResult.FAILED).setMessage(message + ", body does not contain '" + match + "'.");
+        } else {
+          result.setResult(CheckResult.SUCCESS).setMessage(message + ".");
+        }
+        reporting.handle(result.close());
+      });
+    });
+    request.exceptionHandler(e -> {
+      if (done.compareAndSet(false, true)) {
+        reporting.handle(failure(String.valueOf(e)));
+      }
+    });
+    request.setTimeout(timeout);
+    request.end();
+  }
+
+  /**
+   * Applies a result to the endpoint's statistics, and reports changes of the health to the registry.
+   */
+  private void report(Vertx vertx, HealthCheckResult result) {
+    if (removed) {
+      return;
+    }
+    boolean healthy = result.getResult() != CheckResult.FAILED;
+    EndpointStats.of(endpoint).setHealthy(healthy);
+    Boolean last = reportedHealth;
+    if (last == null || last != healthy) {
+      reportedHealth = healthy;
+      sendHealth(vertx, healthy);
+    }
+  }
+
+  private void sendHealth(Vertx vertx, boolean healthy) {
+    vertx.eventBus().send(ServiceRegistry.REG_ADDRESS_HEALTH, new JsonObject()
+            .put("service", endpoint.getServiceName())
+            .put("instance", endpoint.getInstanceKey())
+            .put("healthy", healthy).encode());
+  }
+
+  /**
+   * Re-admits the endpoint, as it is no longer checked, also reporting it healthy to the registry, if it was
+   * reported unhealthy before.
+   */
+  @Override
+  public void removed() {
+    removed = true;
+    EndpointStats.of(endpoint).setHealthy(true);
+    if (Boolean.FALSE.equals(reportedHealth)) {
+      Vertx v = vertx;
+      if (v == null && Vertx.currentContext() != null) {
+        v = Vertx.currentContext().owner();
+      }
+      if (v != null) {
+        reportedHealth = true;
+        sendHealth(v, true);
+      }
+    }
+  }
+
+  private String getRequestPath() {
+    String p = path;
+    if (p != null) {
+      return p.startsWith("/") ? p : "/" + p;
+    }
+    if (endpoint.getURI() != null && endpoint.getURI().getRawPath() != null
+            && !endpoint.getURI().getRawPath().isEmpty()) {
+      return endpoint.getURI().getRawPath();
+    }
+    return "/";
+  }
+
+  private HealthCheckResult failure(String message) {
+    return new HealthCheckResult().setCheckId(getId()).setInstance(endpoint.getInstanceKey())
+            .setResult(CheckResult.FAILED).setMessage(message).close();
+  }
+
+  private static String millis(long nanos) {
+    return String.valueOf(TimeUnit.NANOSECONDS.toMicros(nanos) / 1000.0);
+  }
+
+  /**
+   * Get the shared client of the given Vert.x instance, kept in its local shared data, so it is released with it.
+   */
+  private static HttpClient client(Vertx vertx, boolean ssl) {
+    LocalMap<String, ClientHolder> clients = vertx.sharedData().getLocalMap(CLIENTS_MAP);
+    String key = ssl ? "https" : "http";
+    ClientHolder holder = clients.get(key);
+    if (holder == null) {
+      synchronized (EndpointHealthCheck.class) {
+        holder = clients.get(key);
+        if (holder == null) {
+          holder = new ClientHolder(vertx.createHttpClient(new HttpClientOptions()
+                  .setKeepAlive(true)
+                  .setPipelining(true)
+                  .setMaxPoolSize(POOL_SIZE)
+                  .setConnectTimeout((int) DEFAULT_TIMEOUT)
+                  .setSsl(ssl)));
+          clients.put(key, holder);
+        }
+      }
+    }
+    return holder.client;
+  }
+
+  /**
+   * Holder of a shared client.
+   */
+  private static final class ClientHolder implements Shareable {
+    final HttpClient client;
+
+    ClientHolder(HttpClient client) {
+      this.client = client;
+    }
   }
 
   @Override
   public String toString() {
     return "EndpointHealthCheck{" +
             "endpoint=" + endpoint +
+            ", path='" + path + '\'' +
+            ", expectedStatus=" + expectedStatus +
+            ", timeout=" + timeout +
             '}';
   }
 }
@@ -17,108 +17,690 @@
 package io.github.jdocker.serviceregistry;
 
 import io.github.jdocker.common.Endpoint;
+import io.github.jdocker.serviceregistry.internal.NearCache;
+import io.github.jdocker.serviceregistry.internal.RegistryLog;
+import io.github.jdocker.serviceregistry.internal.ServiceEndpoints;
+import io.github.jdocker.serviceregistry.internal.TimingWheel;
 import io.vertx.core.*;
+import io.vertx.core.eventbus.DeliveryOptions;
 import io.vertx.core.eventbus.EventBus;
 import io.vertx.core.eventbus.Message;
-import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
 import io.vertx.core.shareddata.AsyncMap;
 import io.vertx.core.shareddata.LocalMap;
 import io.vertx.core.shareddata.SharedData;
+import org.apache.tamaya.ConfigurationProvider;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
- * A list of endpoints to for service registration.
+ * A list of endpoints to for service registration. Each service can have multiple instances, stored as JSON array
+ * per service name. Lookups on {@code services.shared.get} accept a service name or
+ * {@code {"service":"name", "tags":["prod","eu"]}} and reply with a JSON array of the matching instances.
+ * <p>
+ * Clients watch a service by long polling {@code services.shared.watch} with
+ * {@code {"service":"name", "version":n, "tags":[...]}}: the request is answered as soon as the stored version
+ * differs from {@code n}, or with the unchanged state after {@code watchTimeout} milliseconds. Replies look like
+ * {@code {"service":"name", "version":m, "endpoints":[...]}}. Removed services are kept as empty sets, so their
+ * versions keep increasing, and services stored for the first time start at a version derived from the current time,
+ * so versions known by clients are not reused after a registry restarted without its state.
+ * <p>
+ * Endpoints put with a {@code "ttl"} (milliseconds) are leased: they are removed, unless renewed within the TTL.
+ * Renewals are published on {@code services.shared.renew} as one batch per client,
+ * {@code {"instances":[{"service":"name", "instance":"key", "ttl":30000}, ...]}}, so every registry instance
+ * tracks the same leases. A TTL of 0 cancels the lease, which is published when a leased instance is removed or
+ * registered permanently. Leases expire on a {@link TimingWheel}, ticking every {@code leaseTick} milliseconds.
+ * Renewals of instances without a lease, e.g. expired while their client was paused, are answered by publishing
+ * them on {@code services.shared.unknown} in the same format, so their clients register them again.
+ * <p>
+ * With the {@code shards} and {@code shard} config values, an instance only owns the services hashing to its shard
+ * (see {@link #shardOf(String, int)}), stored in its own map, and listens on the shard addresses, e.g.
+ * {@code services.shared.get.3}. Deploying one shard per core lets the registry scale with the event loops. Requests
+ * on the plain addresses are forwarded to the owning shard. All nodes of a cluster must use the same number of shards,
+ * so {@link #main(String[])} deploys the number configured as {@code jdocker.ServiceRegistry.shards}, 8 by default.
+ * <p>
+ * In non clustered mode with {@code snapshotDir} configured, all changes are appended to a memory mapped
+ * {@link RegistryLog}, which is compacted to a snapshot every {@code snapshotInterval} milliseconds and replayed on
+ * start, so a restarted registry serves lookups at once. Replayed leased instances get a lease of
+ * {@code reconcileTimeout} milliseconds, so they are dropped unless renewed by their clients. Every registry publishes
+ * its map name on {@code services.shared.restarted} on start, so clients register the endpoints owned by that map
+ * again, which also reconciles a recovered state with the changes missed while the registry was down.
+ * <p>
+ * Health checks report the health of an instance on {@code services.shared.health} with
+ * {@code {"service":"name", "instance":"key", "healthy":false}}. Unhealthy instances stay registered, but are left
+ * out of lookups and watches, unless no healthy instance matches, until they are reported healthy again.
  */
 public class ServiceRegistry extends AbstractVerticle {
     private boolean clustered;
-    private final String REG_NAME = "services.shared";
-    private final String REG_ADDRESS_PUT = "services.shared.put";
-    private final String REG_ADDRESS_GET = "services.shared.get";
+    private static final String REG_NAME = "services.shared";
+    public static final String REG_ADDRESS_PUT = "services.shared.put";
+    public static final String REG_ADDRESS_GET = "services.shared.get";
+    public static final String REG_ADDRESS_REMOVE = "services.shared.remove";
+    /** Address, where changed service names are published, so clustered nodes drop them from their near cache and
+     * parked watches are answered. */
+    private static final String REG_ADDRESS_INVALIDATE = "services.shared.invalidate";
+    /** Address returning the near cache statistics of this node. */
+    public static final String REG_ADDRESS_STATS = "services.shared.stats";
+    /** Address for long polling the changes of a service. */
+    public static final String REG_ADDRESS_WATCH = "services.shared.watch";
+    /** Address, where lease renewals are published. */
+    public static final String REG_ADDRESS_RENEW = "services.shared.renew";
+    /** Address, where renewed instances without a lease are published, asking their clients to register them
+     * again. */
+    public static final String REG_ADDRESS_UNKNOWN = "services.shared.unknown";
+    /** Address, where a started registry publishes its map name, asking clients to register again. */
+    public static final String REG_ADDRESS_RESTARTED = "services.shared.restarted";
+    /** Address for reporting the health of an instance. */
+    public static final String REG_ADDRESS_HEALTH = "services.shared.health";
+    private static final int DEFAULT_NEAR_CACHE_SIZE = 10000;
+    /** Default time in milliseconds, after which a watch is answered although nothing changed. */
+    public static final long DEFAULT_WATCH_TIMEOUT = 20000L;
+    private static final long DEFAULT_LEASE_TICK = 100L;
+    private static final long DEFAULT_SNAPSHOT_INTERVAL = 30000L;
+    private static final long DEFAULT_RECONCILE_TIMEOUT = 60000L;
+
+    /** Configuration key of the number of shards deployed by {@link #main(String[])}. */
+    public static final String SHARDS_KEY = "jdocker.ServiceRegistry.shards";
+    /** Number of shards deployed by {@link #main(String[])}, if not configured. */
+    private static final int DEFAULT_SHARDS = 8;
+    private static final int MAX_UPDATE_ATTEMPTS = 10;
+    /** Versions of new services are the current time in milliseconds shifted by this number of bits. */
+    private static final int VERSION_TIME_SHIFT = 16;
+    private static final Logger LOG = Logger.getLogger(ServiceRegistry.class.getName());
+
+    /** Index of the shard owned by this instance. */
+    private int shard;
+    /** Number of shards, 0 if this instance owns all services. */
+    private int shards;
+    private String mapName;
+    private NearCache<String, ServiceEndpoints> nearCache;
+    /** Decoded values of the local map, only accessed on the event loop. Each entry is only used while its encoded
+     * value is still the stored one, as other instances may share the local map. */
+    private final Map<String, ServiceEndpoints> decoded = new HashMap<>();
+    private AsyncMap<String, String> clusteredMap;
+    private long watchTimeout;
+    /** Parked watch requests per service, only accessed on the event loop. */
+    private final Map<String, List<PendingWatch>> watches = new HashMap<>();
+    /** Lease expiry, only accessed on the event loop. */
+    private TimingWheel<LeaseKey> leases;
+    /** Persistent log of the local map, null if not persisted. */
+    private RegistryLog registryLog;
+    /** Mirror of the persisted local map, used for compaction. */
+    private final Map<String, String> persisted = new HashMap<>();
+    /** Version of the last service stored for the first time, only accessed on the event loop. */
+    private long versionBase;
 
     public void start(Future<Void> startFuture) throws Exception {
         clustered = config().getBoolean("clustered", false);
+        shards = config().getInteger("shards", 0);
+        shard = config().getInteger("shard", 0);
+        if (shards > 0 && (shard < 0 || shard >= shards)) {
+            startFuture.fail(new IllegalArgumentException("Invalid shard " + shard + " of " + shards + " shards."));
+            return;
+        }
+        mapName = shards > 0 ? REG_NAME + '.' + shard : REG_NAME;
+        nearCache = new NearCache<>(config().getInteger("nearCacheSize", DEFAULT_NEAR_CACHE_SIZE));
+        watchTimeout = config().getLong("watchTimeout", DEFAULT_WATCH_TIMEOUT);
+        long leaseTick = config().getLong("leaseTick", DEFAULT_LEASE_TICK);
+        leases = new TimingWheel<>(leaseTick, now());
+        vertx.setPeriodic(leaseTick, id -> leases.advance(now(), this::expire));
+        String snapshotDir = config().getString("snapshotDir");
+        if (!clustered && snapshotDir != null) {
+            restore(new File(snapshotDir, mapName + ".log"), config().getLong("reconcileTimeout", DEFAULT_RECONCILE_TIMEOUT));
+            vertx.setPeriodic(config().getLong("snapshotInterval", DEFAULT_SNAPSHOT_INTERVAL), id -> snapshot());
+        }
         EventBus eb = vertx.eventBus();
 
-        eb.consumer(REG_ADDRESS_GET, (Handler<Message<String>>) message -> {
-            System.out.println("I have received a message: " + message.body());
-            String endpointName = message.body();
-            findEndpointAndReply(endpointName, message);
+        eb.consumer(REG_ADDRESS_RENEW, (Handler<Message<String>>) message -> {
+            JsonObject renewal = new JsonObject(message.body());
+            JsonArray instances = renewal.getJsonArray("instances", new JsonArray());
+            // leases published by a registry on a registration are new, not unknown
+            boolean registered = renewal.getBoolean("registered", false);
+            JsonArray unknown = new JsonArray();
+            long now = now();
+            for (int i = 0; i < instances.size(); i++) {
+                JsonObject instance = instances.getJsonObject(i);
+                Long ttl = instance.getLong("ttl");
+                if (ttl == null || !owns(instance.getString("service"))) {
+                    continue;
+                }
+                LeaseKey lease = new LeaseKey(instance.getString("service"), instance.getString("instance"));
+                if (ttl > 0) {
+                    if (!registered && !leases.contains(lease)) {
+                        unknown.add(new JsonObject().put("service", lease.service).put("instance", lease.instance));
+                    }
+                    leases.schedule(lease, now + ttl);
+                } else {
+                    leases.cancel(lease);
+                }
+            }
+            if (!unknown.isEmpty()) {
+                eb.publish(REG_ADDRESS_UNKNOWN, new JsonObject().put("instances", unknown).encode());
+            }
+        });
+
+        eb.consumer(REG_ADDRESS_INVALIDATE, (Handler<Message<String>>) message -> {
+            if (owns(message.body())) {
+                if (clustered) {
+                    nearCache.invalidate(message.body());
+                }
+                notifyWatches(message.body());
+            }
+        });
+
+        if (shards > 0) {
+            // clients not aware of the shards use the plain addresses
+            DeliveryOptions forwardOptions = new DeliveryOptions().setSendTimeout(watchTimeout + 10000L);
+            for (String address : new String[]{REG_ADDRESS_WATCH, REG_ADDRESS_GET}) {
+                eb.consumer(address, (Handler<Message<String>>) message -> forward(address, message, forwardOptions));
+            }
+            // fire and forget messages, nobody replies to them
+            for (String address : new String[]{REG_ADDRESS_REMOVE, REG_ADDRESS_PUT, REG_ADDRESS_HEALTH}) {
+                eb.consumer(address, (Handler<Message<String>>) message -> forward(address, message, null));
+            }
+        }
+
+        eb.consumer(shardAddress(REG_ADDRESS_WATCH), (Handler<Message<String>>) message -> {
+            JsonObject request = new JsonObject(message.body());
+            JsonArray tags = request.getJsonArray("tags");
+            watch(request.getString("service"), request.getLong("version", -1L),
+                    tags == null ? null : toStrings(tags), message);
+        });
+
+        eb.consumer(shardAddress(REG_ADDRESS_STATS), message -> message.reply(nearCache.toJSON()));
+
+        eb.consumer(shardAddress(REG_ADDRESS_HEALTH), (Handler<Message<String>>) message -> {
+            JsonObject request = new JsonObject(message.body());
+            String instance = request.getString("instance");
+            boolean healthy = request.getBoolean("healthy", true);
+            if (instance != null) {
+                updateEndpoints(request.getString("service"), endpoints -> endpoints.withHealth(instance, healthy));
+            }
+        });
 
+        eb.consumer(shardAddress(REG_ADDRESS_REMOVE), (Handler<Message<String>>) message -> {
+            String body = message.body();
+            if (body.startsWith("{")) {
+                JsonObject request = new JsonObject(body);
+                String instance = request.getString("instance");
+                if (instance != null) {
+                    publishLease(request.getString("service"), instance, 0L);
+                }
+                updateEndpoints(request.getString("service"),
+                        endpoints -> instance == null ? endpoints.cleared() : endpoints.without(instance));
+            } else {
+                updateEndpoints(body, ServiceEndpoints::cleared);
+            }
+        });
 
+        eb.consumer(shardAddress(REG_ADDRESS_GET), (Handler<Message<String>>) message -> {
+            String body = message.body();
+            if (body.startsWith("{")) {
+                JsonObject request = new JsonObject(body);
+                JsonArray tags = request.getJsonArray("tags");
+                findEndpointsAndReply(request.getString("service"), tags == null ? null : toStrings(tags), message);
+            } else {
+                findEndpointsAndReply(body, null, message);
+            }
         });
 
-        eb.consumer(REG_ADDRESS_PUT, (Handler<Message<String>>) message -> {
-            System.out.println("I have received a message: " + message.body());
-            Endpoint endpoint = Json.decodeValue(message.body(), Endpoint.class);
-            registerEndpoint(endpoint);
+        eb.consumer(shardAddress(REG_ADDRESS_PUT), (Handler<Message<String>>) message -> {
+            JsonObject json = new JsonObject(message.body());
+            Endpoint endpoint = Endpoint.fromJSON(json);
+            Long ttl = json.getLong("ttl");
+            boolean leased = ttl != null && ttl > 0;
+            updateEndpoints(endpoint.getServiceName(), endpoints -> endpoints.with(endpoint, leased));
+            // without a TTL registered permanently, e.g. again after a restart
+            publishLease(endpoint.getServiceName(), endpoint.getInstanceKey(), leased ? ttl : 0L);
         });
 
+        // a recovered state may miss changes, e.g. registrations sent while this registry was down
+        eb.publish(REG_ADDRESS_RESTARTED, mapName);
         startFuture.complete();
     }
 
-    private void findEndpointAndReply(String endpointName, Message<String> message) {
+    @Override
+    public void stop() throws Exception {
+        if (registryLog != null) {
+            registryLog.close();
+            registryLog = null;
+        }
+    }
+
+    /**
+     * Replays the persisted log into the local map. Leased instances restored are leased again, until renewed by
+     * their clients.
+     */
+    private void restore(File file, long reconcileTimeout) {
+        try {
+            registryLog = RegistryLog.open(file, (key, value) -> {
+                if (value == null) {
+                    persisted.remove(key);
+                } else {
+                    persisted.put(key, value);
+                }
+            });
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Failed to open registry log " + file + ", changes are not persisted.", e);
+            return;
+        }
+        LocalMap<String, String> map1 = vertx.sharedData().getLocalMap(mapName);
+        long deadline = now() + reconcileTimeout;
+        for (Map.Entry<String, String> en : persisted.entrySet()) {
+            map1.put(en.getKey(), en.getValue());
+            ServiceEndpoints endpoints = decodeLocal(en.getKey(), en.getValue());
+            for (Endpoint endpoint : endpoints.getEndpoints()) {
+                if (endpoints.isLeased(endpoint.getInstanceKey())) {
+                    leases.schedule(new LeaseKey(en.getKey(), endpoint.getInstanceKey()), deadline);
+                }
+            }
+        }
+        LOG.info("Restored " + persisted.size() + " services from " + file);
+    }
+
+    /**
+     * Compacts the log to a snapshot, if changes were appended since the last snapshot.
+     */
+    private void snapshot() {
+        if (registryLog == null || registryLog.getRecordCount() <= persisted.size()) {
+            return;
+        }
+        try {
+            registryLog.compact(persisted);
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Failed to write registry snapshot.", e);
+        }
+    }
+
+    private void persist(String serviceName, ServiceEndpoints updated) {
+        if (registryLog == null) {
+            return;
+        }
+        String value = updated.getEncoded();
+        persisted.put(serviceName, value);
+        try {
+            registryLog.append(serviceName, value);
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Failed to persist service " + serviceName, e);
+        }
+    }
+
+    /**
+     * Get the shard owning a service.
+     * @param serviceName the service name, not null.
+     * @param shards the number of shards, &gt; 0.
+     * @return the shard index.
+     */
+    public static int shardOf(String serviceName, int shards) {
+        int h = serviceName.hashCode();
+        h ^= h >>> 16;
+        return (h & Integer.MAX_VALUE) % shards;
+    }
+
+    /**
+     * Get the address of the shard owning a service.
+     * @param address the plain address, e.g. {@link #REG_ADDRESS_GET}.
+     * @param serviceName the service name, not null.
+     * @param shards the number of shards, 0 for an unsharded registry.
+     * @return the address to send the request to.
+     */
+    public static String address(String address, String serviceName, int shards) {
+        if (shards <= 0) {
+            return address;
+        }
+        return address + '.' + shardOf(serviceName, shards);
+    }
+
+    /**
+     * Get the name of the map storing a service, as published on {@link #REG_ADDRESS_RESTARTED}.
+     * @param serviceName the service name, not null.
+     * @param shards the number of shards, 0 for an unsharded registry.
+     * @return the map name.
+     */
+    public static String mapName(String serviceName, int shards) {
+        if (shards <= 0) {
+            return REG_NAME;
+        }
+        return REG_NAME + '.' + shardOf(serviceName, shards);
+    }
+
+    private String shardAddress(String address) {
+        return shards > 0 ? address + '.' + shard : address;
+    }
+
+    private boolean owns(String serviceName) {
+        return shards <= 0 || (serviceName != null && shardOf(serviceName, shards) == shard);
+    }
+
+    /**
+     * Forwards a request received on a plain address to the owning shard.
+     * @param options the delivery options of requests answered by the shard, null for messages without a reply.
+     */
+    private void forward(String address, Message<String> message, DeliveryOptions options) {
+        String body = message.body();
+        String serviceName = body;
+        if (body.startsWith("{")) {
+            JsonObject request = new JsonObject(body);
+            serviceName = request.getString("service", request.getString("serviceName"));
+        }
+        if (serviceName == null) {
+            message.fail(2, "No service given.");
+            return;
+        }
+        if (options == null) {
+            vertx.eventBus().send(address(address, serviceName, shards), body);
+            return;
+        }
+        vertx.eventBus().<String>send(address(address, serviceName, shards), body, options, reply -> {
+            if (reply.succeeded()) {
+                message.reply(reply.result().body());
+            } else {
+                message.fail(1, String.valueOf(reply.cause()));
+            }
+        });
+    }
+
+    private static long now() {
+        return System.nanoTime() / 1000000L;
+    }
+
+    /**
+     * Publishes a lease to all registry instances, like the renewals of the clients, so all of them track the same
+     * leases.
+     * @param ttl the time to live in milliseconds, 0 to cancel the lease.
+     */
+    private void publishLease(String serviceName, String instance, long ttl) {
+        vertx.eventBus().publish(REG_ADDRESS_RENEW, new JsonObject().put("registered", true).put("instances",
+                new JsonArray().add(new JsonObject().put("service", serviceName).put("instance", instance)
+                        .put("ttl", ttl))).encode());
+    }
+
+    private void expire(LeaseKey lease) {
+        LOG.info("Lease expired, removing " + lease.instance + " from service " + lease.service);
+        updateEndpoints(lease.service, endpoints -> endpoints.without(lease.instance));
+    }
+
+    private static List<String> toStrings(JsonArray array) {
+        List<String> result = new ArrayList<>(array.size());
+        for (Object value : array) {
+            result.add(String.valueOf(value));
+        }
+        return result;
+    }
+
+    private void findEndpointsAndReply(String serviceName, List<String> tags, Message<String> message) {
+        findEndpoints(serviceName, result -> {
+            if (result.succeeded()) {
+                // TODO should we define any timeouts or anything else?
+                message.reply(ServiceEndpoints.toJSON(result.result().query(tags)).encode());
+            } else {
+                message.fail(1, "Lookup failed: " + result.cause());
+            }
+        });
+    }
+
+    private void findEndpoints(String serviceName, Handler<AsyncResult<ServiceEndpoints>> handler) {
         SharedData sd = vertx.sharedData();
         if (clustered) {
-            findEndpointInClusteredMapAndReply(endpointName, message, sd);
+            findEndpointsInClusteredMap(serviceName, handler, sd);
         } else {
-            findEndpointEndReply(endpointName, message, sd);
+            LocalMap<String, String> map1 = sd.getLocalMap(mapName);
+            handler.handle(Future.succeededFuture(decodeLocal(serviceName, map1.get(serviceName))));
         }
     }
 
-    private void findEndpointEndReply(String endpointName, Message<String> message, SharedData sd) {
-        LocalMap<String, String> map1 = sd.getLocalMap(REG_NAME);
-        final String endpointValue = map1.get(endpointName);
-        // TODO should we define any timeouts or anything else?
-        message.reply(endpointValue);
+    /**
+     * Decodes a value of the local map, reusing the instances decoded before, if the value was not changed since.
+     */
+    private ServiceEndpoints decodeLocal(String serviceName, String stored) {
+        if (stored == null) {
+            decoded.remove(serviceName);
+            return ServiceEndpoints.decode(serviceName, null);
+        }
+        ServiceEndpoints endpoints = decoded.get(serviceName);
+        if (endpoints == null || !endpoints.getEncoded().equals(stored)) {
+            endpoints = ServiceEndpoints.decode(serviceName, stored);
+            decoded.put(serviceName, endpoints);
+        }
+        return endpoints;
     }
 
-    private void findEndpointInClusteredMapAndReply(String endpointName, Message<String> message, SharedData sd) {
-        sd.<String, String>getClusterWideMap(REG_NAME, res -> {
-            if (res.succeeded()) {
-                AsyncMap<String, String> map = res.result();
-                map.get(endpointName, result -> {
-                    if (result.succeeded()) {
-                        final String endpointValue = result.result();
-                        // TODO should we define any timeouts or anything else?
-                        message.reply(endpointValue);
+    private void findEndpointsInClusteredMap(String serviceName, Handler<AsyncResult<ServiceEndpoints>> handler,
+                                             SharedData sd) {
+        ServiceEndpoints cached = nearCache.get(serviceName);
+        if (cached != null) {
+            handler.handle(Future.succeededFuture(cached));
+            return;
+        }
+        long epoch = nearCache.getEpoch();
+        withClusteredMap(sd, map -> map.get(serviceName, result -> {
+            if (result.succeeded()) {
+                ServiceEndpoints endpoints = ServiceEndpoints.decode(serviceName, result.result());
+                if (!endpoints.isEmpty()) {
+                    nearCache.fill(serviceName, endpoints, epoch);
+                }
+                handler.handle(Future.succeededFuture(endpoints));
+            } else {
+                handler.handle(Future.failedFuture(result.cause()));
+            }
+        }));
+    }
+
+    /**
+     * Answers a watch immediately, if the version differs, or parks it until the service changes or the watch
+     * times out.
+     */
+    private void watch(String serviceName, long version, List<String> tags, Message<String> message) {
+        findEndpoints(serviceName, result -> {
+            if (result.failed()) {
+                message.fail(1, "Lookup failed: " + result.cause());
+                return;
+            }
+            ServiceEndpoints endpoints = result.result();
+            if (endpoints.getVersion() != version) {
+                message.reply(toWatchReply(endpoints, tags));
+                return;
+            }
+            PendingWatch pending = new PendingWatch(message, version, tags);
+            pending.timerId = vertx.setTimer(watchTimeout, id -> {
+                List<PendingWatch> parked = watches.get(serviceName);
+                if (parked != null && parked.remove(pending)) {
+                    if (parked.isEmpty()) {
+                        watches.remove(serviceName);
                     }
-                });
+                    message.reply(toWatchReply(endpoints, tags));
+                }
+            });
+            watches.computeIfAbsent(serviceName, k -> new ArrayList<>()).add(pending);
+        });
+    }
+
+    /**
+     * Answers all parked watches of a service, whose version is outdated.
+     */
+    private void notifyWatches(String serviceName) {
+        if (!watches.containsKey(serviceName)) {
+            return;
+        }
+        findEndpoints(serviceName, result -> {
+            List<PendingWatch> parked = watches.get(serviceName);
+            if (result.failed() || parked == null) {
+                return;
+            }
+            ServiceEndpoints endpoints = result.result();
+            Iterator<PendingWatch> it = parked.iterator();
+            while (it.hasNext()) {
+                PendingWatch pending = it.next();
+                if (pending.version != endpoints.getVersion()) {
+                    it.remove();
+                    vertx.cancelTimer(pending.timerId);
+                    pending.message.reply(toWatchReply(endpoints, pending.tags));
+                }
+            }
+            if (parked.isEmpty()) {
+                watches.remove(serviceName);
+            }
+        });
+    }
+
+    private static String toWatchReply(ServiceEndpoints endpoints, List<String> tags) {
+        return new JsonObject()
+                .put("service", endpoints.getServiceName())
+                .put("version", endpoints.getVersion())
+                .put("endpoints", ServiceEndpoints.toJSON(endpoints.query(tags)))
+                .encode();
+    }
+
+    /**
+     * Identifies the lease of a service instance.
+     */
+    private static final class LeaseKey {
+        final String service;
+        final String instance;
+
+        LeaseKey(String service, String instance) {
+            this.service = Objects.requireNonNull(service);
+            this.instance = Objects.requireNonNull(instance);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof LeaseKey)) return false;
+            LeaseKey other = (LeaseKey) o;
+            return service.equals(other.service) && instance.equals(other.instance);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * service.hashCode() + instance.hashCode();
+        }
+    }
+
+    /**
+     * A watch request waiting for a change.
+     */
+    private static final class PendingWatch {
+        final Message<String> message;
+        final long version;
+        final List<String> tags;
+        long timerId;
+
+        PendingWatch(Message<String> message, long version, List<String> tags) {
+            this.message = message;
+            this.version = version;
+            this.tags = tags;
+        }
+    }
+
+    /**
+     * Calls the handler with the cluster wide registry map, which is only looked up once.
+     */
+    private void withClusteredMap(SharedData sd, Handler<AsyncMap<String, String>> handler) {
+        if (clusteredMap != null) {
+            handler.handle(clusteredMap);
+            return;
+        }
+        sd.<String, String>getClusterWideMap(mapName, res -> {
+            if (res.succeeded()) {
+                clusteredMap = res.result();
+                handler.handle(clusteredMap);
             } else {
                 // Something went wrong!
             }
         });
     }
 
-    private void registerEndpoint(Endpoint endpoin) {
+    /**
+     * Atomically updates the instances of a service, retrying if the stored value was changed concurrently.
+     */
+    private void updateEndpoints(String serviceName, Function<ServiceEndpoints, ServiceEndpoints> update) {
         SharedData sd = vertx.sharedData();
         if (clustered) {
-            putToClusteredMap(endpoin, sd);
+            updateClusteredMap(serviceName, update, sd, 1);
         } else {
-            putToMap(endpoin, sd);
+            updateMap(serviceName, update, sd);
         }
     }
 
-    private void putToMap(Endpoint endpoin, SharedData sd) {
-        LocalMap<String, String> map1 = sd.getLocalMap(REG_NAME);
-        map1.putIfAbsent(endpoin.getServiceName(), Json.encode(endpoin));
+    /**
+     * Decodes a stored value for an update. Services not stored yet start at a version based on the current time,
+     * above all versions handed out before a restart.
+     */
+    private ServiceEndpoints decodeStored(String serviceName, String current) {
+        if (current != null) {
+            return clustered ? ServiceEndpoints.decode(serviceName, current) : decodeLocal(serviceName, current);
+        }
+        versionBase = Math.max(System.currentTimeMillis() << VERSION_TIME_SHIFT,
+                versionBase + (1L << VERSION_TIME_SHIFT));
+        return ServiceEndpoints.empty(serviceName, versionBase);
     }
 
-    private void putToClusteredMap(Endpoint endpoin, SharedData sd) {
-        sd.<String, String>getClusterWideMap(REG_NAME, res -> {
-            if (res.succeeded()) {
-                AsyncMap<String, String> map = res.result();
-                map.putIfAbsent(endpoin.getServiceName(), Json.encode(endpoin), result -> {
-                    if (result.succeeded()) {
-
-                    } else {
-                        // Something went wrong!
-                    }
-                });
+    private void updateMap(String serviceName, Function<ServiceEndpoints, ServiceEndpoints> update, SharedData sd) {
+        LocalMap<String, String> map1 = sd.getLocalMap(mapName);
+        for (int attempt = 0; attempt < MAX_UPDATE_ATTEMPTS; attempt++) {
+            String current = map1.get(serviceName);
+            ServiceEndpoints decoded = decodeStored(serviceName, current);
+            ServiceEndpoints updated = update.apply(decoded);
+            if (updated == decoded || (current == null && updated.isEmpty())
+                    || updated.getEncoded().equals(current)) {
+                return;
+            }
+            boolean done;
+            if (current == null) {
+                done = map1.putIfAbsent(serviceName, updated.getEncoded()) == null;
             } else {
-                // Something went wrong!
+                done = map1.replaceIfPresent(serviceName, current, updated.getEncoded());
             }
-        });
+            if (done) {
+                decoded.put(serviceName, updated);
+                persist(serviceName, updated);
+                vertx.eventBus().publish(REG_ADDRESS_INVALIDATE, serviceName);
+                return;
+            }
+        }
+        LOG.warning("Failed to update service " + serviceName + ", too many concurrent modifications.");
+    }
+
+    private void updateClusteredMap(String serviceName, Function<ServiceEndpoints, ServiceEndpoints> update,
+                                    SharedData sd, int attempt) {
+        withClusteredMap(sd, map -> map.get(serviceName, res -> {
+            if (res.failed()) {
+                LOG.log(Level.WARNING, "Failed to read service " + serviceName, res.cause());
+                return;
+            }
+            String current = res.result();
+            ServiceEndpoints updated = update.apply(decodeStored(serviceName, current));
+            Handler<AsyncResult<Boolean>> done = result -> {
+                if (result.succeeded() && result.result()) {
+                    vertx.eventBus().publish(REG_ADDRESS_INVALIDATE, serviceName);
+                } else if (attempt < MAX_UPDATE_ATTEMPTS) {
+                    updateClusteredMap(serviceName, update, sd, attempt + 1);
+                } else {
+                    LOG.warning("Failed to update service " + serviceName + ", too many concurrent modifications.");
+                }
+            };
+            if (current == null) {
+                if (!updated.isEmpty()) {
+                    map.putIfAbsent(serviceName, updated.getEncoded(), result -> done.handle(result.succeeded() ?
+                            Future.succeededFuture(result.result() == null) : Future.failedFuture(result.cause())));
+                }
+            } else if (!updated.getEncoded().equals(current)) {
+                map.replaceIfPresent(serviceName, current, updated.getEncoded(), done);
+            }
+        }));
     }
 
 //    private final Map<String, List<Endpoint>> services = new ConcurrentHashMap<>();
@@ -159,14 +741,28 @@ public class ServiceRegistry extends AbstractVerticle {
         // Vertx.vertx().deployVerticle(ServiceRegistry.class.getServiceName(),options);
 
         VertxOptions vOpts = new VertxOptions();
-        DeploymentOptions options = new DeploymentOptions().setInstances(1);
         vOpts.setClustered(true);
+        // all nodes of a cluster must use the same number of shards, so it is configured, not derived from the cores
+        Integer shards = ConfigurationProvider.getConfiguration().get(SHARDS_KEY, Integer.class);
+        if (shards == null) {
+            shards = DEFAULT_SHARDS;
+        }
+        int shardCount = shards;
         Vertx.clusteredVertx(vOpts, cluster -> {
             if (cluster.succeeded()) {
                 final Vertx result = cluster.result();
-                result.deployVerticle(ServiceRegistry.class.getName(), options, handle -> {
-
-                });
+                // each shard on its own event loop
+                for (int i = 0; i < shardCount; i++) {
+                    DeploymentOptions options = new DeploymentOptions().setConfig(new JsonObject()
+                            .put("clustered", true).put("shards", shardCount).put("shard", i));
+                    result.deployVerticle(ServiceRegistry.class.getName(), options, handle -> {
+                        if (handle.failed()) {
+                            LOG.log(Level.SEVERE, "Failed to deploy registry shard.", handle.cause());
+                        }
+                    });
+                }
+            } else {
+                LOG.log(Level.SEVERE, "Failed to join the cluster.", cluster.cause());
             }
         });
     }
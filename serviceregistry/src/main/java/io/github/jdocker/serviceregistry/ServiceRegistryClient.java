@@ -0,0 +1,375 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.jdocker.serviceregistry;
+
+import io.github.jdocker.common.Endpoint;
+import io.github.jdocker.common.EndpointResolutionPolicy;
+import io.github.jdocker.common.EndpointStats;
+import io.github.jdocker.common.ServiceDiscovery;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.MessageConsumer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * {@link ServiceDiscovery} talking to the {@link ServiceRegistry} over the event bus. Watches long poll
+ * {@link ServiceRegistry#REG_ADDRESS_WATCH}, so changes are pushed to the listeners as soon as they are stored,
+ * without any polling in between. {@link #getEndpoints(String)} is served from such watches, which are started on
+ * first access of a service.
+ * <p>
+ * Endpoints registered with a TTL are leased; the client renews all of its leases with one published message
+ * every third of the smallest TTL, until they are removed or the client is closed. Leased endpoints the registry
+ * reports as unknown, e.g. because their lease expired meanwhile, are registered again. When a registry announces a
+ * restart, the endpoints registered by this client, which are owned by the restarted shard, are registered again.
+ * Clients not aware of the shards register all of their endpoints again.
+ */
+public class ServiceRegistryClient implements ServiceDiscovery, AutoCloseable {
+
+    private static final Logger LOG = Logger.getLogger(ServiceRegistryClient.class.getName());
+
+    /** Time in milliseconds to wait before retrying a failed watch. */
+    private static final long RETRY_DELAY = 1000L;
+    /** Time in milliseconds a blocking first lookup waits for the registry. */
+    private static final long INITIAL_LOOKUP_TIMEOUT = 5000L;
+
+    private final Vertx vertx;
+    private final int shards;
+    private final DeliveryOptions watchOptions;
+    private final Map<String, CachedEndpoints> cache = new ConcurrentHashMap<>();
+    private final Map<String, JsonObject> leases = new ConcurrentHashMap<>();
+    /** Registrations of this client, sent again when a registry restarts. */
+    private final Map<String, JsonObject> registrations = new ConcurrentHashMap<>();
+    private final MessageConsumer<String> restartConsumer;
+    private final MessageConsumer<String> unknownConsumer;
+    private long renewTimer = -1L;
+    private long renewInterval = Long.MAX_VALUE;
+
+    /**
+     * Creates a new client, using the default watch timeout of the registry.
+     * @param vertx the vertx instance, not null.
+     */
+    public ServiceRegistryClient(Vertx vertx){
+        this(vertx, ServiceRegistry.DEFAULT_WATCH_TIMEOUT, 0);
+    }
+
+    /**
+     * Creates a new client.
+     * @param vertx the vertx instance, not null.
+     * @param watchTimeout the watch timeout configured on the registry, in milliseconds.
+     * @param shards the number of registry shards, requests are sent to the owning shard directly. 0 for an
+     *               unsharded registry.
+     */
+    public ServiceRegistryClient(Vertx vertx, long watchTimeout, int shards){
+        this.vertx = vertx;
+        this.shards = shards;
+        this.watchOptions = new DeliveryOptions().setSendTimeout(watchTimeout + 10000L);
+        this.restartConsumer = vertx.eventBus().consumer(ServiceRegistry.REG_ADDRESS_RESTARTED,
+                message -> registerAgain(message.body()));
+        this.unknownConsumer = vertx.eventBus().consumer(ServiceRegistry.REG_ADDRESS_UNKNOWN,
+                message -> registerUnknown(message.body()));
+    }
+
+    /**
+     * Registers the leased endpoints of this client again, which the registry reported as unknown.
+     */
+    private void registerUnknown(String body){
+        JsonArray instances = new JsonObject(body).getJsonArray("instances", new JsonArray());
+        for(int i=0;i<instances.size();i++){
+            JsonObject instance = instances.getJsonObject(i);
+            String key = instance.getString("service") + '\n' + instance.getString("instance");
+            JsonObject registration = registrations.get(key);
+            if(registration!=null && leases.containsKey(key)){
+                vertx.eventBus().send(address(ServiceRegistry.REG_ADDRESS_PUT, registration.getString("serviceName")),
+                        registration.encode());
+            }
+        }
+    }
+
+    /**
+     * Sends the registrations of this client stored in the given map again, e.g. after a registry restarted.
+     * @param mapName the map name of the restarted registry, see {@link ServiceRegistry#mapName(String, int)}.
+     */
+    private void registerAgain(String mapName){
+        for(JsonObject registration:registrations.values()){
+            String serviceName = registration.getString("serviceName");
+            // without the number of shards, the map owning a service is unknown
+            if(shards<=0 || ServiceRegistry.mapName(serviceName, shards).equals(mapName)){
+                vertx.eventBus().send(address(ServiceRegistry.REG_ADDRESS_PUT, serviceName), registration.encode());
+            }
+        }
+    }
+
+    @Override
+    public Collection<Endpoint> getEndpoints(String serviceName) {
+        CachedEndpoints cached = cache.get(serviceName);
+        if(cached==null){
+            CachedEndpoints created = new CachedEndpoints();
+            cached = cache.putIfAbsent(serviceName, created);
+            if(cached==null){
+                cached = created;
+                cached.watch = watch(serviceName, cached);
+            }
+        }
+        if(!Context.isOnEventLoopThread()){
+            try {
+                cached.initialized.await(INITIAL_LOOKUP_TIMEOUT, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return cached.endpoints;
+    }
+
+    @Override
+    public Endpoint getEndpoint(String serviceName) {
+        return EndpointResolutionPolicy.DEFAULT_RESOLUTIONPOLICY.resolve(getEndpoints(serviceName));
+    }
+
+    @Override
+    public Endpoint registerEndpoint(String serviceName, URI endpoint) {
+        Endpoint ep = new Endpoint(serviceName, endpoint);
+        registerEndpoint(ep);
+        return ep;
+    }
+
+    @Override
+    public void registerEndpoint(Endpoint endpoint) {
+        JsonObject registration = endpoint.toJSON();
+        registrations.put(leaseKey(endpoint), registration);
+        leases.remove(leaseKey(endpoint));
+        vertx.eventBus().send(address(ServiceRegistry.REG_ADDRESS_PUT, endpoint.getServiceName()),
+                registration.encode());
+    }
+
+    /**
+     * Registers the given endpoint with a lease, which is renewed by this client until the endpoint is removed
+     * or the client is closed. If this client dies, the registry drops the endpoint after the TTL.
+     * @param endpoint the endpoint, not null.
+     * @param ttl the time to live in milliseconds, &gt; 0.
+     */
+    public void registerEndpoint(Endpoint endpoint, long ttl) {
+        if(ttl<=0){
+            throw new IllegalArgumentException("ttl must be > 0: " + ttl);
+        }
+        JsonObject registration = endpoint.toJSON().put("ttl", ttl);
+        registrations.put(leaseKey(endpoint), registration);
+        vertx.eventBus().send(address(ServiceRegistry.REG_ADDRESS_PUT, endpoint.getServiceName()),
+                registration.encode());
+        leases.put(leaseKey(endpoint), new JsonObject()
+                .put("service", endpoint.getServiceName())
+                .put("instance", endpoint.getInstanceKey())
+                .put("ttl", ttl));
+        scheduleRenewals(Math.max(1L, ttl / 3));
+    }
+
+    /**
+     * Reports the health of an endpoint to the registry, which leaves unhealthy endpoints out of all lookups until
+     * they are reported healthy again. The endpoint is also ejected locally at once, see
+     * {@link EndpointStats#setHealthy(boolean)}.
+     * @param endpoint the endpoint, not null.
+     * @param healthy false, if the endpoint failed its health check.
+     */
+    public void reportHealth(Endpoint endpoint, boolean healthy) {
+        EndpointStats.of(endpoint).setHealthy(healthy);
+        vertx.eventBus().send(address(ServiceRegistry.REG_ADDRESS_HEALTH, endpoint.getServiceName()), new JsonObject()
+                .put("service", endpoint.getServiceName())
+                .put("instance", endpoint.getInstanceKey())
+                .put("healthy", healthy).encode());
+    }
+
+    private String address(String address, String serviceName){
+        return ServiceRegistry.address(address, serviceName, shards);
+    }
+
+    private static String leaseKey(Endpoint endpoint){
+        return endpoint.getServiceName() + '\n' + endpoint.getInstanceKey();
+    }
+
+    private synchronized void scheduleRenewals(long interval){
+        if(interval>=renewInterval){
+            return;
+        }
+        if(renewTimer>=0){
+            vertx.cancelTimer(renewTimer);
+        }
+        renewInterval = interval;
+        renewTimer = vertx.setPeriodic(interval, id -> renewLeases());
+    }
+
+    /**
+     * Renews all leases of this client with a single message.
+     */
+    private void renewLeases(){
+        if(leases.isEmpty()){
+            return;
+        }
+        JsonArray instances = new JsonArray();
+        for(JsonObject lease:leases.values()){
+            instances.add(lease);
+        }
+        vertx.eventBus().publish(ServiceRegistry.REG_ADDRESS_RENEW, new JsonObject().put("instances", instances).encode());
+    }
+
+    @Override
+    public Endpoint removeEndpoint(String serviceName) {
+        Endpoint ep = getEndpoint(serviceName);
+        if(ep!=null){
+            removeEndpoint(ep);
+        }
+        return ep;
+    }
+
+    @Override
+    public void removeEndpoint(Endpoint endpoint) {
+        leases.remove(leaseKey(endpoint));
+        registrations.remove(leaseKey(endpoint));
+        EndpointStats.remove(endpoint);
+        vertx.eventBus().send(address(ServiceRegistry.REG_ADDRESS_REMOVE, endpoint.getServiceName()), new JsonObject()
+                .put("service", endpoint.getServiceName())
+                .put("instance", endpoint.getInstanceKey()).encode());
+    }
+
+    @Override
+    public Watch watch(String serviceName, EndpointListener listener) {
+        Poller poller = new Poller(serviceName, listener);
+        poller.poll();
+        return poller;
+    }
+
+    /**
+     * Stops all watches started by {@link #getEndpoints(String)} and the lease renewals.
+     */
+    @Override
+    public void close() {
+        synchronized (this){
+            if(renewTimer>=0){
+                vertx.cancelTimer(renewTimer);
+                renewTimer = -1L;
+                renewInterval = Long.MAX_VALUE;
+            }
+        }
+        leases.clear();
+        registrations.clear();
+        restartConsumer.unregister();
+        unknownConsumer.unregister();
+        for(CachedEndpoints cached:cache.values()){
+            if(cached.watch!=null){
+                cached.watch.close();
+            }
+        }
+        cache.clear();
+    }
+
+    /**
+     * Endpoints of a service kept by {@link #getEndpoints(String)}. The statistics of endpoints no longer
+     * registered are dropped.
+     */
+    private static final class CachedEndpoints implements EndpointListener{
+        final CountDownLatch initialized = new CountDownLatch(1);
+        volatile List<Endpoint> endpoints = Collections.emptyList();
+        volatile Watch watch;
+
+        @Override
+        public void endpointsChanged(String serviceName, long version, List<Endpoint> endpoints) {
+            List<Endpoint> previous = this.endpoints;
+            this.endpoints = endpoints;
+            initialized.countDown();
+            if(!previous.isEmpty()){
+                Set<String> current = new HashSet<>();
+                for(Endpoint endpoint:endpoints){
+                    current.add(endpoint.getInstanceKey());
+                }
+                for(Endpoint endpoint:previous){
+                    if(!current.contains(endpoint.getInstanceKey())){
+                        EndpointStats.remove(endpoint);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Long polls a service, reporting each version received to the listener.
+     */
+    private final class Poller implements Watch{
+        private final String serviceName;
+        private final EndpointListener listener;
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private volatile long version = -1L;
+
+        Poller(String serviceName, EndpointListener listener){
+            this.serviceName = serviceName;
+            this.listener = listener;
+        }
+
+        void poll(){
+            if(closed.get()){
+                return;
+            }
+            String request = new JsonObject().put("service", serviceName).put("version", version).encode();
+            vertx.eventBus().<String>send(address(ServiceRegistry.REG_ADDRESS_WATCH, serviceName), request,
+                    watchOptions, reply -> {
+                if(closed.get()){
+                    return;
+                }
+                if(reply.failed()){
+                    LOG.log(Level.FINE, "Watch failed for service " + serviceName + ", retrying.", reply.cause());
+                    vertx.setTimer(RETRY_DELAY, id -> poll());
+                    return;
+                }
+                JsonObject result = new JsonObject(reply.result().body());
+                long received = result.getLong("version", 0L);
+                if(received!=version){
+                    version = received;
+                    JsonArray array = result.getJsonArray("endpoints", new JsonArray());
+                    List<Endpoint> endpoints = new ArrayList<>(array.size());
+                    for(int i=0;i<array.size();i++){
+                        endpoints.add(Endpoint.fromJSON(array.getJsonObject(i)));
+                    }
+                    try{
+                        listener.endpointsChanged(serviceName, received, Collections.unmodifiableList(endpoints));
+                    }catch(Exception e){
+                        LOG.log(Level.WARNING, "Endpoint listener failed for service " + serviceName, e);
+                    }
+                }
+                poll();
+            });
+        }
+
+        @Override
+        public void close() {
+            closed.set(true);
+        }
+    }
+}
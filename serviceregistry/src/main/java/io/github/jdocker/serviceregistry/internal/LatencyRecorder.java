@@ -0,0 +1,90 @@
+package io.github.jdocker.serviceregistry.internal;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the latest latency samples of an endpoint in a ring buffer and computes percentiles over them. Recording
+ * is O(1); a percentile sorts a copy of the samples, which is fine for the small windows kept per endpoint.
+ * Thread safe.
+ */
+public final class LatencyRecorder {
+
+    /** Default number of samples kept. */
+    public static final int DEFAULT_SAMPLES = 128;
+
+    private final long[] samples;
+    private long count;
+
+    /**
+     * Creates a new recorder.
+     * @param size the number of samples kept, &gt; 0.
+     */
+    public LatencyRecorder(int size){
+        if(size<=0){
+            throw new IllegalArgumentException("size must be > 0.");
+        }
+        this.samples = new long[size];
+    }
+
+    /**
+     * Records a sample.
+     * @param nanos the latency in nanoseconds.
+     */
+    public synchronized void record(long nanos){
+        samples[(int) (count++ % samples.length)] = nanos;
+    }
+
+    /**
+     * Get the total number of samples recorded.
+     * @return the count.
+     */
+    public synchronized long getCount(){
+        return count;
+    }
+
+    /**
+     * Get a percentile of the samples kept, using the nearest rank.
+     * @param percentile the percentile, between 0 and 100.
+     * @return the latency in nanoseconds, or -1, if nothing was recorded.
+     */
+    public long getPercentile(double percentile){
+        return getPercentiles(percentile)[0];
+    }
+
+    /**
+     * Get percentiles of the samples kept, using the nearest rank, sorting the samples only once.
+     * @param percentiles the percentiles, between 0 and 100.
+     * @return the latencies in nanoseconds, -1 if nothing was recorded.
+     */
+    public long[] getPercentiles(double... percentiles){
+        long[] sorted;
+        synchronized (this){
+            sorted = Arrays.copyOf(samples, (int) Math.min(count, samples.length));
+        }
+        Arrays.sort(sorted);
+        long[] result = new long[percentiles.length];
+        for(int i=0;i<percentiles.length;i++){
+            if(percentiles[i]<0 || percentiles[i]>100){
+                throw new IllegalArgumentException("percentile must be between 0 and 100: " + percentiles[i]);
+            }
+            if(sorted.length==0){
+                result[i] = -1L;
+            }else{
+                int rank = (int) Math.ceil(percentiles[i] / 100.0 * sorted.length);
+                result[i] = sorted[Math.max(0, rank - 1)];
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        long[] p = getPercentiles(50, 90, 99);
+        return "LatencyRecorder{" +
+                "count=" + getCount() +
+                ", p50=" + p[0] +
+                ", p90=" + p[1] +
+                ", p99=" + p[2] +
+                '}';
+    }
+}
@@ -4,13 +4,18 @@ import org.apache.tamaya.spi.PropertySource;
 
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 /**
  * Created by atsticks on 07.02.16.
  */
 public final class MutableTestPropertySource implements PropertySource{
 
-    private static final Map<String, String> SHARED_MAP = new ConcurrentHashMap<>();
+    private static final AtomicLong VERSION = new AtomicLong();
+
+    private static final Map<String, String> SHARED_MAP = new VersionedMap();
 
     @Override
     public String getName() {
@@ -25,4 +30,128 @@ public final class MutableTestPropertySource implements PropertySource{
     public static Map<String, String> getSharedConfig(){
         return SHARED_MAP;
     }
+
+    /**
+     * Get the modification count of the shared config, incremented on every write.
+     * @return the current version.
+     */
+    public static long getVersion(){
+        return VERSION.get();
+    }
+
+    /**
+     * Map that counts its modifications in {@link #VERSION}.
+     */
+    private static final class VersionedMap extends ConcurrentHashMap<String, String> {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public String put(String key, String value) {
+            try {
+                return super.put(key, value);
+            }finally{
+                VERSION.incrementAndGet();
+            }
+        }
+
+        @Override
+        public void putAll(Map<? extends String, ? extends String> m) {
+            try {
+                super.putAll(m);
+            }finally{
+                VERSION.incrementAndGet();
+            }
+        }
+
+        @Override
+        public String putIfAbsent(String key, String value) {
+            try {
+                return super.putIfAbsent(key, value);
+            }finally{
+                VERSION.incrementAndGet();
+            }
+        }
+
+        @Override
+        public String remove(Object key) {
+            try {
+                return super.remove(key);
+            }finally{
+                VERSION.incrementAndGet();
+            }
+        }
+
+        @Override
+        public boolean remove(Object key, Object value) {
+            try {
+                return super.remove(key, value);
+            }finally{
+                VERSION.incrementAndGet();
+            }
+        }
+
+        @Override
+        public String replace(String key, String value) {
+            try {
+                return super.replace(key, value);
+            }finally{
+                VERSION.incrementAndGet();
+            }
+        }
+
+        @Override
+        public boolean replace(String key, String oldValue, String newValue) {
+            try {
+                return super.replace(key, oldValue, newValue);
+            }finally{
+                VERSION.incrementAndGet();
+            }
+        }
+
+        @Override
+        public String compute(String key, BiFunction<? super String, ? super String, ? extends String> remappingFunction) {
+            try {
+                return super.compute(key, remappingFunction);
+            }finally{
+                VERSION.incrementAndGet();
+            }
+        }
+
+        @Override
+        public String computeIfAbsent(String key, Function<? super String, ? extends String> mappingFunction) {
+            try {
+                return super.computeIfAbsent(key, mappingFunction);
+            }finally{
+                VERSION.incrementAndGet();
+            }
+        }
+
+        @Override
+        public String computeIfPresent(String key, BiFunction<? super String, ? super String, ? extends String> remappingFunction) {
+            try {
+                return super.computeIfPresent(key, remappingFunction);
+            }finally{
+                VERSION.incrementAndGet();
+            }
+        }
+
+        @Override
+        public String merge(String key, String value, BiFunction<? super String, ? super String, ? extends String> remappingFunction) {
+            try {
+                return super.merge(key, value, remappingFunction);
+            }finally{
+                VERSION.incrementAndGet();
+            }
+        }
+
+        @Override
+        public void clear() {
+            try {
+                super.clear();
+            }finally{
+                VERSION.incrementAndGet();
+            }
+        }
+    }
 }
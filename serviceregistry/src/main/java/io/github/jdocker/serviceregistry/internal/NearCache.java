@@ -0,0 +1,145 @@
+package io.github.jdocker.serviceregistry.internal;
+
+import io.vertx.core.json.JsonObject;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded, node local cache in front of a cluster wide map. Entries are evicted in least recently used order and
+ * are dropped, when an invalidation for their key is received. A fill started before an invalidation is discarded,
+ * so a slow remote read cannot reinstate a stale value.
+ */
+public final class NearCache<K,V> {
+
+    private final int maxSize;
+    private final LinkedHashMap<K,V> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private long epoch;
+
+    /**
+     * Creates a new cache.
+     * @param maxSize the maximal number of entries, &gt; 0.
+     */
+    public NearCache(int maxSize){
+        if(maxSize<=0){
+            throw new IllegalArgumentException("maxSize must be > 0.");
+        }
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<K,V>(Math.min(maxSize, 1024), 0.75f, true){
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                if(size()>NearCache.this.maxSize){
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Looks up a value, counting hits and misses.
+     * @param key the key.
+     * @return the cached value, or null.
+     */
+    public synchronized V get(K key){
+        V value = entries.get(key);
+        if(value==null){
+            misses.incrementAndGet();
+        }else{
+            hits.incrementAndGet();
+        }
+        return value;
+    }
+
+    /**
+     * Get the current epoch, to be passed to {@link #fill(Object, Object, long)} after reading the remote value.
+     * @return the current epoch.
+     */
+    public synchronized long getEpoch(){
+        return epoch;
+    }
+
+    /**
+     * Adds a value read from the remote map, unless an invalidation happened meanwhile.
+     * @param key the key, not null.
+     * @param value the value, not null.
+     * @param epoch the epoch evaluated before the remote read.
+     * @return true, if the value was cached.
+     */
+    public synchronized boolean fill(K key, V value, long epoch){
+        if(epoch!=this.epoch){
+            return false;
+        }
+        entries.put(Objects.requireNonNull(key), Objects.requireNonNull(value));
+        return true;
+    }
+
+    /**
+     * Drops a key, e.g. after a put or remove on any node.
+     * @param key the key.
+     */
+    public synchronized void invalidate(K key){
+        epoch++;
+        invalidations.incrementAndGet();
+        entries.remove(key);
+    }
+
+    /**
+     * Drops all entries.
+     */
+    public synchronized void clear(){
+        epoch++;
+        invalidations.incrementAndGet();
+        entries.clear();
+    }
+
+    public synchronized int size(){
+        return entries.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getInvalidations() {
+        return invalidations.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Get the cache statistics.
+     * @return the statistics, never null.
+     */
+    public JsonObject toJSON(){
+        return new JsonObject()
+                .put("size", size())
+                .put("maxSize", maxSize)
+                .put("hits", getHits())
+                .put("misses", getMisses())
+                .put("invalidations", getInvalidations())
+                .put("evictions", getEvictions());
+    }
+
+    @Override
+    public String toString() {
+        return "NearCache" + toJSON();
+    }
+}
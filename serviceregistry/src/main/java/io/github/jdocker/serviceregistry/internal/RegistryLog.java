@@ -0,0 +1,229 @@
+package io.github.jdocker.serviceregistry.internal;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append only log of registry changes in a memory mapped file. Each record is
+ * {@code [int length][int crc][byte type][int keyLength][key][int valueLength][value]}. Replay stops at the first
+ * incomplete or corrupt record, so a crash while writing only loses the last change. {@link #compact(Map)} writes
+ * a snapshot of the current state to a new file, which atomically replaces the log.
+ * Not thread safe, meant to be used from a single event loop.
+ */
+public final class RegistryLog implements Closeable {
+
+    private static final byte TYPE_PUT = 1;
+    private static final byte TYPE_REMOVE = 2;
+    private static final int HEADER_SIZE = 8;
+    private static final int INITIAL_SIZE = 1 << 20;
+
+    private final File file;
+    private RandomAccessFile raf;
+    private FileChannel channel;
+    private FileLock lock;
+    private MappedByteBuffer buffer;
+    private int records;
+
+    private RegistryLog(File file){
+        this.file = file;
+    }
+
+    /**
+     * Opens a log, replaying all valid records.
+     * @param file the log file, created if missing.
+     * @param replay the consumer of the state read, called with the key and the value, or null for removals.
+     * @return the log, positioned after the last valid record.
+     * @throws IOException if the file cannot be opened, or is locked by another registry.
+     */
+    public static RegistryLog open(File file, BiConsumer<String, String> replay) throws IOException {
+        RegistryLog log = new RegistryLog(file);
+        log.map(file);
+        log.replay(replay);
+        return log;
+    }
+
+    private void map(File target) throws IOException {
+        File dir = target.getAbsoluteFile().getParentFile();
+        if(dir!=null && !dir.exists() && !dir.mkdirs()){
+            throw new IOException("Cannot create directory " + dir);
+        }
+        raf = new RandomAccessFile(target, "rw");
+        channel = raf.getChannel();
+        try{
+            lock = channel.tryLock();
+        }catch(OverlappingFileLockException e){
+            lock = null;
+        }
+        if(lock==null){
+            raf.close();
+            throw new IOException("Log is used by another registry: " + target);
+        }
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(INITIAL_SIZE, channel.size()));
+    }
+
+    private void replay(BiConsumer<String, String> replay){
+        CRC32 crc = new CRC32();
+        while(buffer.remaining()>=HEADER_SIZE){
+            int start = buffer.position();
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if(length<=0 || length>buffer.remaining()){
+                buffer.position(start);
+                return;
+            }
+            byte[] record = new byte[length];
+            buffer.get(record);
+            crc.reset();
+            crc.update(record, 0, length);
+            if((int)crc.getValue()!=checksum){
+                buffer.position(start);
+                return;
+            }
+            ByteBuffer data = ByteBuffer.wrap(record);
+            byte type = data.get();
+            String key = readString(data);
+            String value = readString(data);
+            replay.accept(key, type==TYPE_PUT?value:null);
+            records++;
+        }
+    }
+
+    private static String readString(ByteBuffer data){
+        int length = data.getInt();
+        if(length<0){
+            return null;
+        }
+        String value = new String(data.array(), data.position(), length, StandardCharsets.UTF_8);
+        data.position(data.position() + length);
+        return value;
+    }
+
+    /**
+     * Appends a change.
+     * @param key the key, not null.
+     * @param value the new value, or null, if the key was removed.
+     * @throws IOException if the log cannot be extended.
+     */
+    public void append(String key, String value) throws IOException {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        byte[] valueBytes = value==null?null:value.getBytes(StandardCharsets.UTF_8);
+        int length = 1 + 4 + keyBytes.length + 4 + (valueBytes==null?0:valueBytes.length);
+        byte[] record = new byte[length];
+        ByteBuffer data = ByteBuffer.wrap(record);
+        data.put(value==null?TYPE_REMOVE:TYPE_PUT);
+        data.putInt(keyBytes.length).put(keyBytes);
+        if(valueBytes==null){
+            data.putInt(-1);
+        }else{
+            data.putInt(valueBytes.length).put(valueBytes);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(record, 0, length);
+        ensureCapacity(HEADER_SIZE + length + HEADER_SIZE);
+        int start = buffer.position();
+        // write the body first, the length makes the record visible
+        buffer.position(start + 4);
+        buffer.putInt((int)crc.getValue());
+        buffer.put(record);
+        // terminates the log, if the file was reused
+        int end = buffer.position();
+        buffer.putInt(0);
+        buffer.putInt(start, length);
+        buffer.position(end);
+        records++;
+    }
+
+    private void ensureCapacity(int required) throws IOException {
+        if(buffer.remaining()>=required){
+            return;
+        }
+        int position = buffer.position();
+        long size = Math.max((long)buffer.capacity() * 2, position + (long)required);
+        if(size>Integer.MAX_VALUE){
+            throw new IOException("Log too large: " + file);
+        }
+        buffer.force();
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        buffer.position(position);
+    }
+
+    /**
+     * Get the number of records in the log, including the snapshot written by the last compaction.
+     * @return the number of records.
+     */
+    public int getRecordCount(){
+        return records;
+    }
+
+    /**
+     * Replaces the log with a snapshot of the given state. The log stays locked until the snapshot replaced it, so no
+     * other registry can open the file in between.
+     * @param state the current state, not null.
+     * @throws IOException if the snapshot cannot be written.
+     */
+    public void compact(Map<String, String> state) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        Files.deleteIfExists(tmp.toPath());
+        RegistryLog snapshot = new RegistryLog(tmp);
+        snapshot.map(tmp);
+        try{
+            for(Map.Entry<String,String> en:state.entrySet()){
+                snapshot.append(en.getKey(), en.getValue());
+            }
+            snapshot.buffer.force();
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }catch(IOException | RuntimeException e){
+            snapshot.release();
+            throw e;
+        }
+        try{
+            release();
+        }finally{
+            // the snapshot, still mapped and locked, is the log now
+            raf = snapshot.raf;
+            channel = snapshot.channel;
+            lock = snapshot.lock;
+            buffer = snapshot.buffer;
+            records = snapshot.records;
+        }
+    }
+
+    private void release() throws IOException {
+        try{
+            if(lock!=null){
+                lock.release();
+            }
+        }finally{
+            channel.close();
+            raf.close();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer.force();
+        release();
+    }
+
+    @Override
+    public String toString() {
+        return "RegistryLog{" +
+                "file=" + file +
+                ", records=" + records +
+                ", position=" + buffer.position() +
+                '}';
+    }
+}
@@ -0,0 +1,387 @@
+package io.github.jdocker.serviceregistry.internal;
+
+import io.github.jdocker.common.Endpoint;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Immutable set of all registered instances of a service, together with an inverted index from tag to the
+ * instances carrying it. Each instance has a fixed position, the index stores a {@link BitSet} of positions per tag,
+ * so tag queries are answered by intersecting bitmaps. Instances are decoded once from their stored JSON value and
+ * shared by all reads of the same stored value. Every modification increments the version, which is stored
+ * together with the instances, so watchers can tell whether their view is current. Services removed are stored as
+ * empty sets (see {@link #cleared()}) and new services start at a given version (see {@link #empty(String, long)}),
+ * so a version never denotes two different states of a service.
+ * <p>
+ * Instances reported unhealthy are marked in a further bitmap and left out of all query results, unless no healthy
+ * instance matches, so failed instances are out of rotation without being deregistered.
+ * <p>
+ * Instances registered with a lease are marked as well, so a registry restoring its state knows which instances
+ * expire unless renewed.
+ */
+public final class ServiceEndpoints {
+
+    private final String serviceName;
+    private final String encoded;
+    private final long version;
+    private final Endpoint[] endpoints;
+    private final Map<String, BitSet> tagIndex = new HashMap<>();
+    private final Set<String> unhealthy;
+    private final BitSet unhealthyBits;
+    private final Set<String> leased;
+
+    private ServiceEndpoints(String serviceName, String encoded, long version, Endpoint[] endpoints,
+                             Set<String> unhealthy, Set<String> leased){
+        this.serviceName = Objects.requireNonNull(serviceName);
+        this.version = version;
+        this.endpoints = endpoints;
+        this.unhealthy = unhealthy;
+        this.unhealthyBits = new BitSet(endpoints.length);
+        this.leased = leased;
+        for(int i=0;i<endpoints.length;i++){
+            if(unhealthy.contains(endpoints[i].getInstanceKey())){
+                unhealthyBits.set(i);
+            }
+            for(String tag:endpoints[i].getTags()){
+                BitSet bits = tagIndex.get(tag);
+                if(bits==null){
+                    bits = new BitSet(endpoints.length);
+                    tagIndex.put(tag, bits);
+                }
+                bits.set(i);
+            }
+        }
+        this.encoded = encoded!=null?encoded:encode(version, endpoints, unhealthy, leased);
+    }
+
+    /**
+     * Decodes the stored value of a service.
+     * @param serviceName the service name, not null.
+     * @param encoded the stored JSON value, or null for a service without instances. Plain JSON arrays, as
+     *                stored by former versions, are read with version 0.
+     * @return the decoded instances, never null.
+     */
+    public static ServiceEndpoints decode(String serviceName, String encoded){
+        if(encoded==null || encoded.isEmpty()){
+            return empty(serviceName, 0L);
+        }
+        long version = 0L;
+        JsonArray array;
+        Set<String> unhealthy = Collections.emptySet();
+        Set<String> leased = Collections.emptySet();
+        if(encoded.startsWith("{")){
+            JsonObject ob = new JsonObject(encoded);
+            version = ob.getLong("version", 0L);
+            array = ob.getJsonArray("endpoints", new JsonArray());
+            unhealthy = readKeys(ob.getJsonArray("unhealthy"));
+            leased = readKeys(ob.getJsonArray("leased"));
+        }else{
+            array = new JsonArray(encoded);
+        }
+        Endpoint[] endpoints = new Endpoint[array.size()];
+        for(int i=0;i<endpoints.length;i++){
+            endpoints[i] = Endpoint.fromJSON(array.getJsonObject(i));
+        }
+        return new ServiceEndpoints(serviceName, encoded, version, endpoints, unhealthy, leased);
+    }
+
+    private static Set<String> readKeys(JsonArray keys){
+        if(keys==null || keys.size()==0){
+            return Collections.emptySet();
+        }
+        Set<String> result = new HashSet<>();
+        for(int i=0;i<keys.size();i++){
+            result.add(keys.getString(i));
+        }
+        return result;
+    }
+
+    /**
+     * Creates an empty instance set, e.g. for a service stored for the first time.
+     * @param serviceName the service name, not null.
+     * @param version the version of the empty set, the first modification gets the next version.
+     * @return the empty instance set, never null.
+     */
+    public static ServiceEndpoints empty(String serviceName, long version){
+        return new ServiceEndpoints(serviceName, null, version, new Endpoint[0], Collections.emptySet(),
+                Collections.emptySet());
+    }
+
+    private static String encode(long version, Endpoint[] endpoints, Set<String> unhealthy, Set<String> leased){
+        JsonObject ob = new JsonObject()
+                .put("version", version)
+                .put("endpoints", toJSON(Arrays.asList(endpoints)));
+        if(!unhealthy.isEmpty()){
+            ob.put("unhealthy", writeKeys(unhealthy));
+        }
+        if(!leased.isEmpty()){
+            ob.put("leased", writeKeys(leased));
+        }
+        return ob.encode();
+    }
+
+    private static JsonArray writeKeys(Set<String> keys){
+        JsonArray array = new JsonArray();
+        for(String key:keys){
+            array.add(key);
+        }
+        return array;
+    }
+
+    /**
+     * Returns a copy containing the given instance registered permanently, replacing an instance with the same
+     * instance key. The health of a replaced instance is kept.
+     * @param endpoint the endpoint, not null.
+     * @return the new instance set.
+     */
+    public ServiceEndpoints with(Endpoint endpoint){
+        return with(endpoint, false);
+    }
+
+    /**
+     * Returns a copy containing the given instance, replacing an instance with the same instance key. The health
+     * of a replaced instance is kept.
+     * @param endpoint the endpoint, not null.
+     * @param leased true, if the instance was registered with a lease.
+     * @return the new instance set.
+     */
+    public ServiceEndpoints with(Endpoint endpoint, boolean leased){
+        String key = endpoint.getInstanceKey();
+        Endpoint[] result = null;
+        for(int i=0;i<endpoints.length;i++){
+            if(endpoints[i].getInstanceKey().equals(key)){
+                result = endpoints.clone();
+                result[i] = endpoint;
+                break;
+            }
+        }
+        if(result==null){
+            result = Arrays.copyOf(endpoints, endpoints.length + 1);
+            result[endpoints.length] = endpoint;
+        }
+        Set<String> leasedKeys = this.leased;
+        if(this.leased.contains(key)!=leased){
+            leasedKeys = new HashSet<>(this.leased);
+            if(leased){
+                leasedKeys.add(key);
+            }else{
+                leasedKeys.remove(key);
+            }
+        }
+        return new ServiceEndpoints(serviceName, null, version + 1, result, unhealthy, leasedKeys);
+    }
+
+    /**
+     * Returns a copy with the health of the given instance changed.
+     * @param instanceKey the instance key, see {@link Endpoint#getInstanceKey()}.
+     * @param healthy false, to leave the instance out of the query results.
+     * @return the new instance set, or this instance, if the key is not contained or the health did not change.
+     */
+    public ServiceEndpoints withHealth(String instanceKey, boolean healthy){
+        if(unhealthy.contains(instanceKey)!=healthy){
+            return this;
+        }
+        for(Endpoint endpoint:endpoints){
+            if(endpoint.getInstanceKey().equals(instanceKey)){
+                Set<String> result = new HashSet<>(unhealthy);
+                if(healthy){
+                    result.remove(instanceKey);
+                }else{
+                    result.add(instanceKey);
+                }
+                return new ServiceEndpoints(serviceName, null, version + 1, endpoints, result, leased);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Checks whether an instance is contained and not reported unhealthy.
+     * @param instanceKey the instance key, see {@link Endpoint#getInstanceKey()}.
+     * @return true, if the instance is contained and healthy.
+     */
+    public boolean isHealthy(String instanceKey){
+        if(unhealthy.contains(instanceKey)){
+            return false;
+        }
+        for(Endpoint endpoint:endpoints){
+            if(endpoint.getInstanceKey().equals(instanceKey)){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether an instance was registered with a lease.
+     * @param instanceKey the instance key, see {@link Endpoint#getInstanceKey()}.
+     * @return true, if the instance is contained and leased.
+     */
+    public boolean isLeased(String instanceKey){
+        return leased.contains(instanceKey);
+    }
+
+    /**
+     * Returns a copy without the instance with the given key.
+     * @param instanceKey the instance key, see {@link Endpoint#getInstanceKey()}.
+     * @return the new instance set, or this instance, if the key is not contained.
+     */
+    public ServiceEndpoints without(String instanceKey){
+        for(int i=0;i<endpoints.length;i++){
+            if(endpoints[i].getInstanceKey().equals(instanceKey)){
+                Endpoint[] result = new Endpoint[endpoints.length - 1];
+                System.arraycopy(endpoints, 0, result, 0, i);
+                System.arraycopy(endpoints, i + 1, result, i, endpoints.length - i - 1);
+                Set<String> remaining = unhealthy;
+                if(unhealthy.contains(instanceKey)){
+                    remaining = new HashSet<>(unhealthy);
+                    remaining.remove(instanceKey);
+                }
+                Set<String> leasedKeys = leased;
+                if(leased.contains(instanceKey)){
+                    leasedKeys = new HashSet<>(leased);
+                    leasedKeys.remove(instanceKey);
+                }
+                return new ServiceEndpoints(serviceName, null, version + 1, result, remaining, leasedKeys);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Returns an empty copy, which is stored instead of removing the service, so the versions keep increasing when
+     * the service is registered again.
+     * @return the empty instance set, or this instance, if already empty.
+     */
+    public ServiceEndpoints cleared(){
+        if(endpoints.length==0){
+            return this;
+        }
+        return new ServiceEndpoints(serviceName, null, version + 1, new Endpoint[0], Collections.emptySet(),
+                Collections.emptySet());
+    }
+
+    public String getServiceName() {
+        return serviceName;
+    }
+
+    /**
+     * Get the version, incremented with every modification.
+     * @return the version, 0 for a service never stored.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Get the value to be stored in the registry map.
+     * @return the JSON object with the version and all instances, never null.
+     */
+    public String getEncoded() {
+        return encoded;
+    }
+
+    public boolean isEmpty(){
+        return endpoints.length==0;
+    }
+
+    public int size(){
+        return endpoints.length;
+    }
+
+    /**
+     * Get all instances, including the unhealthy ones.
+     * @return the instances, never null.
+     */
+    public List<Endpoint> getEndpoints(){
+        return Collections.unmodifiableList(Arrays.asList(endpoints));
+    }
+
+    /**
+     * Get all healthy instances carrying all of the given tags. If all matching instances are unhealthy, they are
+     * returned nevertheless, so requests are still sent somewhere.
+     * @param tags the tags required, null or empty for all instances.
+     * @return the matching instances, never null.
+     */
+    public List<Endpoint> query(Collection<String> tags){
+        if(tags==null || tags.isEmpty()){
+            if(unhealthyBits.isEmpty() || unhealthyBits.cardinality()==endpoints.length){
+                return getEndpoints();
+            }
+            BitSet all = new BitSet(endpoints.length);
+            all.set(0, endpoints.length);
+            return select(all);
+        }
+        BitSet result = null;
+        for(String tag:tags){
+            BitSet bits = tagIndex.get(tag);
+            if(bits==null){
+                return Collections.emptyList();
+            }
+            if(result==null){
+                result = (BitSet)bits.clone();
+            }else{
+                result.and(bits);
+            }
+            if(result.isEmpty()){
+                return Collections.emptyList();
+            }
+        }
+        return select(result);
+    }
+
+    /**
+     * Get the instances at the positions given, leaving out the unhealthy ones, unless all of them are unhealthy.
+     */
+    private List<Endpoint> select(BitSet result){
+        if(result.intersects(unhealthyBits)){
+            BitSet healthy = (BitSet)result.clone();
+            healthy.andNot(unhealthyBits);
+            if(!healthy.isEmpty()){
+                result = healthy;
+            }
+        }
+        List<Endpoint> matches = new ArrayList<>(result.cardinality());
+        for(int i = result.nextSetBit(0); i>=0; i = result.nextSetBit(i + 1)){
+            matches.add(endpoints[i]);
+        }
+        return matches;
+    }
+
+    /**
+     * Creates the JSON reply for the given instances.
+     * @param endpoints the instances.
+     * @return the JSON array, never null.
+     */
+    public static JsonArray toJSON(Collection<Endpoint> endpoints){
+        JsonArray array = new JsonArray();
+        for(Endpoint endpoint:endpoints){
+            array.add(endpoint.toJSON());
+        }
+        return array;
+    }
+
+    @Override
+    public String toString() {
+        return "ServiceEndpoints{" +
+                "serviceName='" + serviceName + '\'' +
+                ", version=" + version +
+                ", instances=" + endpoints.length +
+                ", unhealthy=" + unhealthy +
+                ", leased=" + leased +
+                ", tags=" + tagIndex.keySet() +
+                '}';
+    }
+}
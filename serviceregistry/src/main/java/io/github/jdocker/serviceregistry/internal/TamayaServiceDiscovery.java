@@ -9,44 +9,122 @@ import org.apache.tamaya.ConfigurationProvider;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * Created by atsticks on 07.02.16.
+ * <p>
+ * Endpoints are read from a compiled, immutable snapshot of all {@code jd.service.<name>} entries. The snapshot
+ * is rebuilt only, when the {@link MutableTestPropertySource} is written or Tamaya returns another configuration
+ * instance, and is swapped atomically, so lookups do not lock nor parse.
  */
 public class TamayaServiceDiscovery implements ServiceDiscovery{
 
     private static final Logger LOG = Logger.getLogger(TamayaServiceDiscovery.class.getName());
 
+    private static final String SERVICE_PREFIX = "jd.service.";
+
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
     @Override
     public Collection<Endpoint> getEndpoints(String serviceName) {
-        List<Endpoint> endpoints = new ArrayList<>();
+        List<Endpoint> endpoints = getSnapshot().endpoints.get(serviceName);
+        if(endpoints==null){
+            return Collections.emptyList();
+        }
+        return endpoints;
+    }
+
+    @Override
+    public Endpoint getEndpoint(String serviceName) {
+        return EndpointResolutionPolicy.RANDOM_RESOLUTIONPOLICY.resolve(getEndpoints(serviceName));
+    }
+
+    /**
+     * Forces the snapshot to be rebuilt on next access, e.g. after property sources other than the
+     * {@link MutableTestPropertySource} have changed.
+     */
+    public void refresh(){
+        snapshot = Snapshot.EMPTY;
+    }
+
+    private Snapshot getSnapshot(){
+        Snapshot current = snapshot;
+        long version = MutableTestPropertySource.getVersion();
         Configuration config = ConfigurationProvider.getConfiguration();
-        String serviceRefs = config.get("jd.service."+serviceName);
-        for (String endpointRef : serviceRefs.split(",")) {
-            for (String host : endpointRef.split(",")) {
-                host = host.trim();
-                String endpointDef = config.get("jd.endpoint." + host+".uri");
+        if(current.version==version && current.config==config){
+            return current;
+        }
+        synchronized (this){
+            current = snapshot;
+            if(current.version==version && current.config==config){
+                return current;
+            }
+            current = Snapshot.build(config, version);
+            snapshot = current;
+            return current;
+        }
+    }
+
+    /**
+     * Immutable view of all services configured.
+     */
+    private static final class Snapshot{
+
+        static final Snapshot EMPTY = new Snapshot(null, -1L, Collections.emptyMap());
+
+        final Configuration config;
+        final long version;
+        final Map<String, List<Endpoint>> endpoints;
+
+        private Snapshot(Configuration config, long version, Map<String, List<Endpoint>> endpoints){
+            this.config = config;
+            this.version = version;
+            this.endpoints = endpoints;
+        }
+
+        static Snapshot build(Configuration config, long version){
+            Map<String, List<Endpoint>> endpoints = new HashMap<>();
+            for(Map.Entry<String,String> en:config.getProperties().entrySet()){
+                if(en.getKey().startsWith(SERVICE_PREFIX) && en.getValue()!=null){
+                    String serviceName = en.getKey().substring(SERVICE_PREFIX.length());
+                    Endpoint[] parsed = parseEndpoints(config, serviceName, en.getValue());
+                    endpoints.put(serviceName, Collections.unmodifiableList(Arrays.asList(parsed)));
+                }
+            }
+            return new Snapshot(config, version, endpoints);
+        }
+
+        private static Endpoint[] parseEndpoints(Configuration config, String serviceName, String serviceRefs){
+            List<Endpoint> endpoints = new ArrayList<>();
+            for (String endpointRef : serviceRefs.split(",")) {
+                endpointRef = endpointRef.trim();
+                if(endpointRef.isEmpty()){
+                    continue;
+                }
+                // either a host reference or the endpoint URI itself
+                String endpointDef = config.get("jd.endpoint." + endpointRef + ".uri");
+                if(endpointDef==null && endpointRef.contains("://")){
+                    endpointDef = endpointRef;
+                }
                 if (endpointDef != null) {
-                    URI endpointURI = null; // protocol:/host_port/domain?tags=a,b,c,d&healthCheck=checkId
                     try {
-                        endpointURI = new URI(endpointDef);
-                        Endpoint ep = new Endpoint(serviceName, endpointURI);
+                        // protocol:/host_port/domain?tags=a,b,c,d&healthCheck=checkId
+                        endpoints.add(new Endpoint(serviceName, new URI(endpointDef)));
                     } catch (URISyntaxException e) {
                         LOG.log(Level.SEVERE, "Failed to read endpoint from config: " +endpointDef, e);
                     }
                 }
             }
+            return endpoints.toArray(new Endpoint[endpoints.size()]);
         }
-        return endpoints;
-    }
-
-    @Override
-    public Endpoint getEndpoint(String serviceName) {
-        return EndpointResolutionPolicy.RANDOM_RESOLUTIONPOLICY.resolve(getEndpoints(serviceName));
     }
 
     @Override
@@ -0,0 +1,224 @@
+package io.github.jdocker.serviceregistry.internal;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel for expiring keys. Four wheels of 256 slots each cover 2^32 ticks; a key is placed
+ * into the lowest wheel whose range covers its deadline and cascades down to the next lower wheel when the
+ * slot is reached. Scheduling, rescheduling and cancelling a key are O(1), a tick only touches the slots due.
+ * Not thread safe, meant to be used from a single event loop.
+ */
+public final class TimingWheel<K> {
+
+    private static final int BITS = 8;
+    private static final int SLOTS = 1 << BITS;
+    private static final int MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+    private static final long MAX_DELTA = (1L << (BITS * LEVELS)) - 1;
+
+    private final long tickMillis;
+    private final Entry<K>[][] wheels;
+    private final Map<K, Entry<K>> entries = new HashMap<>();
+    private long currentTick;
+
+    /**
+     * Creates a new wheel.
+     * @param tickMillis the tick duration in milliseconds, &gt; 0.
+     * @param nowMillis the current time in milliseconds.
+     */
+    @SuppressWarnings("unchecked")
+    public TimingWheel(long tickMillis, long nowMillis){
+        if(tickMillis<=0){
+            throw new IllegalArgumentException("tickMillis must be > 0.");
+        }
+        this.tickMillis = tickMillis;
+        this.currentTick = nowMillis / tickMillis;
+        this.wheels = new Entry[LEVELS][SLOTS];
+        for(int level=0;level<LEVELS;level++){
+            for(int slot=0;slot<SLOTS;slot++){
+                Entry<K> head = new Entry<>(null);
+                head.prev = head;
+                head.next = head;
+                wheels[level][slot] = head;
+            }
+        }
+    }
+
+    /**
+     * Schedules the expiry of a key, replacing any deadline scheduled before.
+     * @param key the key, not null.
+     * @param deadlineMillis the time in milliseconds, when the key expires.
+     */
+    public void schedule(K key, long deadlineMillis){
+        Entry<K> entry = entries.get(key);
+        if(entry==null){
+            entry = new Entry<>(key);
+            entries.put(key, entry);
+        }else{
+            entry.unlink();
+        }
+        // round up, so a key never expires early
+        entry.deadlineTick = (deadlineMillis + tickMillis - 1) / tickMillis;
+        insert(entry);
+    }
+
+    /**
+     * Cancels the expiry of a key.
+     * @param key the key.
+     * @return true, if the key was scheduled.
+     */
+    public boolean cancel(K key){
+        Entry<K> entry = entries.remove(key);
+        if(entry==null){
+            return false;
+        }
+        entry.unlink();
+        return true;
+    }
+
+    /**
+     * Checks if a key is scheduled.
+     * @param key the key.
+     * @return true, if the key is scheduled and not yet expired.
+     */
+    public boolean contains(K key){
+        return entries.containsKey(key);
+    }
+
+    /**
+     * Get the number of keys scheduled.
+     * @return the number of keys.
+     */
+    public int size(){
+        return entries.size();
+    }
+
+    /**
+     * Advances the wheel to the given time, passing all keys expired meanwhile to the consumer. The consumer
+     * may schedule keys again.
+     * @param nowMillis the current time in milliseconds.
+     * @param expired the consumer of expired keys, not null.
+     * @return the number of keys expired.
+     */
+    public int advance(long nowMillis, Consumer<K> expired){
+        long targetTick = nowMillis / tickMillis;
+        int count = 0;
+        while(currentTick < targetTick){
+            currentTick++;
+            for(int level=LEVELS-1;level>0;level--){
+                long lowerBits = currentTick & ((1L << (BITS * level)) - 1);
+                if(lowerBits==0){
+                    cascade(wheels[level][(int)((currentTick >>> (BITS * level)) & MASK)]);
+                }
+            }
+            Entry<K> entry = detach(wheels[0][(int)(currentTick & MASK)]);
+            Entry<K> due = null;
+            while(entry!=null){
+                Entry<K> next = entry.next;
+                entry.next = null;
+                if(entry.deadlineTick<=currentTick){
+                    entries.remove(entry.key);
+                    entry.next = due;
+                    due = entry;
+                }else{
+                    insert(entry);
+                }
+                entry = next;
+            }
+            // notify after the slot was processed, so the consumer may schedule keys again
+            while(due!=null){
+                count++;
+                expired.accept(due.key);
+                due = due.next;
+            }
+        }
+        return count;
+    }
+
+    private void cascade(Entry<K> head){
+        Entry<K> entry = detach(head);
+        while(entry!=null){
+            Entry<K> next = entry.next;
+            entry.next = null;
+            if(entry.deadlineTick<=currentTick){
+                // due in the current tick, whose slot is processed next
+                link(wheels[0][(int)(currentTick & MASK)], entry);
+            }else{
+                insert(entry);
+            }
+            entry = next;
+        }
+    }
+
+    /**
+     * Removes all entries from a slot, returning them as a null terminated chain linked by {@code next}.
+     */
+    private Entry<K> detach(Entry<K> head){
+        if(head.next==head){
+            return null;
+        }
+        Entry<K> first = head.next;
+        head.prev.next = null;
+        head.next = head;
+        head.prev = head;
+        for(Entry<K> e = first; e!=null; e = e.next){
+            e.prev = null;
+        }
+        return first;
+    }
+
+    private void insert(Entry<K> entry){
+        long delta = entry.deadlineTick - currentTick;
+        Entry<K> head;
+        if(delta<=0){
+            head = wheels[0][(int)((currentTick + 1) & MASK)];
+        }else{
+            long tick = delta>MAX_DELTA?currentTick + MAX_DELTA:entry.deadlineTick;
+            long placed = tick - currentTick;
+            int level = 0;
+            while(level<LEVELS-1 && placed >= (1L << (BITS * (level + 1)))){
+                level++;
+            }
+            head = wheels[level][(int)((tick >>> (BITS * level)) & MASK)];
+        }
+        link(head, entry);
+    }
+
+    private static <K> void link(Entry<K> head, Entry<K> entry){
+        entry.prev = head.prev;
+        entry.next = head;
+        head.prev.next = entry;
+        head.prev = entry;
+    }
+
+    @Override
+    public String toString() {
+        return "TimingWheel{" +
+                "tickMillis=" + tickMillis +
+                ", currentTick=" + currentTick +
+                ", size=" + entries.size() +
+                '}';
+    }
+
+    private static final class Entry<K>{
+        final K key;
+        long deadlineTick;
+        Entry<K> prev;
+        Entry<K> next;
+
+        Entry(K key){
+            this.key = key;
+        }
+
+        void unlink(){
+            if(prev!=null){
+                prev.next = next;
+                next.prev = prev;
+                prev = null;
+                next = null;
+            }
+        }
+    }
+}
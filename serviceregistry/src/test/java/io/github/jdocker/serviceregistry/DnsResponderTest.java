@@ -0,0 +1,83 @@
+package io.github.jdocker.serviceregistry;
+
+import io.github.jdocker.common.Endpoint;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.json.JsonObject;
+import io.vertx.test.core.VertxTestBase;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Tests the {@link DnsResponder} over UDP.
+ */
+public class DnsResponderTest extends VertxTestBase {
+
+    private static final int PORT = 15353;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        CountDownLatch deployed = new CountDownLatch(2);
+        vertx.deployVerticle(ServiceRegistry.class.getName(), onSuccess(id -> deployed.countDown()));
+        vertx.deployVerticle(DnsResponder.class.getName(), new DeploymentOptions().setConfig(new JsonObject()
+                .put("port", PORT).put("host", "127.0.0.1")), onSuccess(id -> deployed.countDown()));
+        awaitLatch(deployed);
+        vertx.eventBus().send(ServiceRegistry.REG_ADDRESS_PUT, new Endpoint("billing",
+                URI.create("http://10.0.0.1:8080/api"), Arrays.asList("weight:50")).toJSON().encode());
+        vertx.eventBus().send(ServiceRegistry.REG_ADDRESS_PUT, new Endpoint("billing",
+                URI.create("http://10.0.0.2:8081/api")).toJSON().encode());
+    }
+
+    private static ByteBuffer query(String name, int type) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(new byte[]{0x12, 0x34, 0x01, 0x00, 0, 1, 0, 0, 0, 0, 0, 0});
+        for (String label : name.split("\\.")) {
+            out.write(label.length());
+            out.write(label.getBytes("US-ASCII"));
+        }
+        out.write(new byte[]{0, 0, (byte) type, 0, 1});
+        byte[] request = out.toByteArray();
+        try (DatagramSocket socket = new DatagramSocket()) {
+            socket.setSoTimeout(5000);
+            socket.send(new DatagramPacket(request, request.length, InetAddress.getByName("127.0.0.1"), PORT));
+            byte[] response = new byte[512];
+            DatagramPacket packet = new DatagramPacket(response, response.length);
+            socket.receive(packet);
+            return ByteBuffer.wrap(response, 0, packet.getLength());
+        }
+    }
+
+    @Test
+    public void testARecords() throws Exception {
+        ByteBuffer response = query("billing.jdocker", DnsResponder.TYPE_A);
+        assertEquals(0x1234, response.getShort(0) & 0xFFFF);
+        // response, authoritative, recursion desired copied, no error
+        assertEquals(0x8500, response.getShort(2) & 0xFFFF);
+        assertEquals(2, response.getShort(6));
+    }
+
+    @Test
+    public void testSrvRecordsAndCaseInsensitivity() throws Exception {
+        ByteBuffer response = query("Billing.JDocker", DnsResponder.TYPE_SRV);
+        assertEquals(0, response.getShort(2) & 0xF);
+        assertEquals(2, response.getShort(6));
+        // cached by the lower case name
+        response = query("billing.jdocker", DnsResponder.TYPE_SRV);
+        assertEquals(0, response.getShort(2) & 0xF);
+        assertEquals(2, response.getShort(6));
+    }
+
+    @Test
+    public void testUnknownNames() throws Exception {
+        assertEquals(3, query("unknown.jdocker", DnsResponder.TYPE_A).getShort(2) & 0xF);
+        assertEquals(5, query("billing.example", DnsResponder.TYPE_A).getShort(2) & 0xF);
+    }
+}
@@ -0,0 +1,104 @@
+package io.github.jdocker.serviceregistry;
+
+import io.github.jdocker.common.CheckResult;
+import io.github.jdocker.common.Endpoint;
+import io.github.jdocker.common.HealthCheckResult;
+import io.vertx.core.http.HttpServer;
+import io.vertx.test.core.VertxTestBase;
+import org.junit.Test;
+
+import java.net.URI;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Tests the {@link EndpointHealthCheck} against a local HTTP server.
+ */
+public class EndpointHealthCheckTest extends VertxTestBase {
+
+    private static final int PORT = 18089;
+
+    private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        HttpServer server = vertx.createHttpServer().requestHandler(req -> {
+            clientPorts.add(req.remoteAddress().port());
+            switch (req.path()) {
+                case "/health":
+                    req.response().end("status: UP");
+                    break;
+                case "/down":
+                    req.response().setStatusCode(503).end("status: DOWN");
+                    break;
+                case "/hang":
+                    break;
+                default:
+                    req.response().setStatusCode(404).end();
+            }
+        });
+        CountDownLatch listening = new CountDownLatch(1);
+        server.listen(PORT, "127.0.0.1", onSuccess(s -> listening.countDown()));
+        awaitLatch(listening);
+    }
+
+    private EndpointHealthCheck check(String path) {
+        return new EndpointHealthCheck(vertx, new Endpoint("billing", URI.create("http://127.0.0.1:" + PORT + path)));
+    }
+
+    @Test
+    public void testSuccess() {
+        HealthCheckResult result = check("/health").setBodyMatch("UP").check();
+        assertEquals(result.getMessage(), CheckResult.SUCCESS, result.getResult());
+        assertTrue(result.getLatencyNanos() > 0);
+    }
+
+    @Test
+    public void testUnexpectedStatus() {
+        assertEquals(CheckResult.FAILED, check("/down").check().getResult());
+        assertEquals(CheckResult.SUCCESS, check("/down").setExpectedStatus(503).check().getResult());
+    }
+
+    @Test
+    public void testBodyMismatch() {
+        HealthCheckResult result = check("/health").setBodyMatch("DOWN").check();
+        assertEquals(CheckResult.FAILED, result.getResult());
+        assertTrue(result.getMessage().contains("DOWN"));
+    }
+
+    @Test
+    public void testTimeout() {
+        assertEquals(CheckResult.FAILED, check("/hang").setTimeout(200).check().getResult());
+    }
+
+    @Test
+    public void testConnectionRefused() {
+        EndpointHealthCheck check = new EndpointHealthCheck(vertx,
+                new Endpoint("billing", URI.create("http://127.0.0.1:" + (PORT + 1) + "/health")));
+        assertEquals(CheckResult.FAILED, check.check().getResult());
+    }
+
+    @Test
+    public void testIdPerInstance() {
+        EndpointHealthCheck check = check("/health");
+        EndpointHealthCheck other = new EndpointHealthCheck(vertx,
+                new Endpoint("billing", URI.create("http://127.0.0.1:" + (PORT + 1) + "/health")));
+        assertEquals("EndpointHealthCheck:" + check.getEndpoint().getInstanceKey(), check.getId());
+        assertFalse(check.getId().equals(other.getId()));
+        assertEquals(check.getId(), check.check().getCheckId());
+    }
+
+    @Test
+    public void testReusesConnections() {
+        EndpointHealthCheck check = check("/").setPath("/health");
+        for (int i = 0; i < 20; i++) {
+            assertEquals(CheckResult.SUCCESS, check.check().getResult());
+        }
+        assertTrue("Connections: " + clientPorts, clientPorts.size() <= EndpointHealthCheck.POOL_SIZE);
+        long[] percentiles = check.getLatencyPercentiles(50, 99);
+        assertTrue(percentiles[0] > 0);
+        assertTrue(percentiles[0] <= percentiles[1]);
+    }
+}
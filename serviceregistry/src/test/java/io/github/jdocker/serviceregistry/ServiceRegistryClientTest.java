@@ -0,0 +1,240 @@
+package io.github.jdocker.serviceregistry;
+
+import io.github.jdocker.common.Endpoint;
+import io.github.jdocker.common.EndpointStats;
+import io.github.jdocker.common.ServiceDiscovery;
+import io.vertx.core.json.JsonObject;
+import io.vertx.test.core.VertxTestBase;
+import org.junit.Test;
+
+import java.net.URI;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Tests watching the {@link ServiceRegistry} through the {@link ServiceRegistryClient}.
+ */
+public class ServiceRegistryClientTest extends VertxTestBase {
+
+    private ServiceRegistryClient client;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        CountDownLatch deployed = new CountDownLatch(1);
+        vertx.deployVerticle(ServiceRegistry.class.getName(), onSuccess(id -> deployed.countDown()));
+        awaitLatch(deployed);
+        client = new ServiceRegistryClient(vertx);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        client.close();
+        super.tearDown();
+    }
+
+    @Test
+    public void testWatch() {
+        AtomicInteger updates = new AtomicInteger();
+        AtomicReference<Endpoint> endpoint = new AtomicReference<>();
+        ServiceDiscovery.Watch watch = client.watch("billing", (name, version, endpoints) -> {
+            switch (updates.incrementAndGet()) {
+                case 1:
+                    assertTrue(endpoints.isEmpty());
+                    endpoint.set(client.registerEndpoint("billing", URI.create("http://host1:8080/api")));
+                    break;
+                case 2:
+                    assertEquals(1, endpoints.size());
+                    assertEquals("host1", endpoints.get(0).getHost());
+                    client.removeEndpoint(endpoint.get());
+                    break;
+                case 3:
+                    assertTrue(endpoints.isEmpty());
+                    testComplete();
+                    break;
+                default:
+                    fail("Unexpected update " + endpoints);
+            }
+        });
+        await();
+        watch.close();
+    }
+
+    @Test
+    public void testRemoveAndRegisterAgainWhileWatched() {
+        Endpoint endpoint = client.registerEndpoint("payments", URI.create("http://host5:8080/api"));
+        AtomicLong lastVersion = new AtomicLong(-1L);
+        ServiceDiscovery.Watch watch = client.watch("payments", (name, version, endpoints) -> {
+            assertTrue("Version " + version + " after " + lastVersion.get(), version > lastVersion.get());
+            lastVersion.set(version);
+            if (endpoints.isEmpty()) {
+                return;
+            }
+            switch (endpoints.get(0).getHost()) {
+                case "host5":
+                    // the watch is parked on this version, while the service is removed and registered again
+                    vertx.setTimer(100, id -> {
+                        client.removeEndpoint(endpoint);
+                        client.registerEndpoint("payments", URI.create("http://host6:8080/api"));
+                    });
+                    break;
+                case "host6":
+                    testComplete();
+                    break;
+                default:
+                    fail("Unexpected update " + endpoints);
+            }
+        });
+        await();
+        watch.close();
+    }
+
+    @Test
+    public void testReportHealth() {
+        AtomicInteger updates = new AtomicInteger();
+        AtomicReference<Endpoint> endpoint1 = new AtomicReference<>();
+        ServiceDiscovery.Watch watch = client.watch("shipping", (name, version, endpoints) -> {
+            switch (updates.incrementAndGet()) {
+                case 1:
+                    assertTrue(endpoints.isEmpty());
+                    endpoint1.set(client.registerEndpoint("shipping", URI.create("http://host1:8080/api")));
+                    break;
+                case 2:
+                    assertEquals(1, endpoints.size());
+                    client.registerEndpoint("shipping", URI.create("http://host2:8080/api"));
+                    break;
+                case 3:
+                    assertEquals(2, endpoints.size());
+                    client.reportHealth(endpoint1.get(), false);
+                    assertTrue(EndpointStats.of(endpoint1.get()).isEjected());
+                    break;
+                case 4:
+                    assertEquals(1, endpoints.size());
+                    assertEquals("host2", endpoints.get(0).getHost());
+                    client.reportHealth(endpoint1.get(), true);
+                    assertFalse(EndpointStats.of(endpoint1.get()).isEjected());
+                    break;
+                case 5:
+                    assertEquals(2, endpoints.size());
+                    testComplete();
+                    break;
+                default:
+                    fail("Unexpected update " + endpoints);
+            }
+        });
+        await();
+        watch.close();
+    }
+
+    @Test
+    public void testGetEndpoints() {
+        client.registerEndpoint("orders", URI.create("http://host2:8080/api"));
+        // answered after the registration sent before
+        vertx.eventBus().send(ServiceRegistry.REG_ADDRESS_GET, "orders", onSuccess(reply -> testComplete()));
+        await();
+        assertEquals(1, client.getEndpoints("orders").size());
+    }
+
+    @Test
+    public void testLeaseRenewalAndExpiry() {
+        AtomicInteger updates = new AtomicInteger();
+        AtomicBoolean closed = new AtomicBoolean();
+        ServiceDiscovery.Watch watch = client.watch("leased", (name, version, endpoints) -> {
+            switch (updates.incrementAndGet()) {
+                case 1:
+                    assertTrue(endpoints.isEmpty());
+                    client.registerEndpoint(new Endpoint("leased", URI.create("http://host3:8080/api")), 300);
+                    break;
+                case 2:
+                    assertEquals(1, endpoints.size());
+                    // renewed by the client, so still registered after several TTLs
+                    vertx.setTimer(1000, id -> {
+                        // no more renewals, the lease expires
+                        closed.set(true);
+                        client.close();
+                    });
+                    break;
+                case 3:
+                    assertTrue("Expired before the client was closed", closed.get());
+                    assertTrue(endpoints.isEmpty());
+                    testComplete();
+                    break;
+                default:
+                    fail("Unexpected update " + endpoints);
+            }
+        });
+        await();
+        watch.close();
+    }
+
+    @Test
+    public void testRenewalRegistersRemovedInstanceAgain() {
+        Endpoint endpoint = new Endpoint("renewed", URI.create("http://host8:8080/api"));
+        client.registerEndpoint(endpoint, 300);
+        AtomicBoolean removed = new AtomicBoolean();
+        ServiceDiscovery.Watch watch = client.watch("renewed", (name, version, endpoints) -> {
+            if (endpoints.isEmpty()) {
+                return;
+            }
+            assertEquals(1, endpoints.size());
+            if (!removed.getAndSet(true)) {
+                // dropped by the registry, e.g. expired while the client was paused
+                vertx.eventBus().send(ServiceRegistry.REG_ADDRESS_REMOVE, new JsonObject()
+                        .put("service", "renewed").put("instance", endpoint.getInstanceKey()).encode());
+            } else {
+                // the next renewal was answered as unknown, so the client registered the instance again
+                testComplete();
+            }
+        });
+        await();
+        watch.close();
+    }
+
+    @Test
+    public void testRegisterPermanentlyCancelsLease() {
+        Endpoint endpoint = new Endpoint("permanent", URI.create("http://host7:8080/api"));
+        AtomicBoolean registered = new AtomicBoolean();
+        // a second instance sharing the map, which must learn about the cancelled lease as well
+        vertx.deployVerticle(ServiceRegistry.class.getName(), onSuccess(id -> {
+            client.watch("permanent", (name, version, endpoints) -> {
+                if (!registered.getAndSet(true)) {
+                    assertTrue(endpoints.isEmpty());
+                    client.registerEndpoint(endpoint, 300);
+                    client.registerEndpoint(endpoint);
+                    // no instance expires the lease, so still registered after several TTLs
+                    vertx.setTimer(1000, timer -> testComplete());
+                } else {
+                    assertEquals(1, endpoints.size());
+                }
+            });
+        }));
+        await();
+    }
+
+    @Test
+    public void testRegisterAgainAfterRestart() {
+        client.registerEndpoint("restarted", URI.create("http://host4:8080/api"));
+        AtomicLong registered = new AtomicLong(-1L);
+        ServiceDiscovery.Watch watch = client.watch("restarted", (name, version, endpoints) -> {
+            if (endpoints.isEmpty()) {
+                return;
+            }
+            assertEquals(1, endpoints.size());
+            if (registered.get() < 0) {
+                registered.set(version);
+                // a restarted, empty registry asks the clients to register again
+                vertx.sharedData().getLocalMap("services.shared").remove("restarted");
+                vertx.eventBus().publish(ServiceRegistry.REG_ADDRESS_RESTARTED, "services.shared");
+            } else {
+                // registered again, with a version not handed out before
+                assertTrue(version > registered.get());
+                testComplete();
+            }
+        });
+        await();
+        watch.close();
+    }
+}
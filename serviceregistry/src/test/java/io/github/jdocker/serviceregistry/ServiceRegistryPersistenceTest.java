@@ -0,0 +1,81 @@
+package io.github.jdocker.serviceregistry;
+
+import io.github.jdocker.common.Endpoint;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.test.core.VertxTestBase;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Tests the warm restart of a {@link ServiceRegistry} from its persisted log.
+ */
+public class ServiceRegistryPersistenceTest extends VertxTestBase {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static JsonObject registration(String host) {
+        return new Endpoint("billing", URI.create("http://" + host + ":8080/api")).toJSON();
+    }
+
+    /**
+     * Registers the given instances on a registry of another node, which is closed afterwards, and deploys a
+     * registry using the same log on {@link #vertx}.
+     */
+    private void registerAndRestart(JsonObject config, List<JsonObject> registrations, Runnable restarted) {
+        DeploymentOptions options = new DeploymentOptions().setConfig(config);
+        Vertx first = Vertx.vertx();
+        first.deployVerticle(ServiceRegistry.class.getName(), options, onSuccess(id -> {
+            for (JsonObject registration : registrations) {
+                first.eventBus().send(ServiceRegistry.REG_ADDRESS_PUT, registration.encode());
+            }
+            // answered after the registrations sent before
+            first.eventBus().send(ServiceRegistry.REG_ADDRESS_GET, "billing", onSuccess(reply ->
+                    first.close(onSuccess(closed -> vertx.deployVerticle(ServiceRegistry.class.getName(), options,
+                            onSuccess(restartedId -> restarted.run()))))));
+        }));
+    }
+
+    @Test
+    public void testWarmRestart() {
+        JsonObject config = new JsonObject().put("snapshotDir", folder.getRoot().getAbsolutePath());
+        registerAndRestart(config, Collections.singletonList(registration("host1")), () ->
+                vertx.eventBus().<String>send(ServiceRegistry.REG_ADDRESS_GET, "billing", onSuccess(reply -> {
+                    JsonArray restored = new JsonArray(reply.body());
+                    assertEquals(1, restored.size());
+                    assertEquals("host1", restored.getJsonObject(0).getString("host"));
+                    testComplete();
+                })));
+        await();
+    }
+
+    @Test
+    public void testRestoredLeasesExpire() {
+        JsonObject config = new JsonObject().put("snapshotDir", folder.getRoot().getAbsolutePath())
+                .put("reconcileTimeout", 200L);
+        AtomicReference<Object> restartedMap = new AtomicReference<>();
+        // clients are asked to register again, although the state was recovered
+        vertx.eventBus().consumer(ServiceRegistry.REG_ADDRESS_RESTARTED, message -> restartedMap.set(message.body()));
+        registerAndRestart(config, Arrays.asList(registration("host1"), registration("host2").put("ttl", 60000L)),
+                // the leased instance is not renewed by any client, the permanent one stays
+                () -> vertx.setTimer(1000, timer -> vertx.eventBus().<String>send(ServiceRegistry.REG_ADDRESS_GET,
+                        "billing", onSuccess(reply -> {
+                            JsonArray restored = new JsonArray(reply.body());
+                            assertEquals(1, restored.size());
+                            assertEquals("host1", restored.getJsonObject(0).getString("host"));
+                            assertEquals("services.shared", restartedMap.get());
+                            testComplete();
+                        }))));
+        await();
+    }
+}
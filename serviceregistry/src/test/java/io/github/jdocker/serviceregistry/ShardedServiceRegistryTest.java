@@ -0,0 +1,129 @@
+package io.github.jdocker.serviceregistry;
+
+import io.github.jdocker.common.Endpoint;
+import io.github.jdocker.common.ServiceDiscovery;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.test.core.VertxTestBase;
+import org.junit.Test;
+
+import java.net.URI;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Tests a {@link ServiceRegistry} deployed as multiple shards.
+ */
+public class ShardedServiceRegistryTest extends VertxTestBase {
+
+    private static final int SHARDS = 4;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        CountDownLatch deployed = new CountDownLatch(SHARDS);
+        for (int i = 0; i < SHARDS; i++) {
+            vertx.deployVerticle(ServiceRegistry.class.getName(), new DeploymentOptions().setConfig(
+                    new JsonObject().put("shards", SHARDS).put("shard", i)), onSuccess(id -> deployed.countDown()));
+        }
+        awaitLatch(deployed);
+    }
+
+    @Test
+    public void testShardOf() {
+        for (int i = 0; i < 100; i++) {
+            int shard = ServiceRegistry.shardOf("service" + i, SHARDS);
+            assertTrue(shard >= 0 && shard < SHARDS);
+            assertEquals(shard, ServiceRegistry.shardOf("service" + i, SHARDS));
+        }
+        assertEquals(ServiceRegistry.REG_ADDRESS_GET, ServiceRegistry.address(ServiceRegistry.REG_ADDRESS_GET, "a", 0));
+        assertEquals("services.shared", ServiceRegistry.mapName("a", 0));
+        assertEquals("services.shared." + ServiceRegistry.shardOf("a", SHARDS), ServiceRegistry.mapName("a", SHARDS));
+    }
+
+    @Test
+    public void testForwardHealth() {
+        ServiceRegistryClient client = new ServiceRegistryClient(vertx, ServiceRegistry.DEFAULT_WATCH_TIMEOUT, SHARDS);
+        Endpoint failing = new Endpoint("health", URI.create("http://host1:8080/api"));
+        client.registerEndpoint(failing);
+        client.registerEndpoint(new Endpoint("health", URI.create("http://host2:8080/api")));
+        AtomicBoolean reported = new AtomicBoolean();
+        ServiceDiscovery.Watch watch = client.watch("health", (name, version, endpoints) -> {
+            if (endpoints.size() == 2 && !reported.getAndSet(true)) {
+                // sent to the plain address without a reply handler, as done by the health checks
+                vertx.eventBus().send(ServiceRegistry.REG_ADDRESS_HEALTH, new JsonObject().put("service", "health")
+                        .put("instance", failing.getInstanceKey()).put("healthy", false).encode());
+            } else if (reported.get() && endpoints.size() == 1) {
+                assertEquals("host2", endpoints.get(0).getHost());
+                testComplete();
+            }
+        });
+        await();
+        watch.close();
+        client.close();
+    }
+
+    @Test
+    public void testRegisterAgainOnRestartedShard() {
+        ServiceRegistryClient client = new ServiceRegistryClient(vertx, ServiceRegistry.DEFAULT_WATCH_TIMEOUT, SHARDS);
+        String restarted = "service0";
+        String other = "service1";
+        for (int i = 2; ServiceRegistry.shardOf(other, SHARDS) == ServiceRegistry.shardOf(restarted, SHARDS); i++) {
+            other = "service" + i;
+        }
+        String otherService = other;
+        client.registerEndpoint(new Endpoint(restarted, URI.create("http://host1:8080/api")));
+        client.registerEndpoint(new Endpoint(otherService, URI.create("http://host2:8080/api")));
+        AtomicReference<ServiceDiscovery.Watch> watch = new AtomicReference<>();
+        // answered after the registrations sent before
+        vertx.eventBus().<String>send(ServiceRegistry.REG_ADDRESS_GET, otherService, onSuccess(first ->
+                vertx.eventBus().<String>send(ServiceRegistry.REG_ADDRESS_GET, restarted, onSuccess(second -> {
+                    // both shards lost their state, but only one of them announces its restart
+                    vertx.sharedData().getLocalMap(ServiceRegistry.mapName(restarted, SHARDS)).remove(restarted);
+                    vertx.sharedData().getLocalMap(ServiceRegistry.mapName(otherService, SHARDS)).remove(otherService);
+                    vertx.eventBus().publish(ServiceRegistry.REG_ADDRESS_RESTARTED,
+                            ServiceRegistry.mapName(restarted, SHARDS));
+                    watch.set(client.watch(restarted, (name, version, endpoints) -> {
+                        if (endpoints.isEmpty()) {
+                            return;
+                        }
+                        vertx.eventBus().<String>send(ServiceRegistry.REG_ADDRESS_GET, otherService,
+                                onSuccess(reply -> {
+                                    assertEquals(0, new JsonArray(reply.body()).size());
+                                    testComplete();
+                                }));
+                    }));
+                }))));
+        await();
+        watch.get().close();
+        client.close();
+    }
+
+    @Test
+    public void testShardedClientAndForwarding() {
+        ServiceRegistryClient client = new ServiceRegistryClient(vertx, ServiceRegistry.DEFAULT_WATCH_TIMEOUT, SHARDS);
+        for (int i = 0; i < 10; i++) {
+            client.registerEndpoint(new Endpoint("service" + i, URI.create("http://host" + i + ":8080/api")));
+        }
+        AtomicInteger checked = new AtomicInteger();
+        for (int i = 0; i < 10; i++) {
+            String service = "service" + i;
+            vertx.eventBus().<String>send(ServiceRegistry.address(ServiceRegistry.REG_ADDRESS_GET, service, SHARDS),
+                    service, onSuccess(direct -> {
+                assertEquals(1, new JsonArray(direct.body()).size());
+                // plain address, forwarded to the owning shard
+                vertx.eventBus().<String>send(ServiceRegistry.REG_ADDRESS_GET, service, onSuccess(forwarded -> {
+                    assertEquals(new JsonArray(direct.body()), new JsonArray(forwarded.body()));
+                    if (checked.incrementAndGet() == 10) {
+                        testComplete();
+                    }
+                }));
+            }));
+        }
+        await();
+        client.close();
+    }
+}
@@ -0,0 +1,43 @@
+package io.github.jdocker.serviceregistry.internal;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link LatencyRecorder}.
+ */
+public class LatencyRecorderTest {
+
+    @Test
+    public void testEmpty() {
+        LatencyRecorder recorder = new LatencyRecorder(8);
+        assertEquals(-1L, recorder.getPercentile(50));
+        assertEquals(0L, recorder.getCount());
+    }
+
+    @Test
+    public void testPercentiles() {
+        LatencyRecorder recorder = new LatencyRecorder(100);
+        for (int i = 100; i >= 1; i--) {
+            recorder.record(i);
+        }
+        assertArrayEquals(new long[]{1, 50, 90, 99, 100}, recorder.getPercentiles(0, 50, 90, 99, 100));
+    }
+
+    @Test
+    public void testKeepsLatestSamples() {
+        LatencyRecorder recorder = new LatencyRecorder(4);
+        for (int i = 1; i <= 10; i++) {
+            recorder.record(i * 10);
+        }
+        assertEquals(10L, recorder.getCount());
+        assertEquals(70L, recorder.getPercentile(0));
+        assertEquals(100L, recorder.getPercentile(100));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidPercentile() {
+        new LatencyRecorder(4).getPercentile(101);
+    }
+}
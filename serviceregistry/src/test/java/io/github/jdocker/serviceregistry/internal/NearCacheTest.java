@@ -0,0 +1,52 @@
+package io.github.jdocker.serviceregistry.internal;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link NearCache}.
+ */
+public class NearCacheTest {
+
+    @Test
+    public void testHitsAndMisses() throws Exception {
+        NearCache<String,String> cache = new NearCache<>(10);
+        assertNull(cache.get("a"));
+        assertTrue(cache.fill("a", "A", cache.getEpoch()));
+        assertEquals("A", cache.get("a"));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void testLruEviction() throws Exception {
+        NearCache<String,String> cache = new NearCache<>(2);
+        cache.fill("a", "A", cache.getEpoch());
+        cache.fill("b", "B", cache.getEpoch());
+        cache.get("a");
+        cache.fill("c", "C", cache.getEpoch());
+        assertEquals(2, cache.size());
+        assertEquals("A", cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals(1, cache.getEvictions());
+    }
+
+    @Test
+    public void testInvalidation() throws Exception {
+        NearCache<String,String> cache = new NearCache<>(10);
+        cache.fill("a", "A", cache.getEpoch());
+        cache.invalidate("a");
+        assertNull(cache.get("a"));
+        assertEquals(1, cache.getInvalidations());
+    }
+
+    @Test
+    public void testFillAfterInvalidationIsDiscarded() throws Exception {
+        NearCache<String,String> cache = new NearCache<>(10);
+        long epoch = cache.getEpoch();
+        cache.invalidate("a");
+        assertFalse(cache.fill("a", "stale", epoch));
+        assertNull(cache.get("a"));
+    }
+}
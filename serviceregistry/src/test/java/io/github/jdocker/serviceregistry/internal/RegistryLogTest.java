@@ -0,0 +1,91 @@
+package io.github.jdocker.serviceregistry.internal;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link RegistryLog}.
+ */
+public class RegistryLogTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static RegistryLog open(File file, Map<String, String> state) throws IOException {
+        return RegistryLog.open(file, (key, value) -> {
+            if (value == null) {
+                state.remove(key);
+            } else {
+                state.put(key, value);
+            }
+        });
+    }
+
+    @Test
+    public void testReplay() throws Exception {
+        File file = new File(folder.getRoot(), "registry.log");
+        try (RegistryLog log = open(file, new HashMap<>())) {
+            // enough records to grow the mapping
+            for (int i = 0; i < 20000; i++) {
+                log.append("service" + (i % 100), "[{\"host\":\"host" + i + "\"}]");
+            }
+            log.append("service5", null);
+        }
+        Map<String, String> state = new HashMap<>();
+        try (RegistryLog log = open(file, state)) {
+            assertEquals(20001, log.getRecordCount());
+        }
+        assertEquals(99, state.size());
+        assertNull(state.get("service5"));
+        assertEquals("[{\"host\":\"host19907\"}]", state.get("service7"));
+    }
+
+    @Test
+    public void testCompact() throws Exception {
+        File file = new File(folder.getRoot(), "registry.log");
+        Map<String, String> state = new HashMap<>();
+        state.put("a", "1");
+        state.put("b", "2");
+        try (RegistryLog log = open(file, new HashMap<>())) {
+            for (int i = 0; i < 100; i++) {
+                log.append("a", String.valueOf(i));
+            }
+            log.compact(state);
+            assertEquals(2, log.getRecordCount());
+            log.append("c", "3");
+        }
+        Map<String, String> replayed = new HashMap<>();
+        try (RegistryLog log = open(file, replayed)) {
+            assertEquals(3, log.getRecordCount());
+        }
+        assertEquals("1", replayed.get("a"));
+        assertEquals("2", replayed.get("b"));
+        assertEquals("3", replayed.get("c"));
+    }
+
+    @Test(expected = IOException.class)
+    public void testLockedAfterCompact() throws Exception {
+        File file = new File(folder.getRoot(), "registry.log");
+        try (RegistryLog log = open(file, new HashMap<>())) {
+            log.append("a", "1");
+            log.compact(new HashMap<>());
+            open(file, new HashMap<>());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testLocked() throws Exception {
+        File file = new File(folder.getRoot(), "registry.log");
+        try (RegistryLog log = open(file, new HashMap<>())) {
+            open(file, new HashMap<>());
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package io.github.jdocker.serviceregistry.internal;
+
+import io.github.jdocker.common.Endpoint;
+import org.junit.Test;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link ServiceEndpoints}.
+ */
+public class ServiceEndpointsTest {
+
+    private static Endpoint endpoint(String host, String... tags){
+        return new Endpoint("billing", URI.create("http://" + host + ":8080/api"), Arrays.asList(tags));
+    }
+
+    @Test
+    public void testMultipleInstances() throws Exception {
+        ServiceEndpoints endpoints = ServiceEndpoints.decode("billing", null)
+                .with(endpoint("host1", "prod", "eu"))
+                .with(endpoint("host2", "prod", "us"));
+        assertEquals(2, endpoints.size());
+        // same instance key replaces the instance.
+        endpoints = endpoints.with(endpoint("host1", "test"));
+        assertEquals(2, endpoints.size());
+        assertEquals(1, endpoints.query(Collections.singleton("test")).size());
+    }
+
+    @Test
+    public void testTagQuery() throws Exception {
+        ServiceEndpoints endpoints = ServiceEndpoints.decode("billing", null)
+                .with(endpoint("host1", "prod", "eu"))
+                .with(endpoint("host2", "prod", "us"))
+                .with(endpoint("host3", "test", "eu"));
+        List<Endpoint> result = endpoints.query(Arrays.asList("prod", "eu"));
+        assertEquals(1, result.size());
+        assertEquals("host1", result.get(0).getHost());
+        assertEquals(2, endpoints.query(Collections.singleton("eu")).size());
+        assertTrue(endpoints.query(Arrays.asList("prod", "asia")).isEmpty());
+        assertEquals(3, endpoints.query(null).size());
+    }
+
+    @Test
+    public void testEncodeDecode() throws Exception {
+        ServiceEndpoints endpoints = ServiceEndpoints.decode("billing", null)
+                .with(endpoint("host1", "prod", "eu"))
+                .with(endpoint("host2", "prod", "us"));
+        ServiceEndpoints decoded = ServiceEndpoints.decode("billing", endpoints.getEncoded());
+        assertEquals(2, decoded.size());
+        assertEquals(endpoints.getEncoded(), decoded.getEncoded());
+        assertEquals("host2", decoded.query(Collections.singleton("us")).get(0).getHost());
+    }
+
+    @Test
+    public void testWithout() throws Exception {
+        ServiceEndpoints endpoints = ServiceEndpoints.decode("billing", null)
+                .with(endpoint("host1", "prod"))
+                .with(endpoint("host2", "prod"));
+        endpoints = endpoints.without("http://host1:8080/api");
+        assertEquals(1, endpoints.size());
+        assertEquals(1, endpoints.query(Collections.singleton("prod")).size());
+        assertSame(endpoints, endpoints.without("http://unknown:8080/api"));
+    }
+
+    @Test
+    public void testVersion() throws Exception {
+        ServiceEndpoints endpoints = ServiceEndpoints.decode("billing", null);
+        assertEquals(0, endpoints.getVersion());
+        endpoints = endpoints.with(endpoint("host1", "prod")).with(endpoint("host2", "prod"));
+        assertEquals(2, endpoints.getVersion());
+        assertEquals(2, ServiceEndpoints.decode("billing", endpoints.getEncoded()).getVersion());
+        assertEquals(3, endpoints.without("http://host1:8080/api").getVersion());
+        // plain arrays stored by former versions
+        ServiceEndpoints legacy = ServiceEndpoints.decode("billing",
+                ServiceEndpoints.toJSON(endpoints.getEndpoints()).encode());
+        assertEquals(0, legacy.getVersion());
+        assertEquals(2, legacy.size());
+    }
+
+    @Test
+    public void testClearedKeepsVersion() throws Exception {
+        ServiceEndpoints endpoints = ServiceEndpoints.empty("billing", 100L).with(endpoint("host1", "prod"));
+        assertEquals(101, endpoints.getVersion());
+        ServiceEndpoints cleared = endpoints.cleared();
+        assertTrue(cleared.isEmpty());
+        assertEquals(102, cleared.getVersion());
+        assertSame(cleared, cleared.cleared());
+        // stored like any other state, registering again continues the versions
+        ServiceEndpoints decoded = ServiceEndpoints.decode("billing", cleared.getEncoded());
+        assertEquals(102, decoded.getVersion());
+        assertEquals(103, decoded.with(endpoint("host1", "prod")).getVersion());
+    }
+
+    @Test
+    public void testLeased() throws Exception {
+        ServiceEndpoints endpoints = ServiceEndpoints.decode("billing", null)
+                .with(endpoint("host1", "prod"), true)
+                .with(endpoint("host2", "prod"));
+        assertTrue(endpoints.isLeased("http://host1:8080/api"));
+        assertFalse(endpoints.isLeased("http://host2:8080/api"));
+        assertTrue(ServiceEndpoints.decode("billing", endpoints.getEncoded()).isLeased("http://host1:8080/api"));
+        // registered again permanently
+        assertFalse(endpoints.with(endpoint("host1", "prod")).isLeased("http://host1:8080/api"));
+        assertFalse(endpoints.without("http://host1:8080/api").isLeased("http://host1:8080/api"));
+    }
+
+    @Test
+    public void testHealth() throws Exception {
+        ServiceEndpoints endpoints = ServiceEndpoints.decode("billing", null)
+                .with(endpoint("host1", "prod"))
+                .with(endpoint("host2", "prod"));
+        ServiceEndpoints ejected = endpoints.withHealth("http://host1:8080/api", false);
+        assertEquals(endpoints.getVersion() + 1, ejected.getVersion());
+        assertFalse(ejected.isHealthy("http://host1:8080/api"));
+        assertEquals(2, ejected.size());
+        assertEquals("host2", ejected.query(null).get(0).getHost());
+        assertEquals(1, ejected.query(Collections.singleton("prod")).size());
+        assertSame(ejected, ejected.withHealth("http://host1:8080/api", false));
+        assertSame(ejected, ejected.withHealth("http://unknown:8080/api", false));
+        // health is stored and kept when the instance is registered again
+        ServiceEndpoints decoded = ServiceEndpoints.decode("billing", ejected.getEncoded());
+        assertFalse(decoded.isHealthy("http://host1:8080/api"));
+        assertFalse(decoded.with(endpoint("host1", "prod")).isHealthy("http://host1:8080/api"));
+        // all instances unhealthy, all are returned
+        ServiceEndpoints allEjected = ejected.withHealth("http://host2:8080/api", false);
+        assertEquals(2, allEjected.query(null).size());
+        assertEquals(2, allEjected.query(Collections.singleton("prod")).size());
+        ServiceEndpoints recovered = ejected.withHealth("http://host1:8080/api", true);
+        assertTrue(recovered.isHealthy("http://host1:8080/api"));
+        assertEquals(2, recovered.query(null).size());
+        assertTrue(ejected.without("http://host1:8080/api").isHealthy("http://host2:8080/api"));
+    }
+}
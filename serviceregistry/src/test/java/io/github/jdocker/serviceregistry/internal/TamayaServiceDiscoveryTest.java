@@ -4,6 +4,7 @@ import io.github.jdocker.common.Endpoint;
 import org.junit.Test;
 
 import java.net.URI;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -21,6 +22,19 @@ public class TamayaServiceDiscoveryTest {
         discovery.getEndpoints("testGetEndpoint");
     }
 
+    @Test
+    public void testGetEndpointsReusesSnapshot() throws Exception {
+        MutableTestPropertySource.getSharedConfig().put("jd.service.testSnapshot", "http://host1:8080/a, http://host2:8080/b");
+        Collection<Endpoint> endpoints = discovery.getEndpoints("testSnapshot");
+        assertEquals(2, endpoints.size());
+        assertSame(endpoints, discovery.getEndpoints("testSnapshot"));
+        MutableTestPropertySource.getSharedConfig().put("jd.service.testSnapshot", "http://host1:8080/a");
+        Collection<Endpoint> updated = discovery.getEndpoints("testSnapshot");
+        assertNotSame(endpoints, updated);
+        assertEquals(1, updated.size());
+        assertEquals("host1", updated.iterator().next().getHost());
+    }
+
     @Test
     public void testGetEndpoint() throws Exception {
         discovery.registerEndpoint("testGetEndpoint", new URI("http://localhost.8080/myService"));
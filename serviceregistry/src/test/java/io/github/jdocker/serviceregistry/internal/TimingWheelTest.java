@@ -0,0 +1,76 @@
+package io.github.jdocker.serviceregistry.internal;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link TimingWheel}.
+ */
+public class TimingWheelTest {
+
+    @Test
+    public void testExpiry() throws Exception {
+        TimingWheel<String> wheel = new TimingWheel<>(10, 0);
+        wheel.schedule("a", 50);
+        wheel.schedule("b", 5000);
+        List<String> expired = new ArrayList<>();
+        assertEquals(0, wheel.advance(40, expired::add));
+        assertEquals(1, wheel.advance(50, expired::add));
+        assertEquals("a", expired.get(0));
+        assertEquals(0, wheel.advance(4990, expired::add));
+        assertEquals(1, wheel.advance(5000, expired::add));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testRescheduleAndCancel() throws Exception {
+        TimingWheel<String> wheel = new TimingWheel<>(10, 0);
+        wheel.schedule("a", 100);
+        wheel.schedule("b", 100);
+        wheel.schedule("a", 300);
+        assertTrue(wheel.cancel("b"));
+        assertFalse(wheel.cancel("b"));
+        List<String> expired = new ArrayList<>();
+        wheel.advance(200, expired::add);
+        assertTrue(expired.isEmpty());
+        assertTrue(wheel.contains("a"));
+        wheel.advance(300, expired::add);
+        assertEquals(1, expired.size());
+        assertFalse(wheel.contains("a"));
+    }
+
+    @Test
+    public void testCascadingAcrossLevels() throws Exception {
+        TimingWheel<Integer> wheel = new TimingWheel<>(1, 123);
+        long[] deadlines = {124, 379, 380, 65_000, 65_659, 70_000, 17_000_000};
+        for (int i = 0; i < deadlines.length; i++) {
+            wheel.schedule(i, deadlines[i]);
+        }
+        for (int i = 0; i < deadlines.length; i++) {
+            List<Integer> expired = new ArrayList<>();
+            wheel.advance(deadlines[i] - 1, expired::add);
+            assertTrue("early expiry of " + i, expired.isEmpty());
+            wheel.advance(deadlines[i], expired::add);
+            assertEquals(1, expired.size());
+            assertEquals(i, expired.get(0).intValue());
+        }
+    }
+
+    @Test
+    public void testScheduleFromConsumer() throws Exception {
+        TimingWheel<String> wheel = new TimingWheel<>(10, 0);
+        wheel.schedule("a", 20);
+        List<String> expired = new ArrayList<>();
+        wheel.advance(20, key -> {
+            expired.add(key);
+            wheel.schedule(key, 60);
+        });
+        assertTrue(wheel.contains("a"));
+        wheel.advance(60, expired::add);
+        assertEquals(2, expired.size());
+    }
+}